@@ -45,6 +45,9 @@ public class DeltaConst {
     public static final String EP_Ping         = "$/ping";
     public static final String EP_Metrics      = "$/metrics";
     public static final String EP_RPC          = "$/rpc";
+    public static final String EP_Snapshot     = "$/snapshot";
+    // Long-poll: wait for a new version of a patch log.
+    public static final String EP_Wait         = "$/wait";
 
     // RPC calls - operation names.
     public static final String OP_PING           = "ping";
@@ -62,6 +65,12 @@ public class DeltaConst {
     public static final String OP_LOCK_GRAB      = "lock-grab";
     public static final String OP_UNLOCK         = "unlock";
     public static final String OP_LOCK_REFRESH   = "lock-refresh";
+    public static final String OP_TRUNCATE       = "truncate_log";
+    public static final String OP_LIST_SNAPSHOTS = "list_snapshots";
+    public static final String OP_CREATE_SNAPSHOT = "create_snapshot";
+    public static final String OP_LIST_LOG_CHANGES = "list_log_changes";
+    // Several operations in one request.
+    public static final String OP_BATCH          = "batch";
 
     // JSON field names, in RPC and configuration files.
     public static final String F_OP            = "operation";
@@ -94,10 +103,24 @@ public class DeltaConst {
     public static final String F_URI           = "uri";
     public static final String F_LOG_TYPE      = "log_type";
     public static final String F_STORE         = "store";
+    public static final String F_PATCH_CACHE   = "patch_cache";
+    public static final String F_GROUP_COMMIT  = "group_commit";
+    public static final String F_OPEN_THREADS  = "open_threads";
+    public static final String F_OPEN_LAZY     = "open_lazy";
+    public static final String F_IDLE_CLOSE    = "idle_close";
+    public static final String F_SNAPSHOTS     = "snapshots";
     // Lock ownership
     public static final String F_LOCK_REF      = "lock-ref";
     public static final String F_LOCK_GRAB     = "lock-grab";
     public static final String F_LOCK_TICKS    = "lock-ticks";
+    public static final String F_TIMEOUT       = "timeout";
+    // Log retention
+    public static final String F_KEEP_VERSION  = "keep_version";
+    public static final String F_MAX_AGE       = "max_age";
+    public static final String F_MAX_BYTES     = "max_bytes";
+    // Snapshots
+    public static final String F_PATCH_ID      = "patch_id";
+    public static final String F_CONTENT_TYPE  = "content_type";
     // Some atomic JSON value.
     public static final String F_VALUE         = "value";
     // Some JSON array
@@ -107,6 +130,13 @@ public class DeltaConst {
     public static final String F_ERROR         = "error";
     public static final String F_LOG_INFO      = "log_info";
 
+    // JSON field names, changes since a token.
+    public static final String F_SINCE         = "since";
+    public static final String F_COMPLETE      = "complete";
+    public static final String F_REMOVED       = "removed";
+    // JSON field names, batch results: status code of an operation that failed.
+    public static final String F_CODE          = "code";
+
     /** Default choice of port */
     public static final int    PORT            = 1066;
     public static final int    SYSTEM_VERSION  = 1;
@@ -118,6 +148,37 @@ public class DeltaConst {
 
     // Properties used to define patch store providers.
     public static final String pDeltaStore     = "delta.store";
+    // Server-wide patch cache size, in bytes. 0 means "no cache".
+    public static final String pDeltaPatchCache = "delta.patch.cache";
+    // Group commit window, in milliseconds. Not set means "no group commit".
+    public static final String pDeltaGroupCommit = "delta.group.commit";
+    // Number of threads used to open patch logs when the server starts.
+    public static final String pDeltaOpenThreads = "delta.open.threads";
+    // "true" to open patch logs on first use, not when the server starts.
+    public static final String pDeltaOpenLazy = "delta.open.lazy";
+    // Close patch logs not used for this many seconds; they are opened again on next use.
+    // Not set, or 0, means "never close".
+    public static final String pDeltaIdleClose = "delta.idle.close";
+    // Directory for the snapshots of the data of patch logs. Not set means "no snapshots".
+    public static final String pDeltaSnapshots = "delta.snapshots";
+    // File-based patch logs: "false" to read patch files through streams, not memory mapped.
+    public static final String pDeltaMmap = "delta.mmap";
+    // Segment file patch logs: size, in bytes, at which a new segment file is started.
+    public static final String pDeltaSegmentSize = "delta.segment.size";
+    // RocksDB patch logs: "true" to force the write-ahead log to disk on each write.
+    public static final String pDeltaRocksSync = "delta.rocks.sync";
+    // RocksDB patch logs: block cache size in bytes, shared by all logs. 0 means "no block cache".
+    public static final String pDeltaRocksBlockCache = "delta.rocks.block.cache";
+    // RocksDB patch logs: bloom filter bits per key for id lookup. 0 means "no bloom filter".
+    public static final String pDeltaRocksBloomBits = "delta.rocks.bloom.bits";
+    // RocksDB patch logs: compression of stored patches: "none", "lz4", "zstd" or "snappy".
+    public static final String pDeltaRocksCompression = "delta.rocks.compression";
+    // RocksDB patch logs: memtable size in bytes.
+    public static final String pDeltaRocksWriteBuffer = "delta.rocks.write.buffer";
+    // RocksDB patch logs: compaction readahead in bytes.
+    public static final String pDeltaRocksReadahead = "delta.rocks.readahead";
+    // RocksDB patch logs: "true" to keep all patch logs in one database.
+    public static final String pDeltaRocksShared = "delta.rocks.shared";
 
     // HTTP query string.
     // Registration
@@ -128,6 +189,11 @@ public class DeltaConst {
     public static final String paramPatch      = "patch";
     public static final String paramDatasource = F_DATASOURCE;
     public static final String paramVersion    = "version";
+    // Range of patches: version from and to (inclusive).
+    public static final String paramFrom       = "from";
+    public static final String paramTo         = "to";
+    // Wait for a new version: maximum wait in milliseconds.
+    public static final String paramTimeout    = "timeout";
 
     // Symbols used to store information, e.g. in a dataset context.
 
@@ -140,6 +206,9 @@ public class DeltaConst {
     public static final String contentTypePatchText     = "application/rdf-patch";
     public static final String contentTypePatchTextAlt  = "text/rdf-patch";
     public static final String contentTypePatchBinary   = "application/rdf-patch+thrift";
+    // A sequence of patches (see {@code PatchSeq}), each in text or binary format.
+    public static final String contentTypePatchSeq      = "application/rdf-patch-seq";
+    public static final String contentTypePatchSeqBinary = "application/rdf-patch-seq+thrift";
 
     // Preferred form.
     public static final ContentType ctPatchText         = ContentType.create(contentTypePatchText);
@@ -149,6 +218,9 @@ public class DeltaConst {
                                                                             contentTypePatchTextAlt,
                                                                             contentTypePatchBinary);
 
+    public static final AcceptList rsOfferPatchSeq      = AcceptList.create(contentTypePatchSeq,
+                                                                            contentTypePatchSeqBinary);
+
     // Environment variable name for the runtime area for the Delta server.
     public static final String ENV_BASE        = "DELTA_BASE";
 
@@ -158,8 +230,8 @@ public class DeltaConst {
     // Environment variable name for the port number of the Delta server.
     public static final String ENV_PORT        = "DELTA_PORT";
 
-    /** The size of the server-wide LRU cache */
-    public static final int PATCH_CACHE_SIZE   = 1000;
+    /** The default size, in bytes (estimated), of the server-wide patch cache */
+    public static final long PATCH_CACHE_SIZE  = 64L*1024*1024;
 
     /** The version number when not set */
     public static long VERSION_UNSET    = -1;
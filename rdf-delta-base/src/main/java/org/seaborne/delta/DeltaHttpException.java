@@ -41,6 +41,7 @@ public class DeltaHttpException extends DeltaException {
             case HttpSC.BAD_REQUEST_400:    return new DeltaBadRequestException(msg); 
             case HttpSC.NOT_FOUND_404:      return new DeltaNotFoundException(msg); 
             case HttpSC.UNAUTHORIZED_401:   return new DeltaNotRegisteredException(msg); 
+            case HttpSC.GONE_410:           return new DeltaTruncatedException(msg); 
             case HttpSC.FORBIDDEN_403:       
             default:
                 return ex;
@@ -17,12 +17,18 @@
 
 package org.seaborne.delta;
 
+import java.io.InputStream ;
 import java.io.OutputStream ;
 
+import org.apache.jena.atlas.web.ContentType ;
 import org.apache.jena.rdfpatch.RDFChanges;
+import org.apache.jena.rdfpatch.RDFPatch ;
+import org.apache.jena.rdfpatch.RDFPatchOps ;
+import org.apache.jena.rdfpatch.binary.RDFPatchReaderBinary ;
 import org.apache.jena.rdfpatch.changes.RDFChangesLog ;
 import org.apache.jena.rdfpatch.changes.RDFChangesN ;
 import org.apache.jena.rdfpatch.system.Printer ;
+import org.apache.jena.rdfpatch.text.RDFPatchReaderText ;
 import org.apache.jena.rdfpatch.text.TokenWriter ;
 import org.apache.jena.rdfpatch.text.TokenWriterText ;
 import org.slf4j.Logger ;
@@ -65,4 +71,49 @@ public class DeltaOps {
         TokenWriter tokenWriter = TokenWriterText.create(out) ;
         return tokenWriter ;
     }
+
+    /**
+     * Is the content type (a header value, which may have parameters) the binary
+     * format for RDF Patch? The text format is the default so null is "not binary".
+     */
+    public static boolean isPatchBinary(String contentType) {
+        if ( contentType == null )
+            return false;
+        ContentType ct = ContentType.create(contentType);
+        return DeltaConst.contentTypePatchBinary.equals(ct.getContentTypeStr());
+    }
+
+    /** Whether the content type is a sequence of patches in binary format (see {@code PatchSeq}). */
+    public static boolean isPatchSeqBinary(String contentType) {
+        if ( contentType == null )
+            return false;
+        ContentType ct = ContentType.create(contentType);
+        return DeltaConst.contentTypePatchSeqBinary.equals(ct.getContentTypeStr());
+    }
+
+    /** Read a patch, in text or binary format according to the content type. */
+    public static RDFPatch readPatch(InputStream input, String contentType) {
+        if ( isPatchBinary(contentType) )
+            return RDFPatchOps.readBinary(input);
+        return RDFPatchOps.read(input);
+    }
+
+    /**
+     * Parse a patch, in text or binary format according to the content type, sending
+     * it to {@code changes} as it is read. The patch is not held in memory.
+     */
+    public static void readPatch(InputStream input, String contentType, RDFChanges changes) {
+        if ( isPatchBinary(contentType) )
+            RDFPatchReaderBinary.read(input, changes);
+        else
+            new RDFPatchReaderText(input).apply(changes);
+    }
+
+    /** Write a patch, in text or binary format according to the content type. */
+    public static void writePatch(OutputStream output, RDFPatch patch, String contentType) {
+        if ( isPatchBinary(contentType) )
+            RDFPatchOps.writeBinary(output, patch);
+        else
+            RDFPatchOps.write(output, patch);
+    }
 }
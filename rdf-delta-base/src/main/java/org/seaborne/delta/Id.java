@@ -200,6 +200,11 @@ public final class Id {
         return string.getBytes(StandardCharsets.UTF_8);
     }
 
+    /** The UUID of this {@code Id}, or null if it is not a UUID. */
+    public UUID asUUID() {
+        return uuid;
+    }
+
     /** Without any adornment */
     public String asPlainString() {
         if ( uuid != null )
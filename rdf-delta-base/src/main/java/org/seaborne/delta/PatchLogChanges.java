@@ -0,0 +1,117 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta;
+
+import static org.seaborne.delta.DeltaConst.F_ARRAY;
+import static org.seaborne.delta.DeltaConst.F_COMPLETE;
+import static org.seaborne.delta.DeltaConst.F_REMOVED;
+import static org.seaborne.delta.DeltaConst.F_SINCE;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.jena.atlas.json.JsonArray;
+import org.apache.jena.atlas.json.JsonObject;
+import org.apache.jena.atlas.json.JsonValue;
+import org.seaborne.delta.lib.JSONX;
+
+/**
+ * The patch logs that have changed since a previous request, together with the token to
+ * use in the next request.
+ * <p>
+ * If {@link #isComplete()} is true, {@link #getChanged()} is all the patch logs on the
+ * server and {@link #getRemoved()} is empty; the caller replaces what it knows rather
+ * than updating it. This happens on the first request, when the token is from an earlier
+ * run of the server, or when the server does not track changes.
+ */
+public final class PatchLogChanges {
+    private final String token;
+    private final List<PatchLogInfo> changed;
+    private final List<Id> removed;
+    private final boolean complete;
+
+    public PatchLogChanges(String token, List<PatchLogInfo> changed, List<Id> removed, boolean complete) {
+        this.token = token;
+        this.changed = List.copyOf(changed);
+        this.removed = List.copyOf(removed);
+        this.complete = complete;
+    }
+
+    /** The token for the next request. May be null, meaning the server does not track changes. */
+    public String getToken() {
+        return token;
+    }
+
+    /** The patch logs that are new or have a different {@link PatchLogInfo}. */
+    public List<PatchLogInfo> getChanged() {
+        return changed;
+    }
+
+    /** The patch logs that have been removed. */
+    public List<Id> getRemoved() {
+        return removed;
+    }
+
+    /** Whether this is a complete listing of the patch logs. */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /* {
+     *    since:    string (optional)
+     *    complete: boolean
+     *    array:    [ PatchLogInfo ... ]
+     *    removed:  [ string ... ]
+     * }
+     */
+
+    public JsonObject asJson() {
+        return JSONX.buildObject(b->{
+            if ( token != null )
+                b.key(F_SINCE).value(token);
+            b.key(F_COMPLETE).value(complete);
+            b.key(F_ARRAY).startArray();
+            changed.forEach(info->info.addJsonObject(b));
+            b.finishArray();
+            b.key(F_REMOVED).startArray();
+            removed.forEach(id->b.value(id.asPlainString()));
+            b.finishArray();
+        });
+    }
+
+    public static PatchLogChanges fromJson(JsonObject obj) {
+        String token = JSONX.getStrOrNull(obj, F_SINCE);
+        JsonValue completeValue = obj.get(F_COMPLETE);
+        boolean complete = completeValue != null && completeValue.isBoolean() && completeValue.getAsBoolean().value();
+        JsonArray array = obj.get(F_ARRAY).getAsArray();
+        List<PatchLogInfo> changed = array.stream()
+            .map(jv->PatchLogInfo.fromJson(jv.getAsObject()))
+            .collect(Collectors.toList());
+        JsonValue removedValue = obj.get(F_REMOVED);
+        List<Id> removed = ( removedValue == null ) ? List.of()
+            : removedValue.getAsArray().stream()
+                .map(jv->Id.fromString(jv.getAsString().value()))
+                .collect(Collectors.toList());
+        return new PatchLogChanges(token, changed, removed, complete);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[Changes %s complete=%s changed=%s removed=%s]", token, complete, changed, removed);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta;
+
+import static org.seaborne.delta.DeltaConst.F_KEEP_VERSION;
+import static org.seaborne.delta.DeltaConst.F_MAX_AGE;
+import static org.seaborne.delta.DeltaConst.F_MAX_BYTES;
+
+import java.time.Duration;
+import java.util.Objects;
+
+import org.apache.jena.atlas.json.JsonBuilder;
+import org.apache.jena.atlas.json.JsonObject;
+import org.seaborne.delta.lib.JSONX;
+
+/**
+ * Which patches of a patch log to keep when the log is truncated.
+ * <ul>
+ * <li>{@code keepVersion} : keep the patches from this version onwards.
+ * <li>{@code maxAge} : keep the patches stored less than this time ago.
+ * <li>{@code maxBytes} : keep the most recent patches up to this total stored size.
+ * </ul>
+ * A setting that is not used is null. A patch is removed if any of the settings would
+ * remove it. The latest patch of a log is always kept.
+ */
+public final class Retention {
+    private final Version keepVersion;
+    private final Duration maxAge;
+    private final Long maxBytes;
+
+    /** Keep the patches from {@code version} onwards. */
+    public static Retention keepFrom(Version version) {
+        return new Retention(Objects.requireNonNull(version), null, null);
+    }
+
+    /** Keep the patches stored less than {@code maxAge} ago. */
+    public static Retention maxAge(Duration maxAge) {
+        return new Retention(null, Objects.requireNonNull(maxAge), null);
+    }
+
+    /** Keep the most recent patches up to {@code maxBytes} of storage. */
+    public static Retention maxBytes(long maxBytes) {
+        return new Retention(null, null, maxBytes);
+    }
+
+    public Retention(Version keepVersion, Duration maxAge, Long maxBytes) {
+        if ( keepVersion == null && maxAge == null && maxBytes == null )
+            throw new IllegalArgumentException("Retention: no version, age or size given");
+        if ( keepVersion != null && ! keepVersion.isValid() )
+            throw new IllegalArgumentException("Retention: not a valid version: "+keepVersion);
+        if ( maxAge != null && maxAge.isNegative() )
+            throw new IllegalArgumentException("Retention: negative age: "+maxAge);
+        if ( maxBytes != null && maxBytes < 0 )
+            throw new IllegalArgumentException("Retention: negative size: "+maxBytes);
+        this.keepVersion = keepVersion;
+        this.maxAge = maxAge;
+        this.maxBytes = maxBytes;
+    }
+
+    /** Keep patches from this version onwards, or null. */
+    public Version getKeepVersion() {
+        return keepVersion;
+    }
+
+    /** Keep patches stored less than this time ago, or null. */
+    public Duration getMaxAge() {
+        return maxAge;
+    }
+
+    /** Keep the most recent patches up to this number of bytes, or null. */
+    public Long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /* Fields, all optional:
+     * {
+     *    keep_version: number
+     *    max_age:      number (seconds)
+     *    max_bytes:    number
+     * }
+     */
+
+    public JsonObject asJson() {
+        return JSONX.buildObject(b->addJsonFields(b));
+    }
+
+    /** Add fields to current JsonBuilder object */
+    public void addJsonFields(JsonBuilder b) {
+        if ( keepVersion != null )
+            b.key(F_KEEP_VERSION).value(keepVersion.asJson());
+        if ( maxAge != null )
+            b.key(F_MAX_AGE).value(maxAge.toSeconds());
+        if ( maxBytes != null )
+            b.key(F_MAX_BYTES).value(maxBytes);
+    }
+
+    public static Retention fromJson(JsonObject obj) {
+        long ver = JSONX.getLong(obj, F_KEEP_VERSION, -1);
+        long age = JSONX.getLong(obj, F_MAX_AGE, -1);
+        long bytes = JSONX.getLong(obj, F_MAX_BYTES, -1);
+        Version keepVersion = ( ver < 0 ) ? null : Version.create(ver);
+        Duration maxAge = ( age < 0 ) ? null : Duration.ofSeconds(age);
+        Long maxBytes = ( bytes < 0 ) ? null : bytes;
+        return new Retention(keepVersion, maxAge, maxBytes);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Retention[");
+        String sep = "";
+        if ( keepVersion != null ) {
+            sb.append("version=").append(keepVersion);
+            sep = ", ";
+        }
+        if ( maxAge != null ) {
+            sb.append(sep).append("age=").append(maxAge);
+            sep = ", ";
+        }
+        if ( maxBytes != null )
+            sb.append(sep).append("bytes=").append(maxBytes);
+        return sb.append("]").toString();
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(keepVersion, maxAge, maxBytes);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if ( this == obj )
+            return true;
+        if ( !(obj instanceof Retention other) )
+            return false;
+        return Objects.equals(keepVersion, other.keepVersion)
+            && Objects.equals(maxAge, other.maxAge)
+            && Objects.equals(maxBytes, other.maxBytes);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta;
+
+import static org.seaborne.delta.DeltaConst.F_CONTENT_TYPE;
+import static org.seaborne.delta.DeltaConst.F_PATCH_ID;
+import static org.seaborne.delta.DeltaConst.F_VERSION;
+
+import java.util.Objects;
+
+import org.apache.jena.atlas.json.JsonBuilder;
+import org.apache.jena.atlas.json.JsonObject;
+import org.seaborne.delta.lib.JSONX;
+
+/**
+ * Description of a snapshot of the data of a patch log: the dataset after applying
+ * the patches up to, and including, {@code version}. The last of these patches is
+ * {@code patchId}. The data is in the syntax {@code contentType} (N-Quads or RDF Thrift).
+ */
+public final class SnapshotInfo {
+    private final Version version;
+    private final Id patchId;
+    private final String contentType;
+
+    public SnapshotInfo(Version version, Id patchId, String contentType) {
+        this.version = Objects.requireNonNull(version, "version");
+        this.patchId = Objects.requireNonNull(patchId, "patchId");
+        this.contentType = Objects.requireNonNull(contentType, "contentType");
+    }
+
+    public Version getVersion() {
+        return version;
+    }
+
+    public Id getPatchId() {
+        return patchId;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /* {
+     *    version:      number
+     *    patch_id:     string
+     *    content_type: string
+     * }
+     */
+
+    public JsonObject asJson() {
+        return JSONX.buildObject(b->addJsonFields(b));
+    }
+
+    /** Insert as a nested-object into the builder */
+    public void addJsonObject(JsonBuilder b) {
+        b.startObject();
+        addJsonFields(b);
+        b.finishObject();
+    }
+
+    /** Add fields to current JsonBuilder object */
+    public void addJsonFields(JsonBuilder b) {
+        b.key(F_VERSION).value(version.asJson());
+        b.key(F_PATCH_ID).value(patchId.asString());
+        b.key(F_CONTENT_TYPE).value(contentType);
+    }
+
+    public static SnapshotInfo fromJson(JsonObject obj) {
+        Version version = Version.fromJson(obj, F_VERSION, Version.UNSET);
+        String patchIdStr = JSONX.getStrOrNull(obj, F_PATCH_ID);
+        String contentType = JSONX.getStrOrNull(obj, F_CONTENT_TYPE);
+        if ( ! version.isValid() || patchIdStr == null || contentType == null )
+            throw new DeltaException("Bad snapshot description: "+obj);
+        return new SnapshotInfo(version, Id.fromString(patchIdStr), contentType);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[Snapshot %s %s %s]", version, patchId, contentType);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(version, patchId, contentType);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if ( this == obj )
+            return true;
+        if ( !(obj instanceof SnapshotInfo other) )
+            return false;
+        return Objects.equals(version, other.version)
+            && Objects.equals(patchId, other.patchId)
+            && Objects.equals(contentType, other.contentType);
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.lib;
+
+import java.io.*;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+
+import org.apache.jena.atlas.io.IO;
+import org.apache.jena.atlas.io.IOX;
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.rdfpatch.RDFPatch;
+import org.apache.jena.rdfpatch.RDFPatchOps;
+import org.seaborne.delta.DeltaConst;
+import org.seaborne.delta.DeltaException;
+import org.seaborne.delta.DeltaOps;
+
+/**
+ * A sequence of patches in one byte stream. Used to send a range of patches in a
+ * single HTTP response.
+ * <p>
+ * Each patch is a frame: a 4 byte length (network order) followed by that many bytes
+ * of the patch in RDF Patch text format or, for content type
+ * {@link DeltaConst#contentTypePatchSeqBinary}, binary format. The sequence ends at
+ * end-of-stream.
+ * <p>
+ * Reading is incremental: one patch is parsed at a time.
+ */
+public class PatchSeq {
+
+    /** Write one patch as a frame of a patch sequence in text format. */
+    public static void write(OutputStream output, RDFPatch patch) {
+        write(output, patch, DeltaConst.contentTypePatchSeq);
+    }
+
+    /** Write one patch as a frame of a patch sequence with content type {@code contentType}. */
+    public static void write(OutputStream output, RDFPatch patch, String contentType) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(10*1024);
+        if ( DeltaOps.isPatchSeqBinary(contentType) )
+            RDFPatchOps.writeBinary(bytes, patch);
+        else
+            RDFPatchOps.write(bytes, patch);
+        writeFrame(output, bytes.toByteArray());
+    }
+
+    /** Write bytes, which must be an encoded patch, as a frame of a patch sequence. */
+    public static void writeFrame(OutputStream output, byte[] patchBytes) {
+        try {
+            DataOutputStream out = new DataOutputStream(output);
+            out.writeInt(patchBytes.length);
+            out.write(patchBytes);
+            // Not "close".
+            out.flush();
+        } catch (IOException ex) { throw IOX.exception(ex); }
+    }
+
+    /**
+     * Read a patch sequence in text format.
+     * The stream must be closed after use; this closes the {@code InputStream}.
+     */
+    public static Stream<RDFPatch> read(InputStream input) {
+        return read(input, DeltaConst.contentTypePatchSeq);
+    }
+
+    /**
+     * Read a patch sequence with content type {@code contentType}.
+     * The stream must be closed after use; this closes the {@code InputStream}.
+     */
+    public static Stream<RDFPatch> read(InputStream input, String contentType) {
+        Iterator<RDFPatch> iter = iterator(input, contentType);
+        return Iter.asStream(iter).onClose(()->IO.close(input));
+    }
+
+    /** Iterator over the patches of a patch sequence in text format. */
+    public static Iterator<RDFPatch> iterator(InputStream input) {
+        return iterator(input, DeltaConst.contentTypePatchSeq);
+    }
+
+    /** Iterator over the patches of a patch sequence with content type {@code contentType}. */
+    public static Iterator<RDFPatch> iterator(InputStream input, String contentType) {
+        boolean binary = DeltaOps.isPatchSeqBinary(contentType);
+        DataInputStream in = new DataInputStream(input);
+        return new Iterator<>() {
+            private RDFPatch slot = null;
+            private boolean finished = false;
+
+            @Override
+            public boolean hasNext() {
+                if ( finished )
+                    return false;
+                if ( slot != null )
+                    return true;
+                slot = readFrame(in, binary);
+                if ( slot == null )
+                    finished = true;
+                return slot != null;
+            }
+
+            @Override
+            public RDFPatch next() {
+                if ( ! hasNext() )
+                    throw new NoSuchElementException();
+                RDFPatch patch = slot;
+                slot = null;
+                return patch;
+            }
+        };
+    }
+
+    /** Read one frame; return null at end of stream. */
+    private static RDFPatch readFrame(DataInputStream in, boolean binary) {
+        try {
+            int b = in.read();
+            if ( b == -1 )
+                return null;
+            int len = (b << 24) | (in.readUnsignedByte() << 16) | (in.readUnsignedShort());
+            if ( len < 0 )
+                throw new DeltaException("Bad patch sequence: frame length "+len);
+            byte[] bytes = new byte[len];
+            in.readFully(bytes);
+            InputStream patchIn = new ByteArrayInputStream(bytes);
+            return binary ? RDFPatchOps.readBinary(patchIn) : RDFPatchOps.read(patchIn);
+        } catch (EOFException ex) {
+            throw new DeltaException("Truncated patch sequence");
+        } catch (IOException ex) {
+            throw IOX.exception(ex);
+        }
+    }
+}
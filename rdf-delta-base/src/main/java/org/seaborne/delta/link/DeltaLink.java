@@ -17,9 +17,19 @@
 
 package org.seaborne.delta.link;
 
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 import org.apache.jena.atlas.json.JsonObject;
+import org.apache.jena.atlas.lib.Lib;
+import org.apache.jena.atlas.web.TypedInputStream;
 import org.seaborne.delta.*;
 import org.apache.jena.rdfpatch.RDFPatch;
 
@@ -66,6 +76,18 @@ public interface DeltaLink {
      */
     public void removeDataSource(Id dsRef);
 
+    /**
+     * Remove patches from the start of a patch log, as given by {@code retention}, and
+     * return the details of the log afterwards. The latest patch is always kept.
+     * Storage may remove patches in blocks, so fewer patches than asked for may be removed.
+     * <p>
+     * Asking for a patch that has been removed causes a {@link DeltaTruncatedException}:
+     * the client needs a copy of the data at or after the new earliest version.
+     * <p>
+     * Optional operation - retention by age or size may not be supported by all patch stores.
+     */
+    public PatchLogInfo truncate(Id dsRef, Retention retention);
+
     /** Return an array of ids of datasets */
     public List<Id> listDatasets();
 
@@ -76,9 +98,52 @@ public interface DeltaLink {
      */
     public List<PatchLogInfo> listPatchLogInfo();
 
+    /**
+     * Return the patch logs that have changed since the request that returned the token
+     * {@code since}. Use null for the first request. The {@link PatchLogChanges} carries
+     * the token for the next request.
+     * <p>
+     * This default implementation returns the complete list of patch logs each time.
+     */
+    public default PatchLogChanges listPatchLogChanges(String since) {
+        return new PatchLogChanges(null, listPatchLogInfo(), List.of(), true);
+    }
+
     /** Return details of the patch log, or null if not registered. */
     public PatchLogInfo getPatchLogInfo(Id dsRef);
 
+    /**
+     * Return details of several patch logs, in the same order as {@code dsRefs}, with null
+     * for a log that is not registered.
+     */
+    public default List<PatchLogInfo> getPatchLogInfo(List<Id> dsRefs) {
+        List<PatchLogInfo> x = new ArrayList<>(dsRefs.size());
+        dsRefs.forEach(dsRef->x.add(getPatchLogInfo(dsRef)));
+        return x;
+    }
+
+    /**
+     * Wait until the patch log has a version after {@code version}, or until
+     * {@code timeoutMillis} has passed, then return the details of the patch log.
+     * The server may return earlier than the timeout, so the caller must check the
+     * version of the returned {@link PatchLogInfo}. Return null if the log is not registered.
+     * <p>
+     * This default implementation polls with {@link #getPatchLogInfo}. Implementations
+     * that are told of new patches override it.
+     */
+    public default PatchLogInfo awaitVersion(Id dsRef, Version version, long timeoutMillis) {
+        long finish = System.currentTimeMillis() + timeoutMillis;
+        for (;;) {
+            PatchLogInfo info = getPatchLogInfo(dsRef);
+            if ( info == null || info.getMaxVersion().isAfter(version) )
+                return info;
+            long remaining = finish - System.currentTimeMillis();
+            if ( remaining <= 0 )
+                return info;
+            Lib.sleep((int)Math.min(remaining, 1000));
+        }
+    }
+
     /** Return an array of {@link DataSourceDescription}s of datasets */
     public List<DataSourceDescription> listDescriptions();
 
@@ -155,12 +220,68 @@ public interface DeltaLink {
     /** Retrieve a patch by data source and patch id. */
     public RDFPatch fetch(Id dsRef, Id patchId);
 
+    /**
+     * Retrieve the patches from version {@code start} to version {@code finish}, inclusive.
+     * The stream ends early at the first missing patch.
+     * <p>
+     * The stream should be closed after use.
+     * <p>
+     * The default implementation fetches one patch at a time;
+     * implementations should provide a one-shot operation.
+     */
+    public default Stream<RDFPatch> fetchRange(Id dsRef, Version start, Version finish) {
+        if ( ! Version.isValid(start) || ! Version.isValid(finish) )
+            return Stream.empty();
+        return LongStream.rangeClosed(start.value(), finish.value())
+            .mapToObj(ver->fetch(dsRef, Version.create(ver)))
+            .takeWhile(Objects::nonNull);
+    }
+
     /**
      * Retrieve a URL to the initial state.
      * The log starts with this state.
      */
     public String initialState(Id dsRef);
 
+    /**
+     * The snapshots of the data of a patch log, in version order.
+     * Return an empty list if there are none or the server does not keep snapshots.
+     */
+    public List<SnapshotInfo> listSnapshots(Id dsRef);
+
+    /**
+     * The latest snapshot at, or before, {@code version}, or null if there isn't one.
+     * A client uses the snapshot and then plays the patches after the snapshot version.
+     */
+    public default SnapshotInfo getSnapshot(Id dsRef, Version version) {
+        SnapshotInfo snapshot = null;
+        for ( SnapshotInfo info : listSnapshots(dsRef) ) {
+            if ( info.getVersion().isAfter(version) )
+                break;
+            snapshot = info;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Retrieve the data of the snapshot at {@code version}, uncompressed, or return null
+     * if there is no snapshot at that version. The caller must close the stream.
+     */
+    public TypedInputStream fetchSnapshot(Id dsRef, Version version);
+
+    /**
+     * Create a snapshot at the latest version of the patch log, starting from the
+     * latest existing snapshot, and return its details.
+     */
+    public SnapshotInfo createSnapshot(Id dsRef);
+
+    /**
+     * Add a snapshot made elsewhere (e.g. by an offline job) for {@code version}, which
+     * must still be in the patch log. The data is N-Quads or RDF Thrift, as given by
+     * {@code contentType}.
+     */
+    public SnapshotInfo addSnapshot(Id dsRef, Version version, InputStream data, String contentType);
+
     /** Add a {@link DeltaLinkListener} listener. */
     public void addListener(DeltaLinkListener listener);
 
@@ -193,7 +314,30 @@ public interface DeltaLink {
     public Id acquireLock(Id datasourceId);
 
     /**
-     * Refresh a set of locks. This operation is blocking.
+     * Acquire the lock for a data source, waiting up to {@code timeoutMillis} for it
+     * to become free. The server may wait for less time than asked for.
+     * <p>
+     * Returns an {@link Id} for the lock ownership.<br/>
+     * Returns null for failure to get the lock.
+     * <p>
+     * This default implementation polls with {@link #acquireLock(Id)}. Implementations
+     * where waiting requests are queued for the lock override it.
+     */
+    public default Id acquireLock(Id datasourceId, long timeoutMillis) {
+        long finish = System.currentTimeMillis() + timeoutMillis;
+        for (;;) {
+            Id session = acquireLock(datasourceId);
+            if ( session != null )
+                return session;
+            long remaining = finish - System.currentTimeMillis();
+            if ( remaining <= 0 )
+                return null;
+            Lib.sleep((int)Math.min(remaining, 1000));
+        }
+    }
+
+    /**
+     * Refresh a lock. This operation is blocking.
      *
      * Return true if the lock is still valid, false if not (lock has been released or has
      * timed-out).
@@ -216,16 +360,21 @@ public interface DeltaLink {
      */
     public Id /*new ownership */ grabLock(Id datasourceId, Id oldlockSession);
 
-
-    // FUTURE
-
-//    /**
-//     * Refresh a set of locks. This operation is blocking.
-//     *
-//     * Returns a set of {@link Id} for locks in the lock set that no longer exist, either
-//     * because they have been released or have timed-out.
-//     */
-//    public Set<Id> refreshLocks(Set<Id> lockSet);
+    /**
+     * Refresh a number of locks in one operation. The argument maps each data source to
+     * the lock session for it. This operation is blocking.
+     * <p>
+     * Returns the data sources, from the keys of {@code locks}, whose locks are no longer
+     * valid, either because they have been released or have timed-out.
+     */
+    public default Set<Id> refreshLocks(Map<Id, Id> locks) {
+        Set<Id> failed = new HashSet<>();
+        locks.forEach((datasourceId, lockSession)->{
+            if ( ! refreshLock(datasourceId, lockSession) )
+                failed.add(datasourceId);
+        });
+        return failed;
+    }
 
     /** Release the lock for a data source. This operation does not fail if there is no lock. */
     public void releaseLock(Id datasourceId, Id lockSession);
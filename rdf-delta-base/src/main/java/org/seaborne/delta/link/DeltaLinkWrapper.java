@@ -17,10 +17,15 @@
 
 package org.seaborne.delta.link;
 
+import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import org.apache.jena.atlas.json.JsonObject;
+import org.apache.jena.atlas.web.TypedInputStream;
 import org.seaborne.delta.*;
 import org.apache.jena.rdfpatch.RDFPatch ;
 
@@ -55,6 +60,11 @@ public class DeltaLinkWrapper implements DeltaLink {
         exec(()->get().removeDataSource(dsRef));
     }
 
+    @Override
+    public PatchLogInfo truncate(Id dsRef, Retention retention) {
+        return execRtn(()->get().truncate(dsRef, retention));
+    }
+
     @Override
     public Id copyDataSource(Id id, String oldName, String newName) {
         return execRtn(()->get().copyDataSource(id, oldName, newName));
@@ -75,11 +85,26 @@ public class DeltaLinkWrapper implements DeltaLink {
         return execRtn(()->get().listPatchLogInfo());
     }
 
+    @Override
+    public PatchLogChanges listPatchLogChanges(String since) {
+        return execRtn(()->get().listPatchLogChanges(since));
+    }
+
     @Override
     public PatchLogInfo getPatchLogInfo(Id dsRef) {
         return execRtn(()->get().getPatchLogInfo(dsRef));
     }
 
+    @Override
+    public List<PatchLogInfo> getPatchLogInfo(List<Id> dsRefs) {
+        return execRtn(()->get().getPatchLogInfo(dsRefs));
+    }
+
+    @Override
+    public PatchLogInfo awaitVersion(Id dsRef, Version version, long timeoutMillis) {
+        return execRtn(()->get().awaitVersion(dsRef, version, timeoutMillis));
+    }
+
     @Override
     public List<DataSourceDescription> listDescriptions() {
         return execRtn(()->get().listDescriptions());
@@ -115,11 +140,41 @@ public class DeltaLinkWrapper implements DeltaLink {
         return execRtn(()->get().fetch(dsRef, patchId));
     }
 
+    @Override
+    public Stream<RDFPatch> fetchRange(Id dsRef, Version start, Version finish) {
+        return execRtn(()->get().fetchRange(dsRef, start, finish));
+    }
+
     @Override
     public String initialState(Id dsRef) {
         return execRtn(()->get().initialState(dsRef));
     }
 
+    @Override
+    public List<SnapshotInfo> listSnapshots(Id dsRef) {
+        return execRtn(()->get().listSnapshots(dsRef));
+    }
+
+    @Override
+    public SnapshotInfo getSnapshot(Id dsRef, Version version) {
+        return execRtn(()->get().getSnapshot(dsRef, version));
+    }
+
+    @Override
+    public TypedInputStream fetchSnapshot(Id dsRef, Version version) {
+        return execRtn(()->get().fetchSnapshot(dsRef, version));
+    }
+
+    @Override
+    public SnapshotInfo createSnapshot(Id dsRef) {
+        return execRtn(()->get().createSnapshot(dsRef));
+    }
+
+    @Override
+    public SnapshotInfo addSnapshot(Id dsRef, Version version, InputStream data, String contentType) {
+        return execRtn(()->get().addSnapshot(dsRef, version, data, contentType));
+    }
+
     @Override
     public void addListener(DeltaLinkListener listener) {
         other.addListener(listener);
@@ -144,15 +199,20 @@ public class DeltaLinkWrapper implements DeltaLink {
         return execRtn(() -> get().acquireLock(datasourceId));
     }
 
+    @Override
+    public Id acquireLock(Id datasourceId, long timeoutMillis) {
+        return execRtn(() -> get().acquireLock(datasourceId, timeoutMillis));
+    }
+
     @Override
     public boolean refreshLock(Id datasourceId, Id lockRef) {
         return execRtn(()->get().refreshLock(datasourceId, lockRef));
     }
 
-//    @Override
-//    public Set<Id> refreshLocks(Set<Id> lockSet) {
-//        return execRtn(()->get().refreshLocks(lockSet));
-//    }
+    @Override
+    public Set<Id> refreshLocks(Map<Id, Id> locks) {
+        return execRtn(()->get().refreshLocks(locks));
+    }
 
     @Override
     public LockState readLock(Id datasourceId) {
@@ -25,6 +25,7 @@ import org.junit.runners.Suite ;
     TestId.class
     , TestVersion.class
     , TestPersistentState.class
+    , TestPatchSeq.class
 })
 
 public class TS_DeltaBase { }
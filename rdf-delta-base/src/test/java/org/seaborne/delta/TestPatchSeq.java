@@ -0,0 +1,91 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.rdfpatch.RDFPatch;
+import org.apache.jena.rdfpatch.RDFPatchConst;
+import org.apache.jena.rdfpatch.changes.RDFChangesCollector;
+import org.junit.Test;
+import org.seaborne.delta.lib.PatchSeq;
+
+public class TestPatchSeq {
+
+    private static RDFPatch patch(String local) {
+        RDFChangesCollector c = new RDFChangesCollector();
+        c.header(RDFPatchConst.ID, Id.create().asNode());
+        c.txnBegin();
+        Node n = NodeFactory.createURI("http://example/"+local);
+        c.add(null, n, n, n);
+        c.txnCommit();
+        return c.getRDFPatch();
+    }
+
+    private static List<RDFPatch> roundTrip(RDFPatch... patches) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for ( RDFPatch p : patches )
+            PatchSeq.write(out, p);
+        try ( Stream<RDFPatch> stream = PatchSeq.read(new ByteArrayInputStream(out.toByteArray())) ) {
+            return stream.collect(Collectors.toList());
+        }
+    }
+
+    @Test public void patchSeq_empty() {
+        List<RDFPatch> x = roundTrip();
+        assertTrue(x.isEmpty());
+    }
+
+    @Test public void patchSeq_1() {
+        RDFPatch p1 = patch("s1");
+        List<RDFPatch> x = roundTrip(p1);
+        assertEquals(1, x.size());
+        assertEquals(p1.getId(), x.get(0).getId());
+    }
+
+    @Test public void patchSeq_3() {
+        RDFPatch p1 = patch("s1");
+        RDFPatch p2 = patch("s2");
+        RDFPatch p3 = patch("s3");
+        List<RDFPatch> x = roundTrip(p1, p2, p3);
+        assertEquals(3, x.size());
+        assertEquals(p1.getId(), x.get(0).getId());
+        assertEquals(p2.getId(), x.get(1).getId());
+        assertEquals(p3.getId(), x.get(2).getId());
+    }
+
+    @Test(expected=DeltaException.class)
+    public void patchSeq_truncated() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PatchSeq.write(out, patch("s1"));
+        byte[] bytes = out.toByteArray();
+        byte[] bytes2 = Arrays.copyOf(bytes, bytes.length-2);
+        try ( Stream<RDFPatch> stream = PatchSeq.read(new ByteArrayInputStream(bytes2)) ) {
+            stream.forEach(p->{});
+        }
+    }
+}
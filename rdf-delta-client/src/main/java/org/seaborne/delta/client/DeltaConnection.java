@@ -20,20 +20,26 @@ package org.seaborne.delta.client;
 import static java.lang.String.format;
 import static org.seaborne.delta.client.DeltaClientLib.threadFactoryDaemon;
 
+import java.util.Iterator;
 import java.util.Objects;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference ;
 import java.util.function.Consumer ;
+import java.util.stream.Stream;
 
 import org.apache.jena.atlas.lib.Lib ;
 import org.apache.jena.atlas.lib.Pair ;
 import org.apache.jena.atlas.logging.FmtLog;
 import org.apache.jena.atlas.web.HttpException;
+import org.apache.jena.atlas.web.TypedInputStream;
 import org.apache.jena.graph.Node;
 import org.apache.jena.query.Dataset;
 import org.apache.jena.query.DatasetFactory;
 import org.apache.jena.query.ReadWrite ;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.RDFParser;
 import org.apache.jena.sparql.core.DatasetGraph;
 import org.apache.jena.system.Txn;
 import org.apache.jena.web.HttpSC;
@@ -102,8 +108,26 @@ public class DeltaConnection implements AutoCloseable {
     // Test: TestDeltaAssembler.assembler_delta_3
     public static boolean TestModeNoAsync = false;
 
+    /**
+     * When the local data is more than this many versions behind, start from a snapshot
+     * of the data held by the patch log server, if there is one, instead of playing all
+     * the patches. New local data, such as a dataset just set up in a {@link Zone}, starts
+     * from a snapshot if there is one. A negative value means only use a snapshot when the
+     * patches needed have been removed from the log.
+     */
+    public static long SnapshotThreshold = 1000;
+
     private ScheduledExecutorService scheduledExecutionService = Executors.newScheduledThreadPool(1, threadFactoryDaemon);
 
+    /** Time for each wait on the patch log server for a new version. */
+    public static long WaitMillis = 20_000;
+    // Longest time between attempts to sync when waiting on the server is failing.
+    private static final long MaxBackoffMillis = 5*60*1000;
+    // The background task waiting for new versions.
+    private Future<?> watcher = null;
+    // Whether the last wait succeeded, in which case the cached remote version is current.
+    private volatile boolean watchActive = false;
+
     /**
      * Connect to an existing {@code DataSource} with the {@link DatasetGraph} as local state.
      * The {@code DatasetGraph} must be in-step with the zone.
@@ -187,7 +211,13 @@ public class DeltaConnection implements AutoCloseable {
         return (rw)->{
             switch(rw) {
                 case READ:
-                    try { sync(); } catch (Exception ex) {}
+                    try {
+                        // The background wait keeps the remote version up to date.
+                        if ( watchActive )
+                            syncToVersion(getRemoteVersionCached());
+                        else
+                            sync();
+                    } catch (Exception ex) {}
                     break;
                 case WRITE:
                     this.sync();
@@ -319,13 +349,16 @@ public class DeltaConnection implements AutoCloseable {
     /*package*/ void start(boolean withBackgroundSync) {
         checkDeltaConnection();
         if ( withBackgroundSync ) {
-            // Run (almost) immediately and then every 5 minutes
-            scheduledExecutionService.scheduleAtFixedRate(this::oneSyncAttempt, 0, 5*60, TimeUnit.SECONDS);
+            // Sync (almost) immediately and then each time the patch log server
+            // reports a new version.
+            watcher = scheduledExecutionService.submit(this::watch);
         }
     }
 
     /*package*/ void finish() {
         if ( isValid() ) {
+            if ( watcher != null )
+                watcher.cancel(true);
             this.logLockMgr.stop();
             this.shutdownSyncExecutorService();
             this.valid = false;
@@ -337,6 +370,47 @@ public class DeltaConnection implements AutoCloseable {
         trySyncIfAuto();
     }
 
+    /**
+     * Wait on the patch log server for a version after the local one, and sync when
+     * there is one. If waiting fails, for example the server is down or does not
+     * support waiting, sync at intervals that back off to every five minutes.
+     */
+    private void watch() {
+        oneSyncAttempt();
+        long backoff = 1000;
+        while ( isValid() && ! Thread.currentThread().isInterrupted() ) {
+            PatchLogInfo info = null;
+            try {
+                info = dLink.awaitVersion(datasourceId, getLocalVersion(), WaitMillis);
+            } catch (RuntimeException ex) {
+                FmtLog.debug(LOG, "[%s] Wait for new version: %s", datasourceId, ex.getMessage());
+            }
+            watchActive = ( info != null );
+            boolean synced = false;
+            if ( info != null ) {
+                remote.set(info);
+                Version version = info.getMaxVersion();
+                // Wait for any sync in progress, rather than skip, so the next wait is from the new local version.
+                if ( version.isAfter(getLocalVersion()) )
+                    attempt(()->syncToVersion(version, true));
+                // No progress (e.g. a sync problem) goes on to the back off.
+                synced = ! version.isAfter(getLocalVersion());
+            } else
+                oneSyncAttempt();
+            if ( synced ) {
+                backoff = 1000;
+                continue;
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException ex) {
+                break;
+            }
+            backoff = Math.min(2*backoff, MaxBackoffMillis);
+        }
+        watchActive = false;
+    }
+
     /**
      * No-op end-to-end operation. This operation succeeds or throws an exception.
      * This operation makes one attempt only to perform the ping.
@@ -461,6 +535,11 @@ public class DeltaConnection implements AutoCloseable {
                     return;
                 // localVer is not UNSET so next version to fetch is +1 (INIT is version 0)
                 FmtLog.info(LOG, "[%s:%s] Sync start: Versions [%s, %s]", datasourceId, datasourceName, localVer, version);
+                if ( needsSnapshot(localVer, version) ) {
+                    localVer = loadSnapshot(localVer, version);
+                    if ( localVer.value() >= version.value() )
+                        return;
+                }
                 // This updates the local state.
                 playPatches(localVer, localVer.value()+1, version.value()) ;
                 Version localVer2 = getLocalVersion();
@@ -471,6 +550,57 @@ public class DeltaConnection implements AutoCloseable {
         }
     }
 
+    /**
+     * Whether to look for a snapshot: the local data is new or a long way behind, or the
+     * patches after the local version have been removed from the log.
+     */
+    private boolean needsSnapshot(Version localVer, Version version) {
+        if ( base == null )
+            return false;
+        if ( SnapshotThreshold >= 0 && Version.INIT.equals(localVer) )
+            return true;
+        if ( SnapshotThreshold >= 0 && version.value() - localVer.value() > SnapshotThreshold )
+            return true;
+        PatchLogInfo logInfo = remote.get();
+        return logInfo != null && Version.isValid(logInfo.getMinVersion())
+            && logInfo.getMinVersion().value() > localVer.value()+1;
+    }
+
+    /**
+     * Replace the local data with the latest snapshot at or before {@code version} if it
+     * is ahead of the local data. Return the new local version. Any problem getting a
+     * snapshot leaves the local data unchanged so that playing the patches is the fallback.
+     */
+    private Version loadSnapshot(Version localVer, Version version) {
+        // Inside synchronized of syncToVersion
+        SnapshotInfo snapshot;
+        try {
+            snapshot = dLink.getSnapshot(datasourceId, version);
+        } catch (RuntimeException ex) {
+            FmtLog.info(LOG, "[%s] No snapshots: %s", datasourceId, ex.getMessage());
+            return localVer;
+        }
+        if ( snapshot == null || ! snapshot.getVersion().isAfter(localVer) )
+            return localVer;
+        Lang lang = RDFLanguages.contentTypeToLang(snapshot.getContentType());
+        if ( lang == null ) {
+            FmtLog.warn(LOG, "[%s] Snapshot %s : unrecognized syntax %s", datasourceId, snapshot.getVersion(), snapshot.getContentType());
+            return localVer;
+        }
+        try ( TypedInputStream in = dLink.fetchSnapshot(datasourceId, snapshot.getVersion()) ) {
+            if ( in == null )
+                return localVer;
+            FmtLog.info(LOG, "[%s:%s] Load snapshot: Version [%s]", datasourceId, datasourceName, snapshot.getVersion());
+            // Directly into the base dataset: the snapshot is not a change to be recorded.
+            Txn.executeWrite(base, ()->{
+                base.clear();
+                RDFParser.source(in).lang(lang).parse(base);
+            });
+        }
+        setLocalState(snapshot.getVersion(), snapshot.getPatchId());
+        return snapshot.getVersion();
+    }
+
     /** Play the patches (range is inclusive at both ends); set the new local state on exit. */
     private void playPatches(Version currentVersion, long firstPatchVer, long lastPatchVer) {
         // Inside synchronized of syncToVersion
@@ -490,42 +620,48 @@ public class DeltaConnection implements AutoCloseable {
     private static Pair<Version, Node> play(Id datasourceId, DatasetGraph base, RDFChanges target, DeltaLink dLink,
                                             Version currentVersion,
                                             long minVersion, long maxVersion) {
-        // [Delta] replace with a one-shot "get all patches" operation.
         //FmtLog.debug(LOG, "Patch range [%d, %d]", minVersion, maxVersion);
 
         // Switch off transactions inside of each patch and execute as a single, overall transaction.
         RDFChanges c = new RDFChangesExternalTxn(target);
         if ( false )
             c = DeltaOps.print(c);
+        final RDFChanges changes = c;
         try {
             return Txn.calculateWrite(base, ()->{
                 Node patchLastIdNode = null;
                 Version patchLastVersion = currentVersion;
-
-                for ( long ver = minVersion ; ver <= maxVersion ; ver++ ) {
-                    //FmtLog.debug(LOG, "Play: patch=%s", ver);
-                    RDFPatch patch;
-                    Version verObj = Version.create(ver);
-                    try {
-                        patch = dLink.fetch(datasourceId, verObj);
-                        if ( patch == null ) {
-                            // No patch. Patches have no gaps.
-                            // An eventually consistent patch storage layer may be behind
-                            // so skip for now and resync next time.
-                            FmtLog.info(LOG, "Play: %s patch=%s : not found", datasourceId, verObj);
-                            break;
-                        }
-                    } catch (DeltaNotFoundException ex) {
-                        // Which ever way it is signalled.  This way means "bad datasourceId"
-                        FmtLog.info(LOG, "Play: %s patch=%s : not found (no datasource)", datasourceId, verObj);
-                        continue;
+                // One fetch operation for the range of patches.
+                // Patches are read and applied one at a time.
+                long ver = minVersion;
+                try ( Stream<RDFPatch> patches = dLink.fetchRange(datasourceId, Version.create(minVersion), Version.create(maxVersion)) ) {
+                    Iterator<RDFPatch> iter = patches.iterator();
+                    while(iter.hasNext()) {
+                        RDFPatch patch = iter.next();
+                        //FmtLog.debug(LOG, "Play: patch=%s", ver);
+                        patch.apply(changes);
+                        patchLastIdNode = patch.getId();
+                        patchLastVersion = Version.create(ver);
+                        ver++;
                     }
-                    patch.apply(c);
-                    patchLastIdNode = patch.getId();
-                    patchLastVersion = verObj;
+                } catch (DeltaNotFoundException ex) {
+                    // Which ever way it is signalled.  This way means "bad datasourceId"
+                    FmtLog.info(LOG, "Play: %s patch=%s : not found (no datasource)", datasourceId, Version.create(ver));
+                    return Pair.create(patchLastVersion, patchLastIdNode);
+                }
+                if ( ver <= maxVersion ) {
+                    // Short. Patches have no gaps.
+                    // An eventually consistent patch storage layer may be behind
+                    // so skip for now and resync next time.
+                    FmtLog.info(LOG, "Play: %s patch=%s : not found", datasourceId, Version.create(ver));
                 }
                 return Pair.create(patchLastVersion, patchLastIdNode);
             });
+        } catch (DeltaTruncatedException ex) {
+            // The patches needed have been removed from the log: the local data needs to
+            // be replaced by a copy at, or after, the earliest version still in the log.
+            FmtLog.warn(LOG, "Play: %s patch=%s : removed from the log : a new copy of the data is needed", datasourceId, Version.create(minVersion));
+            throw ex;
         } catch (Throwable th) {
             FmtLog.warn(LOG, th, "Play: Problem for %s", datasourceId);
             throw th;
@@ -23,27 +23,42 @@ import static org.seaborne.delta.DeltaConst.F_DATASOURCE;
 import static org.seaborne.delta.DeltaConst.F_LOCK_REF;
 import static org.seaborne.delta.DeltaConst.F_LOCK_TICKS;
 
+import java.io.IOException ;
 import java.io.InputStream ;
+import java.net.http.HttpRequest ;
+import java.net.http.HttpRequest.BodyPublishers ;
+import java.net.http.HttpResponse ;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.function.Supplier ;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import org.apache.jena.atlas.io.IO;
+import org.apache.jena.atlas.io.IOX;
 import org.apache.jena.atlas.json.*;
 import org.apache.jena.atlas.logging.FmtLog ;
 import org.apache.jena.atlas.web.HttpException ;
-import org.apache.jena.http.HttpOp;
+import org.apache.jena.atlas.web.TypedInputStream ;
+import org.apache.jena.http.HttpEnv;
+import org.apache.jena.http.HttpLib;
+import org.apache.jena.riot.WebContent;
+import org.apache.jena.riot.web.HttpNames;
 import org.apache.jena.web.HttpSC ;
 import org.seaborne.delta.*;
 import org.seaborne.delta.lib.JSONX;
+import org.seaborne.delta.lib.PatchSeq;
 import org.seaborne.delta.link.DeltaLink;
 import org.seaborne.delta.link.DeltaLinkListener;
 import org.seaborne.delta.link.DeltaNotConnectedException ;
 import org.apache.jena.rdfpatch.RDFPatch ;
+import org.apache.jena.rdfpatch.RDFPatchOps ;
 import org.apache.jena.rdfpatch.changes.RDFChangesCollector ;
 import org.apache.jena.rdfpatch.text.RDFPatchReaderText ;
 
@@ -58,6 +73,11 @@ public class DeltaLinkHTTP implements DeltaLink {
     private final String remoteSend;
     private final String remoteReceive;
     private final String remoteData;
+    // Content type for patches sent and requested: text or binary (Thrift).
+    private final String patchContentType;
+    // Send appended patches with "Content-Encoding: gzip".
+    // Responses are always requested with "Accept-Encoding: gzip".
+    private final boolean compressPatches;
 
     private Id clientId = null;
     private boolean linkOpen = false;
@@ -67,15 +87,35 @@ public class DeltaLinkHTTP implements DeltaLink {
     private final static JsonObject emptyObject = new JsonObject();
 
     public static DeltaLink connect(String serverURL) {
+        return connect(serverURL, false);
+    }
+
+    /**
+     * Connect to a patch log server. If {@code binaryPatches} is true, patches are
+     * sent in binary RDF Patch and binary is preferred when fetching; the server
+     * must support binary RDF Patch.
+     */
+    public static DeltaLink connect(String serverURL, boolean binaryPatches) {
+        return connect(serverURL, binaryPatches, false);
+    }
+
+    /**
+     * Connect to a patch log server. If {@code binaryPatches} is true, patches are
+     * sent in binary RDF Patch and binary is preferred when fetching. If
+     * {@code compressPatches} is true, patches are sent gzip-compressed. The server
+     * must support the choices made.
+     */
+    public static DeltaLink connect(String serverURL, boolean binaryPatches, boolean compressPatches) {
         Objects.requireNonNull(serverURL, "DelatLinkHTTP: Null URL for the server");
         if ( ! serverURL.startsWith("http://") && ! serverURL.startsWith("https://") )
             throw new IllegalArgumentException("Bad server URL: '"+serverURL+"'");
-        DeltaLink link = new DeltaLinkHTTP(serverURL);
+        String contentType = binaryPatches ? DeltaConst.contentTypePatchBinary : DeltaConst.contentTypePatchText;
+        DeltaLink link = new DeltaLinkHTTP(serverURL, contentType, compressPatches);
         link.start();
         return link;
     }
 
-    private DeltaLinkHTTP(String serverURL) {
+    private DeltaLinkHTTP(String serverURL, String patchContentType, boolean compressPatches) {
         if ( ! serverURL.endsWith("/" ))
             serverURL= serverURL+"/";
 
@@ -84,6 +124,8 @@ public class DeltaLinkHTTP implements DeltaLink {
         this.remoteSend     = serverURL+"{"+DeltaConst.paramDatasource+"}";
         this.remoteReceive  = serverURL+"{"+DeltaConst.paramDatasource+"}";
         this.remoteData     = serverURL+DeltaConst.EP_InitData;
+        this.patchContentType = patchContentType;
+        this.compressPatches = compressPatches;
 //        // Separate URLs
 //        this.remoteSend = serverURL+DPConst.EP_Append;
 //        this.remoteReceive = serverURL+DPConst.EP_Fetch;
@@ -165,7 +207,7 @@ public class DeltaLinkHTTP implements DeltaLink {
     private RDFChangesHTTP createRDFChanges(Id dsRef) {
         Objects.requireNonNull(dsRef);
         checkLink();
-        return new RDFChangesHTTP(dsRef.toSchemeString("ds:"), calcChangesURL(dsRef));
+        return new RDFChangesHTTP(dsRef.toSchemeString("ds:"), calcChangesURL(dsRef), patchContentType, compressPatches);
     }
 
     /** Calculate the patch log URL */
@@ -182,7 +224,8 @@ public class DeltaLinkHTTP implements DeltaLink {
                             RDFChangesHTTP remote = createRDFChanges(dsRef);
                             // [NET] Network point
                             // If not re-applyable, we need a copy.
-                            patch.apply(remote);
+                            // The patch is written to the request as it is sent.
+                            remote.send(patch);
                             return remote.getResponse();
                         },
                         ()->patch.repeatable(),
@@ -229,16 +272,22 @@ public class DeltaLinkHTTP implements DeltaLink {
         url = createURL(url, DeltaConst.paramDatasource, dsRef.asParam());
         url = appendURL(url, paramStr);
         final String s = url;
+        final String accept = acceptPatch();
         try {
             RDFPatch patch =  retry(()->{
                 // [NET] Network point
-                InputStream in = HttpOp.httpGet(s) ;
+                TypedInputStream in = httpGet(s, accept) ;
                 if ( in == null )
                     return null ;
-                RDFPatchReaderText pr = new RDFPatchReaderText(in) ;
-                RDFChangesCollector collector = new RDFChangesCollector();
-                pr.apply(collector);
-                return collector.getRDFPatch();
+                try {
+                    // Read according to what the server sent, not what was asked for.
+                    if ( DeltaOps.isPatchBinary(in.getContentType()) )
+                        return RDFPatchOps.readBinary(in);
+                    RDFPatchReaderText pr = new RDFPatchReaderText(in) ;
+                    RDFChangesCollector collector = new RDFChangesCollector();
+                    pr.apply(collector);
+                    return collector.getRDFPatch();
+                } finally { IO.close(in); }
             }, ()->true, ()->"Retry fetch patch.", ()->"Failed to fetch patch.");
             return patch;
         }
@@ -246,10 +295,87 @@ public class DeltaLinkHTTP implements DeltaLink {
             if ( ex.getStatusCode() == HttpSC.NOT_FOUND_404 ) {
                 return null ; //throw new DeltaNotFoundException(ex.getMessage());
             }
+            if ( ex.getStatusCode() == HttpSC.GONE_410 )
+                throw new DeltaTruncatedException(ex.getMessage());
             throw ex;
         }
     }
 
+    /** Accept header for fetching a patch. */
+    private String acceptPatch() {
+        if ( DeltaOps.isPatchBinary(patchContentType) )
+            return DeltaConst.contentTypePatchBinary+","+DeltaConst.contentTypePatchText+";q=0.9";
+        return DeltaConst.contentTypePatchText;
+    }
+
+    /** Accept header for fetching a range of patches. */
+    private String acceptPatchSeq() {
+        if ( DeltaOps.isPatchBinary(patchContentType) )
+            return DeltaConst.contentTypePatchSeqBinary+","+DeltaConst.contentTypePatchSeq+";q=0.9";
+        return DeltaConst.contentTypePatchSeq;
+    }
+
+    /**
+     * Fetch a range of patches in one request.
+     * The patches are read from the response as the stream is consumed.
+     */
+    @Override
+    public Stream<RDFPatch> fetchRange(Id dsRef, Version start, Version finish) {
+        checkLink();
+        // An invalid start is rejected by the server, as it is by a local link.
+        if ( !Version.isValid(finish) )
+            return Stream.empty();
+        String url = remoteReceive;
+        url = createURL(url, DeltaConst.paramDatasource, dsRef.asParam());
+        url = String.format("%s?%s=%s&%s=%s", url,
+                            DeltaConst.paramFrom, start.asParam(),
+                            DeltaConst.paramTo, finish.asParam());
+        final String s = url;
+        final String accept = acceptPatchSeq();
+        TypedInputStream in;
+        try {
+            // [NET] Network point
+            in = retry(()->httpGet(s, accept), ()->true, ()->"Retry fetch patch range.", ()->"Failed to fetch patch range.");
+        }
+        catch ( HttpException ex) {
+            if ( ex.getStatusCode() == HttpSC.NOT_FOUND_404 )
+                return Stream.empty();
+            if ( ex.getStatusCode() == HttpSC.GONE_410 )
+                throw new DeltaTruncatedException(ex.getMessage());
+            if ( ex.getStatusCode() == HttpSC.BAD_REQUEST_400 )
+                throw new DeltaBadRequestException(ex.getMessage());
+            throw ex;
+        }
+        if ( in == null )
+            return Stream.empty();
+        AtomicLong counter = new AtomicLong(start.value());
+        // Read according to what the server sent, not what was asked for.
+        return PatchSeq.read(in, in.getContentType())
+            .peek(patch->{
+                Version version = Version.create(counter.getAndIncrement());
+                event(listener->listener.fetchByVersion(dsRef, version, patch));
+            });
+    }
+
+    /**
+     * HTTP GET, asking for a gzip-compressed response which is decompressed as it
+     * is read. The response body is not buffered. The request is built by Jena so
+     * that registered request modifiers and authentication apply.
+     * Throws {@link HttpException} for a response that is not 2xx.
+     */
+    private static TypedInputStream httpGet(String url, String acceptHeader) {
+        HttpRequest request = HttpLib.newGetRequest(url, builder->{
+            builder.header(HttpNames.hAcceptEncoding, encodingGzip);
+            if ( acceptHeader != null )
+                builder.header(HttpNames.hAccept, acceptHeader);
+        });
+        HttpResponse<InputStream> response = HttpLib.execute(HttpEnv.getDftHttpClient(), request);
+        HttpLib.handleHttpStatusCode(response);
+        return HttpLib.handleResponseTypeInputStream(response);
+    }
+
+    private static final String encodingGzip = "gzip";
+
     private static String appendURL(String url, String string) {
         if ( url.endsWith("/") )
             return url+string;
@@ -266,6 +392,68 @@ public class DeltaLinkHTTP implements DeltaLink {
         return String.format("%s?%s=%s", remoteData, DeltaConst.paramDatasource, dsRef.asParam());
     }
 
+    @Override
+    public List<SnapshotInfo> listSnapshots(Id dsRef) {
+        JsonObject arg = JSONX.buildObject((b) -> {
+            b.key(DeltaConst.F_DATASOURCE).value(dsRef.asPlainString());
+        });
+        JsonObject obj = rpc(DeltaConst.OP_LIST_SNAPSHOTS, arg);
+        JsonArray array = obj.get(DeltaConst.F_ARRAY).getAsArray();
+        return array.stream()
+            .map(jv->SnapshotInfo.fromJson(jv.getAsObject()))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public TypedInputStream fetchSnapshot(Id dsRef, Version version) {
+        checkLink();
+        String url = snapshotURL(dsRef, version);
+        try {
+            // [NET] Network point
+            return retry(()->httpGet(url, null), ()->true, ()->"Retry fetch snapshot.", ()->"Failed to fetch snapshot.");
+        }
+        catch ( HttpException ex) {
+            if ( ex.getStatusCode() == HttpSC.NOT_FOUND_404 )
+                return null;
+            throw ex;
+        }
+    }
+
+    @Override
+    public SnapshotInfo createSnapshot(Id dsRef) {
+        JsonObject arg = JSONX.buildObject((b) -> {
+            b.key(DeltaConst.F_DATASOURCE).value(dsRef.asPlainString());
+        });
+        JsonObject obj = rpc(DeltaConst.OP_CREATE_SNAPSHOT, arg);
+        return SnapshotInfo.fromJson(obj);
+    }
+
+    /** Send a snapshot to the server. The stream can not be resent so the request is not retried. */
+    @Override
+    public SnapshotInfo addSnapshot(Id dsRef, Version version, InputStream data, String contentType) {
+        checkLink();
+        String url = snapshotURL(dsRef, version);
+        HttpRequest request = HttpLib.requestBuilderFor(url)
+            .uri(HttpLib.toRequestURI(url))
+            .header(HttpNames.hContentType, contentType)
+            .POST(BodyPublishers.ofInputStream(()->data))
+            .build();
+        // [NET] Network point
+        HttpResponse<InputStream> response = HttpLib.execute(HttpEnv.getDftHttpClient(), request);
+        HttpLib.handleHttpStatusCode(response);
+        try ( InputStream in = HttpLib.getInputStream(response) ) {
+            return SnapshotInfo.fromJson(JSON.parse(in));
+        } catch (IOException ex) {
+            throw IOX.exception(ex);
+        }
+    }
+
+    private String snapshotURL(Id dsRef, Version version) {
+        return String.format("%s%s?%s=%s&%s=%s", remoteServer, DeltaConst.EP_Snapshot,
+                             DeltaConst.paramDatasource, dsRef.asParam(),
+                             DeltaConst.paramVersion, version.asParam());
+    }
+
     public String getServerURL() {
         return remoteServer ;
     }
@@ -308,6 +496,16 @@ public class DeltaLinkHTTP implements DeltaLink {
         return x ;
     }
 
+    @Override
+    public PatchLogChanges listPatchLogChanges(String since) {
+        JsonObject arg = JSONX.buildObject((b) -> {
+            if ( since != null )
+                b.pair(DeltaConst.F_SINCE, since);
+        });
+        JsonObject obj = rpc(DeltaConst.OP_LIST_LOG_CHANGES, arg);
+        return PatchLogChanges.fromJson(obj);
+    }
+
     @Override
     public Id newDataSource(String name, String uri) {
         Objects.requireNonNull(name);
@@ -364,12 +562,34 @@ public class DeltaLinkHTTP implements DeltaLink {
         listeners.forEach(listener->listener.removeDataSource(dsRef));
     }
 
+    @Override
+    public PatchLogInfo truncate(Id dsRef, Retention retention) {
+        Objects.requireNonNull(retention);
+        JsonObject arg = JSONX.buildObject((b) -> {
+            b.key(DeltaConst.F_DATASOURCE).value(dsRef.asPlainString());
+            retention.addJsonFields(b);
+        });
+        JsonObject obj = rpc(DeltaConst.OP_TRUNCATE, arg);
+        return PatchLogInfo.fromJson(obj);
+    }
+
     @Override
     public Id acquireLock(Id datasourceId) {
+        return acquireLock(datasourceId, 0);
+    }
+
+    /**
+     * Acquire the lock, waiting in the server's queue for the lock. The server limits the
+     * time it waits; a server that does not queue requests for the lock returns
+     * immediately.
+     */
+    @Override
+    public Id acquireLock(Id datasourceId, long timeoutMillis) {
         Objects.requireNonNull(datasourceId);
         JsonObject arg = JSONX.buildObject(b->{
             b.key(DeltaConst.F_DATASOURCE).value(datasourceId.asPlainString());
-            //b.key(DeltaConst.F_TIMEOUT).value(datasourceId.asPlainString());
+            if ( timeoutMillis > 0 )
+                b.key(DeltaConst.F_TIMEOUT).value(timeoutMillis);
         });
 
         JsonObject obj = rpcOnce(DeltaConst.OP_LOCK, arg);
@@ -383,61 +603,29 @@ public class DeltaLinkHTTP implements DeltaLink {
     public boolean refreshLock(Id datasourceId, Id lockRef) {
         Objects.requireNonNull(datasourceId);
         Objects.requireNonNull(lockRef);
-        // DRY with S_DRPC
-        JsonObject x = JSONX.buildObject(b->{
-            b.pair(F_DATASOURCE, datasourceId.asPlainString());
-            b.pair(F_LOCK_REF, lockRef.asPlainString());
-        });
+        return refreshLocks(Map.of(datasourceId, lockRef)).isEmpty();
+    }
+
+    /** Refresh locks in one RPC: { array: [ { datasource: "", lock: ""} ] } */
+    @Override
+    public Set<Id> refreshLocks(Map<Id, Id> locks) {
+        Objects.requireNonNull(locks);
+        if ( locks.isEmpty() )
+            return Set.of();
         JsonArray array = new JsonArray();
-        array.add(x);
+        locks.forEach((datasourceId, lockRef)->{
+            array.add(JSONX.buildObject(b->{
+                b.pair(F_DATASOURCE, datasourceId.asPlainString());
+                b.pair(F_LOCK_REF, lockRef.asPlainString());
+            }));
+        });
         JsonObject args = JSONX.buildObject(b->b.pair(F_ARRAY, array));
         JsonObject rtn = rpcOnce(DeltaConst.OP_LOCK_REFRESH, args);
-        // One  lock.
-        Optional<JsonValue> foo = rtn.getArray(F_ARRAY).findFirst();
-        // NB Return locks that do not exist
-        if ( foo.isEmpty() )
-            return true;
-        JsonObject rtnLock = foo.get().getAsObject();
-        rtnLock.get(F_DATASOURCE);
-        rtnLock.get(F_LOCK_REF);
-        return false;
-    }
-
-    // Sketch of lock batching.
-
-//    @Override
-//    public Set refreshLocks(Set<Id> lockSet) {
-//        JsonObject arg = buildRefreshArg(lockSet);
-//        JsonObject obj = rpcOnce(DeltaConst.OP_LOCK_REFRESH, arg);
-//        // ???
-//    }
-//
-//    // batch refresh operation { array: [ { datasource: "", lock: ""} ] }
-//    /*package*/ static JsonObject buildRefreshArg(Set<Id> locks) {
-//        List<JsonObject> x = locks.stream().map(lockId->{
-//            return JSONX.buildObject(b->{
-//                b.pair(F_DATASOURCE, lockId.asPlainString());
-//                b.pair(F_LOCK_REF, lockId.asPlainString());
-//            });
-//        }).collect(toList());
-//        JsonArray array = new JsonArray();
-//        array.addAll(x);
-//        return JSONX.buildObject(b->b.pair(F_ARRAY, array));
-//    }
-//
-//    /*package*/ static Set<Id> buildRefreshRtn(JsonObject obj) {
-//        obj.getArray(F_ARRAY).
-//
-//        List<JsonObject> x = locks.stream().map(lockId->{
-//            return JSONX.buildObject(b->{
-//                b.pair(F_DATASOURCE, lockId.asPlainString());
-//                b.pair(F_LOCK_REF, lockId.asPlainString());
-//            });
-//        }).collect(toList());
-//        JsonArray array = new JsonArray();
-//        array.addAll(x);
-//        return JSONX.buildObject(b->b.pair(F_ARRAY, array));
-//    }
+        // The server returns the locks that were not refreshed.
+        Set<Id> failed = new HashSet<>();
+        rtn.get(F_ARRAY).getAsArray().forEach(jv->failed.add(idFromField(jv.getAsObject(), F_DATASOURCE)));
+        return failed;
+    }
 
     @Override
     public LockState readLock(Id datasourceId) {
@@ -519,6 +707,75 @@ public class DeltaLinkHTTP implements DeltaLink {
         return getPatchLogInfo(arg);
     }
 
+    /** The {@link PatchLogInfo} for several patch logs in one round trip to the server. */
+    @Override
+    public List<PatchLogInfo> getPatchLogInfo(List<Id> dsRefs) {
+        List<JsonObject> args = dsRefs.stream()
+            .map(dsRef->JSONX.buildObject(b->b.pair(DeltaConst.F_DATASOURCE, dsRef.asPlainString())))
+            .collect(Collectors.toList());
+        List<JsonValue> results = rpcBatch(DeltaConst.OP_DESCR_LOG, args);
+        return results.stream().map(jv->{
+                if ( jv == null || ! jv.isObject() || jv.getAsObject().isEmpty() )
+                    return null;
+                return PatchLogInfo.fromJson(jv.getAsObject());
+            })
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Perform the same operation on each of the arguments in one RPC. The results are in
+     * the same order as the arguments; an operation that failed on the server has a null
+     * result.
+     */
+    private List<JsonValue> rpcBatch(String opName, List<JsonObject> args) {
+        JsonObject arg = JSONX.buildObject(b->{
+            b.key(F_ARRAY);
+            b.startArray();
+            args.forEach(a->{
+                b.startObject();
+                b.pair(DeltaConst.F_OP, opName);
+                b.pair(DeltaConst.F_ARG, a);
+                b.finishObject();
+            });
+            b.finishArray();
+        });
+        JsonObject obj = rpc(DeltaConst.OP_BATCH, arg);
+        JsonArray array = obj.get(F_ARRAY).getAsArray();
+        if ( array.size() != args.size() )
+            throw new DeltaException("Bad result to '"+DeltaConst.OP_BATCH+"': "+array.size()+" results for "+args.size()+" operations");
+        return array.stream().map(jv->{
+                JsonObject entry = jv.getAsObject();
+                if ( entry.hasKey(DeltaConst.F_ERROR) ) {
+                    FmtLog.warn(this.getClass(), "%s: %s : %s", opName, entry.get(DeltaConst.F_CODE), entry.get(DeltaConst.F_ERROR));
+                    return null;
+                }
+                JsonValue v = entry.get(DeltaConst.F_VALUE);
+                return ( v == null || v.isNull() ) ? null : v;
+            })
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Long-poll the server. Return null if the server does not know the log, or does
+     * not provide waiting for a new version.
+     */
+    @Override
+    public PatchLogInfo awaitVersion(Id dsRef, Version version, long timeoutMillis) {
+        checkLink();
+        String url = String.format("%s%s?%s=%s&%s=%s&%s=%d", remoteServer, DeltaConst.EP_Wait,
+                                   DeltaConst.paramDatasource, dsRef.asParam(),
+                                   DeltaConst.paramVersion, version.asParam(),
+                                   DeltaConst.paramTimeout, timeoutMillis);
+        // [NET] Network point
+        try ( TypedInputStream in = httpGet(url, WebContent.contentTypeJSON) ) {
+            return PatchLogInfo.fromJson(JSON.parse(in));
+        } catch (HttpException ex) {
+            if ( ex.getStatusCode() == HttpSC.NOT_FOUND_404 )
+                return null;
+            throw ex;
+        }
+    }
+
     private PatchLogInfo getPatchLogInfo(JsonObject arg) {
         JsonObject obj = rpc(DeltaConst.OP_DESCR_LOG, arg);
         if ( obj.isEmpty() )
@@ -194,6 +194,7 @@ public class LogLock {
     public static void testMode() {
         LOCK_ACQUIRE_MAX_DEPTH = 2 ;
         LOCK_POLL_WAIT_MS = 500;
+        LOCK_QUEUE_WAIT_MS = 500;
         LOCK_SAME_TICKS_RETRIES = 3;
         LOCK_STATE_CHANGE_RETRIES = 2;
         FmtLog.info(LOG,"POLL_WAIT_MS = %d SAME_TICKS_RETRIES = %d STATE_CHANGE_RETRIES = %d",
@@ -230,14 +231,21 @@ public class LogLock {
      */
     private static int LOCK_POLL_WAIT_MS                = 1000;
 
+    /**
+     * Time to wait in the server's queue for the lock (milliseconds) before reading the
+     * lock to see whether the holder is making progress.
+     */
+    private static int LOCK_QUEUE_WAIT_MS               = 20_000;
+
     /**
      * Acquire the patch log lock else bail out.
      * <p>
      * The patch log is a discretion lock provided by the patch log server that can be
      * used to serialise updates across the cluster.
      * <p>
-     * The server provides certain actions on locks, none of which block or wait. The
-     * policy for the lock is determined by the clients.
+     * The server provides certain actions on locks. Acquiring the lock can wait, in turn
+     * with other requests for the lock, for a limited time; otherwise the policy for
+     * the lock is determined by the clients.
      * <p>
      * This is not perfect - it does not always acquire the lock when unexpected
      * combinations of failures occur. It is intended first and foremost to protect the
@@ -262,7 +270,7 @@ public class LogLock {
      * <p>
      * Algorithm:
      * <ul>
-     * <li> Try to acquire the lock and return if successful
+     * <li> Try to acquire the lock, waiting in the server's queue, and return if successful
      * <li> Otherwise, read the lock state (being careful the lock may become free at this point).
      * <li> Poll, noting whether the lock ticks are advancing, or the lock becomes free, or for someone else
      * to get it. Id the ticks advance, loop.
@@ -278,9 +286,9 @@ public class LogLock {
      * typical use cases of a predominately read workload, or updates being directed via
      * one distinguished replica.
      * <ul>
-     * <li>Waiting for the lock is not a queue. If the system is under heavy write load,
-     * one writer may not manage to acquire the lock because it does not manage to get the
-     * lock when all the waiting writers try to acquire the lock.
+     * <li>Waiting for the lock is a queue on the server only for a limited time. If the
+     * system is under heavy write load, one writer may not manage to acquire the lock
+     * after that time and moves on to polling the lock.
      * <li>
      * </ul>
      */
@@ -297,7 +305,7 @@ public class LogLock {
 
         // Step 1: Acquire the lock or read the lock.
         DEV(">%d Attempt to acquire lock: %s", depth, datasourceId);
-        Id lockSession = dLink.acquireLock(datasourceId);
+        Id lockSession = dLink.acquireLock(datasourceId, LOCK_QUEUE_WAIT_MS);
 
         if ( lockSession != null )
             // Success!
@@ -19,6 +19,8 @@ package org.seaborne.delta.client;
 
 import static org.seaborne.delta.client.DeltaClientLib.threadFactoryDaemon;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
@@ -27,6 +29,7 @@ import java.util.concurrent.TimeUnit;
 
 import org.apache.jena.atlas.logging.FmtLog;
 import org.apache.jena.atlas.logging.LogCtl;
+import org.seaborne.delta.Id;
 import org.seaborne.delta.LockState;
 import org.seaborne.delta.link.DeltaLink;
 import org.slf4j.Logger;
@@ -53,18 +56,31 @@ public class LogLockMgr {
             FmtLog.debug(LOG,  fmt,  args);
     }
 
-    // Ideal: batch refresh operation { array: [ { datasource: "", lock: ""} ] }
+    // One batch refresh operation for all the locks held.
     private Runnable lockRefresher = ()-> {
         DEV("Refresh %d", active.size());
+        Map<Id, Id> locks = new HashMap<>();
         active.forEach(lock-> {
-            if ( lock.isLocked() ) {
-                lock.refreshLock();
-                if ( DEBUG ) {
-                    LockState state = lock.readLock();
-                    DEV("Refresh %s : %s", lock.getDataSourceId(), state);
-                }
-            }
+            Id session = lock.getLockSessionId();
+            if ( session != null )
+                locks.put(lock.getDataSourceId(), session);
         });
+        if ( locks.isEmpty() )
+            return;
+        try {
+            Set<Id> failed = this.dLink.refreshLocks(locks);
+            failed.forEach(dsRef->FmtLog.warn(LOG, "Lock not refreshed: %s", dsRef));
+        } catch (RuntimeException ex) {
+            // Do not stop the scheduled refresh.
+            FmtLog.warn(LOG, "Failed to refresh %d lock(s): %s", locks.size(), ex.getMessage());
+            return;
+        }
+        if ( DEBUG ) {
+            active.forEach(lock-> {
+                LockState state = lock.readLock();
+                DEV("Refresh %s : %s", lock.getDataSourceId(), state);
+            });
+        }
     };
 
     private static int LOCK_REFRESH_MS                  = 1000;
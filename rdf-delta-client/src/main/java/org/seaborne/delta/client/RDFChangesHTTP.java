@@ -23,14 +23,17 @@ import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.concurrent.atomic.AtomicLong ;
 import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse ;
 import org.apache.http.StatusLine ;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentProducer;
+import org.apache.http.entity.EntityTemplate;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.jena.atlas.io.IO;
@@ -44,22 +47,31 @@ import org.apache.jena.riot.WebContent;
 import org.seaborne.delta.*;
 import org.apache.jena.atlas.io.IOX ;
 import org.seaborne.delta.lib.JSONX;
+import org.apache.jena.rdfpatch.RDFPatch;
 import org.apache.jena.rdfpatch.RDFPatchConst;
+import org.apache.jena.rdfpatch.RDFPatchOps;
+import org.apache.jena.rdfpatch.changes.RDFChangesCollector;
 import org.apache.jena.rdfpatch.text.RDFChangesWriterText;
 import org.slf4j.Logger;
 
-/** Collect the bytes of a change stream, then write to HTTP */
+/** Collect a change stream, then write to HTTP */
 public class RDFChangesHTTP extends RDFChangesWriterText {
-    // This should have control of text/binary.
+    // Changes are collected as text. If the content type for sending is binary,
+    // the changes are collected as they are, not as text, and written in binary
+    // format when sent.
 
     private static final Logger LOG = Delta.DELTA_HTTP_LOG;
     private final CloseableHttpClient httpClient = HttpClients.createDefault();
     private final ByteArrayOutputStream bytes ;
+    // Binary: the collected changes. Null for text.
+    private RDFChangesCollector collector = null;
     // Count to match up begin-commit.
     private int txnDepth = 0 ;
     private final Runnable resetAction;
     private final Supplier<String> urlSupplier;
     private final String destLabel ;
+    private final String contentType ;
+    private final boolean compress ;
     // Used to coordinate with reading patches in.
     private final Object syncObject;
     private StatusLine statusLine       = null;
@@ -77,6 +89,22 @@ public class RDFChangesHTTP extends RDFChangesWriterText {
         this(label, ()->urlstr, null);
     }
 
+    /**
+     * Send changes to a specific URL, using the given content type
+     * ({@link DeltaConst#contentTypePatchText} or {@link DeltaConst#contentTypePatchBinary}).
+     */
+    public RDFChangesHTTP(String label, String urlstr, String contentType) {
+        this(label, urlstr, contentType, false);
+    }
+
+    /**
+     * Send changes to a specific URL, using the given content type, and
+     * with "Content-Encoding: gzip" if {@code compress} is true.
+     */
+    public RDFChangesHTTP(String label, String urlstr, String contentType, boolean compress) {
+        this(label, null, ()->urlstr, null, contentType, compress, new ByteArrayOutputStream(100*1024));
+    }
+
     // resetAction (on 401) not currently enabled.
 
     /** Send changes to a supplied URL, with an action a specific action  */
@@ -91,48 +119,73 @@ public class RDFChangesHTTP extends RDFChangesWriterText {
 
     /** Send changes to a supplied URL, with an action a specific action on any 401 and sync'ed on a specific object  */
     private RDFChangesHTTP(String label, Object syncObject, Supplier<String> urlSupplier, Runnable resetAction) {
-        this(label, syncObject, urlSupplier, resetAction, new ByteArrayOutputStream(100*1024));
+        this(label, syncObject, urlSupplier, resetAction, DeltaConst.contentTypePatchText, false, new ByteArrayOutputStream(100*1024));
     }
 
-    private RDFChangesHTTP(String label, Object syncObject, Supplier<String> urlSupplier, Runnable resetAction, ByteArrayOutputStream out) {
+    private RDFChangesHTTP(String label, Object syncObject, Supplier<String> urlSupplier, Runnable resetAction, String contentType, boolean compress, ByteArrayOutputStream out) {
         super(DeltaOps.tokenWriter(out));
         this.syncObject = (syncObject!=null) ? syncObject : new Object();
         this.resetAction = resetAction;
         this.urlSupplier = urlSupplier;
         this.destLabel = label;
+        this.contentType = (contentType != null) ? contentType : DeltaConst.contentTypePatchText;
+        this.compress = compress;
         this.bytes = out;
         reset();
     }
 
     @Override
     public void header(String field, Node value) {
-        super.header(field, value);
+        if ( collector != null )
+            collector.header(field, value);
+        else
+            super.header(field, value);
         if ( field.equals(RDFPatchConst.ID) )
             patchId = value;
         if ( field.equals(RDFPatchConst.PREV) )
             previousId = value;
     }
 
-    // Sent to the RDFChangesWriter
-//    @Override
-//    public void add(Node g, Node s, Node p, Node o) {
-//        super.add(g, s, p, o);
-//    }
-//
-//    @Override
-//    public void delete(Node g, Node s, Node p, Node o) {
-//        super.delete(g, s, p, o);
-//    }
-//
-//    @Override
-//    public void addPrefix(Node gn, String prefix, String uriStr) {
-//        super.addPrefix(gn, prefix, uriStr);
-//    }
-//
-//    @Override
-//    public void deletePrefix(Node gn, String prefix) {
-//        super.deletePrefix(gn, prefix);
-//    }
+    // Sent to the RDFChangesWriter, or, for binary, the collector.
+    @Override
+    public void add(Node g, Node s, Node p, Node o) {
+        if ( collector != null )
+            collector.add(g, s, p, o);
+        else
+            super.add(g, s, p, o);
+    }
+
+    @Override
+    public void delete(Node g, Node s, Node p, Node o) {
+        if ( collector != null )
+            collector.delete(g, s, p, o);
+        else
+            super.delete(g, s, p, o);
+    }
+
+    @Override
+    public void addPrefix(Node gn, String prefix, String uriStr) {
+        if ( collector != null )
+            collector.addPrefix(gn, prefix, uriStr);
+        else
+            super.addPrefix(gn, prefix, uriStr);
+    }
+
+    @Override
+    public void deletePrefix(Node gn, String prefix) {
+        if ( collector != null )
+            collector.deletePrefix(gn, prefix);
+        else
+            super.deletePrefix(gn, prefix);
+    }
+
+    @Override
+    public void segment() {
+        if ( collector != null )
+            collector.segment();
+        else
+            super.segment();
+    }
 
     @Override
     public void txnBegin() {
@@ -141,7 +194,10 @@ public class RDFChangesHTTP extends RDFChangesWriterText {
             return;
         }
         txnDepth++;
-        super.txnBegin();
+        if ( collector != null )
+            collector.txnBegin();
+        else
+            super.txnBegin();
     }
 
     @Override
@@ -153,7 +209,10 @@ public class RDFChangesHTTP extends RDFChangesWriterText {
         if ( txnDepth > 1 )
             LOG.warn("Nested transaction error.");
         // This adds the "TC"
-        super.txnCommit();
+        if ( collector != null )
+            collector.txnCommit();
+        else
+            super.txnCommit();
         // This will throw an exception if the patch isn't current.
         // send does reset().
         // The exception passes up and DatasetGraphChanges turns the commit into an abort.
@@ -182,10 +241,8 @@ public class RDFChangesHTTP extends RDFChangesWriterText {
     private void reset() {
         patchId = null ;
         bytes.reset();
-    }
-
-    private byte[] collected() {
-        return bytes.toByteArray();
+        if ( DeltaOps.isPatchBinary(contentType) )
+            collector = new RDFChangesCollector();
     }
 
     public void send() {
@@ -195,6 +252,48 @@ public class RDFChangesHTTP extends RDFChangesWriterText {
         }
     }
 
+    /**
+     * Send a complete patch. The patch is written to the HTTP request as it is sent
+     * (chunked transfer encoding); it is not first collected into bytes.
+     */
+    public void send(RDFPatch patch) {
+        synchronized(syncObject) {
+            try {
+                patchId = patch.getId();
+                previousId = patch.getPrevious();
+                String idStr = idStr();
+                FmtLog.info(LOG, "Send patch %s (streamed) -> %s", idStr, destLabel);
+                sendEntity(idStr, ()->patchEntity(patch));
+            }
+            finally { reset(); }
+        }
+    }
+
+    /** An entity that writes the patch when the request is sent. */
+    private HttpEntity patchEntity(RDFPatch patch) {
+        return entity(out->DeltaOps.writePatch(out, patch, contentType));
+    }
+
+    /**
+     * An entity that writes {@code body} when the request is sent, compressing it as it
+     * is written if required. It can be written again if the request is retried.
+     */
+    private HttpEntity entity(ContentProducer body) {
+        EntityTemplate entity = new EntityTemplate(out->{
+            if ( compress ) {
+                GZIPOutputStream gzip = new GZIPOutputStream(out, 8*1024);
+                body.writeTo(gzip);
+                gzip.finish();
+            } else {
+                body.writeTo(out);
+            }
+            out.flush();
+        });
+        entity.setContentType(contentType);
+        entity.setChunked(true);
+        return entity;
+    }
+
     /** Get the protocol response - may be null if the change was aborted.  */
     public String getResponse() {
         return response;
@@ -202,21 +301,23 @@ public class RDFChangesHTTP extends RDFChangesWriterText {
 
     private static AtomicLong counter = new AtomicLong(0);
 
-    private void send$() {
+    private String idStr() {
         long number = counter.incrementAndGet();
-
-        byte[] bytes = collected();
-        String idStr;
-
         if ( patchId != null )
-            idStr = Id.str(patchId);
+            return Id.str(patchId);
+        return Long.toString(number);
+    }
+
+    private void send$() {
+        String idStr = idStr();
+        if ( collector != null )
+            FmtLog.info(LOG, "Send patch %s (binary) -> %s", idStr, destLabel);
         else
-            idStr = Long.toString(number);
-        FmtLog.info(LOG, "Send patch %s (%d bytes) -> %s", idStr, bytes.length, destLabel);
+            FmtLog.info(LOG, "Send patch %s (%d bytes) -> %s", idStr, bytes.size(), destLabel);
 
         if ( false ) {
             if ( LOG.isDebugEnabled() ) {
-                String s = new String(bytes, StandardCharsets.UTF_8);
+                String s = bytes.toString(StandardCharsets.UTF_8);
                 LOG.debug("== Sending ...");
                 // Do NOT close!
                 try ( IndentedWriter w = IndentedWriter.stdout.clone(); ) {
@@ -232,10 +333,26 @@ public class RDFChangesHTTP extends RDFChangesWriterText {
             }
         }
 
+        sendEntity(idStr, this::collectedEntity);
+    }
+
+    /** An entity that writes the collected changes when the request is sent. */
+    private HttpEntity collectedEntity() {
+        return entity(out->{
+            if ( collector != null )
+                RDFPatchOps.writeBinary(out, collector.getRDFPatch());
+            else
+                bytes.writeTo(out);
+        });
+    }
+
+    private void sendEntity(String idStr, Supplier<HttpEntity> entity) {
         int attempts = 0 ;
         for(;;) {
             HttpPost postRequest = new HttpPost(urlSupplier.get());
-            postRequest.setEntity(new ByteArrayEntity(bytes));
+            postRequest.setEntity(entity.get());
+            if ( compress )
+                postRequest.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
 
             try(CloseableHttpResponse r = httpClient.execute(postRequest) ) {
                 attempts++;
@@ -58,12 +58,15 @@ public class DeltaServerCmd {
     // Specific choices
     private static ArgDecl argFile              = new ArgDecl(false, "file");
     private static ArgDecl argRocks             = new ArgDecl(false, "rocks", "rocksdb", "rocksDB");
+    private static ArgDecl argSegment           = new ArgDecl(false, "segment");
 
     private static ArgDecl argMem               = new ArgDecl(false, "mem");
     private static ArgDecl argStore             = new ArgDecl(true, "store", "rdb");
 
     private static ArgDecl argJetty             = new ArgDecl(true, "jetty");
 
+    private static ArgDecl argSet               = new ArgDecl(true, "set");
+
 //    private static ArgDecl argProvider = new ArgDecl(true, "provider");
 //    private static ArgDecl argConf = new ArgDecl(true, "conf", "config");RR
 
@@ -144,9 +147,11 @@ public class DeltaServerCmd {
         cla.add(argBase);
         cla.add(argFile);
         cla.add(argRocks);
+        cla.add(argSegment);
 
         cla.add(argMem);
         cla.add(argStore);
+        cla.add(argSet);
 
         //cla.add(argConf);
         cla.process();
@@ -164,8 +169,24 @@ public class DeltaServerCmd {
                 ,"        --base=DIR          File system directory"
                 ,"File based patch server:"
                 ,"        --file              Use file based patch storage. Use with --base"
+                ,"        --segment           Use segment file patch storage (patches appended to large files)."
                 ,"Simple testing"
                 ,"        --mem               Run a single server with in-memory index and patch storage."
+                ,"Settings:"
+                ,"        --set=NAME=VALUE    Set a server property. May be repeated. RocksDB settings are:"
+                ,"                              delta.rocks.block.cache   Shared block cache size, in bytes (0 for none)"
+                ,"                              delta.rocks.bloom.bits    Bloom filter bits per key for id lookup (0 for none)"
+                ,"                              delta.rocks.compression   Patch compression: none, lz4, zstd or snappy"
+                ,"                              delta.rocks.write.buffer  Memtable size, in bytes"
+                ,"                              delta.rocks.readahead     Compaction readahead, in bytes"
+                ,"                              delta.rocks.sync          true to force the write-ahead log to disk on each write"
+                ,"                              delta.rocks.shared        true to keep all patch logs in one database"
+                ,"                            Patch log settings are:"
+                ,"                              delta.segment.size        Segment file size, in bytes, for --segment"
+                ,"                              delta.mmap                false to not memory map patch files (--file, --segment)"
+                ,"                              delta.open.threads        Threads used to open patch logs at start up"
+                ,"                              delta.open.lazy           true to open patch logs on first use"
+                ,"                              delta.idle.close          Close patch logs unused for this many seconds"
                 );
             System.err.println(msg);
             throw new TerminationException(0);
@@ -209,12 +230,21 @@ public class DeltaServerCmd {
             // Force choice of local provider.
             if ( cla.contains(argFile) ) provider = FILE;
             if ( cla.contains(argRocks) ) provider = ROCKS;
+            if ( cla.contains(argSegment) ) provider = SEGMENT;
         }
 
         DeltaServerConfig serverConfig = new DeltaServerConfig();
 
         serverConfig.provider = provider;
 
+        // Settings.
+        for ( String setting : cla.getValues(argSet) ) {
+            int idx = setting.indexOf('=');
+            if ( idx <= 0 )
+                cmdLineError("Bad --set: expected NAME=VALUE: '%s'", setting);
+            serverConfig.properties.setProperty(setting.substring(0, idx).trim(), setting.substring(idx+1).trim());
+        }
+
         // Server.
         serverConfig.serverPort = null;
         serverConfig.jettyConf  = cla.getValue(argJetty);
@@ -228,7 +258,8 @@ public class DeltaServerCmd {
 
         // Providers
         switch(provider) {
-            case FILE : {
+            case FILE :
+            case SEGMENT : {
                 // --base= or --file --store=
                 String directory = cla.getValue(argBase);
                 if ( directory == null ) {
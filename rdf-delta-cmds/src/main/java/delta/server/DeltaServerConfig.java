@@ -21,6 +21,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Properties;
 
 import org.apache.jena.atlas.json.JSON;
 import org.apache.jena.atlas.json.JsonObject;
@@ -44,11 +45,15 @@ public class DeltaServerConfig {
     // File provider
     public String fileBase = null ;
 
+    // Additional server properties, e.g. RocksDB settings ("delta.rocks.*").
+    public Properties properties = new Properties();
+
     // ---- JSON field constants
     private static String fProvider           = "store";
 
     private static String fPort               = "port";
     private static String fJetty              = "jetty";
+    private static String fProperties         = "properties";
 
     // The File provider
     private static String fFileDirData        = "filestore";
@@ -91,6 +96,15 @@ public class DeltaServerConfig {
         if ( obj.hasKey(fJetty) )
             conf.jettyConf = JSONX.getStrOrNull(obj, fJetty);
 
+        // Server properties.
+        if ( obj.hasKey(fProperties) ) {
+            JsonObject props = obj.get(fProperties).getAsObject();
+            props.forEach((k,v)->{
+                String x = v.isString() ? v.getAsString().value() : v.toString();
+                conf.properties.setProperty(k, x);
+            });
+        }
+
         validate(conf);
         return conf;
     }
@@ -109,6 +123,13 @@ public class DeltaServerConfig {
 
                 if ( fileBase != null )
                     b.pair(fFileDirData, fileBase);
+
+                if ( properties != null && ! properties.isEmpty() ) {
+                    b.key(fProperties);
+                    b.startObject();
+                    properties.stringPropertyNames().stream().sorted().forEach(k->b.pair(k, properties.getProperty(k)));
+                    b.finishObject();
+                }
             });
     }
 
@@ -131,6 +152,7 @@ public class DeltaServerConfig {
         int result = 1;
         result = prime * result + ((fileBase == null) ? 0 : fileBase.hashCode());
         result = prime * result + ((jettyConf == null) ? 0 : jettyConf.hashCode());
+        result = prime * result + ((properties == null) ? 0 : properties.hashCode());
         result = prime * result + ((provider == null) ? 0 : provider.hashCode());
         result = prime * result + ((serverPort == null) ? 0 : serverPort.hashCode());
         return result;
@@ -155,6 +177,11 @@ public class DeltaServerConfig {
                 return false;
         } else if ( !jettyConf.equals(other.jettyConf) )
             return false;
+        if ( properties == null ) {
+            if ( other.properties != null )
+                return false;
+        } else if ( !properties.equals(other.properties) )
+            return false;
         if ( provider != other.provider )
             return false;
         if ( serverPort == null ) {
@@ -30,6 +30,7 @@ import org.seaborne.delta.server.local.patchstores.any.PatchStoreProviderAnyLoca
 import org.seaborne.delta.server.local.patchstores.file.PatchStoreProviderFile;
 import org.seaborne.delta.server.local.patchstores.mem.PatchStoreProviderMem;
 import org.seaborne.delta.server.local.patchstores.rdb.PatchStoreProviderRocks;
+import org.seaborne.delta.server.local.patchstores.segment.PatchStoreProviderSegment;
 import org.slf4j.Logger;
 
 public /*package*/ class ServerBuildLib {
@@ -52,7 +53,7 @@ public /*package*/ class ServerBuildLib {
             throw new DeltaConfigException("Both port and Jetty config file provided");
 
         int serverPort = (deltaServerConfig.serverPort != null) ? deltaServerConfig.serverPort : -1;
-        DeltaServer deltaServer = buildServer(serverPort, deltaServerConfig.jettyConf, startup);
+        DeltaServer deltaServer = buildServer(serverPort, deltaServerConfig.jettyConf, deltaServerConfig.properties, startup);
         return deltaServer;
     }
 
@@ -73,6 +74,11 @@ public /*package*/ class ServerBuildLib {
                 localServerConfig = LocalServers.configRDB(deltaServerConfig.fileBase, deltaServerConfig.jettyConf);
                 providerLabel = "rdb["+deltaServerConfig.fileBase+"]";
                 break;
+            case SEGMENT :
+                psp = installProvider(new PatchStoreProviderSegment());
+                localServerConfig = LocalServers.configSegment(deltaServerConfig.fileBase, deltaServerConfig.jettyConf);
+                providerLabel = "segment["+deltaServerConfig.fileBase+"]";
+                break;
             case LOCAL:
                 psp = installProvider(new PatchStoreProviderAnyLocal());
                 localServerConfig = LocalServers.configLocal(deltaServerConfig.fileBase, deltaServerConfig.jettyConf);
@@ -100,11 +106,9 @@ public /*package*/ class ServerBuildLib {
     }
 
     // --> DeltaServer.start()
-    private static DeltaServer buildServer(int port, String jettyConfigFile, Supplier<LocalServerConfig> startup) {
+    private static DeltaServer buildServer(int port, String jettyConfigFile, Properties properties, Supplier<LocalServerConfig> startup) {
         LocalServerConfig localServerConfig = startup.get();
-        // Scope for further properties.
-        Properties properties = new Properties();
-        if ( ! properties.isEmpty() )
+        if ( properties != null && ! properties.isEmpty() )
             localServerConfig = LocalServerConfig.create(localServerConfig).setProperties(properties).build();
 
         LocalServer server = LocalServer.create(localServerConfig);
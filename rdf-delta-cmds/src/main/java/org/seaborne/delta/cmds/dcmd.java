@@ -55,7 +55,7 @@ public class dcmd {
             case "-h" :
             case "-help" :
             case "--help" :
-                System.err.println("Commands: server, ls, mk, rm, list, get, add, parse, r2p, p2r");
+                System.err.println("Commands: server, ls, mk, rm, truncate, list, get, add, parse, r2p, p2r");
                 return;
             case "version":
             case "--version":
@@ -74,6 +74,8 @@ public class dcmd {
             case "cp" : cmdExec = "cplog"; break;
             case "mv" : cmdExec = "mvlog"; break;
             case "rm" : cmdExec = "rmlog"; break;
+            case "truncate" : cmdExec = "trunclog"; break;
+            case "snapshot" : cmdExec = "mksnapshot"; break;
 
             case "appendpatch" :
             case "add" :
@@ -109,6 +111,8 @@ public class dcmd {
             case "mvlog":           mvlog.main(argsSub); break;
             case "cplog":           cplog.main(argsSub); break;
             case "rmlog":           rmlog.main(argsSub); break;
+            case "trunclog":        trunclog.main(argsSub); break;
+            case "mksnapshot":      mksnapshot.main(argsSub); break;
             case "list":            list.main(argsSub); break;
 
             case "append":          append.main(argsSub); break;
@@ -0,0 +1,62 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.cmds;
+
+import java.util.Optional ;
+
+import org.apache.jena.cmd.CmdException ;
+import org.seaborne.delta.DataSourceDescription;
+import org.seaborne.delta.DeltaException;
+import org.seaborne.delta.SnapshotInfo;
+
+/** Create a snapshot of the data of a log at its latest version. */
+public class mksnapshot extends DeltaCmdServerOp {
+
+    public static void main(String... args) {
+        new mksnapshot(args).mainRun();
+    }
+
+    public mksnapshot(String[] argv) {
+        super(argv) ;
+    }
+
+    @Override
+    protected void execCmdName(String name) {
+        Optional<DataSourceDescription> opt = findByName(name);
+        if ( ! opt.isPresent() )
+            throw new CmdException("Source '"+name+"' does not exist");
+        execSnapshot(opt.get());
+    }
+
+    @Override
+    protected void execCmdURI(String uriStr) {
+        Optional<DataSourceDescription> opt = findByURI(uriStr);
+        if ( ! opt.isPresent() )
+            throw new CmdException("Source <"+uriStr+"> does not exist");
+        execSnapshot(opt.get());
+    }
+
+    private void execSnapshot(DataSourceDescription dsd) {
+        try {
+            SnapshotInfo info = dLink.createSnapshot(dsd.getId());
+            System.out.println("Snapshot "+dsd+" : version "+info.getVersion());
+        } catch (DeltaException ex) {
+            throw new CmdException("Failed to create a snapshot of log '"+dsd.getName()+"' : "+ex.getMessage());
+        }
+    }
+}
@@ -88,16 +88,26 @@ public class monitor extends DeltaCmd {
         private final Map<Id, PatchLogInfo> state;
         private final DeltaLink dLink;
         private final MonitorReactor reactor;
+        // Token from the server for asking only for the logs that have changed.
+        private String changesToken = null;
 
         public Monitor(DeltaLink deltaLink, MonitorReactor reactor) {
             this.dLink = deltaLink;
             this.reactor = reactor;
-            state = getCurrentState(deltaLink);
+            state = new ConcurrentHashMap<>();
+            state.putAll(getCurrentState());
         }
 
-        private static Map<Id, PatchLogInfo> getCurrentState(DeltaLink dLink) {
+        /** The state of the server: the last state, updated by the changes since then. */
+        private Map<Id, PatchLogInfo> getCurrentState() {
+            PatchLogChanges changes = dLink.listPatchLogChanges(changesToken);
+            changesToken = changes.getToken();
             Map<Id, PatchLogInfo> logs = new ConcurrentHashMap<>();
-            dLink.listPatchLogInfo().forEach(info-> logs.put(info.getDataSourceId(), info) );
+            if ( ! changes.isComplete() ) {
+                logs.putAll(state);
+                changes.getRemoved().forEach(logs::remove);
+            }
+            changes.getChanged().forEach(info-> logs.put(info.getDataSourceId(), info) );
             return logs;
         }
 
@@ -112,7 +122,7 @@ public class monitor extends DeltaCmd {
         public boolean runOnce() {
             try {
                 synchronized(lock) {
-                    Map<Id, PatchLogInfo> state2 = getCurrentState(dLink);
+                    Map<Id, PatchLogInfo> state2 = getCurrentState();
                     List<PatchLogInfo> added = new ArrayList<>();
                     List<DataSourceDescription> deleted = new ArrayList<>();
                     List<Pair<PatchLogInfo,PatchLogInfo>> renamed = new ArrayList<>();
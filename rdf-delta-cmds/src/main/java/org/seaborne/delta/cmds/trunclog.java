@@ -0,0 +1,102 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.cmds;
+
+import java.time.Duration;
+import java.util.Optional ;
+
+import org.apache.jena.cmd.ArgDecl;
+import org.apache.jena.cmd.CmdException ;
+import org.seaborne.delta.*;
+
+/** Truncate a log: remove patches from the start of the log. */
+public class trunclog extends DeltaCmdServerOp {
+
+    static ArgDecl argKeep  = new ArgDecl(true, "keep");
+    static ArgDecl argAge   = new ArgDecl(true, "age");
+    static ArgDecl argBytes = new ArgDecl(true, "bytes");
+
+    public static void main(String... args) {
+        new trunclog(args).mainRun();
+    }
+
+    public trunclog(String[] argv) {
+        super(argv) ;
+        super.add(argKeep, "--keep=VERSION", "Keep patches from this version");
+        super.add(argAge, "--age=SECONDS", "Keep patches stored in the last SECONDS");
+        super.add(argBytes, "--bytes=N", "Keep the latest patches up to N bytes in total");
+    }
+
+    @Override
+    protected String getSummary() {
+        return getCommandName()+" --server=URL [--keep=VERSION] [--age=SECONDS] [--bytes=N] NAME";
+    }
+
+    @Override
+    protected void checkForMandatoryArgs() {
+        super.checkForMandatoryArgs();
+        if ( !contains(argKeep) && !contains(argAge) && !contains(argBytes) )
+            throw new CmdException("No retention given: "+getSummary());
+    }
+
+    @Override
+    protected void execCmdName(String name) {
+        Optional<DataSourceDescription> opt = findByName(name);
+        if ( ! opt.isPresent() )
+            throw new CmdException("Source '"+name+"' does not exist");
+        execTruncate(opt.get());
+    }
+
+    @Override
+    protected void execCmdURI(String uriStr) {
+        Optional<DataSourceDescription> opt = findByURI(uriStr);
+        if ( ! opt.isPresent() )
+            throw new CmdException("Source <"+uriStr+"> does not exist");
+        execTruncate(opt.get());
+    }
+
+    private void execTruncate(DataSourceDescription dsd) {
+        Retention retention = retention();
+        try {
+            PatchLogInfo info = dLink.truncate(dsd.getId(), retention);
+            System.out.println("Truncated "+dsd+" : versions ["+info.getMinVersion()+", "+info.getMaxVersion()+"]");
+        } catch (DeltaException ex) {
+            throw new CmdException("Failed to truncate log '"+dsd.getName()+"' : "+ex.getMessage());
+        }
+    }
+
+    private Retention retention() {
+        Version keep = contains(argKeep) ? Version.create(number(argKeep)) : null;
+        Duration age = contains(argAge) ? Duration.ofSeconds(number(argAge)) : null;
+        Long bytes = contains(argBytes) ? number(argBytes) : null;
+        try {
+            return new Retention(keep, age, bytes);
+        } catch (IllegalArgumentException ex) {
+            throw new CmdException(ex.getMessage());
+        }
+    }
+
+    private long number(ArgDecl argDecl) {
+        String s = getValue(argDecl);
+        try {
+            return Long.parseLong(s);
+        } catch (NumberFormatException ex) {
+            throw new CmdException("Not a number: --"+argDecl.getKeyName()+"="+s);
+        }
+    }
+}
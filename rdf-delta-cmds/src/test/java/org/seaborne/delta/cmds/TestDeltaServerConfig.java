@@ -39,6 +39,12 @@ public class TestDeltaServerConfig {
         test("--jetty=jetty.xml", "--mem");
     }
 
+    @Test public void server_config_set_1() {
+        DeltaServerConfig c = test("--mem", "--set=delta.rocks.compression=zstd", "--set", "delta.rocks.block.cache=1000000");
+        assertEquals("zstd", c.properties.getProperty("delta.rocks.compression"));
+        assertEquals("1000000", c.properties.getProperty("delta.rocks.block.cache"));
+    }
+
     private DeltaServerConfig test(String...args) {
         DeltaServerConfig c = DeltaServerCmd.processArgs(args);
         roundTrip(c);
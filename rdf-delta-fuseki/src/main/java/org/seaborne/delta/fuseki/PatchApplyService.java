@@ -19,7 +19,6 @@ package org.seaborne.delta.fuseki;
 
 import static java.lang.String.format;
 import static org.apache.jena.fuseki.servlets.ActionExecLib.incCounter;
-import static org.seaborne.delta.DeltaConst.contentTypePatchBinary;
 import static org.seaborne.delta.DeltaConst.ctPatchBinary;
 import static org.seaborne.delta.DeltaConst.ctPatchText;
 
@@ -36,10 +35,12 @@ import org.apache.jena.sparql.core.DatasetGraph;
 import org.apache.jena.web.HttpSC;
 import org.apache.jena.rdfpatch.PatchException;
 import org.apache.jena.rdfpatch.RDFChanges;
+import org.apache.jena.rdfpatch.RDFPatchOps;
 import org.apache.jena.rdfpatch.changes.PatchTxnAbortException;
 import org.apache.jena.rdfpatch.changes.RDFChangesApply;
 import org.apache.jena.rdfpatch.changes.RDFChangesExternalTxn;
 import org.apache.jena.rdfpatch.text.RDFPatchReaderText ;
+import org.seaborne.delta.DeltaOps;
 
 /** A Fuseki service to receive and apply a patch. */
 public class PatchApplyService extends ActionREST {
@@ -82,8 +83,6 @@ public class PatchApplyService extends ActionREST {
 
         if ( ! ctPatchText.equals(contentType) && ! ctPatchBinary.equals(contentType) )
             ServletOps.error(HttpSC.UNSUPPORTED_MEDIA_TYPE_415, "Allowed Content-types are "+ctPatchText+" or "+ctPatchBinary+", not "+ctStr);
-        if ( ctPatchBinary.equals(contentType) )
-            ServletOps.error(HttpSC.UNSUPPORTED_MEDIA_TYPE_415, contentTypePatchBinary+" not supported yet");
     }
 
     protected void operation(HttpAction action) {
@@ -139,13 +138,17 @@ public class PatchApplyService extends ActionREST {
             InputStream input = action.getRequest().getInputStream();
             DatasetGraph dsg = action.getDataset();
 
-            RDFPatchReaderText pr = new RDFPatchReaderText(input);
             RDFChanges changes = new RDFChangesApply(dsg);
             // External transaction. Suppress patch recorded TX and TC.
             if ( withPatchTxn == WithPatchTxn.EXTERNAL_TXN )
                 changes = new RDFChangesExternalTxn(changes);
 
-            pr.apply(changes);
+            if ( DeltaOps.isPatchBinary(ct) ) {
+                RDFPatchOps.readBinary(input).apply(changes);
+            } else {
+                RDFPatchReaderText pr = new RDFPatchReaderText(input);
+                pr.apply(changes);
+            }
             ServletOps.success(action);
         }
         catch (PatchTxnAbortException ex) {
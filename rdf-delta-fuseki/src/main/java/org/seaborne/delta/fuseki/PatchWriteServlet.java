@@ -18,7 +18,6 @@
 package org.seaborne.delta.fuseki;
 
 import static java.lang.String.format;
-import static org.seaborne.delta.DeltaConst.contentTypePatchBinary;
 import static org.seaborne.delta.DeltaConst.ctPatchBinary;
 import static org.seaborne.delta.DeltaConst.ctPatchText;
 
@@ -45,6 +44,7 @@ import org.apache.jena.rdfpatch.RDFPatchOps;
 import org.apache.jena.rdfpatch.filelog.FilePolicy;
 import org.apache.jena.rdfpatch.filelog.OutputMgr;
 import org.apache.jena.rdfpatch.filelog.rotate.ManagedOutput;
+import org.seaborne.delta.DeltaOps;
 
 /**
  * A patch receiver. This {@link HttpServlet servlet} writes patches to a log file
@@ -102,8 +102,6 @@ public class PatchWriteServlet extends ServletProcessor {
         ContentType contentType = ( ctStr != null ) ? ContentType.create(ctStr) : ctPatchText;
         if ( ! ctPatchText.equals(contentType) && ! ctPatchBinary.equals(contentType) )
             ServletOps.error(HttpSC.UNSUPPORTED_MEDIA_TYPE_415, "Allowed Content-types are "+ctPatchText+" or "+ctPatchBinary+", not "+ctStr);
-        if ( ctPatchBinary.equals(contentType) )
-            ServletOps.error(HttpSC.UNSUPPORTED_MEDIA_TYPE_415, contentTypePatchBinary+" not supported yet");
     }
 
     protected void operation(HttpAction action) {
@@ -132,7 +130,8 @@ public class PatchWriteServlet extends ServletProcessor {
             String ct = action.getRequest().getContentType();
             InputStream input = action.getRequestInputStream();
 
-            RDFPatch patch = RDFPatchOps.read(input);
+            // The log file is always text.
+            RDFPatch patch = DeltaOps.readPatch(input, ct);
             try ( OutputStream out = output.output() ) {
                 String fn = output.currentFilename().getFileName().toString();
                 if ( action.verbose ) {
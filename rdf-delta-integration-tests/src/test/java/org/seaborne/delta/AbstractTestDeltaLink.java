@@ -22,6 +22,8 @@ import static org.junit.Assert.*;
 import java.util.List ;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.apache.jena.graph.*;
 import org.apache.jena.rdfpatch.RDFChanges;
@@ -225,6 +227,57 @@ public abstract class AbstractTestDeltaLink {
         assertNotNull(patch1);
     }
 
+    @Test
+    public void patch_range_1() {
+        DeltaLink dLink = getLink();
+        Id dsRef = dLink.newDataSource("patch_range_1", "http://example/");
+        RDFPatch patch1 = RDFPatchOps.read(FILES_DIR+"/patch1.rdfp");
+        RDFPatch patch2 = RDFPatchOps.read(FILES_DIR+"/patch2.rdfp");
+        dLink.append(dsRef, patch1);
+        dLink.append(dsRef, patch2);
+
+        try ( Stream<RDFPatch> stream = dLink.fetchRange(dsRef, version_1, version_2) ) {
+            List<RDFPatch> x = stream.collect(Collectors.toList());
+            assertEquals(2, x.size());
+            assertTrue(equals(patch1, x.get(0)));
+            assertTrue(equals(patch2, x.get(1)));
+        }
+        try ( Stream<RDFPatch> stream = dLink.fetchRange(dsRef, version_2, version_2) ) {
+            List<RDFPatch> x = stream.collect(Collectors.toList());
+            assertEquals(1, x.size());
+            assertTrue(equals(patch2, x.get(0)));
+        }
+    }
+
+    @Test
+    public void patch_range_2() {
+        // Range beyond the end of the log.
+        DeltaLink dLink = getLink();
+        Id dsRef = dLink.newDataSource("patch_range_2", "http://example/");
+        try ( Stream<RDFPatch> stream = dLink.fetchRange(dsRef, version_1, version_3) ) {
+            assertEquals(0, stream.count());
+        }
+        RDFPatch patch1 = RDFPatchOps.read(FILES_DIR+"/patch1.rdfp");
+        dLink.append(dsRef, patch1);
+        try ( Stream<RDFPatch> stream = dLink.fetchRange(dsRef, version_1, version_3) ) {
+            List<RDFPatch> x = stream.collect(Collectors.toList());
+            assertEquals(1, x.size());
+            assertTrue(equals(patch1, x.get(0)));
+        }
+    }
+
+    @Test(expected=DeltaBadRequestException.class)
+    public void patch_range_3() {
+        // Range starting before the earliest version in the log.
+        DeltaLink dLink = getLink();
+        Id dsRef = dLink.newDataSource("patch_range_3", "http://example/");
+        RDFPatch patch1 = RDFPatchOps.read(FILES_DIR+"/patch1.rdfp");
+        dLink.append(dsRef, patch1);
+        try ( Stream<RDFPatch> stream = dLink.fetchRange(dsRef, Version.INIT, version_1) ) {
+            stream.count();
+        }
+    }
+
     static int counter = 1 ;
     private void patch_seq(String...filenames) {
         DeltaLink dLink = getLink();
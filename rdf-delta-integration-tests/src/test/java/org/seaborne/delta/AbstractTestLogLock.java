@@ -20,6 +20,10 @@ package org.seaborne.delta;
 import static org.apache.jena.atlas.lib.ThreadLib.async;
 import static org.junit.Assert.*;
 
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -92,6 +96,25 @@ public abstract class AbstractTestLogLock {
         assertFalse("Lock refresh after releasing the lock", b2);
     }
 
+    @Test public void deltaLinkLock_refresh_03() {
+        // Refresh several locks in one operation.
+        Id dsRef2 = getDLink().newDataSource("XYZ"+counter.incrementAndGet(), "http://example/xyz");
+        try {
+            Id lockRef1 = getDLink().acquireLock(dsRef);
+            Id lockRef2 = getDLink().acquireLock(dsRef2);
+            Set<Id> failed1 = getDLink().refreshLocks(Map.of(dsRef, lockRef1, dsRef2, lockRef2));
+            assertTrue("Locks refresh while owning the locks", failed1.isEmpty());
+            assertEquals(2L, getDLink().readLock(dsRef).ticks);
+
+            getDLink().releaseLock(dsRef2, lockRef2);
+            Set<Id> failed2 = getDLink().refreshLocks(Map.of(dsRef, lockRef1, dsRef2, lockRef2));
+            assertEquals(Set.of(dsRef2), failed2);
+            getDLink().releaseLock(dsRef, lockRef1);
+        } finally {
+            getDLink().removeDataSource(dsRef2);
+        }
+    }
+
     @Test public void deltaLinkLock_read_01() {
         LockState state = getDLink().readLock(dsRef);
         assertEquals(LockState.UNLOCKED, state);
@@ -190,6 +213,29 @@ public abstract class AbstractTestLogLock {
         getDLink().releaseLock(dsRef, lockRef3);
     }
 
+    @Test(timeout=5000) public void deltaLinkLock_wait_01() {
+        Id lockRef1 = getDLink().acquireLock(dsRef);
+        // Waits, then times out.
+        Id lockRef2 = getDLink().acquireLock(dsRef, 100);
+        assertNull("Acquire with wait", lockRef2);
+        getDLink().releaseLock(dsRef, lockRef1);
+    }
+
+    @Test(timeout=5000) public void deltaLinkLock_wait_02() throws Exception {
+        Id lockRef1 = getDLink().acquireLock(dsRef);
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Id> waiter = CompletableFuture.supplyAsync(()->{
+            started.countDown();
+            return getDLink().acquireLock(dsRef, 4000);
+        });
+        // Whether or not the waiter has asked yet, it gets the lock when it is released.
+        started.await();
+        getDLink().releaseLock(dsRef, lockRef1);
+        Id lockRef2 = waiter.get();
+        assertNotNull("Acquire after waiting", lockRef2);
+        getDLink().releaseLock(dsRef, lockRef2);
+    }
+
     @Test(timeout=500)
     public void deltaLinkLock_sequence_01() throws InterruptedException {
         Semaphore sema1 = new Semaphore(0);
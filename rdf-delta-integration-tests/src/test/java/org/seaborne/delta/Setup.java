@@ -126,6 +126,19 @@ public class Setup {
         private DeltaServer server = null;
         private DeltaLink dlink = null;
         private int testPort = -999;
+        private final boolean binaryPatches;
+        private final boolean compressPatches;
+
+        public RemoteSetup() { this(false, false); }
+
+        /**
+         * Remote link, sending and fetching patches in binary RDF Patch if {@code binaryPatches},
+         * and sending patches gzip-compressed if {@code compressPatches}.
+         */
+        public RemoteSetup(boolean binaryPatches, boolean compressPatches) {
+            this.binaryPatches = binaryPatches;
+            this.compressPatches = compressPatches;
+        }
 
         @Override
         public void beforeClass() {
@@ -192,7 +205,7 @@ public class Setup {
 
         @Override
         public DeltaLink createLink() {
-            return DeltaLinkHTTP.connect("http://localhost:"+testPort+"/");
+            return DeltaLinkHTTP.connect("http://localhost:"+testPort+"/", binaryPatches, compressPatches);
         }
     }
 }
@@ -35,6 +35,8 @@ import org.seaborne.delta.lib.LogX;
     TestLocalClient.class ,
 
     TestRemoteLink.class ,
+    TestRemoteLinkBinary.class ,
+    TestRemoteLinkCompressed.class ,
     TestRemoteConnection.class ,
     TestRemoteClient.class ,
 
@@ -39,6 +39,7 @@ import org.seaborne.delta.Id;
  *  <li>{@code dataset} &ndash; Id or URI for the datasource
  *  <li>{@code patch} &ndash; patch id (for fetch)
  *  <li>{@code version} &ndash; version number
+ *  <li>{@code from}, {@code to} &ndash; inclusive range of versions (for fetch)
  *  <li>{@code ref} &ndash; pointer to predefined arguments [Not Implemented]
  *  <li>{@code zone} &ndash; pointer to predefined arguments [Not Implemented]
  *  </ul>
@@ -98,11 +99,9 @@ public class Args {
         Id patchId = patchIdStr == null ? null : Id.fromString(patchIdStr);
         Id clientId = clientIdStr == null ? null : Id.fromString(clientIdStr);
 
-        Long version = null ;
-        if ( versionStr != null ) {
-            try { version = Long.parseLong(versionStr); }
-            catch (NumberFormatException ex) { errorBadRequest("Can't parse version: "+versionStr) ; }
-        }
+        Long version = parseVersionParam(versionStr);
+        Long versionFrom = parseVersionParam(request.getParameter(DeltaConst.paramFrom));
+        Long versionTo = parseVersionParam(request.getParameter(DeltaConst.paramTo));
 
         /* Now the preferred URI:
          *     /servlet/{name}/
@@ -114,7 +113,7 @@ public class Args {
         String x = getTrailing(request);
         if ( x.isEmpty() ) {
             // No name.
-            return new Args(request, datasourceName, patchId, version, clientId, tokenStr);
+            return new Args(request, datasourceName, patchId, version, versionFrom, versionTo, clientId, tokenStr);
         }
 
         if ( ! x.startsWith("/") )
@@ -151,7 +150,14 @@ public class Args {
                 version = parseVersion(patchStr, null);
             }
         }
-        return new Args(request, datasourceName, patchId, version, clientId, tokenStr);
+        return new Args(request, datasourceName, patchId, version, versionFrom, versionTo, clientId, tokenStr);
+    }
+
+    private static Long parseVersionParam(String versionStr) {
+        if ( versionStr == null )
+            return null;
+        try { return Long.parseLong(versionStr); }
+        catch (NumberFormatException ex) { errorBadRequest("Can't parse version: "+versionStr) ; return null; }
     }
 
     private static UUID parseUUID(String patchStr, UUID dft) {
@@ -205,10 +211,16 @@ public class Args {
     public final String datasourceName;
     public final Id patchId;
     public final Long version;
+    public final Long versionFrom;
+    public final Long versionTo;
     public final Id clientId;
     public final String token;
 
     public Args(HttpServletRequest request, String datasourceName, Id patchId, Long verStr, Id clientId, String token) {
+        this(request, datasourceName, patchId, verStr, null, null, clientId, token);
+    }
+
+    public Args(HttpServletRequest request, String datasourceName, Id patchId, Long verStr, Long verFrom, Long verTo, Id clientId, String token) {
         super();
         this.url = ServerLib.url(request);
         this.method = request.getMethod().toUpperCase(Locale.ROOT);
@@ -224,6 +236,8 @@ public class Args {
         this.datasourceName = datasourceName;
         this.patchId = patchId;
         this.version = verStr;
+        this.versionFrom = verFrom;
+        this.versionTo = verTo;
         this.clientId = clientId;
         this.token = token;
     }
@@ -19,7 +19,14 @@ package org.seaborne.delta.server.http;
 
 import java.io.IOException ;
 import java.io.OutputStream ;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
 
 import jakarta.servlet.http.HttpServletRequest;
 import org.apache.commons.io.input.BoundedInputStream;
@@ -29,6 +36,8 @@ import org.apache.jena.atlas.json.JSON ;
 import org.apache.jena.atlas.json.JsonBuilder ;
 import org.apache.jena.atlas.json.JsonValue ;
 import org.apache.jena.atlas.logging.FmtLog;
+import org.apache.jena.atlas.web.AcceptList;
+import org.apache.jena.atlas.web.MediaType;
 import org.apache.jena.graph.Node;
 import org.apache.jena.rdfpatch.PatchException;
 import org.apache.jena.rdfpatch.RDFPatch ;
@@ -37,6 +46,8 @@ import org.apache.jena.riot.WebContent ;
 import org.apache.jena.riot.web.HttpNames ;
 import org.apache.jena.web.HttpSC ;
 import org.seaborne.delta.*;
+import org.seaborne.delta.lib.PatchSeq;
+import org.seaborne.delta.server.local.DeltaLinkLocal;
 import org.slf4j.Logger ;
 
 /** Patch Log operations */
@@ -49,6 +60,11 @@ public class LogOp {
         if ( dsRef == null )
             throw new DeltaNotFoundException("No such datasource: '"+action.httpArgs.datasourceName+"'");
 
+        if ( action.dLink instanceof DeltaLinkLocal dLinkLocal ) {
+            appendStream(action, dLinkLocal, dsRef);
+            return;
+        }
+
         RDFPatch patch;
         try {
             patch = readPatch(action);
@@ -66,27 +82,7 @@ public class LogOp {
 
         try {
             Version version = action.dLink.append(dsRef, patch);
-
-            // Location of patch in "container/patch/id" form.
-            //String location = action.request.getRequestURI()+"/patch/"+ref.asPlainString();
-            String location = action.request.getRequestURI()+"?version="+version;
-
-            JsonValue rslt = JsonBuilder.create()
-                .startObject()
-                .pair(DeltaConst.F_VERSION, version.asJson())
-                .pair(DeltaConst.F_LOCATION, location)
-                .finishObject()
-                .build();
-
-            FmtLog.info(LOG, "[%d] Patch:append ds:%s patch:%s => ver=%s", action.id, dsRef.toString(), Id.str(patchId), version);
-
-            OutputStream out = action.response.getOutputStream();
-            action.response.setContentType(WebContent.contentTypeJSON);
-            action.response.setStatus(HttpSC.OK_200);
-            action.response.setHeader(HttpNames.hLocation, location);
-
-            JSON.write(out, rslt);
-            out.flush();
+            appendResponse(action, dsRef, patchId, version);
         } catch (DeltaBadPatchException ex) {
             FmtLog.warn(LOG, /*ex,*/ "[%d] Patch:append ds:%s patch:%s => %s", action.id, dsRef.toString(), Id.str(patchId), ex.getMessage());
             throw ex;
@@ -96,11 +92,64 @@ public class LogOp {
         }
     }
 
+    /**
+     * Append, reading the patch from the request body as it is stored.
+     * The patch is not held in memory, and the header is checked against the
+     * log before the rest of the body is read.
+     */
+    private static void appendStream(DeltaAction action, DeltaLinkLocal dLinkLocal, Id dsRef) throws IOException {
+        HttpServletRequest request = action.request;
+        long byteLength = request.getContentLengthLong();
+        Version version;
+        AtomicReference<Node> patchId = new AtomicReference<>();
+        try ( BoundedInputStream in = BoundedInputStream.builder().setInputStream(request.getInputStream()).get(); ) {
+            version = dLinkLocal.append(dsRef, in, request.getContentType(), header->patchId.set(header.getId()));
+            if ( byteLength != -1L ) {
+                if ( in.getCount() != byteLength )
+                    FmtLog.warn(LOG, "[%d] Length mismatch: Read: %d : Content-Length: %d", action.id, in.getCount(),  byteLength);
+            }
+        } catch (PatchException ex) {
+            FmtLog.warn(LOG, ex, "[%d] Patch:append ds:%s patch:syntax error: %s", action.id, dsRef.toString(), ex.getMessage());
+            throw ex;
+        } catch (DeltaBadPatchException ex) {
+            FmtLog.warn(LOG, /*ex,*/ "[%d] Patch:append ds:%s patch:%s => %s", action.id, dsRef.toString(), Id.str(patchId.get()), ex.getMessage());
+            throw ex;
+        } catch (IOException ex) {
+            FmtLog.error(LOG, ex, "[%d] Patch:append ds:%s patch:%s => %s", action.id, dsRef.toString(), Id.str(patchId.get()), ex.getMessage());
+            throw ex;
+        }
+        appendResponse(action, dsRef, patchId.get(), version);
+    }
+
+    private static void appendResponse(DeltaAction action, Id dsRef, Node patchId, Version version) throws IOException {
+        // Location of patch in "container/patch/id" form.
+        //String location = action.request.getRequestURI()+"/patch/"+ref.asPlainString();
+        String location = action.request.getRequestURI()+"?version="+version;
+
+        JsonValue rslt = JsonBuilder.create()
+            .startObject()
+            .pair(DeltaConst.F_VERSION, version.asJson())
+            .pair(DeltaConst.F_LOCATION, location)
+            .finishObject()
+            .build();
+
+        FmtLog.info(LOG, "[%d] Patch:append ds:%s patch:%s => ver=%s", action.id, dsRef.toString(), Id.str(patchId), version);
+
+        OutputStream out = action.response.getOutputStream();
+        action.response.setContentType(WebContent.contentTypeJSON);
+        action.response.setStatus(HttpSC.OK_200);
+        action.response.setHeader(HttpNames.hLocation, location);
+
+        JSON.write(out, rslt);
+        out.flush();
+    }
+
     private static RDFPatch readPatch(DeltaAction action) throws IOException {
         HttpServletRequest request = action.request;
         long byteLength = request.getContentLengthLong();
         try ( BoundedInputStream in = BoundedInputStream.builder().setInputStream(request.getInputStream()).get(); ) {
-            RDFPatch patch = RDFPatchOps.read(in);
+            // Text or binary, depending on the Content-Type. Default is text.
+            RDFPatch patch = DeltaOps.readPatch(in, request.getContentType());
             if ( byteLength != -1L ) {
                 if ( in.getCount() != byteLength )
                     FmtLog.warn(LOG, "[%d] Length mismatch: Read: %d : Content-Length: %d", action.id, in.getCount(),  byteLength);
@@ -109,7 +158,7 @@ public class LogOp {
         }
     }
 
-    private static Id idForDatasource(DeltaAction action) {
+    /*package*/ static Id idForDatasource(DeltaAction action) {
         String datasourceName = action.httpArgs.datasourceName;
         if ( Id.maybeUUID(datasourceName) ) {
             // Looks like an Id
@@ -129,8 +178,13 @@ public class LogOp {
         Id dsRef = idForDatasource(action);
         if ( dsRef == null )
             throw new DeltaNotFoundException("No such datasource: '"+action.httpArgs.datasourceName+"'");
-        RDFPatch patch;
+        String contentType = chooseContentType(action.request);
+
+        // Stored bytes, if they are in the wire format: no parse, no re-encoding.
+        if ( fetchRaw(action, dsRef, contentType) )
+            return;
 
+        RDFPatch patch;
         if ( action.httpArgs.patchId != null ) {
             Id patchId = action.httpArgs.patchId;
             FmtLog.info(LOG, "[%d] Patch:fetch Dest=%s, Patch=%s", action.id, dsRef, patchId);
@@ -151,9 +205,128 @@ public class LogOp {
         OutputStream out = action.response.getOutputStream();
         //action.response.setCharacterEncoding(WebContent.charsetUTF8);
         action.response.setStatus(HttpSC.OK_200);
-        action.response.setContentType(DeltaConst.contentTypePatchText);
-        RDFPatchOps.write(out, patch);
+        action.response.setContentType(contentType);
+        action.response.setHeader(HttpNames.hVary, HttpNames.hAccept);
+        DeltaOps.writePatch(out, patch, contentType);
         // Not "close".
         IO.flush(out);
     }
+
+    /** Content negotiation for a patch: text (the default) or binary. */
+    private static String chooseContentType(HttpServletRequest request) {
+        if ( DeltaConst.contentTypePatchBinary.equals(negotiate(request, DeltaConst.rsOfferPatch)) )
+            return DeltaConst.contentTypePatchBinary;
+        return DeltaConst.contentTypePatchText;
+    }
+
+    /** Content negotiation for a sequence of patches: text (the default) or binary. */
+    private static String chooseContentTypeSeq(HttpServletRequest request) {
+        if ( DeltaConst.contentTypePatchSeqBinary.equals(negotiate(request, DeltaConst.rsOfferPatchSeq)) )
+            return DeltaConst.contentTypePatchSeqBinary;
+        return DeltaConst.contentTypePatchSeq;
+    }
+
+    /** The offered content type that best matches the Accept header, or null. */
+    private static String negotiate(HttpServletRequest request, AcceptList offer) {
+        String accept = request.getHeader(HttpNames.hAccept);
+        if ( accept == null || accept.isEmpty() )
+            return null;
+        MediaType mediaType = null;
+        try {
+            mediaType = AcceptList.match(AcceptList.create(accept), offer);
+        } catch (RuntimeException ex) { /* Bad Accept header - use default. */ }
+        return ( mediaType == null ) ? null : mediaType.getContentTypeStr();
+    }
+
+    /**
+     * Send the stored bytes of a patch if the patch log is local and the storage format
+     * is the same as {@code contentType}. Return true if the response has been sent.
+     */
+    private static boolean fetchRaw(DeltaAction action, Id dsRef, String contentType) throws IOException {
+        if ( ! ( action.dLink instanceof DeltaLinkLocal dLinkLocal ) )
+            return false;
+        ReadableByteChannel channel = null;
+        Object patchRef = null;
+        if ( action.httpArgs.patchId != null ) {
+            patchRef = action.httpArgs.patchId;
+            channel = dLinkLocal.fetchRaw(dsRef, action.httpArgs.patchId, contentType);
+        } else if ( action.httpArgs.version != null && Version.isValid(action.httpArgs.version) ) {
+            Version ver = Version.create(action.httpArgs.version);
+            patchRef = ver;
+            channel = dLinkLocal.fetchRaw(dsRef, ver, contentType);
+        }
+        if ( channel == null )
+            return false;
+        FmtLog.info(LOG, "[%d] Patch:fetch Dest=%s, Patch=%s (stored)", action.id, dsRef, patchRef);
+        try ( ReadableByteChannel in = channel ) {
+            OutputStream out = action.response.getOutputStream();
+            action.response.setStatus(HttpSC.OK_200);
+            action.response.setContentType(contentType);
+            action.response.setHeader(HttpNames.hVary, HttpNames.hAccept);
+            if ( in instanceof FileChannel fileChannel ) {
+                action.response.setContentLengthLong(fileChannel.size());
+                transferFrom(fileChannel, out);
+            } else {
+                copy(in, out);
+            }
+            // Not "close".
+            IO.flush(out);
+        }
+        return true;
+    }
+
+    private static void transferFrom(FileChannel fileChannel, OutputStream out) throws IOException {
+        WritableByteChannel dst = Channels.newChannel(out);
+        long size = fileChannel.size();
+        long posn = 0;
+        while ( posn < size ) {
+            long x = fileChannel.transferTo(posn, size-posn, dst);
+            if ( x <= 0 )
+                break;
+            posn += x;
+        }
+    }
+
+    private static void copy(ReadableByteChannel in, OutputStream out) throws IOException {
+        WritableByteChannel dst = Channels.newChannel(out);
+        ByteBuffer buffer = ByteBuffer.allocate(64*1024);
+        while ( in.read(buffer) >= 0 ) {
+            buffer.flip();
+            while ( buffer.hasRemaining() )
+                dst.write(buffer);
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Fetch a range of patches, by version, inclusive. If "to" is not given, the range
+     * is to the end of the log. The response is a {@link PatchSeq}, of text or binary
+     * patches by content negotiation, and is written one
+     * patch at a time.
+     */
+    public static void fetchRange(DeltaAction action) throws IOException {
+        Id dsRef = idForDatasource(action);
+        if ( dsRef == null )
+            throw new DeltaNotFoundException("No such datasource: '"+action.httpArgs.datasourceName+"'");
+        Long from = action.httpArgs.versionFrom;
+        Long to = action.httpArgs.versionTo;
+        if ( ! Version.isValid(from) || ( to != null && ! Version.isValid(to) ) )
+            DeltaAction.errorBadRequest("Bad range in patch fetch request: from="+from+" to="+to);
+        Version start = Version.create(from);
+        Version finish = ( to != null ) ? Version.create(to) : action.dLink.getCurrentVersion(dsRef);
+        String contentType = chooseContentTypeSeq(action.request);
+        FmtLog.info(LOG, "[%d] Patch:fetch Dest=%s, Range=[%s,%s]", action.id, dsRef, start, finish);
+
+        // An empty log has no valid current version: the response is an empty sequence.
+        // Start the fetch before the response so that a truncated log is a 410.
+        try ( Stream<RDFPatch> patches = action.dLink.fetchRange(dsRef, start, finish) ) {
+            OutputStream out = action.response.getOutputStream();
+            action.response.setStatus(HttpSC.OK_200);
+            action.response.setContentType(contentType);
+            action.response.setHeader(HttpNames.hVary, HttpNames.hAccept);
+            patches.forEach(patch->PatchSeq.write(out, patch, contentType));
+            // Not "close".
+            IO.flush(out);
+        }
+    }
 }
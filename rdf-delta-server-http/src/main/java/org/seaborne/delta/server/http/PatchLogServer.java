@@ -33,10 +33,12 @@ import org.eclipse.jetty.ee11.servlet.FilterHolder;
 import org.eclipse.jetty.ee11.servlet.ServletContextHandler;
 import org.eclipse.jetty.ee11.servlet.ServletHolder;
 import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.handler.ErrorHandler;
+import org.eclipse.jetty.server.handler.gzip.GzipHandler;
 import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.util.resource.ResourceFactory;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
@@ -96,10 +98,12 @@ public /*package*/ class PatchLogServer {
 
         addServlet(handler, "/"+DeltaConst.EP_Ping, new S_Ping());  //-- See also the "ping" DRPC.
 
-        addServlet(handler, "/"+DeltaConst.EP_Metrics, new S_Metrics());
+        addServlet(handler, "/"+DeltaConst.EP_Metrics, new S_Metrics(this.deltaLink));
 
         // Initial data. "/init-data?datasource=..."
         addServlet(handler, "/"+DeltaConst.EP_InitData, new S_FetchData(this.deltaLink));
+        addServlet(handler, "/"+DeltaConst.EP_Snapshot, new S_Snapshot(this.deltaLink));
+        addServlet(handler, "/"+DeltaConst.EP_Wait, new S_AwaitVersion(this.deltaLink));
 
 
         // ---- A default servlet at the end of the chain.
@@ -115,7 +119,21 @@ public /*package*/ class PatchLogServer {
         // One line error message
         handler.setErrorHandler(new FusekiErrorHandler());
         // Wire up.
-        server.setHandler(handler);
+        server.setHandler(compression(handler));
+    }
+
+    /**
+     * Content-Encoding: gzip for responses when the client sends "Accept-Encoding: gzip"
+     * and for request bodies with "Content-Encoding: gzip". Both are streamed; a request
+     * body is inflated as it is read and parsed.
+     */
+    private static Handler compression(Handler handler) {
+        GzipHandler gzipHandler = new GzipHandler();
+        gzipHandler.setIncludedMethods("GET", "POST");
+        gzipHandler.setMinGzipSize(1024);
+        gzipHandler.setInflateBufferSize(16*1024);
+        gzipHandler.setHandler(handler);
+        return gzipHandler;
     }
 
     static class Servlet404 extends HttpServlet {
@@ -186,12 +204,17 @@ public /*package*/ class PatchLogServer {
         }
     }
 
+    // Async support is needed through the filter chain for S_AwaitVersion.
     private void addServlet(ServletContextHandler holder, String path, Servlet servlet) {
-        holder.addServlet(new ServletHolder(servlet), path);
+        ServletHolder servletHolder = new ServletHolder(servlet);
+        servletHolder.setAsyncSupported(true);
+        holder.addServlet(servletHolder, path);
     }
 
     private void addFilter(ServletContextHandler holder, String path, Filter filter) {
-        holder.addFilter(new FilterHolder(filter), path, null);
+        FilterHolder filterHolder = new FilterHolder(filter);
+        filterHolder.setAsyncSupported(true);
+        holder.addFilter(filterHolder, path, null);
     }
 
     // To be called via DeltaServer.
@@ -0,0 +1,187 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.apache.jena.atlas.json.JSON;
+import org.apache.jena.atlas.logging.FmtLog;
+import org.apache.jena.riot.WebContent;
+import org.apache.jena.riot.web.HttpNames;
+import org.apache.jena.web.HttpSC;
+import org.seaborne.delta.*;
+import org.seaborne.delta.link.DeltaLink;
+import org.seaborne.delta.server.local.DeltaLinkLocal;
+import org.seaborne.delta.server.local.VersionWaiter;
+import org.slf4j.Logger;
+
+/**
+ * Long-poll for a new version of a patch log:
+ * {@code GET /$/wait?datasource=...&version=N&timeout=MILLIS}.
+ * <p>
+ * The response is the {@link PatchLogInfo} of the log when it has a version after
+ * {@code N}, or when the timeout is reached, whichever is first. The timeout is at most
+ * {@link #MAX_WAIT_MILLIS}, which is less than the usual HTTP idle timeout.
+ * <p>
+ * For a local patch log, the request waits asynchronously and does not hold a server
+ * thread: the response is sent when a new version is appended, or on timeout.
+ */
+public class S_AwaitVersion extends HttpOperationBase {
+    static private Logger LOG = Delta.getDeltaLogger("Wait") ;
+
+    /** Longest time a request waits. */
+    public static final long MAX_WAIT_MILLIS = 25_000;
+
+    public S_AwaitVersion(DeltaLink engine) {
+        super(engine);
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        doCommon(req, resp);
+    }
+
+    @Override
+    protected void validateAction(Args httpArgs) {
+        if ( httpArgs.datasourceName == null )
+            DeltaAction.errorBadRequest("No datasource in wait request");
+        if ( httpArgs.version == null )
+            DeltaAction.errorBadRequest("No version in wait request");
+    }
+
+    @Override
+    protected void executeAction(DeltaAction action) throws IOException {
+        Id dsRef = LogOp.idForDatasource(action);
+        if ( dsRef == null )
+            throw new DeltaNotFoundException("No such datasource: '"+action.httpArgs.datasourceName+"'");
+        Version version = Version.create(action.httpArgs.version);
+        long timeout = timeout(action.request.getParameter(DeltaConst.paramTimeout));
+        FmtLog.debug(LOG, "[%d] Wait: Dest=%s, after %s, timeout=%dms", action.id, dsRef, version, timeout);
+        // An AsyncContext timeout of 0 is "no timeout".
+        if ( timeout > 0 && action.dLink instanceof DeltaLinkLocal dLinkLocal && action.request.isAsyncSupported() ) {
+            awaitAsync(action, dLinkLocal, dsRef, version, timeout);
+            return;
+        }
+        PatchLogInfo info = action.dLink.awaitVersion(dsRef, version, timeout);
+        if ( info == null )
+            throw new DeltaNotFoundException("No such datasource: '"+action.httpArgs.datasourceName+"'");
+        sendInfo(action.response, info);
+    }
+
+    /**
+     * Register a waiter with the patch log and return without waiting. The response is
+     * sent when the waiter is completed by an append, or by the {@link AsyncContext}
+     * timeout. A waiter for a request that fails, such as the client disconnecting, is
+     * cancelled.
+     */
+    private static void awaitAsync(DeltaAction action, DeltaLinkLocal dLink, Id dsRef, Version version, long timeout) {
+        AsyncContext async = action.request.startAsync();
+        // Set up before waiting: the waiter may be completed straight away.
+        AtomicReference<VersionWaiter> waiter = new AtomicReference<>();
+        async.setTimeout(timeout);
+        async.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                if ( cancel(waiter.get()) )
+                    respond(action, async, ()->dLink.getPatchLogInfo(dsRef));
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                FmtLog.debug(LOG, "[%d] Wait: %s", action.id, event.getThrowable());
+                cancel(waiter.get());
+            }
+
+            @Override
+            public void onComplete(AsyncEvent event) {}
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {}
+        });
+        // The waiter action is called by the appending thread: respond from a server thread.
+        waiter.set(dLink.awaitVersion(dsRef, version, info->async.start(()->respond(action, async, ()->info))));
+        if ( waiter.get() == null )
+            // Deleted since the request was parsed.
+            respond(action, async, ()->{ throw new DeltaNotFoundException("No such datasource: '"+action.httpArgs.datasourceName+"'"); });
+    }
+
+    private static boolean cancel(VersionWaiter waiter) {
+        return waiter != null && waiter.cancel();
+    }
+
+    /** Send the response for an asynchronous wait, and complete the request. */
+    private static void respond(DeltaAction action, AsyncContext async, Supplier<PatchLogInfo> info) {
+        try {
+            sendInfo(action.response, info.get());
+        } catch (DeltaHttpException ex) {
+            try { action.response.sendError(ex.getStatusCode(), ex.getMessage()); }
+            catch (IOException ex2) {}
+        } catch (IOException ex) {
+            FmtLog.debug(LOG, "[%d] Wait: %s", action.id, ex.getMessage());
+        } catch (RuntimeException ex) {
+            FmtLog.warn(LOG, ex, "[%d] Wait: %s", action.id, ex.getMessage());
+            try { action.response.sendError(HttpSC.INTERNAL_SERVER_ERROR_500, ex.getMessage()); }
+            catch (IOException ex2) {}
+        } finally {
+            complete(async);
+        }
+    }
+
+    /** Complete an asynchronous request, which may already have been completed by a timeout or error. */
+    static void complete(AsyncContext async) {
+        try { async.complete(); }
+        catch (IllegalStateException ex) {}
+    }
+
+    private static void sendInfo(HttpServletResponse response, PatchLogInfo info) throws IOException {
+        OutputStream out = response.getOutputStream();
+        response.setContentType(WebContent.contentTypeJSON);
+        response.setHeader(HttpNames.hCacheControl, "no-cache");
+        response.setStatus(HttpSC.OK_200);
+        JSON.write(out, info.asJson());
+        out.flush();
+    }
+
+    private static long timeout(String timeoutStr) {
+        if ( timeoutStr == null )
+            return MAX_WAIT_MILLIS;
+        long timeout;
+        try { timeout = Long.parseLong(timeoutStr); }
+        catch (NumberFormatException ex) {
+            DeltaAction.errorBadRequest("Can't parse timeout: "+timeoutStr);
+            return -1;
+        }
+        if ( timeout < 0 )
+            DeltaAction.errorBadRequest("Negative timeout: "+timeoutStr);
+        return Math.min(timeout, MAX_WAIT_MILLIS);
+    }
+
+    @Override
+    protected String getOpName() {
+        return "wait";
+    }
+}
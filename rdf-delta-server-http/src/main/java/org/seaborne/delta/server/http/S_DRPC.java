@@ -24,9 +24,17 @@ import java.io.IOException ;
 import java.io.InputStream ;
 import java.io.OutputStream ;
 import java.io.PrintStream ;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import jakarta.servlet.http.HttpServletRequest ;
 import jakarta.servlet.http.HttpServletResponse ;
 
@@ -41,6 +49,8 @@ import org.apache.jena.atlas.io.IOX;
 import org.seaborne.delta.lib.JSONX;
 import org.seaborne.delta.lib.LibX;
 import org.seaborne.delta.link.DeltaLink;
+import org.seaborne.delta.server.local.DeltaLinkLocal;
+import org.seaborne.delta.server.local.LockWaiter;
 import org.slf4j.Logger ;
 
 /** Receive a JSON object, return a JSON object */
@@ -106,12 +116,17 @@ public class S_DRPC extends DeltaServlet {
             case OP_LIST_DS:
             case OP_LIST_DSD:
             case OP_LIST_LOG_INFO:
+            case OP_LIST_LOG_CHANGES:
+            case OP_BATCH:
             case OP_DESCR_DS:
             case OP_DESCR_LOG:
             case OP_CREATE_DS:
             case OP_COPY_DS:
             case OP_RENAME_DS:
             case OP_REMOVE_DS:
+            case OP_TRUNCATE:
+            case OP_LIST_SNAPSHOTS:
+            case OP_CREATE_SNAPSHOT:
             case OP_LOCK:
             case OP_LOCK_REFRESH:
             case OP_LOCK_READ:
@@ -135,6 +150,101 @@ public class S_DRPC extends DeltaServlet {
 
     @Override
     protected void executeAction(DeltaAction action) throws IOException {
+        if ( OP_LOCK.equals(action.opName) ) {
+            if ( acquirePatchLogLockAsync(action) )
+                return;
+            sendLockResponse(action, execute(action));
+            return;
+        }
+        JsonValue rslt = execute(action);
+        sendJsonResponse(action.response, rslt);
+    }
+
+    /**
+     * Wait for a lock, if asked to, without holding a server thread. The response is
+     * sent when the lock is given to this request, or when the request times out. A
+     * request that fails while waiting, such as the client disconnecting, leaves the
+     * queue for the lock. Return false if the request is not handled asynchronously.
+     */
+    private boolean acquirePatchLogLockAsync(DeltaAction action) {
+        long timeout = getFieldAsLong(action, F_TIMEOUT, 0);
+        if ( timeout <= 0 || ! action.request.isAsyncSupported() || ! ( action.dLink instanceof DeltaLinkLocal dLinkLocal ) )
+            return false;
+        Id dsRef = getFieldAsId(action, F_DATASOURCE);
+        AsyncContext async = action.request.startAsync();
+        // Set up before waiting: the lock may be given to the request straight away.
+        AtomicReference<LockWaiter> waiter = new AtomicReference<>();
+        async.setTimeout(Math.min(timeout, S_AwaitVersion.MAX_WAIT_MILLIS));
+        async.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                if ( cancel(waiter.get()) )
+                    completeLock(action, async, null);
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                FmtLog.info(LOG, "[%d] %s : left the queue for the lock: %s", action.id, action.opName, event.getThrowable());
+                cancel(waiter.get());
+            }
+
+            @Override
+            public void onComplete(AsyncEvent event) {}
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {}
+        });
+        try {
+            // Called by the thread that releases the lock: respond from a server thread.
+            // If that fails, the lock is passed to the next waiter.
+            waiter.set(dLinkLocal.acquireLock(dsRef, session->async.start(()->completeLock(action, async, session))));
+        } catch (DeltaHttpException ex) {
+            try { action.response.sendError(ex.getStatusCode(), ex.getMessage()); }
+            catch (IOException ex2) {}
+            S_AwaitVersion.complete(async);
+        }
+        return true;
+    }
+
+    private static boolean cancel(LockWaiter waiter) {
+        return waiter != null && waiter.cancel();
+    }
+
+    private void completeLock(DeltaAction action, AsyncContext async, Id session) {
+        JsonValue rslt = lockResult(session);
+        FmtLog.info(LOG, "[%d] %s %s => %s", action.id, action.opName, JSON.toStringFlat(action.rpcArg), JSON.toStringFlat(rslt));
+        try {
+            sendLockResponse(action, rslt);
+        } finally {
+            S_AwaitVersion.complete(async);
+        }
+    }
+
+    /**
+     * Send the result of acquiring a lock. If the client has gone away, which can
+     * happen while waiting for the lock, release the lock so it passes to the next
+     * request waiting for it.
+     */
+    private void sendLockResponse(DeltaAction action, JsonValue rslt) {
+        try {
+            HttpServletResponse resp = action.response;
+            resp.setStatus(HttpSC.OK_200);
+            JSON.write(resp.getOutputStream(), rslt);
+            // Send now, to find out if the client is still there.
+            resp.flushBuffer();
+        } catch (IOException | RuntimeException ex) {
+            JsonValue jv = rslt.getAsObject().get(F_LOCK_REF);
+            if ( jv == null || ! jv.isString() )
+                return;
+            Id dsRef = getFieldAsId(action, F_DATASOURCE);
+            Id session = Id.fromString(jv.getAsString().value());
+            FmtLog.warn(LOG, "[%d] Lock response not sent (client has left?): releasing lock %s : %s", action.id, dsRef, ex.getMessage());
+            action.dLink.releaseLock(dsRef, session);
+        }
+    }
+
+    /** Perform the operation of an action, and return the result (may be null). */
+    private JsonValue execute(DeltaAction action) {
         JsonValue rslt = null ;
         JsonObject arg = action.rpcArg;
         // Some operations are logged at DEBUG because they are high-volume polling.
@@ -166,6 +276,16 @@ public class S_DRPC extends DeltaServlet {
                     infoLogThisRPC = false;
                     rslt = listPatchLogInfo(action);
                     break ;
+                case OP_LIST_LOG_CHANGES:
+                    // Polling, like OP_LIST_LOG_INFO.
+                    infoLogThisRPC = false;
+                    rslt = listPatchLogChanges(action);
+                    break ;
+                case OP_BATCH:
+                    // Each operation in the batch is logged.
+                    infoLogThisRPC = false;
+                    rslt = batch(action);
+                    break ;
                 case OP_LIST_DSD:
                     infoLogThisRPC = false;
                     rslt = listDataSourcesDescriptions(action);
@@ -184,6 +304,16 @@ public class S_DRPC extends DeltaServlet {
                 case OP_REMOVE_DS:
                     rslt = removeDataSource(action);
                     break;
+                case OP_TRUNCATE:
+                    rslt = truncateLog(action);
+                    break;
+                case OP_LIST_SNAPSHOTS:
+                    infoLogThisRPC = false;
+                    rslt = listSnapshots(action);
+                    break;
+                case OP_CREATE_SNAPSHOT:
+                    rslt = createSnapshot(action);
+                    break;
                 case OP_LOCK:
                     infoLogThisRPC = false;
                     rslt = acquirePatchLogLock(action);
@@ -220,7 +350,7 @@ public class S_DRPC extends DeltaServlet {
             FmtLog.info(LOG, "[%d] %s %s => %s", action.id, action.opName, JSON.toStringFlat(arg), JSON.toStringFlat(rslt)) ;
         else
             FmtLog.debug(LOG, "[%d] %s %s => %s", action.id, action.opName, JSON.toStringFlat(arg), JSON.toStringFlat(rslt)) ;
-        sendJsonResponse(action.response, rslt);
+        return rslt;
     }
 
     static public void sendJsonResponse(HttpServletResponse resp, JsonValue rslt) {
@@ -329,6 +459,62 @@ public class S_DRPC extends DeltaServlet {
         return logInfo.asJson();
     }
 
+    private JsonValue listPatchLogChanges(DeltaAction action) {
+        String since = getFieldAsString(action, F_SINCE, false);
+        return action.dLink.listPatchLogChanges(since).asJson();
+    }
+
+    /**
+     * Several operations in one request.
+     * The argument is <tt>{ "array": [ { "operation": ..., "arg": {...} }, ... ] }</tt>.
+     * The result has one entry per operation, in order: <tt>{ "value": ... }</tt>
+     * or, if the operation failed, <tt>{ "code": ..., "error": ... }</tt>.
+     * The operations are not performed as a single transaction.
+     * A lock operation in a batch may not wait for the lock.
+     */
+    private JsonValue batch(DeltaAction action) {
+        JsonArray ops = getFieldAsArray(action, F_ARRAY);
+        JsonArray results = new JsonArray();
+        for ( JsonValue jv : ops ) {
+            if ( ! jv.isObject() )
+                throw new DeltaBadRequestException("Batch: not a JSON object: "+JSON.toStringFlat(jv));
+            JsonObject obj = jv.getAsObject();
+            String op = getFieldAsString(obj, F_OP);
+            JsonObject arg = getFieldAsObject(obj, F_ARG);
+            if ( OP_BATCH.equals(op) )
+                throw new DeltaBadRequestException("Batch: nested batch operation");
+            DeltaAction subAction = DeltaAction.create(action.request, action.response, action.dLink, action.token,
+                                                       op, null, arg, obj);
+            results.add(batchEntry(subAction));
+        }
+        JsonObject rslt = new JsonObject();
+        rslt.put(F_ARRAY, results);
+        return rslt;
+    }
+
+    private JsonObject batchEntry(DeltaAction action) {
+        try {
+            validateAction(action);
+            // Waiting would hold the server thread: see acquirePatchLogLockAsync.
+            if ( OP_LOCK.equals(action.opName) && getFieldAsLong(action, F_TIMEOUT, 0) > 0 )
+                throw new DeltaBadRequestException("Batch: lock operation with a timeout");
+            JsonValue rslt = execute(action);
+            return JSONX.buildObject(b->b.pair(F_VALUE, rslt == null ? JsonNull.instance : rslt));
+        } catch (DeltaHttpException ex) {
+            return batchError(ex.getStatusCode(), ex.getMessage());
+        } catch (IOException | RuntimeException ex) {
+            FmtLog.warn(LOG, "[%d] Batch: %s : %s", action.id, action.opName, ex.getMessage());
+            return batchError(HttpSC.INTERNAL_SERVER_ERROR_500, ex.getMessage());
+        }
+    }
+
+    private static JsonObject batchError(int code, String message) {
+        return JSONX.buildObject(b->{
+            b.pair(F_CODE, code);
+            b.pair(F_ERROR, message == null ? "" : message);
+        });
+    }
+
     private JsonValue listPatchLogInfo(DeltaAction action) {
         List<PatchLogInfo> info = action.dLink.listPatchLogInfo();
         return JSONX.buildObject(b->{
@@ -381,9 +567,46 @@ public class S_DRPC extends DeltaServlet {
         return noResults;
     }
 
+    private JsonValue truncateLog(DeltaAction action) {
+        Id dsRef = getFieldAsId(action, F_DATASOURCE);
+        Retention retention;
+        try {
+            retention = Retention.fromJson(action.rpcArg);
+        } catch (IllegalArgumentException ex) {
+            throw new DeltaBadRequestException(ex.getMessage());
+        }
+        PatchLogInfo info = action.dLink.truncate(dsRef, retention);
+        return info.asJson();
+    }
+
+    private JsonValue listSnapshots(DeltaAction action) {
+        Id dsRef = getFieldAsId(action, F_DATASOURCE);
+        List<SnapshotInfo> snapshots = action.dLink.listSnapshots(dsRef);
+        return JSONX.buildObject(b->{
+            b.key(F_ARRAY);
+            b.startArray();
+            snapshots.forEach(x->x.addJsonObject(b));
+            b.finishArray();
+        });
+    }
+
+    private JsonValue createSnapshot(DeltaAction action) {
+        Id dsRef = getFieldAsId(action, F_DATASOURCE);
+        SnapshotInfo info = action.dLink.createSnapshot(dsRef);
+        return info.asJson();
+    }
+
     private JsonValue acquirePatchLogLock(DeltaAction action) {
         Id dsRef = getFieldAsId(action, F_DATASOURCE);
-        Id session = action.dLink.acquireLock(dsRef);
+        long timeout = getFieldAsLong(action, F_TIMEOUT, 0);
+        // Wait, as a long-poll, if asked to.
+        Id session = ( timeout > 0 )
+            ? action.dLink.acquireLock(dsRef, Math.min(timeout, S_AwaitVersion.MAX_WAIT_MILLIS))
+            : action.dLink.acquireLock(dsRef);
+        return lockResult(session);
+    }
+
+    private static JsonValue lockResult(Id session) {
         if ( session == null )
             return JSONX.buildObject(b->b.key(F_LOCK_REF).value(JsonNull.instance));
         return JSONX.buildObject(b->b.key(F_LOCK_REF).value(session.asPlainString()));
@@ -417,16 +640,18 @@ public class S_DRPC extends DeltaServlet {
             return emptyObjectArray;
             //throw new DeltaBadRequestException("Empty array in lock refresh "+ JSON.toStringFlat(action.rpcArg)) ;
         }
-        List<JsonObject> rslt =
-                array.stream().map(JsonValue::getAsObject).map(arg->{
-                    Id dsRef = getFieldAsId(arg, F_DATASOURCE);
-                    Id session = getFieldAsId(arg, F_LOCK_REF);
-                    boolean bRslt = action.dLink.refreshLock(dsRef, session);
-                    // If it did not refresh, pass arg back.
-                    return bRslt ? null : arg ;
-                })
-                .filter(x -> x != null )
-                .collect(Collectors.toList());
+        // All the locks in one call of the DeltaLink.
+        Map<Id, Id> locks = new LinkedHashMap<>();
+        Map<Id, JsonObject> args = new HashMap<>();
+        array.stream().map(JsonValue::getAsObject).forEach(arg->{
+            Id dsRef = getFieldAsId(arg, F_DATASOURCE);
+            Id session = getFieldAsId(arg, F_LOCK_REF);
+            locks.put(dsRef, session);
+            args.put(dsRef, arg);
+        });
+        Set<Id> failed = action.dLink.refreshLocks(locks);
+        // If it did not refresh, pass arg back.
+        List<JsonObject> rslt = failed.stream().map(args::get).collect(Collectors.toList());
         return JSONX.buildObject(b->{
             b.key(F_ARRAY);
             b.startArray();
@@ -518,6 +743,18 @@ public class S_DRPC extends DeltaServlet {
         }
     }
 
+    private static long getFieldAsLong(DeltaAction action, String field, long dftValue) {
+        JsonObject arg = action.rpcArg;
+        if ( ! arg.hasKey(field) )
+            return dftValue;
+        JsonValue jv = arg.get(field);
+        if ( ! jv.isNumber() ) {
+            LOG.warn("Bad request: Field not a number: "+field+" Arg: "+JSON.toStringFlat(arg)) ;
+            throw new DeltaBadRequestException("Bad field '"+field+"' : "+jv) ;
+        }
+        return jv.getAsNumber().value().longValue();
+    }
+
     private static Id getFieldAsId(JsonObject arg, String field) {
         return Id.fromString(getFieldAsString(arg, field));
     }
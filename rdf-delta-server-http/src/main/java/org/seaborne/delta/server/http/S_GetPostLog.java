@@ -30,6 +30,7 @@ import org.slf4j.Logger;
 /** Servlet for both append and fetch patches - the RDF Patch protocol.
  *    {@code GET  /{name}/id} -- get patch
  *    {@code GET  /{name}/version} -- get patch
+ *    {@code GET  /{name}?from=version&to=version} -- get a range of patches
  *    {@code POST /{name}/} -- append patch.
  */
 public class S_GetPostLog extends HttpOperationBase {
@@ -49,6 +50,8 @@ public class S_GetPostLog extends HttpOperationBase {
     protected void validateAction(Args httpArgs) {
         if ( isFetchOperation(httpArgs) )
             return ;
+        if ( isFetchRangeOperation(httpArgs) )
+            return ;
         if ( isAppendOperation(httpArgs) )
             return ;
         DeltaAction.errorBadRequest("Not a log fetch or append operation : "+httpArgs.url);
@@ -58,6 +61,8 @@ public class S_GetPostLog extends HttpOperationBase {
     protected void executeAction(DeltaAction action) throws IOException {
         if ( isFetchOperation(action) )
             LogOp.fetch(action);
+        else if ( isFetchRangeOperation(action.httpArgs) )
+            LogOp.fetchRange(action);
         else
             LogOp.append(action);
     }
@@ -101,9 +106,15 @@ public class S_GetPostLog extends HttpOperationBase {
             && (args.patchId != null || args.version != null ) ;
     }
 
+    private boolean isFetchRangeOperation(Args args) {
+        return isLogOperation(args)
+            && args.method.equals(HttpNames.METHOD_GET)
+            && args.versionFrom != null ;
+    }
+
     private boolean isAppendOperation(Args args) {
         return isLogOperation(args)
             && (args.method.equals(HttpNames.METHOD_POST) || args.method.equals(HttpNames.METHOD_PATCH))
-            && (args.patchId == null && args.version == null);
+            && (args.patchId == null && args.version == null && args.versionFrom == null);
     }
 }
@@ -20,6 +20,8 @@ package org.seaborne.delta.server.http;
 import java.io.File ;
 import java.io.IOException ;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.binder.jvm.ClassLoaderMetrics;
 import io.micrometer.core.instrument.binder.jvm.JvmGcMetrics;
 import io.micrometer.core.instrument.binder.jvm.JvmMemoryMetrics;
@@ -39,6 +41,10 @@ import org.apache.jena.riot.web.HttpNames ;
 import org.apache.jena.web.HttpSC ;
 import org.seaborne.delta.Delta ;
 import org.seaborne.delta.DeltaConst ;
+import org.seaborne.delta.link.DeltaLink;
+import org.seaborne.delta.server.local.DeltaLinkLocal;
+import org.seaborne.delta.server.local.LocalServer;
+import org.seaborne.delta.server.local.PatchCache;
 import org.slf4j.Logger ;
 
 /** Respond with Prometheus metrics */
@@ -46,6 +52,36 @@ public class S_Metrics extends HttpServlet {
     static private Logger LOG = Delta.DELTA_LOG ;
     private PrometheusMeterRegistry meterRegistry;
 
+    public S_Metrics(DeltaLink deltaLink) {
+        this();
+        if ( deltaLink instanceof DeltaLinkLocal dLinkLocal ) {
+            LocalServer localServer = dLinkLocal.getLocalServer();
+            Gauge.builder("delta.patchlogs.open", localServer, LocalServer::countOpenLogs)
+                .description("Patch logs that are open").register(meterRegistry);
+            Gauge.builder("delta.patchlogs.closed", localServer, LocalServer::countClosedLogs)
+                .description("Patch logs that are not open (opened on next use)").register(meterRegistry);
+            FunctionCounter.builder("delta.patchlogs.idle.closed", localServer, LocalServer::getIdleClosedCount)
+                .description("Patch logs closed because they were idle").register(meterRegistry);
+            FunctionCounter.builder("delta.lock.waits", dLinkLocal, DeltaLinkLocal::getLockWaitCount)
+                .description("Requests that waited for a patch log lock").register(meterRegistry);
+            FunctionCounter.builder("delta.lock.wait.timeouts", dLinkLocal, DeltaLinkLocal::getLockWaitTimeouts)
+                .description("Requests that waited for a patch log lock and did not get it").register(meterRegistry);
+            FunctionCounter.builder("delta.lock.wait.seconds", dLinkLocal, DeltaLinkLocal::getLockWaitSeconds)
+                .description("Total time requests waited for patch log locks").register(meterRegistry);
+            PatchCache patchCache = localServer.getPatchStore().getPatchCache();
+            FunctionCounter.builder("delta.patchcache.hits", patchCache, PatchCache::getHits)
+                .description("Patch fetches found in the patch cache").register(meterRegistry);
+            FunctionCounter.builder("delta.patchcache.misses", patchCache, PatchCache::getMisses)
+                .description("Patch fetches not found in the patch cache").register(meterRegistry);
+            FunctionCounter.builder("delta.patchcache.evictions", patchCache, PatchCache::getEvictions)
+                .description("Patches dropped from the patch cache to make space").register(meterRegistry);
+            Gauge.builder("delta.patchcache.patches", patchCache, PatchCache::size)
+                .description("Patches in the patch cache").register(meterRegistry);
+            Gauge.builder("delta.patchcache.weight", patchCache, PatchCache::getWeight)
+                .description("Estimated space used by the patches in the patch cache").register(meterRegistry);
+        }
+    }
+
     public S_Metrics() {
         meterRegistry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
         meterRegistry.config().commonTags("application", DeltaConst.pDeltaStore);
@@ -0,0 +1,150 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.apache.jena.atlas.json.JSON;
+import org.apache.jena.atlas.logging.FmtLog;
+import org.apache.jena.atlas.web.ContentType;
+import org.apache.jena.atlas.web.TypedInputStream;
+import org.apache.jena.riot.WebContent;
+import org.apache.jena.riot.web.HttpNames;
+import org.apache.jena.web.HttpSC;
+import org.seaborne.delta.*;
+import org.seaborne.delta.link.DeltaLink;
+import org.seaborne.delta.server.local.DeltaLinkLocal;
+import org.slf4j.Logger;
+
+/**
+ * Snapshots of the data of a patch log.
+ * <ul>
+ * <li>{@code GET /$/snapshot?datasource=...&version=...} &ndash; the snapshot at a version,
+ *     or the latest snapshot if there is no version.
+ * <li>{@code POST /$/snapshot?datasource=...&version=...} &ndash; add a snapshot made elsewhere.
+ *     The body is N-Quads or RDF Thrift.
+ * </ul>
+ * The snapshot is sent gzip-compressed when the server holds it locally.
+ */
+public class S_Snapshot extends HttpOperationBase {
+    static private Logger LOG = Delta.getDeltaLogger("Snapshot") ;
+
+    public S_Snapshot(DeltaLink engine) {
+        super(engine);
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        doCommon(req, resp);
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        doCommon(req, resp);
+    }
+
+    @Override
+    protected void validateAction(Args httpArgs) {
+        if ( httpArgs.datasourceName == null )
+            DeltaAction.errorBadRequest("No datasource in snapshot request");
+    }
+
+    @Override
+    protected void executeAction(DeltaAction action) throws IOException {
+        Id dsRef = LogOp.idForDatasource(action);
+        if ( dsRef == null )
+            throw new DeltaNotFoundException("No such datasource: '"+action.httpArgs.datasourceName+"'");
+        switch(action.request.getMethod()) {
+            case HttpNames.METHOD_GET:
+                fetchSnapshot(action, dsRef);
+                return;
+            case HttpNames.METHOD_POST:
+                addSnapshot(action, dsRef);
+                return;
+            default:
+                action.response.sendError(HttpSC.METHOD_NOT_ALLOWED_405);
+        }
+    }
+
+    private void fetchSnapshot(DeltaAction action, Id dsRef) throws IOException {
+        SnapshotInfo info = chooseSnapshot(action, dsRef);
+        if ( info == null )
+            throw new DeltaNotFoundException("No snapshot: "+action.getURL());
+        FmtLog.info(LOG, "[%d] Snapshot:fetch Dest=%s, %s", action.id, dsRef, info.getVersion());
+        HttpServletResponse response = action.response;
+        if ( action.dLink instanceof DeltaLinkLocal dLinkLocal ) {
+            // Send the stored, compressed, bytes.
+            try ( InputStream in = dLinkLocal.fetchSnapshotCompressed(dsRef, info.getVersion()) ) {
+                if ( in == null )
+                    throw new DeltaNotFoundException("No snapshot: "+action.getURL());
+                response.setStatus(HttpSC.OK_200);
+                response.setContentType(info.getContentType());
+                response.setHeader(HttpNames.hContentEncoding, "gzip");
+                in.transferTo(response.getOutputStream());
+            }
+            return;
+        }
+        try ( TypedInputStream in = action.dLink.fetchSnapshot(dsRef, info.getVersion()) ) {
+            if ( in == null )
+                throw new DeltaNotFoundException("No snapshot: "+action.getURL());
+            response.setStatus(HttpSC.OK_200);
+            response.setContentType(info.getContentType());
+            in.transferTo(response.getOutputStream());
+        }
+    }
+
+    /** The snapshot asked for: at the given version, else the latest. */
+    private static SnapshotInfo chooseSnapshot(DeltaAction action, Id dsRef) {
+        List<SnapshotInfo> snapshots = action.dLink.listSnapshots(dsRef);
+        if ( action.httpArgs.version == null )
+            return snapshots.isEmpty() ? null : snapshots.get(snapshots.size()-1);
+        Version version = Version.create(action.httpArgs.version);
+        return snapshots.stream().filter(s->s.getVersion().equals(version)).findFirst().orElse(null);
+    }
+
+    private void addSnapshot(DeltaAction action, Id dsRef) throws IOException {
+        if ( action.httpArgs.version == null )
+            DeltaAction.errorBadRequest("No version for the snapshot");
+        Version version = Version.create(action.httpArgs.version);
+        String ctStr = action.request.getContentType();
+        if ( ctStr == null )
+            DeltaAction.errorBadRequest("No Content-Type for the snapshot");
+        String contentType = ContentType.create(ctStr).getContentTypeStr();
+        SnapshotInfo info;
+        try ( InputStream in = action.request.getInputStream() ) {
+            info = action.dLink.addSnapshot(dsRef, version, in, contentType);
+        }
+        FmtLog.info(LOG, "[%d] Snapshot:add Dest=%s, %s", action.id, dsRef, version);
+        OutputStream out = action.response.getOutputStream();
+        action.response.setContentType(WebContent.contentTypeJSON);
+        action.response.setStatus(HttpSC.OK_200);
+        JSON.write(out, info.asJson());
+        out.flush();
+    }
+
+    @Override
+    protected String getOpName() {
+        return "snapshot";
+    }
+}
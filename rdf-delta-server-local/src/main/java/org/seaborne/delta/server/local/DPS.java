@@ -29,6 +29,8 @@ import org.seaborne.delta.server.local.patchstores.filestore.FileStore;
 import org.seaborne.delta.server.local.patchstores.mem.PatchStoreProviderMem;
 import org.seaborne.delta.server.local.patchstores.rdb.PatchStoreProviderRocks;
 import org.seaborne.delta.server.local.patchstores.rdb.PatchStoreRocks;
+import org.seaborne.delta.server.local.patchstores.segment.PatchStoreProviderSegment;
+import org.seaborne.delta.server.local.patchstores.segment.PatchStoreSegment;
 import org.seaborne.delta.server.system.DeltaSystem;
 import org.slf4j.Logger;
 
@@ -45,6 +47,7 @@ public class DPS {
     public static final String pspFile    = "file";
     public static final String pspRocks   = "rdb";
     public static final String pspMem     = "mem";
+    public static final String pspSegment = "segment";
     public static final String pspLocal   = "local";
 
     // ---- Provider name registry.
@@ -110,6 +113,7 @@ public class DPS {
         FileStore.resetTracked();
         PatchStoreFile.resetTracked();
         PatchStoreRocks.resetTracked();
+        PatchStoreSegment.resetTracked();
 
         providerByName.clear();
         PatchStoreMgr.reset();
@@ -125,6 +129,7 @@ public class DPS {
         List<PatchStoreProvider> providers = Arrays.asList(
             new PatchStoreProviderFile(),
             new PatchStoreProviderRocks(),
+            new PatchStoreProviderSegment(),
             new PatchStoreProviderMem(),
             new PatchStoreProviderAnyLocal()
         );
@@ -17,9 +17,12 @@
 
 package org.seaborne.delta.server.local;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.apache.jena.atlas.logging.FmtLog;
 import org.seaborne.delta.DataSourceDescription;
 import org.seaborne.delta.Id;
+import org.seaborne.delta.LockState;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,21 +31,54 @@ import org.slf4j.LoggerFactory;
  * <p>
  * These act as a record of the patch logs in a server, and are recorded in a {@link DataSourceRegistry}
  * so that routing by name or URI can be be done.
+ * <p>
+ * A {@code DataSource} may be "lazy": the patch log is opened when first needed
+ * (see {@link #lazy}). An open patch log that has not been used for a while may be
+ * closed by the server, and it is then opened again when next needed. Operations that
+ * use the patch log beyond a single call, such as streaming a range of patches or
+ * waiting for a new version, bracket the use with {@link #acquire} and {@link #release}
+ * so that the patch log is not closed under them.
  */
 public class DataSource {
     // Might be able to replace with "PatchLog".
     private static Logger LOG = LoggerFactory.getLogger(DataSource.class);
     private final DataSourceDescription dsDescription;
-    private final PatchLog patchLog;
+    // The patch store that opens a lazy or closed patch log.
+    private volatile PatchStore patchStore;
+    private volatile PatchLog patchLog;
+    // When the patch log was last asked for (System.nanoTime).
+    private volatile long lastUsed = System.nanoTime();
+    // Number of operations between acquire() and release().
+    private final AtomicInteger inUse = new AtomicInteger(0);
 
     public DataSource(DataSourceDescription dsd, PatchLog patchLog) {
         super();
         this.dsDescription = dsd;
         this.patchLog = patchLog;
+        this.patchStore = patchLog.getPatchStore();
         if ( ! dsd.equals(patchLog.getDescription()) )
             FmtLog.warn(LOG, "DSD %s not the same as in PatchLog %s", dsd, patchLog);
     }
 
+    private DataSource(DataSourceDescription dsd, PatchStore patchStore) {
+        this.dsDescription = dsd;
+        this.patchLog = null;
+        this.patchStore = patchStore;
+    }
+
+    /**
+     * A {@code DataSource} for an existing patch log that is opened by the
+     * {@link PatchStore} the first time {@link #getPatchLog} is called.
+     */
+    public static DataSource lazy(DataSourceDescription dsd, PatchStore patchStore) {
+        return new DataSource(dsd, patchStore);
+    }
+
+    /** Whether the patch log has been opened. */
+    public boolean isOpen() {
+        return patchLog != null;
+    }
+
     public Id getId() {
         return dsDescription.getId();
     }
@@ -56,11 +92,76 @@ public class DataSource {
     }
 
     public PatchLog getPatchLog() {
-        return patchLog;
+        // Record the use before looking at the patch log - see closeIfIdle.
+        lastUsed = System.nanoTime();
+        PatchLog log = patchLog;
+        if ( log == null ) {
+            synchronized(this) {
+                if ( patchLog == null ) {
+                    FmtLog.debug(LOG, "Open patch log: %s", dsDescription);
+                    patchLog = patchStore.openLog(dsDescription);
+                }
+                log = patchLog;
+            }
+        }
+        return log;
+    }
+
+    /**
+     * Get the patch log and record that it is in use until {@link #release} is called.
+     * The patch log is not closed for being idle while it is in use.
+     */
+    public PatchLog acquire() {
+        // Count the use before looking at the patch log - see closeIfIdle.
+        inUse.incrementAndGet();
+        try {
+            return getPatchLog();
+        } catch (RuntimeException ex) {
+            inUse.decrementAndGet();
+            throw ex;
+        }
+    }
+
+    /** End a use of the patch log started with {@link #acquire}. */
+    public void release() {
+        lastUsed = System.nanoTime();
+        inUse.decrementAndGet();
+    }
+
+    /** Whether there are calls of {@link #acquire} without a matching {@link #release}. */
+    public boolean isInUse() {
+        return inUse.get() > 0;
+    }
+
+    /**
+     * Close the patch log if it is open, is not in use (see {@link #acquire}), has not
+     * been used since {@code idleSince} (a {@link System#nanoTime} value) and is not
+     * locked; lock state is not kept when a patch log is closed. The patch log is opened
+     * again, by {@code patchStore}, on next use. Return true if the patch log was closed.
+     */
+    /*package*/ synchronized boolean closeIfIdle(PatchStore patchStore, long idleSince) {
+        PatchLog log = patchLog;
+        if ( log == null || isInUse() || lastUsed - idleSince > 0 )
+            return false;
+        if ( ! patchStore.canCloseLog(log) || ! LockState.isFree(log.readLock()) )
+            return false;
+        // getPatchLog sets lastUsed (acquire also counts the use) then reads patchLog;
+        // this clears patchLog then reads lastUsed and the count. Either getPatchLog sees
+        // no patch log and waits for this method to finish, or this method sees the use
+        // and puts the patch log back.
+        patchLog = null;
+        if ( isInUse() || lastUsed - idleSince > 0 ) {
+            patchLog = log;
+            return false;
+        }
+        FmtLog.debug(LOG, "Close idle patch log: %s", dsDescription);
+        this.patchStore = patchStore;
+        patchStore.closeLog(log);
+        return true;
     }
 
     public PatchStore getPatchStore() {
-        return patchLog.getPatchStore();
+        return getPatchLog().getPatchStore();
     }
 
     public DataSourceDescription getDescription() {
@@ -71,6 +172,6 @@ public class DataSource {
     public String toString() {
         return String.format("[DataSource:%s %s (%s)]",
                              dsDescription.getName(), dsDescription.getId(),
-                             patchLog.getPatchStore().getProvider().getShortName());
+                             patchStore.getProvider().getShortName());
     }
 }
@@ -41,6 +41,8 @@ public class DataSourceRegistry extends Registry<Id, DataSource> {
     // Index DataSources by URI, only if the URI is not null.
     private Map<String, DataSource> indexByURI = new ConcurrentHashMap<>();
     private Map<String, DataSource> indexByName = new ConcurrentHashMap<>();
+    // Changes to the patch logs, for clients polling for changes.
+    private final LogChangeTracker logChanges = new LogChangeTracker();
 
     public DataSourceRegistry(String label) {
         this.label = label ;
@@ -59,6 +61,7 @@ public class DataSourceRegistry extends Registry<Id, DataSource> {
             indexByURI.put(ds.getURI(), ds);
         if ( ds.getName() != null )
             indexByName.put(ds.getName(), ds);
+        logChanges.changed(key);
     }
 
     @Override
@@ -69,6 +72,16 @@ public class DataSourceRegistry extends Registry<Id, DataSource> {
         super.remove(key);
         indexByName.remove(ds.getName());
         indexByURI.remove(ds.getURI());
+        logChanges.removed(key);
+    }
+
+    /** Record that the patch log of a registered {@link DataSource} has changed. */
+    public void changed(Id key) {
+        logChanges.changed(key);
+    }
+
+    /*package*/ LogChangeTracker getLogChanges() {
+        return logChanges;
     }
 
     @Override
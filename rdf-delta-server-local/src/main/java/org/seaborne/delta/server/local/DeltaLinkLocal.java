@@ -19,15 +19,48 @@ package org.seaborne.delta.server.local;
 
 import static org.seaborne.delta.Id.str;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
+import org.apache.jena.atlas.io.IOX;
 import org.apache.jena.atlas.json.JsonObject;
 import org.apache.jena.atlas.logging.FmtLog;
+import org.apache.jena.atlas.web.ContentType;
+import org.apache.jena.atlas.web.TypedInputStream;
+import org.apache.jena.rdfpatch.PatchHeader;
+import org.apache.jena.rdfpatch.RDFChanges;
 import org.apache.jena.rdfpatch.RDFPatch;
+import org.apache.jena.rdfpatch.RDFPatchOps;
+import org.apache.jena.rdfpatch.changes.RDFChangesApply;
+import org.apache.jena.rdfpatch.changes.RDFChangesExternalTxn;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.riot.WebContent;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.DatabaseMgr;
+import org.apache.jena.tdb2.sys.TDBInternal;
 import org.seaborne.delta.*;
 import org.seaborne.delta.link.DeltaLink;
 import org.seaborne.delta.link.DeltaLinkListener;
@@ -38,6 +71,8 @@ import org.slf4j.LoggerFactory;
 /** Implementation of {@link DeltaLink} backed by a {@link LocalServer}. */
 public class DeltaLinkLocal implements DeltaLink {
     private static final int  BUF_SIZE = 128 * 1024;
+    // Patches applied in each transaction when building a snapshot.
+    private static final int  SNAPSHOT_BATCH = 1000;
 
     private static Logger     LOG      = LoggerFactory.getLogger(DeltaLinkLocal.class);
 
@@ -49,6 +84,10 @@ public class DeltaLinkLocal implements DeltaLink {
     }
 
     private final LocalServer localServer;
+    // Waiting for patch log locks.
+    private final LongAdder lockWaitCount = new LongAdder();
+    private final LongAdder lockWaitTimeouts = new LongAdder();
+    private final LongAdder lockWaitNanos = new LongAdder();
     private volatile boolean  linkOpen = false;
 
     private Set<DeltaLinkListener> listeners = ConcurrentHashMap.newKeySet();
@@ -140,6 +179,18 @@ public class DeltaLinkLocal implements DeltaLink {
         event(listener->listener.removeDataSource(dsRef));
     }
 
+    @Override
+    public PatchLogInfo truncate(Id dsRef, Retention retention) {
+        checkLink();
+        DataSource source = getDataSource(dsRef);
+        PatchLog patchLog = source.acquire();
+        try {
+            Version earliest = patchLog.truncate(retention);
+            FmtLog.info(LOG, "truncate: Dest=%s, %s, earliest=%s", source, retention, earliest);
+            return patchLog.getInfo();
+        } finally { source.release(); }
+    }
+
     @Override
     public List<Id> listDatasets() {
         checkLink();
@@ -158,6 +209,12 @@ public class DeltaLinkLocal implements DeltaLink {
         return localServer.listPatchLogInfo();
     }
 
+    @Override
+    public PatchLogChanges listPatchLogChanges(String since) {
+        checkLink();
+        return localServer.listPatchLogChanges(since);
+    }
+
     @Override
     public DataSourceDescription getDataSourceDescription(Id dsRef) {
         checkLink();
@@ -191,7 +248,50 @@ public class DeltaLinkLocal implements DeltaLink {
         DataSource source = getDataSource(dsRef);
         if ( source == null )
             return null;
-        return source.getPatchLog().getInfo();
+        PatchLog patchLog = source.acquire();
+        try {
+            return patchLog.getInfo();
+        } finally { source.release(); }
+    }
+
+    /** Wait for a new version, notified by appends to the patch log. */
+    @Override
+    public PatchLogInfo awaitVersion(Id dsRef, Version version, long timeoutMillis) {
+        checkLink();
+        DataSource source = getDataSourceOrNull(dsRef);
+        if ( source == null )
+            return null;
+        // The patch log must stay open while waiting.
+        PatchLog patchLog = source.acquire();
+        try {
+            return patchLog.awaitVersion(version, timeoutMillis);
+        } finally { source.release(); }
+    }
+
+    /**
+     * Wait for a new version without holding a thread: {@code action} is called with the
+     * {@link PatchLogInfo} when the log has a version after {@code version}, possibly
+     * before this method returns. Cancel the returned {@link VersionWaiter} to stop
+     * waiting. Return null if there is no such data source.
+     */
+    public VersionWaiter awaitVersion(Id dsRef, Version version, Consumer<PatchLogInfo> action) {
+        checkLink();
+        DataSource source = getDataSourceOrNull(dsRef);
+        if ( source == null )
+            return null;
+        // The patch log must stay open while waiting.
+        PatchLog patchLog = source.acquire();
+        VersionWaiter waiter = new VersionWaiter(version, action) {
+            @Override
+            protected void finish() { source.release(); }
+        };
+        try {
+            patchLog.addWaiter(waiter);
+        } catch (RuntimeException ex) {
+            waiter.cancel();
+            throw ex;
+        }
+        return waiter;
     }
 
     @Override
@@ -200,7 +300,8 @@ public class DeltaLinkLocal implements DeltaLink {
         DataSource source = getDataSource(dsRef);
         // Patch not known to be valid yet.
         // Patch not safe in the Patch Log yet.
-        PatchLog patchLog = source.getPatchLog();
+        // The append may wait for a group commit.
+        PatchLog patchLog = source.acquire();
         try {
             beforeWrite(source, patchLog, rdfPatch);
 
@@ -218,6 +319,50 @@ public class DeltaLinkLocal implements DeltaLink {
             // Stack trace logged higher up if relevant.
             throw ex;
         }
+        finally { source.release(); }
+    }
+
+    /**
+     * Append a patch read from {@code input}, in the format given by {@code contentType}.
+     * The patch header is validated before the rest of the patch is read, and the patch is
+     * stored as it is parsed, not held in memory. Listeners are given a patch with just the
+     * header.
+     * <p>
+     * {@code headerAction}, if not null, is called with the patch header when it has been read.
+     */
+    public Version append(Id dsRef, InputStream input, String contentType, Consumer<PatchHeader> headerAction) {
+        checkLink();
+        DataSource source = getDataSource(dsRef);
+        // Reading the patch takes as long as the upload.
+        PatchLog patchLog = source.acquire();
+        AtomicReference<PatchHeader> header = new AtomicReference<>();
+        try {
+            long t1 = System.currentTimeMillis();
+            Version version = patchLog.append(input, contentType, h->{
+                header.set(h);
+                if ( headerAction != null )
+                    headerAction.accept(h);
+            });
+            long t2 = System.currentTimeMillis();
+
+            RDFPatch patchHeader = headerOnly(header.get());
+            afterWrite(source, patchHeader, version, (t2 - t1));
+            event(listener-> listener.append(dsRef, version, patchHeader));
+            return version;
+        }
+        catch (RuntimeException ex) {
+            RDFPatch patchHeader = headerOnly(header.get());
+            badWrite(source, patchLog, patchHeader, ex);
+            devlog(LOG, "append: Failed: Dest=%s Patch=%s ; %s", source, str(patchHeader.getId()), ex.getMessage());
+            throw ex;
+        }
+        finally { source.release(); }
+    }
+
+    private static RDFPatch headerOnly(PatchHeader header) {
+        if ( header == null )
+            return RDFPatchOps.emptyPatch();
+        return RDFPatchOps.withHeader(header, RDFPatchOps.emptyPatch());
     }
 
     /**
@@ -259,7 +404,11 @@ public class DeltaLinkLocal implements DeltaLink {
         DataSource source = getDataSourceOrNull(dsRef);
         if ( source == null )
             return null;
-        RDFPatch patch = source.getPatchLog().fetch(patchId);
+        RDFPatch patch;
+        PatchLog patchLog = source.acquire();
+        try {
+            patch = patchLog.fetch(patchId);
+        } finally { source.release(); }
         if ( patch == null )
             return null;
             //throw new DeltaNotFoundException("No such patch: " + patchId);
@@ -275,7 +424,11 @@ public class DeltaLinkLocal implements DeltaLink {
         DataSource source = getDataSourceOrNull(dsRef);
         if ( source == null )
             return null;
-        RDFPatch patch = source.getPatchLog().fetch(version);
+        RDFPatch patch;
+        PatchLog patchLog = source.acquire();
+        try {
+            patch = patchLog.fetch(version);
+        } finally { source.release(); }
         if ( LOG.isInfoEnabled() ) {
             if ( patch == null ) {
                 devlog(LOG, "fetch: Dest=%s, %s, Not found", source, version);
@@ -288,12 +441,133 @@ public class DeltaLinkLocal implements DeltaLink {
         return patch;
     }
 
+    /**
+     * Retrieve the bytes of a patch by version, without parsing, if the patch is
+     * stored in the format {@code contentType}. Return null if not found or if the patch
+     * is stored in a different format.
+     * <p>
+     * This operation does not generate a fetch event.
+     */
+    public ReadableByteChannel fetchRaw(Id dsRef, Version version, String contentType) {
+        checkLink();
+        DataSource source = getDataSourceOrNull(dsRef);
+        if ( source == null )
+            return null;
+        return fetchRaw(source, patchLog->patchLog.fetchRaw(version, contentType));
+    }
+
+    /**
+     * Retrieve the bytes of a patch by id, without parsing, if the patch is stored in
+     * the format {@code contentType}. Return null if not found or if the patch is stored
+     * in a different format.
+     * <p>
+     * This operation does not generate a fetch event.
+     */
+    public ReadableByteChannel fetchRaw(Id dsRef, Id patchId, String contentType) {
+        checkLink();
+        DataSource source = getDataSourceOrNull(dsRef);
+        if ( source == null )
+            return null;
+        return fetchRaw(source, patchLog->patchLog.fetchRaw(patchId, contentType));
+    }
+
+    /**
+     * Fetch a channel, using the patch log (see {@link DataSource#acquire}) until the
+     * channel is closed. A {@link FileChannel} has its own file handle and does not need
+     * the patch log to stay open.
+     */
+    private static ReadableByteChannel fetchRaw(DataSource source, Function<PatchLog, ReadableByteChannel> fetch) {
+        PatchLog patchLog = source.acquire();
+        ReadableByteChannel channel;
+        try {
+            channel = fetch.apply(patchLog);
+        } catch (RuntimeException ex) {
+            source.release();
+            throw ex;
+        }
+        if ( channel == null || channel instanceof FileChannel ) {
+            source.release();
+            return channel;
+        }
+        AtomicBoolean released = new AtomicBoolean(false);
+        return new ReadableByteChannel() {
+            @Override
+            public int read(ByteBuffer dst) throws IOException {
+                return channel.read(dst);
+            }
+
+            @Override
+            public boolean isOpen() {
+                return channel.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    channel.close();
+                } finally {
+                    if ( released.compareAndSet(false, true) )
+                        source.release();
+                }
+            }
+        };
+    }
+
+    /**
+     * Retrieve a range of patches by version. The stream starts at {@code start} and ends
+     * at {@code finish} or the latest patch in the log, whichever is earlier.
+     * If {@code start} is for a patch that has been removed by truncation of the log, throw
+     * {@link DeltaTruncatedException}; the stream never starts at a different version
+     * because callers label the patches from {@code start}.
+     */
+    @Override
+    public Stream<RDFPatch> fetchRange(Id dsRef, Version start, Version finish) {
+        checkLink();
+        DataSource source = getDataSourceOrNull(dsRef);
+        if ( source == null )
+            return Stream.empty();
+        // The stream reads the patch log lazily: the use ends when the stream is closed.
+        PatchLog patchLog = source.acquire();
+        try {
+            if ( patchLog.isEmpty() ) {
+                source.release();
+                return Stream.empty();
+            }
+            if ( patchLog.isTruncated(start) )
+                throw new DeltaTruncatedException(String.format("fetchRange: Version %s has been removed from the log: earliest version is %s",
+                                                                start, patchLog.getEarliestVersion()));
+            if ( start.isBefore(patchLog.getEarliestVersion()) )
+                throw new DeltaBadRequestException("No patch in the log at version "+start);
+            Version latest = patchLog.getLatestVersion();
+            Version to = finish.isAfter(latest) ? latest : finish;
+            if ( start.isAfter(to) ) {
+                source.release();
+                return Stream.empty();
+            }
+            devlog(LOG, "fetchRange: Dest=%s, [%s, %s]", source, start, to);
+            AtomicLong counter = new AtomicLong(start.value());
+            return patchLog.range(start, to)
+                .onClose(source::release)
+                .peek(patch->{
+                    Version version = Version.create(counter.getAndIncrement());
+                    event(listener->listener.fetchByVersion(dsRef, version, patch));
+                });
+        } catch (RuntimeException ex) {
+            source.release();
+            throw ex;
+        }
+    }
+
     private RDFPatch fetchCommon(Id dsRef, Id patchId, Version version) {
         checkLink();
         DataSource source = getDataSourceOrNull(dsRef);
         if ( source == null )
             return null;
-        RDFPatch patch = source.getPatchLog().fetch(version);
+        RDFPatch patch;
+        PatchLog patchLog = source.acquire();
+        try {
+            patch = patchLog.fetch(version);
+        } finally { source.release(); }
         if ( LOG.isInfoEnabled() ) {
             if ( patch == null ) {
                 devlog(LOG, "fetch: Dest=%s, %s, Not found", source, version);
@@ -312,6 +586,137 @@ public class DeltaLinkLocal implements DeltaLink {
         return null;
     }
 
+    @Override
+    public List<SnapshotInfo> listSnapshots(Id dsRef) {
+        checkLink();
+        getDataSource(dsRef);
+        SnapshotStore snapshots = localServer.getSnapshotStore();
+        if ( snapshots == null )
+            return List.of();
+        return snapshots.list(dsRef);
+    }
+
+    @Override
+    public TypedInputStream fetchSnapshot(Id dsRef, Version version) {
+        checkLink();
+        SnapshotStore snapshots = localServer.getSnapshotStore();
+        if ( snapshots == null )
+            return null;
+        SnapshotInfo info = snapshots.get(dsRef, version);
+        if ( info == null )
+            return null;
+        InputStream in = snapshots.open(dsRef, version);
+        if ( in == null )
+            return null;
+        return new TypedInputStream(in, ContentType.create(info.getContentType()));
+    }
+
+    /**
+     * The gzip-compressed bytes of the snapshot at {@code version}, or null if there is no
+     * such snapshot. For sending the snapshot on without decompressing it.
+     */
+    public InputStream fetchSnapshotCompressed(Id dsRef, Version version) {
+        checkLink();
+        SnapshotStore snapshots = localServer.getSnapshotStore();
+        if ( snapshots == null )
+            return null;
+        return snapshots.openCompressed(dsRef, version);
+    }
+
+    /**
+     * Create a snapshot at the latest version of the log: start from the latest snapshot,
+     * if any, and apply the patches after it. The patches needed must still be in the log.
+     * <p>
+     * The dataset is built in a temporary TDB2 database, not in memory, and written from
+     * there to the snapshot file.
+     */
+    @Override
+    public SnapshotInfo createSnapshot(Id dsRef) {
+        checkLink();
+        SnapshotStore snapshots = requireSnapshots();
+        DataSource source = getDataSource(dsRef);
+        PatchLog patchLog = source.acquire();
+        try {
+            return createSnapshot(snapshots, source, patchLog);
+        } finally { source.release(); }
+    }
+
+    private SnapshotInfo createSnapshot(SnapshotStore snapshots, DataSource source, PatchLog patchLog) {
+        Id dsRef = source.getId();
+        if ( patchLog.isEmpty() )
+            throw new DeltaBadRequestException("Empty patch log: "+source);
+        // Fix the version, and its id, to snapshot.
+        PatchLogInfo logInfo = patchLog.getInfo();
+        Version version = logInfo.getMaxVersion();
+        Id patchId = logInfo.getLatestPatch();
+
+        SnapshotInfo existing = getSnapshot(dsRef, version);
+        if ( existing != null && existing.getVersion().equals(version) )
+            return existing;
+
+        Version start = ( existing == null ) ? Version.FIRST : existing.getVersion().inc();
+        if ( ! start.isAfter(version) && patchLog.isTruncated(start) )
+            throw new DeltaTruncatedException(String.format("createSnapshot: Version %s has been removed from the log: earliest version is %s",
+                                                            start, patchLog.getEarliestVersion()));
+        Path workArea = snapshots.newWorkArea();
+        DatasetGraph dsg = DatabaseMgr.connectDatasetGraph(workArea.toString());
+        try {
+            if ( existing != null ) {
+                Lang lang = RDFLanguages.contentTypeToLang(existing.getContentType());
+                try ( InputStream in = snapshots.open(dsRef, existing.getVersion()) ) {
+                    Txn.executeWrite(dsg, ()->RDFParser.source(in).lang(lang).parse(dsg));
+                } catch (IOException ex) { throw IOX.exception(ex); }
+            }
+            if ( ! start.isAfter(version) ) {
+                // The patches have their own transaction markers; commit every few patches.
+                RDFChanges apply = new RDFChangesExternalTxn(new RDFChangesApply(dsg));
+                try ( Stream<RDFPatch> patches = patchLog.range(start, version) ) {
+                    Iterator<RDFPatch> iter = patches.iterator();
+                    while ( iter.hasNext() ) {
+                        Txn.executeWrite(dsg, ()->{
+                            for ( int i = 0 ; i < SNAPSHOT_BATCH && iter.hasNext() ; i++ )
+                                iter.next().apply(apply);
+                        });
+                    }
+                }
+            }
+            SnapshotInfo info = Txn.calculateRead(dsg, ()->
+                snapshots.write(dsRef, version, patchId, WebContent.contentTypeRDFThrift,
+                                out->RDFDataMgr.write(out, dsg, RDFFormat.RDF_THRIFT)));
+            FmtLog.info(LOG, "createSnapshot: Dest=%s, %s", source, version);
+            return info;
+        } finally {
+            TDBInternal.expel(dsg);
+            snapshots.deleteWorkArea(workArea);
+        }
+    }
+
+    @Override
+    public SnapshotInfo addSnapshot(Id dsRef, Version version, InputStream data, String contentType) {
+        checkLink();
+        SnapshotStore snapshots = requireSnapshots();
+        DataSource source = getDataSource(dsRef);
+        if ( ! SnapshotStore.isSupported(contentType) )
+            throw new DeltaBadRequestException("Snapshots must be N-Quads or RDF Thrift: "+contentType);
+        Id patchId;
+        PatchLog patchLog = source.acquire();
+        try {
+            patchId = patchLog.find(version);
+        } finally { source.release(); }
+        if ( patchId == null )
+            throw new DeltaBadRequestException("No patch in the log at version "+version);
+        SnapshotInfo info = snapshots.write(dsRef, version, patchId, contentType, out->data.transferTo(out));
+        FmtLog.info(LOG, "addSnapshot: Dest=%s, %s", source, version);
+        return info;
+    }
+
+    private SnapshotStore requireSnapshots() {
+        SnapshotStore snapshots = localServer.getSnapshotStore();
+        if ( snapshots == null )
+            throw new DeltaBadRequestException("Snapshots not enabled on this server");
+        return snapshots;
+    }
+
     private <X> void event(Consumer<DeltaLinkListener> action) {
         listeners.forEach(action);
     }
@@ -333,10 +738,81 @@ public class DeltaLinkLocal implements DeltaLink {
         DataSource source = getDataSource(datasourceId);
         if ( source == null )
             return null;
-        Id session = source.getPatchLog().acquireLock();
+        PatchLog patchLog = source.acquire();
+        try {
+            return patchLog.acquireLock();
+        } finally { source.release(); }
+    }
+
+    /** Wait for the lock, in turn with other waiting requests. */
+    @Override
+    public Id acquireLock(Id datasourceId, long timeoutMillis) {
+        Objects.requireNonNull(datasourceId);
+        checkLink();
+        DataSource source = getDataSource(datasourceId);
+        if ( source == null )
+            return null;
+        long start = System.nanoTime();
+        Id session;
+        PatchLog patchLog = source.acquire();
+        try {
+            session = patchLog.acquireLock(timeoutMillis);
+        } finally { source.release(); }
+        long waitNanos = System.nanoTime() - start;
+        lockWaitCount.increment();
+        lockWaitNanos.add(waitNanos);
+        if ( session == null )
+            lockWaitTimeouts.increment();
         return session;
     }
 
+    /**
+     * Wait for the lock without holding a thread, in turn with other waiting requests:
+     * {@code action} is called with the lock session when the lock is given to this
+     * request, possibly before this method returns. Cancel the returned
+     * {@link LockWaiter} to stop waiting.
+     */
+    public LockWaiter acquireLock(Id datasourceId, Consumer<Id> action) {
+        Objects.requireNonNull(datasourceId);
+        checkLink();
+        DataSource source = getDataSource(datasourceId);
+        long start = System.nanoTime();
+        // The patch log must stay open while waiting.
+        PatchLog patchLog = source.acquire();
+        LockWaiter waiter = new LockWaiter(action) {
+            @Override
+            protected void finish() {
+                source.release();
+                lockWaitCount.increment();
+                lockWaitNanos.add(System.nanoTime() - start);
+                if ( getSession() == null )
+                    lockWaitTimeouts.increment();
+            }
+        };
+        try {
+            patchLog.acquireLock(waiter);
+        } catch (RuntimeException ex) {
+            waiter.cancel();
+            throw ex;
+        }
+        return waiter;
+    }
+
+    /** Number of requests that have waited for a patch log lock. */
+    public long getLockWaitCount() {
+        return lockWaitCount.longValue();
+    }
+
+    /** Number of requests that waited for a patch log lock and did not get it. */
+    public long getLockWaitTimeouts() {
+        return lockWaitTimeouts.longValue();
+    }
+
+    /** Total time, in seconds, requests have waited for patch log locks. */
+    public double getLockWaitSeconds() {
+        return lockWaitNanos.doubleValue() / 1e9;
+    }
+
     @Override
     public boolean refreshLock(Id datasourceId, Id session) {
         Objects.requireNonNull(datasourceId);
@@ -345,24 +821,41 @@ public class DeltaLinkLocal implements DeltaLink {
         DataSource source = getDataSourceOrNull(datasourceId);
         if ( source == null )
             return false;
-        boolean status = source.getPatchLog().refreshLock(session);
-        return status;
+        PatchLog patchLog = source.acquire();
+        try {
+            return patchLog.refreshLock(session);
+        } finally { source.release(); }
     }
 
-//    @Override
-//    public Set<Id> refreshLocks(Set<Id> lockSet) {
-//        //Need Id -> datasource.
-//        // TEMP
-//        LOG.warn("refreshLocks - implementation required");
-//        return Collections.emptySet();
-//    }
+    @Override
+    public Set<Id> refreshLocks(Map<Id, Id> locks) {
+        Objects.requireNonNull(locks);
+        checkLink();
+        Set<Id> failed = new HashSet<>();
+        locks.forEach((datasourceId, session)->{
+            DataSource source = getDataSourceOrNull(datasourceId);
+            if ( source == null ) {
+                failed.add(datasourceId);
+                return;
+            }
+            PatchLog patchLog = source.acquire();
+            try {
+                if ( ! patchLog.refreshLock(session) )
+                    failed.add(datasourceId);
+            } finally { source.release(); }
+        });
+        return failed;
+    }
 
     @Override
     public LockState readLock(Id datasourceId) {
         Objects.requireNonNull(datasourceId);
         checkLink();
         DataSource source = getDataSource(datasourceId);
-        return source.getPatchLog().readLock();
+        PatchLog patchLog = source.acquire();
+        try {
+            return patchLog.readLock();
+        } finally { source.release(); }
     }
 
     @Override
@@ -371,7 +864,10 @@ public class DeltaLinkLocal implements DeltaLink {
         Objects.requireNonNull(oldSession);
         checkLink();
         DataSource source = getDataSource(datasourceId);
-        return source.getPatchLog().grabLock(oldSession);
+        PatchLog patchLog = source.acquire();
+        try {
+            return patchLog.grabLock(oldSession);
+        } finally { source.release(); }
     }
 
     @Override
@@ -382,7 +878,9 @@ public class DeltaLinkLocal implements DeltaLink {
         DataSource source = getDataSourceOrNull(datasourceId);
         if ( source == null )
             return;
-        PatchLog log = source.getPatchLog();
-        log.releaseLock(session);
+        PatchLog patchLog = source.acquire();
+        try {
+            patchLog.releaseLock(session);
+        } finally { source.release(); }
     }
 }
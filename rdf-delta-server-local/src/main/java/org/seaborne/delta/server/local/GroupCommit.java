@@ -0,0 +1,169 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server.local;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.seaborne.delta.DeltaException;
+
+/**
+ * Group commit: appends that arrive within a short window share the work of making
+ * their writes durable.
+ * <p>
+ * An append writes the patch and updates the log index (without forcing to disk), then
+ * registers the actions that make those writes durable, while holding the patch log lock.
+ * The append waits, after releasing the patch log lock, for the {@link Batch} it is in to
+ * be synced before returning to the caller. The first appender to wait becomes the leader:
+ * it waits for the window, closes the batch and runs the sync actions. Actions are keyed,
+ * and an action common to several appends in a batch, such as syncing a database's
+ * write-ahead log or a directory, is run once.
+ * <p>
+ * Batches are synced in order, one at a time, so patches in a log become durable in
+ * log order. A patch may be visible to readers shortly before it is durable; the appender
+ * is not told the append has succeeded until it is durable.
+ */
+public class GroupCommit {
+    private final long windowNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition batchDone = lock.newCondition();
+    // The batch accepting sync actions.
+    private Batch current = new Batch();
+    // Whether a leader is syncing a batch.
+    private boolean leaderActive = false;
+
+    private final LongAdder countBatches = new LongAdder();
+    private final LongAdder countActions = new LongAdder();
+
+    /** A group of sync actions, run together. */
+    public static class Batch {
+        private final Map<Object, Runnable> actions = new LinkedHashMap<>();
+        private boolean done = false;
+        private RuntimeException failure = null;
+        private Batch() {}
+    }
+
+    /** Group commit, with the window in milliseconds. A window of zero means "sync now". */
+    public GroupCommit(long windowMillis) {
+        if ( windowMillis < 0 )
+            throw new IllegalArgumentException("Negative group commit window: "+windowMillis);
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+    }
+
+    /**
+     * Add a sync action to the current batch and return the batch. If there is already an
+     * action with the same key in the batch, the new action is not added.
+     */
+    public Batch register(Object key, Runnable syncAction) {
+        lock.lock();
+        try {
+            current.actions.putIfAbsent(key, syncAction);
+            return current;
+        } finally { lock.unlock(); }
+    }
+
+    /**
+     * Wait until the batch has been synced, becoming the leader for the current batch if
+     * there isn't one. Throws {@link DeltaException} if a sync action for the batch failed.
+     */
+    public void await(Batch batch) {
+        if ( batch == null )
+            return;
+        lock.lock();
+        try {
+            while ( ! batch.done ) {
+                if ( leaderActive ) {
+                    batchDone.awaitUninterruptibly();
+                    continue;
+                }
+                leaderActive = true;
+                Batch syncBatch;
+                lock.unlock();
+                try {
+                    // Wait for other appends to join the batch.
+                    if ( windowNanos > 0 )
+                        sleepNanos(windowNanos);
+                } finally {
+                    lock.lock();
+                }
+                syncBatch = current;
+                current = new Batch();
+                lock.unlock();
+                RuntimeException failure = null;
+                try {
+                    runActions(syncBatch);
+                } catch (RuntimeException ex) {
+                    failure = ex;
+                } finally {
+                    lock.lock();
+                }
+                syncBatch.failure = failure;
+                syncBatch.done = true;
+                leaderActive = false;
+                batchDone.signalAll();
+            }
+            if ( batch.failure != null )
+                throw new DeltaException("Group commit: failed to sync", batch.failure);
+        } finally { lock.unlock(); }
+    }
+
+    private void runActions(Batch batch) {
+        countBatches.increment();
+        countActions.add(batch.actions.size());
+        // Run all the actions even if one fails.
+        RuntimeException failure = null;
+        for ( Runnable action : batch.actions.values() ) {
+            try {
+                action.run();
+            } catch (RuntimeException ex) {
+                if ( failure == null )
+                    failure = ex;
+            }
+        }
+        if ( failure != null )
+            throw failure;
+    }
+
+    private static void sleepNanos(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Number of batches synced. */
+    public long getBatches() {
+        return countBatches.longValue();
+    }
+
+    /** Number of sync actions run; fewer than the number of appends when actions are shared. */
+    public long getActions() {
+        return countActions.longValue();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("GroupCommit[window=%dms, batches=%d, actions=%d]",
+                             TimeUnit.NANOSECONDS.toMillis(windowNanos), getBatches(), getActions());
+    }
+}
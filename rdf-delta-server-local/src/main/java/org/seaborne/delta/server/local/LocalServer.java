@@ -19,9 +19,14 @@ package org.seaborne.delta.server.local;
 
 import static org.seaborne.delta.DeltaOps.verString;
 
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors ;
@@ -79,6 +84,13 @@ public class LocalServer {
     // However, a patch log from the DataSourceRegistry may be a different patch store,
     // for example, if a choice when created has been made.
     private final PatchStore serverPatchStore;
+    // Snapshots of the data of patch logs. Null if the server does not keep snapshots.
+    private final SnapshotStore snapshotStore;
+
+    // Closes idle patch logs. Null if patch logs are not closed when idle.
+    private ScheduledExecutorService idleCloser = null;
+    // Number of patch logs closed because they were idle.
+    private final AtomicLong idleClosedCount = new AtomicLong(0);
 
     /** Create a {@code LocalServer} based on a configuration. */
     public static LocalServer create(LocalServerConfig conf) {
@@ -140,7 +152,7 @@ public class LocalServer {
         ps.initialize(dataSourceRegistry, config);
 
         List<DataSourceDescription> descriptions = ps.initialDataSources();
-        descriptions.forEach(dsd->ps.createLog(dsd));
+        ps.openInitialLogs(descriptions);
 
         FmtLog.info(Delta.DELTA_LOG, "Provider: %s", ps.getProvider().getShortName());
         if ( Delta.DELTA_LOG.isDebugEnabled() )
@@ -155,6 +167,8 @@ public class LocalServer {
         this.serverConfig = config;
         this.dataSourceRegistry = dataSourceRegistry;
         this.serverPatchStore = patchStore;
+        String snapshots = config.getSnapshotLocation();
+        this.snapshotStore = ( snapshots == null ) ? null : new SnapshotStore(Path.of(snapshots));
         // For multiple local servers in one process.
         this.label = "ls-"+instancecounter.incrementAndGet();
     }
@@ -168,6 +182,11 @@ public class LocalServer {
         else {
             sources.sort( (ds1, ds2)-> ds1.getName().compareTo(ds2.getName()) );
             sources.forEach(ds->{
+                if ( ! ds.isOpen() ) {
+                    // Lazy opening - do not open just to log it.
+                    FmtLog.info(Delta.DELTA_LOG, "  Data source: %s (not open)", ds.getDescription());
+                    return;
+                }
                 PatchLogInfo info = ds.getPatchLog().getInfo();
                 String providerTypeName = ds.getPatchStore().getProvider().getShortName();
 
@@ -183,9 +202,70 @@ public class LocalServer {
     public LocalServer start() {
         serverPatchStore.serverStarts();
         active.set(true);
+        startIdleClose();
         return this;
     }
 
+    private void startIdleClose() {
+        long idleSeconds = serverConfig.getIdleClose();
+        if ( idleSeconds <= 0 )
+            return;
+        // Check often enough that a log is not kept open for much longer than the idle time.
+        long period = Math.max(1, Math.min(60, idleSeconds/2));
+        idleCloser = Executors.newSingleThreadScheduledExecutor(r->{
+            Thread thread = new Thread(r, "PatchLogIdle-"+label);
+            thread.setDaemon(true);
+            return thread;
+        });
+        idleCloser.scheduleWithFixedDelay(()->{
+            try {
+                closeIdleLogs(idleSeconds);
+            } catch (Throwable th) {
+                FmtLog.warn(LOG, "[%s] Exception closing idle patch logs: %s", label, th.getMessage());
+            }
+        }, period, period, TimeUnit.SECONDS);
+        FmtLog.info(Delta.DELTA_LOG, "Close patch logs idle for %ds", idleSeconds);
+    }
+
+    /**
+     * Close the patch logs that have not been used for {@code idleSeconds}, releasing
+     * their storage and in-memory index. A closed patch log is opened again when it is
+     * next used. Patch logs that are locked, or can not be reopened (in-memory patch
+     * logs), are not closed. Return the number of patch logs closed.
+     */
+    public int closeIdleLogs(long idleSeconds) {
+        long idleSince = System.nanoTime() - TimeUnit.SECONDS.toNanos(idleSeconds);
+        int count = 0;
+        // Not during create, copy, rename or remove of a data source.
+        synchronized(serverLock) {
+            for ( DataSource ds : dataSourceRegistry.dataSources().toList() ) {
+                if ( ds.closeIfIdle(serverPatchStore, idleSince) )
+                    count++;
+            }
+        }
+        if ( count > 0 ) {
+            idleClosedCount.addAndGet(count);
+            FmtLog.info(LOG, "[%s] Closed %d idle patch log(s) : open=%d closed=%d",
+                        label, count, countOpenLogs(), countClosedLogs());
+        }
+        return count;
+    }
+
+    /** Number of patch logs that are open. */
+    public int countOpenLogs() {
+        return (int)dataSourceRegistry.dataSources().filter(DataSource::isOpen).count();
+    }
+
+    /** Number of patch logs that are known to the server but not open (lazy opening, or closed when idle). */
+    public int countClosedLogs() {
+        return (int)dataSourceRegistry.dataSources().filter(ds->!ds.isOpen()).count();
+    }
+
+    /** Total number of patch logs closed because they were idle. */
+    public long getIdleClosedCount() {
+        return idleClosedCount.get();
+    }
+
     public void shutdown() {
         active.set(false);
         serverPatchStore.shutdown();
@@ -198,6 +278,10 @@ public class LocalServer {
     }
 
     private void shutdown$() {
+        if ( idleCloser != null ) {
+            idleCloser.shutdownNow();
+            idleCloser = null;
+        }
         dataSourceRegistry.clear();
         getPatchStore().shutdown();
     }
@@ -233,6 +317,11 @@ public class LocalServer {
         serverPatchStore.sync();
     }
 
+    /** The snapshots of the data of patch logs, or null if the server does not keep snapshots. */
+    public SnapshotStore getSnapshotStore() {
+        return snapshotStore;
+    }
+
     public PatchStore getPatchStore() {
         return serverPatchStore;
     }
@@ -306,6 +395,18 @@ public class LocalServer {
         return x;
       }
 
+    /**
+     * The patch logs that have changed since the request that returned {@code token};
+     * the token is null for the first request.
+     */
+    public PatchLogChanges listPatchLogChanges(String token) {
+        checkActive();
+        return dataSourceRegistry.getLogChanges().changesSince(token, this::listPatchLogInfo, dsRef->{
+            DataSource ds = dataSourceRegistry.get(dsRef);
+            return ( ds == null ) ? null : ds.getPatchLog().getInfo();
+        });
+    }
+
     /**
      * Create a new data source in the default {@link PatchStore}. This can not
      * be one that has been removed (i.e disabled) whose files must be cleaned
@@ -17,7 +17,13 @@
 
 package org.seaborne.delta.server.local;
 
+import static org.seaborne.delta.DeltaConst.F_GROUP_COMMIT;
+import static org.seaborne.delta.DeltaConst.F_IDLE_CLOSE;
 import static org.seaborne.delta.DeltaConst.F_LOG_TYPE;
+import static org.seaborne.delta.DeltaConst.F_OPEN_LAZY;
+import static org.seaborne.delta.DeltaConst.F_OPEN_THREADS;
+import static org.seaborne.delta.DeltaConst.F_PATCH_CACHE;
+import static org.seaborne.delta.DeltaConst.F_SNAPSHOTS;
 import static org.seaborne.delta.DeltaConst.F_STORE;
 import static org.seaborne.delta.DeltaConst.F_VERSION;
 import static org.seaborne.delta.DeltaConst.SYSTEM_VERSION ;
@@ -30,6 +36,7 @@ import java.util.Properties;
 
 import org.apache.jena.atlas.json.JSON;
 import org.apache.jena.atlas.json.JsonObject;
+import org.apache.jena.atlas.json.JsonValue;
 import org.seaborne.delta.Delta;
 import org.seaborne.delta.DeltaConfigException;
 import org.seaborne.delta.DeltaConst;
@@ -72,6 +79,76 @@ public class LocalServerConfig {
         return properties.getProperty(key);
     }
 
+    /** Size, in bytes, of the server-wide patch cache. */
+    public long getPatchCacheSize() {
+        String x = properties.getProperty(DeltaConst.pDeltaPatchCache);
+        if ( x == null )
+            return DeltaConst.PATCH_CACHE_SIZE;
+        try {
+            return Long.parseLong(x);
+        } catch (NumberFormatException ex) {
+            throw new DeltaConfigException("Bad value for "+DeltaConst.pDeltaPatchCache+": "+x);
+        }
+    }
+
+    /**
+     * Group commit window, in milliseconds, or -1 if appends are not made durable by
+     * group commit.
+     */
+    public long getGroupCommitWindow() {
+        String x = properties.getProperty(DeltaConst.pDeltaGroupCommit);
+        if ( x == null )
+            return -1;
+        try {
+            return Long.parseLong(x);
+        } catch (NumberFormatException ex) {
+            throw new DeltaConfigException("Bad value for "+DeltaConst.pDeltaGroupCommit+": "+x);
+        }
+    }
+
+    /** Number of threads used to open the patch logs when the server starts. */
+    public int getOpenThreads() {
+        String x = properties.getProperty(DeltaConst.pDeltaOpenThreads);
+        if ( x == null )
+            return Math.min(8, Runtime.getRuntime().availableProcessors());
+        try {
+            return Integer.parseInt(x);
+        } catch (NumberFormatException ex) {
+            throw new DeltaConfigException("Bad value for "+DeltaConst.pDeltaOpenThreads+": "+x);
+        }
+    }
+
+    /** Whether patch logs are opened on first use rather than when the server starts. */
+    public boolean isOpenLazy() {
+        String x = properties.getProperty(DeltaConst.pDeltaOpenLazy);
+        if ( x == null )
+            return false;
+        return Boolean.parseBoolean(x.trim());
+    }
+
+    /**
+     * Time, in seconds, after which a patch log that has not been used is closed.
+     * Returns 0 for "never close".
+     */
+    public long getIdleClose() {
+        String x = properties.getProperty(DeltaConst.pDeltaIdleClose);
+        if ( x == null )
+            return 0;
+        try {
+            long seconds = Long.parseLong(x.trim());
+            if ( seconds < 0 )
+                throw new DeltaConfigException("Bad value for "+DeltaConst.pDeltaIdleClose+": "+x);
+            return seconds;
+        } catch (NumberFormatException ex) {
+            throw new DeltaConfigException("Bad value for "+DeltaConst.pDeltaIdleClose+": "+x);
+        }
+    }
+
+    /** Directory for snapshots of the data of patch logs, or null if the server does not keep snapshots. */
+    public String getSnapshotLocation() {
+        return properties.getProperty(DeltaConst.pDeltaSnapshots);
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -138,6 +215,54 @@ public class LocalServerConfig {
             return this;
         }
 
+        /** Set the size, in bytes, of the server-wide patch cache. 0 means "no cache". */
+        public Builder setPatchCacheSize(long bytes) {
+            if ( bytes < 0 )
+                throw new IllegalArgumentException("Negative patch cache size: "+bytes);
+            return setProperty(DeltaConst.pDeltaPatchCache, Long.toString(bytes));
+        }
+
+        /**
+         * Make appends durable, with appends arriving within {@code windowMillis} sharing
+         * the sync operations. 0 means sync each append without waiting for others.
+         */
+        public Builder setGroupCommit(long windowMillis) {
+            if ( windowMillis < 0 )
+                throw new IllegalArgumentException("Negative group commit window: "+windowMillis);
+            return setProperty(DeltaConst.pDeltaGroupCommit, Long.toString(windowMillis));
+        }
+
+        /** Set the number of threads used to open the patch logs when the server starts. */
+        public Builder setOpenThreads(int threads) {
+            if ( threads < 1 )
+                throw new IllegalArgumentException("Open threads must be at least 1: "+threads);
+            return setProperty(DeltaConst.pDeltaOpenThreads, Integer.toString(threads));
+        }
+
+        /**
+         * Open patch logs on first use. The server knows about the logs when it starts
+         * but does not read them until needed.
+         */
+        public Builder setOpenLazy(boolean lazy) {
+            return setProperty(DeltaConst.pDeltaOpenLazy, Boolean.toString(lazy));
+        }
+
+        /**
+         * Close patch logs that have not been used for {@code seconds}; they are
+         * opened again on next use. 0 means "never close".
+         */
+        public Builder setIdleClose(long seconds) {
+            if ( seconds < 0 )
+                throw new IllegalArgumentException("Negative idle time: "+seconds);
+            return setProperty(DeltaConst.pDeltaIdleClose, Long.toString(seconds));
+        }
+
+        /** Keep snapshots of the data of patch logs in the directory {@code location}. */
+        public Builder setSnapshotLocation(String location) {
+            Objects.requireNonNull(location);
+            return setProperty(DeltaConst.pDeltaSnapshots, location);
+        }
+
         public Builder jettyConfigFile(String jettyConfigFile) {
             this.jettyConfigFile  = jettyConfigFile;
             return this;
@@ -190,13 +315,36 @@ public class LocalServerConfig {
                 if ( storeLocation != null )
                     setProperty(DeltaConst.pDeltaStore, storeLocation.toString());
             }
+            // -- patch cache
+            long patchCache = JSONX.getLong(obj, F_PATCH_CACHE, -1);
+            if ( patchCache >= 0 )
+                setPatchCacheSize(patchCache);
+            // -- group commit
+            long groupCommit = JSONX.getLong(obj, F_GROUP_COMMIT, -1);
+            if ( groupCommit >= 0 )
+                setGroupCommit(groupCommit);
+            // -- opening patch logs
+            int openThreads = JSONX.getInt(obj, F_OPEN_THREADS, -1);
+            if ( openThreads >= 1 )
+                setOpenThreads(openThreads);
+            if ( obj.hasKey(F_OPEN_LAZY) ) {
+                JsonValue v = obj.get(F_OPEN_LAZY);
+                setOpenLazy(v.isBoolean() ? v.getAsBoolean().value() : Boolean.parseBoolean(v.toString()));
+            }
+            long idleClose = JSONX.getLong(obj, F_IDLE_CLOSE, -1);
+            if ( idleClose >= 0 )
+                setIdleClose(idleClose);
+            // -- snapshots, relative to the config file.
+            String snapshots = JSONX.getStrOrNull(obj, F_SNAPSHOTS);
+            if ( snapshots != null )
+                setSnapshotLocation(path.getParent().resolve(snapshots).toString());
             // TODO -- General properties.
             return this;
         }
 
         private static boolean isLocalProvider(Provider provider) {
             switch(provider) {
-                case LOCAL: case FILE: case ROCKS: return true;
+                case LOCAL: case FILE: case ROCKS: case SEGMENT: return true;
                 default: return false;
             }
         }
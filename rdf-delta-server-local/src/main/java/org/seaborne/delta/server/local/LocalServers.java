@@ -73,6 +73,20 @@ public class LocalServers {
             .build();
     }
 
+    /** {@link LocalServerConfig} for a {@link LocalServer} with a segment file patch store. */
+    public static LocalServerConfig configSegment(String directory) {
+        return configSegment(directory, null);
+    }
+
+    /** {@link LocalServerConfig} for a {@link LocalServer} with a segment file patch store. */
+    public static LocalServerConfig configSegment(String directory, String jettyConf) {
+        return LocalServerConfig.create()
+            .setProperty(DeltaConst.pDeltaStore, directory)
+            .setLogProvider(Provider.SEGMENT)
+            .jettyConfigFile(jettyConf)
+            .build();
+    }
+
     /** {@link LocalServerConfig} for a {@link LocalServer} with a memory-based patch store. */
     public static LocalServerConfig configMem() {
         return configMem(null);
@@ -0,0 +1,85 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server.local;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import org.seaborne.delta.Id;
+
+/**
+ * A request, registered with {@link PatchLog#acquireLock(LockWaiter)}, for the patch log
+ * lock. Waiters get the lock in turn. The waiter does not hold a thread: the action is
+ * called, with the lock session, by the thread that releases the lock to this waiter.
+ * <p>
+ * A waiter finishes once, either by being given the lock or by being cancelled.
+ */
+public class LockWaiter {
+    private final Consumer<Id> action;
+    private final AtomicBoolean done = new AtomicBoolean(false);
+    private volatile Id session = null;
+
+    public LockWaiter(Consumer<Id> action) {
+        this.action = action;
+    }
+
+    /** Whether the waiter has been given the lock or has been cancelled. */
+    public boolean isDone() {
+        return done.get();
+    }
+
+    /** The lock session given to this waiter, or null. */
+    public Id getSession() {
+        return session;
+    }
+
+    /**
+     * Used by the lock manager: take the waiter to give it the lock. Return false if
+     * the waiter has already finished, in which case the lock must not be given to it.
+     */
+    public boolean claim() {
+        return done.compareAndSet(false, true);
+    }
+
+    /** Used by the lock manager: the lock has been given to a claimed waiter. */
+    public void grant(Id lockSession) {
+        this.session = lockSession;
+        try {
+            action.accept(lockSession);
+        } finally { finish(); }
+    }
+
+    /**
+     * Cancel the waiter, unless it has already finished or been claimed.
+     * Return true if the waiter was cancelled, and will not be given the lock.
+     */
+    public boolean cancel() {
+        if ( ! done.compareAndSet(false, true) )
+            return false;
+        finish();
+        return true;
+    }
+
+    /** Called once, after the waiter has been given the lock or has been cancelled. */
+    protected void finish() {}
+
+    @Override
+    public String toString() {
+        return "LockWaiter["+(isDone() ? "done" : "waiting")+"]";
+    }
+}
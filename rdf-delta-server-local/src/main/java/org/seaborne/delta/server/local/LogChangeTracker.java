@@ -0,0 +1,128 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server.local;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.seaborne.delta.Id;
+import org.seaborne.delta.PatchLogChanges;
+import org.seaborne.delta.PatchLogInfo;
+
+/**
+ * Track changes to the patch logs of a {@link LocalServer} so that a client can ask for
+ * the logs that have changed since it last asked.
+ * <p>
+ * Changes are recorded as they happen: the {@link DataSourceRegistry} records logs
+ * created and deleted, and a patch log records appends and truncation. Each change is
+ * given the next number in a sequence; a token is the sequence number when the request
+ * that returned it was answered, together with a marker for this run of the server.
+ * A request only looks at the logs that have changed since its token. Changes made by
+ * another server sharing the patch store are not seen until this server registers
+ * them.
+ * <p>
+ * Deleted logs are remembered up to a limit; a token older than the oldest deletion
+ * forgotten gets a complete listing.
+ */
+class LogChangeTracker {
+    private static final int MAX_REMOVED = 1000;
+    // Tokens from another run of the server are not valid.
+    private final String epoch = Id.create().asPlainString();
+    private long sequence = 0;
+    // Tokens before this may have missed a deletion that is no longer recorded.
+    private long validFrom = 0;
+    // In sequence order: an entry is moved to the end when it changes.
+    private final SequencedMap<Id, Long> changedAt = new LinkedHashMap<>();
+    private final SequencedMap<Id, Long> removedAt = new LinkedHashMap<>();
+
+    LogChangeTracker() {}
+
+    /** Record that a log has been created, or its contents have changed. */
+    synchronized void changed(Id dsRef) {
+        sequence++;
+        removedAt.remove(dsRef);
+        changedAt.remove(dsRef);
+        changedAt.put(dsRef, sequence);
+    }
+
+    /** Record that a log has been deleted. */
+    synchronized void removed(Id dsRef) {
+        sequence++;
+        changedAt.remove(dsRef);
+        removedAt.remove(dsRef);
+        removedAt.put(dsRef, sequence);
+        if ( removedAt.size() > MAX_REMOVED )
+            validFrom = removedAt.pollFirstEntry().getValue();
+    }
+
+    /**
+     * The changes since {@code token}. The {@link PatchLogInfo} of each changed log is
+     * got from {@code logInfo}, which returns null if the log no longer exists; a
+     * request without a valid token is answered with {@code allLogs}.
+     */
+    PatchLogChanges changesSince(String token, Supplier<List<PatchLogInfo>> allLogs, Function<Id, PatchLogInfo> logInfo) {
+        long since;
+        String nextToken;
+        List<Id> changedIds = new ArrayList<>();
+        List<Id> removed = new ArrayList<>();
+        synchronized(this) {
+            since = parseToken(token);
+            nextToken = epoch+":"+sequence;
+            if ( since >= 0 ) {
+                recent(changedAt, since, changedIds);
+                recent(removedAt, since, removed);
+            }
+        }
+        // A change after the token was made and before the information is read is
+        // reported again on the next request.
+        if ( since < 0 )
+            return new PatchLogChanges(nextToken, allLogs.get(), List.of(), true);
+        List<PatchLogInfo> changed = new ArrayList<>(changedIds.size());
+        for ( Id dsRef : changedIds ) {
+            PatchLogInfo info = logInfo.apply(dsRef);
+            if ( info != null )
+                changed.add(info);
+        }
+        return new PatchLogChanges(nextToken, changed, removed, false);
+    }
+
+    /** Add the keys of entries after {@code since}, working back from the latest. */
+    private static void recent(SequencedMap<Id, Long> map, long since, List<Id> acc) {
+        for ( Map.Entry<Id, Long> e : map.reversed().entrySet() ) {
+            if ( e.getValue() <= since )
+                break;
+            acc.add(e.getKey());
+        }
+    }
+
+    /** The sequence number of a token, or -1 if it is not a valid token from this run of the server. */
+    private long parseToken(String token) {
+        if ( token == null )
+            return -1;
+        int idx = token.lastIndexOf(':');
+        if ( idx < 0 || ! epoch.equals(token.substring(0, idx)) )
+            return -1;
+        try {
+            long seq = Long.parseLong(token.substring(idx+1));
+            return ( seq < validFrom || seq > sequence ) ? -1 : seq;
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+}
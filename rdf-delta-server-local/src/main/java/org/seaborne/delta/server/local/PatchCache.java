@@ -17,43 +17,216 @@
 
 package org.seaborne.delta.server.local;
 
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.jena.graph.Node;
-import org.seaborne.delta.Id;
 import org.apache.jena.rdfpatch.RDFPatch;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.apache.jena.rdfpatch.changes.RDFChangesBase;
+import org.seaborne.delta.Id;
+import org.seaborne.delta.Version;
 
-/** Server-wide cache of patches */
+/**
+ * Server-wide cache of patches.
+ * <p>
+ * Patches are keyed by (log, patch id) and, when known, also by (log, version). The
+ * cache is bounded by an estimate of the space used by the patches ("weight"), not the
+ * number of patches; least recently used patches are dropped first.
+ * A capacity of zero disables the cache.
+ */
 public class PatchCache {
-    private static Logger  LOG     = LoggerFactory.getLogger(PatchCache.class);
 
-//    private Cache<Node, RDFPatch> patchCache;
-//    private PatchCache() {
-//        patchCache = CacheFactory.createCache(DPConst.PATCH_CACHE_SIZE);
-//        patchCache.setDropHandler((node,patch)->LOG.info("Cache drop patch: "+Id.fromNode(node)));
-//    }
+    private final long capacity;
+    private long weight = 0;
+
+    // Access order - LRU.
+    private final LinkedHashMap<Key, Entry> byId = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<Key, Key> byVersion = new HashMap<>();
 
-    private ConcurrentHashMap<Node, RDFPatch> patchCache;
-    private PatchCache() {
-        patchCache = new ConcurrentHashMap<>();
-        //patchCache.setDropHandler((node,patch)->LOG.info("Cache drop patch: "+Id.fromNode(node)));
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public PatchCache(long capacity) {
+        if ( capacity < 0 )
+            throw new IllegalArgumentException("Negative capacity: "+capacity);
+        this.capacity = capacity;
     }
-    private static PatchCache singleton = new PatchCache();
 
-    private static  PatchCache get() { return singleton ; }
+    /** Get a patch by log and version; return null if not in the cache. */
+    public RDFPatch get(Id logId, Version version) {
+        if ( capacity == 0 )
+            return null;
+        synchronized(this) {
+            Key k = byVersion.get(new Key(logId, version.value()));
+            return lookup(k);
+        }
+    }
 
-    public RDFPatch get(Id id) {
-        //return patchCache.getIfPresent(id.asNode());
-        return patchCache.get(id.asNode());
+    /** Get a patch by log and patch id; return null if not in the cache. */
+    public RDFPatch get(Id logId, Id patchId) {
+        if ( capacity == 0 )
+            return null;
+        synchronized(this) {
+            return lookup(new Key(logId, patchId));
+        }
     }
 
-    public void put(Id id, RDFPatch patch) {
-        put(id.asNode(), patch);
+    private RDFPatch lookup(Key key) {
+        Entry e = ( key == null ) ? null : byId.get(key);
+        if ( e == null ) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return e.patch;
     }
 
-    public void put(Node node, RDFPatch patch) {
-        patchCache.put(node, patch);
+    /**
+     * Add a patch. The version may be null if not known.
+     * Patches that can not be replayed are not cached.
+     */
+    public void put(Id logId, Version version, Id patchId, RDFPatch patch) {
+        Objects.requireNonNull(logId);
+        Objects.requireNonNull(patchId);
+        if ( capacity == 0 || patch == null || ! patch.repeatable() )
+            return;
+        long w = weigh(patch);
+        if ( w > capacity )
+            return;
+        Key key = new Key(logId, patchId);
+        Key vKey = Version.isValid(version) ? new Key(logId, version.value()) : null;
+        synchronized(this) {
+            Entry e = byId.get(key);
+            if ( e != null ) {
+                // Already present. Record the version if not known before.
+                if ( e.versionKey == null && vKey != null ) {
+                    e.versionKey = vKey;
+                    byVersion.put(vKey, key);
+                }
+                return;
+            }
+            byId.put(key, new Entry(patch, w, vKey));
+            if ( vKey != null )
+                byVersion.put(vKey, key);
+            weight += w;
+            evict();
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Key, Entry>> iter = byId.entrySet().iterator();
+        while ( weight > capacity && iter.hasNext() ) {
+            Map.Entry<Key, Entry> item = iter.next();
+            iter.remove();
+            removed(item.getValue());
+            evictions.increment();
+        }
+    }
+
+    private void removed(Entry e) {
+        weight -= e.weight;
+        if ( e.versionKey != null )
+            byVersion.remove(e.versionKey);
+    }
+
+    /** Remove all patches for a log. */
+    public void invalidate(Id logId) {
+        synchronized(this) {
+            Iterator<Map.Entry<Key, Entry>> iter = byId.entrySet().iterator();
+            while ( iter.hasNext() ) {
+                Map.Entry<Key, Entry> item = iter.next();
+                if ( item.getKey().logId.equals(logId) ) {
+                    iter.remove();
+                    removed(item.getValue());
+                }
+            }
+        }
+    }
+
+    /** Remove all patches. */
+    public void clear() {
+        synchronized(this) {
+            byId.clear();
+            byVersion.clear();
+            weight = 0;
+        }
+    }
+
+    public long getCapacity()   { return capacity; }
+    public synchronized long getWeight()    { return weight; }
+    public synchronized int size()          { return byId.size(); }
+    public long getHits()       { return hits.sum(); }
+    public long getMisses()     { return misses.sum(); }
+    public long getEvictions()  { return evictions.sum(); }
+
+    /**
+     * Estimate of the space used by a patch: roughly, the length of the patch in the
+     * text format.
+     */
+    public static long weigh(RDFPatch patch) {
+        long[] total = { 0 };
+        patch.apply(new RDFChangesBase() {
+            @Override
+            public void header(String field, Node value) { total[0] += 8 + field.length() + size(value); }
+            @Override
+            public void add(Node g, Node s, Node p, Node o) { total[0] += 8 + size(g) + size(s) + size(p) + size(o); }
+            @Override
+            public void delete(Node g, Node s, Node p, Node o) { total[0] += 8 + size(g) + size(s) + size(p) + size(o); }
+            @Override
+            public void addPrefix(Node gn, String prefix, String uriStr) { total[0] += 8 + size(gn) + prefix.length() + uriStr.length(); }
+            @Override
+            public void deletePrefix(Node gn, String prefix) { total[0] += 8 + size(gn) + prefix.length(); }
+        });
+        return total[0];
+    }
+
+    private static long size(Node node) {
+        if ( node == null )
+            return 0;
+        if ( node.isURI() )
+            return node.getURI().length() + 3;
+        if ( node.isLiteral() )
+            return node.getLiteralLexicalForm().length() + node.getLiteralDatatypeURI().length() + 6;
+        return 36;
+    }
+
+    private static final class Entry {
+        final RDFPatch patch;
+        final long weight;
+        Key versionKey;
+        Entry(RDFPatch patch, long weight, Key versionKey) {
+            this.patch = patch;
+            this.weight = weight;
+            this.versionKey = versionKey;
+        }
+    }
+
+    /** Key: log and either a patch id or a version number. */
+    private static final class Key {
+        final Id logId;
+        final Object key;
+        Key(Id logId, Object key) {
+            this.logId = logId;
+            this.key = key;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(logId, key);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if ( this == obj )
+                return true;
+            if ( !(obj instanceof Key other) )
+                return false;
+            return logId.equals(other.logId) && key.equals(other.key);
+        }
     }
 }
@@ -17,7 +17,10 @@
 
 package org.seaborne.delta.server.local;
 
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
 import java.util.Objects ;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 import org.seaborne.delta.*;
@@ -36,6 +39,9 @@ import org.apache.jena.rdfpatch.RDFPatch;
  * <p>
  * Versions numbers are not guaranteed to be stable across process restart.
  * Clients should use {@link #getInfo()} to find the current range.
+ * <p>
+ * Patches can be removed from the start of the log by {@link #truncate}. Fetching a
+ * patch that has been removed causes a {@link DeltaTruncatedException}.
  */
 public interface PatchLog {
 
@@ -58,6 +64,20 @@ public interface PatchLog {
      */
     public PatchLogInfo getInfo();
 
+    /**
+     * Wait until there is a version after {@code version} in the log, or until
+     * {@code timeoutMillis} has passed, and return {@link #getInfo()}.
+     */
+    public PatchLogInfo awaitVersion(Version version, long timeoutMillis);
+
+    /**
+     * Register a {@link VersionWaiter}, which is completed when there is a version after
+     * {@link VersionWaiter#getVersion} in the log. If there already is, the waiter is
+     * completed before this method returns. A waiter is also completed when the patch log
+     * is closed.
+     */
+    public void addWaiter(VersionWaiter waiter);
+
     /**
      * Return a description of the {@code PatchLog} - the basic information without
      * changing info like version number.
@@ -83,12 +103,47 @@ public interface PatchLog {
     /** Add a patch to the {@code PatchLog}. Return the version number. */
     public Version append(RDFPatch patch);
 
+    /**
+     * Add a patch, read from {@code input} in the format given by {@code contentType}, to
+     * the {@code PatchLog}. Return the version number.
+     * <p>
+     * {@code header} is called with the patch header once it has been read, before
+     * the patch is stored.
+     * <p>
+     * The default implementation reads the whole patch into memory, then calls
+     * {@link #append(RDFPatch)}.
+     */
+    public default Version append(InputStream input, String contentType, Consumer<PatchHeader> header) {
+        RDFPatch patch = DeltaOps.readPatch(input, contentType);
+        if ( header != null )
+            header.accept(patch.header());
+        return append(patch);
+    }
+
     /** Get a patch by {@code Id}. */
     public RDFPatch fetch(Id patchId);
 
     /** Get a patch by version (version number may change across restarts). */
     public RDFPatch fetch(Version version) ;
 
+    /**
+     * Get the bytes of a patch, by version, if the patch is stored in the format
+     * {@code contentType}. Return null if not found or if the stored form is different.
+     * The caller is responsible for closing the channel.
+     */
+    public default ReadableByteChannel fetchRaw(Version version, String contentType) {
+        return null;
+    }
+
+    /**
+     * Get the bytes of a patch, by {@code Id}, if the patch is stored in the format
+     * {@code contentType}. Return null if not found or if the stored form is different.
+     * The caller is responsible for closing the channel.
+     */
+    public default ReadableByteChannel fetchRaw(Id patchId, String contentType) {
+        return null;
+    }
+
     /** Get patches by range - start/finish are inclusive */
     public Stream<RDFPatch> range(Id start, Id finish) ;
 
@@ -120,9 +175,28 @@ public interface PatchLog {
     /** Translate a version number into its stable patch id. */
     public Id find(Version version);
 
-    /** Translate a patch id to version. */
+    /** Translate a patch id to version. Return null if the patch is not in the log. */
     public Version find(Id id);
 
+    /**
+     * Remove patches from the start of the log, as given by {@code retention}. The latest
+     * patch is always kept. Return the earliest version afterwards.
+     * <p>
+     * Storage may remove patches in blocks, in which case fewer patches than asked for
+     * may be removed. Throws {@link DeltaBadRequestException} if the storage does not
+     * support a retention setting.
+     */
+    public Version truncate(Retention retention);
+
+    /**
+     * Has the patch for {@code version} been removed from the start of the log by
+     * {@link #truncate}?
+     */
+    public default boolean isTruncated(Version version) {
+        Version earliest = getEarliestVersion();
+        return Version.isValid(version) && earliest.isAfter(Version.FIRST) && version.isBefore(earliest);
+    }
+
     /** Delete - do not use again. */
     public void delete();
 
@@ -132,6 +206,19 @@ public interface PatchLog {
     /** Acquire the PatchLog mutex. */
     public Id acquireLock();
 
+    /**
+     * Acquire the PatchLog mutex, waiting up to {@code timeoutMillis}, in turn with
+     * other waiting requests. Return null if the mutex was not acquired.
+     */
+    public Id acquireLock(long timeoutMillis);
+
+    /**
+     * Ask for the PatchLog mutex, in turn with other waiting requests, without waiting:
+     * the {@link LockWaiter} is given the mutex when it is free, which may be before this
+     * method returns.
+     */
+    public void acquireLock(LockWaiter waiter);
+
     /** Refresh the PatchLog mutex. */
     public boolean refreshLock(Id session);
 
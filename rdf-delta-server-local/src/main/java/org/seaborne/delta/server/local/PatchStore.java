@@ -17,15 +17,26 @@
 
 package org.seaborne.delta.server.local;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 import org.apache.jena.atlas.lib.DateTimeUtils;
 import org.apache.jena.atlas.lib.InternalErrorException;
 import org.apache.jena.atlas.logging.FmtLog;
+import org.apache.jena.rdfpatch.RDFPatch;
 import org.seaborne.delta.*;
 import org.seaborne.delta.server.local.patchstores.PatchLogBase;
 import org.seaborne.delta.server.local.patchstores.PatchLogIndex;
@@ -50,13 +61,25 @@ public abstract class PatchStore {
     // The logs managed by this PatchStore.
     private Map<Id, PatchLog> logs = new ConcurrentHashMap<>();
 
-    /** Return the {@link PatchLog}, which must already exist. */
+    /**
+     * Return the {@link PatchLog}, which must already exist. A registered patch log that
+     * is not open (lazy opening, or closed because it was idle) is opened.
+     */
     public PatchLog getLog(Id dsRef) {
-        return logs.get(dsRef);
+        PatchLog patchLog = logs.get(dsRef);
+        if ( patchLog == null && dataSourceRegistry != null ) {
+            DataSource ds = dataSourceRegistry.get(dsRef);
+            if ( ds != null )
+                patchLog = ds.getPatchLog();
+        }
+        return patchLog;
     }
 
+    /** Whether the patch log exists, whether or not it has been opened. */
     public boolean logExists(Id dsRef) {
-        return logs.containsKey(dsRef);
+        if ( logs.containsKey(dsRef) )
+            return true;
+        return dataSourceRegistry != null && dataSourceRegistry.get(dsRef) != null;
     }
 
     /** Clear the internal mapping from Log (by Id) to its PatchLog. Used for testing. */
@@ -73,6 +96,12 @@ public abstract class PatchStore {
 
     private LocalServerConfig configuration;
 
+    // Replaced by the configured cache in initialize.
+    private PatchCache patchCache = new PatchCache(DeltaConst.PATCH_CACHE_SIZE);
+
+    // Null for no group commit.
+    private GroupCommit groupCommit = null;
+
     private boolean initialized = false;
 
     protected PatchStore(PatchStoreProvider provider) {
@@ -87,10 +116,36 @@ public abstract class PatchStore {
     /** For subclasses of {@link PatchStore} to override - some don't need to do anything. */
     protected void sync() {}
 
+    /** The cache of patches for the logs of this {@code PatchStore}. */
+    public PatchCache getPatchCache() {
+        return patchCache;
+    }
+
+    /** Set the cache of patches; used to share one cache between {@code PatchStore PatchStores}. */
+    public void setPatchCache(PatchCache patchCache) {
+        this.patchCache = Objects.requireNonNull(patchCache);
+    }
+
+    /** The group commit for appends to the logs of this {@code PatchStore}, or null if none. */
+    public GroupCommit getGroupCommit() {
+        return groupCommit;
+    }
+
+    /** Set the group commit; used to share one between {@code PatchStore PatchStores}. */
+    public void setGroupCommit(GroupCommit groupCommit) {
+        this.groupCommit = groupCommit;
+    }
+
     public DataSourceRegistry getDataSourceRegistry() {
         return dataSourceRegistry;
     }
 
+    /** Record that a patch log has changed by append or truncation, for clients polling for changes. */
+    public void logChanged(Id dsRef) {
+        if ( dataSourceRegistry != null )
+            dataSourceRegistry.changed(dsRef);
+    }
+
     /**
      * Initialize a {@code PatchStore}.
      * <p>
@@ -107,6 +162,9 @@ public abstract class PatchStore {
         // until the server starts is better.
         setDataSourceRegistry(dataSourceRegistry);
         this.configuration = config;
+        this.patchCache = new PatchCache(config.getPatchCacheSize());
+        long window = config.getGroupCommitWindow();
+        this.groupCommit = ( window >= 0 ) ? new GroupCommit(window) : null;
         initialize(config);
         markInitialized();
     }
@@ -135,6 +193,63 @@ public abstract class PatchStore {
         descr.forEach(dsd->createPatchLog(dsd));
     }
 
+    /**
+     * Register the patch logs found when the server starts (see {@link #initialDataSources}).
+     * <p>
+     * If the configuration asks for lazy opening, each patch log is registered now and
+     * opened on first use. Otherwise, the patch logs are opened, in parallel using up to
+     * {@link LocalServerConfig#getOpenThreads} threads, and registered. This is called
+     * before the server is in use.
+     */
+    public void openInitialLogs(List<DataSourceDescription> descriptions) {
+        checkInitialized();
+        List<DataSourceDescription> toOpen = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        for ( DataSourceDescription dsd : descriptions ) {
+            if ( logExists(dsd.getId()) || dataSourceRegistry.containsName(dsd.getName()) || ! names.add(dsd.getName()) ) {
+                FmtLog.warn(LOG, "Duplicate patch log: %s", dsd);
+                continue;
+            }
+            toOpen.add(dsd);
+        }
+
+        if ( configuration.isOpenLazy() ) {
+            toOpen.forEach(dsd->dataSourceRegistry.add(DataSource.lazy(dsd, this)));
+            return;
+        }
+
+        int threads = Math.min(configuration.getOpenThreads(), toOpen.size());
+        if ( threads <= 1 ) {
+            toOpen.forEach(this::createPatchLog);
+            return;
+        }
+        AtomicInteger counter = new AtomicInteger(0);
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r->{
+            Thread thread = new Thread(r, "PatchLogOpen-"+counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<PatchLog>> results = new ArrayList<>();
+            toOpen.forEach(dsd->results.add(executor.submit(()->createPatchLog(dsd))));
+            for ( Future<PatchLog> f : results ) {
+                try {
+                    f.get();
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if ( cause instanceof RuntimeException rex )
+                        throw rex;
+                    throw new DeltaException("Exception opening patch log", cause);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new DeltaException("Interrupted while opening patch logs");
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     /**
      * Mark this {@code PatchStore} as initialized. Normally, PatchStore implementation do
      * not need to call this. It is only needed for special cases like the "any local"
@@ -157,6 +272,7 @@ public abstract class PatchStore {
     final
     public void shutdown() {
         shutdownSub();
+        patchCache.clear();
         // Reset state?
     }
 
@@ -218,7 +334,7 @@ public abstract class PatchStore {
             Id dsRef = dsd.getId();
             sync();
             if ( logExists(dsRef) ) {
-                PatchLog plog = logs.get(dsRef);
+                PatchLog plog = getLog(dsRef);
                 FmtLog.debug(LOG, "Connect (%s): %s ", plog.getPatchStore().getProvider().getShortName(), dsd);
                 return plog;
                 //throw new DeltaException("Can't create - PatchLog exists");
@@ -260,6 +376,9 @@ public abstract class PatchStore {
                 throw new DeltaException("Can't rename log - PatchLog new name '"+oldName+"' exists");
             }
             PatchLog newPatchLog = renamePatchLog(patchLog, oldName, newName);
+            // A rename that keeps the id replaces the patch log for that id.
+            if ( newPatchLog.getLogId().equals(patchLog.getLogId()) )
+                logs.put(newPatchLog.getLogId(), newPatchLog);
             // registry changes done in LocalServer.renameDataSource
             return newPatchLog;
         }
@@ -274,6 +393,17 @@ public abstract class PatchStore {
 
     /** Basic copy version - cause change of id and URI*/
     protected PatchLog copyPatchLog(PatchLog patchLog, String oldName, String newName) {
+        DataSourceDescription dsd2 = copyDescription(patchLog, newName);
+        PatchLog patchLog2 = newPatchLog(dsd2);
+        PatchLogInfo info = patchLog.getInfo();
+        try ( Stream<RDFPatch> patches = patchLog.range(info.getMinVersion(), info.getMaxVersion()) ) {
+            patches.forEach(patchLog2::append);
+        }
+        return patchLog2;
+    }
+
+    /** The description for a copy of a patch log : a new id, the new name, and a timestamped URI. */
+    protected DataSourceDescription copyDescription(PatchLog patchLog, String newName) {
         Id dsRef2 = Id.create();
         String uri = patchLog.getDescription().getUri();
         String uriBase = uri;
@@ -283,11 +413,7 @@ public abstract class PatchStore {
             uriBase = uriBase.substring(0, matcher.start(1));
         String now = DateTimeUtils.nowAsXSDDateTimeString().replace(':','_');
         String uri2 = uriBase+"_"+now;
-        DataSourceDescription dsd2 = new DataSourceDescription(dsRef2, newName, uri2);
-        PatchLog patchLog2 = newPatchLog(dsd2);
-        PatchLogInfo info = patchLog.getInfo();
-        patchLog.range(info.getMinVersion(), info.getMaxVersion()).forEach(patchLog2::append);
-        return patchLog2;
+        return new DataSourceDescription(dsRef2, newName, uri2);
     }
 
     protected PatchLog renamePatchLog(PatchLog patchLog, String oldName, String newName) {
@@ -303,9 +429,7 @@ public abstract class PatchStore {
      */
     final
     protected PatchLog createPatchLog(DataSourceDescription dsd) {
-        Id dsRef = dsd.getId();
-        PatchLog patchLog = newPatchLog(dsd);
-        logs.put(dsRef, patchLog);
+        PatchLog patchLog = openLog(dsd);
         if ( dataSourceRegistry != null ) {
             DataSource dataSource = new DataSource(dsd, patchLog);
             dataSourceRegistry.add(dataSource);
@@ -313,6 +437,47 @@ public abstract class PatchStore {
         return patchLog;
     }
 
+    /**
+     * Open a patch log of this {@code PatchStore}, or return the one already open.
+     * The patch log is recorded in this {@code PatchStore} but not registered in the
+     * {@link DataSourceRegistry}; use {@link #createLog} or {@link #connectLog} to
+     * create and register a patch log.
+     * <p>
+     * This method calls {@link #newPatchLog} provided by the subclass.
+     */
+    public PatchLog openLog(DataSourceDescription dsd) {
+        return logs.computeIfAbsent(dsd.getId(), id->newPatchLog(dsd));
+    }
+
+    /**
+     * Whether a patch log of this {@code PatchStore} can be closed, and later opened
+     * again, while the server is running (see {@link #closeLog}).
+     * The default is "no" - for example, an in-memory patch log can not be closed.
+     */
+    public boolean canCloseLog(PatchLog patchLog) {
+        return false;
+    }
+
+    /**
+     * Close an open patch log, releasing its storage and in-memory index. The patch log
+     * remains registered; {@link #openLog} opens it again. The caller ensures the patch
+     * log is not in use.
+     * This method calls {@link PatchLog#releaseLog} then {@link #closePatchLog} provided by the subclass.
+     */
+    public void closeLog(PatchLog patchLog) {
+        Id dsRef = patchLog.getLogId();
+        logs.remove(dsRef);
+        patchCache.invalidate(dsRef);
+        patchLog.releaseLog();
+        closePatchLog(patchLog);
+    }
+
+    /**
+     * Release the in-process resources of a patch log (see {@link #closeLog}).
+     * Only called if {@link #canCloseLog} returns true.
+     */
+    protected void closePatchLog(PatchLog patchLog) {}
+
     /**
      * Release ("delete") the {@link PatchLog}.
      * This call removes both the local registration and the persistent state (in the case of a cluster
@@ -327,6 +492,7 @@ public abstract class PatchStore {
             return;
         }
         removeLocalRegistration(patchLog);
+        patchLog.releaseLog();
         delete(patchLog);
     }
 
@@ -335,6 +501,7 @@ public abstract class PatchStore {
         Id dsRef = patchLog.getLogId();
         dataSourceRegistry.remove(dsRef);
         logs.remove(dsRef);
+        patchCache.invalidate(dsRef);
     }
 
     /**
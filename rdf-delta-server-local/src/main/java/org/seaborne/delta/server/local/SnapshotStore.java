@@ -0,0 +1,233 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server.local;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.jena.atlas.io.IO;
+import org.apache.jena.atlas.io.IOX;
+import org.apache.jena.atlas.io.IOX.IOConsumer;
+import org.apache.jena.atlas.json.JSON;
+import org.apache.jena.atlas.lib.FileOps;
+import org.apache.jena.atlas.logging.FmtLog;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFLanguages;
+import org.seaborne.delta.DeltaBadRequestException;
+import org.seaborne.delta.Id;
+import org.seaborne.delta.SnapshotInfo;
+import org.seaborne.delta.Version;
+import org.seaborne.delta.server.local.patchstores.filestore.FS;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Snapshots of the data of patch logs, kept as gzip-compressed files.
+ * <p>
+ * The snapshots of a patch log are in a directory named by the patch log id:
+ * <pre>
+ *   LOCATION/ID/snapshot-VERSION.nq.gz    -- N-Quads (or ".rt.gz" for RDF Thrift)
+ *   LOCATION/ID/snapshot-VERSION.json     -- the {@link SnapshotInfo}
+ * </pre>
+ * The JSON file is written after the data file and a snapshot without one is ignored.
+ * A snapshot made by an offline job can be added by writing these two files.
+ */
+public class SnapshotStore {
+    private static Logger LOG = LoggerFactory.getLogger(SnapshotStore.class);
+
+    private static final String PREFIX = "snapshot-";
+    private static final Pattern META = Pattern.compile("^snapshot-\\d+\\.json$");
+
+    private final Path location;
+
+    public SnapshotStore(Path location) {
+        this.location = Objects.requireNonNull(location);
+        try {
+            Files.createDirectories(location);
+        } catch (IOException ex) {
+            throw IOX.exception(ex);
+        }
+    }
+
+    public Path getLocation() {
+        return location;
+    }
+
+    /** Whether snapshots can be kept in the syntax {@code contentType}: N-Quads or RDF Thrift. */
+    public static boolean isSupported(String contentType) {
+        return lang(contentType) != null;
+    }
+
+    private static Lang lang(String contentType) {
+        if ( contentType == null )
+            return null;
+        Lang lang = RDFLanguages.contentTypeToLang(contentType);
+        if ( Lang.NQUADS.equals(lang) || Lang.RDFTHRIFT.equals(lang) )
+            return lang;
+        return null;
+    }
+
+    /** The snapshots for a patch log, in version order. */
+    public List<SnapshotInfo> list(Id dsRef) {
+        Path dir = directory(dsRef);
+        if ( ! Files.isDirectory(dir) )
+            return List.of();
+        List<SnapshotInfo> snapshots = new ArrayList<>();
+        try ( DirectoryStream<Path> stream = Files.newDirectoryStream(dir, PREFIX+"*.json") ) {
+            for ( Path p : stream ) {
+                if ( ! META.matcher(p.getFileName().toString()).matches() )
+                    continue;
+                SnapshotInfo info = readInfo(p);
+                if ( info != null )
+                    snapshots.add(info);
+            }
+        } catch (IOException ex) {
+            throw IOX.exception(ex);
+        }
+        snapshots.sort(Comparator.comparingLong(info->info.getVersion().value()));
+        return snapshots;
+    }
+
+    /** The snapshot for a patch log at {@code version}, or null. */
+    public SnapshotInfo get(Id dsRef, Version version) {
+        Path p = metaFile(dsRef, version);
+        if ( ! Files.exists(p) )
+            return null;
+        return readInfo(p);
+    }
+
+    /** The gzip-compressed data of the snapshot at {@code version}, or null if there is no such snapshot. */
+    public InputStream openCompressed(Id dsRef, Version version) {
+        SnapshotInfo info = get(dsRef, version);
+        if ( info == null )
+            return null;
+        try {
+            return Files.newInputStream(dataFile(dsRef, info));
+        } catch (NoSuchFileException ex) {
+            return null;
+        } catch (IOException ex) {
+            throw IOX.exception(ex);
+        }
+    }
+
+    /** The data of the snapshot at {@code version}, or null if there is no such snapshot. */
+    public InputStream open(Id dsRef, Version version) {
+        InputStream in = openCompressed(dsRef, version);
+        if ( in == null )
+            return null;
+        try {
+            return new GZIPInputStream(in, 64*1024);
+        } catch (IOException ex) {
+            IO.close(in);
+            throw IOX.exception(ex);
+        }
+    }
+
+    /**
+     * Write the snapshot of a patch log at {@code version}, where {@code patchId} is
+     * the patch at that version. {@code output} writes the data, uncompressed, in the
+     * syntax {@code contentType}. Any existing snapshot at {@code version} is replaced.
+     */
+    public synchronized SnapshotInfo write(Id dsRef, Version version, Id patchId, String contentType, IOConsumer<OutputStream> output) {
+        Lang lang = lang(contentType);
+        if ( lang == null )
+            throw new DeltaBadRequestException("Snapshots must be N-Quads or RDF Thrift: "+contentType);
+        SnapshotInfo previous = get(dsRef, version);
+        SnapshotInfo info = new SnapshotInfo(version, patchId, lang.getContentType().getContentTypeStr());
+        Path dir = directory(dsRef);
+        Path data = dataFile(dsRef, info);
+        Path meta = metaFile(dsRef, version);
+        try {
+            Files.createDirectories(dir);
+            IOX.safeWrite(data, dir.resolve(data.getFileName()+".tmp"), out->{
+                GZIPOutputStream gzip = new GZIPOutputStream(out, 64*1024);
+                output.actionEx(gzip);
+                gzip.finish();
+            });
+            FS.fsync(data, false);
+            byte[] bytes = JSON.toString(info.asJson()).getBytes(StandardCharsets.UTF_8);
+            IOX.safeWrite(meta, dir.resolve(meta.getFileName()+".tmp"), out->out.write(bytes));
+            FS.fsync(meta, false);
+            FS.fsync(dir, true);
+            if ( previous != null && ! previous.getContentType().equals(info.getContentType()) )
+                Files.deleteIfExists(dataFile(dsRef, previous));
+        } catch (IOException ex) {
+            throw IOX.exception(ex);
+        }
+        FmtLog.info(LOG, "Snapshot: %s %s", dsRef, info);
+        return info;
+    }
+
+    /**
+     * Create a new, empty directory for building a snapshot, on the same disk as the
+     * snapshots. Remove it with {@link #deleteWorkArea} when finished.
+     */
+    public Path newWorkArea() {
+        try {
+            return Files.createTempDirectory(location, "build-");
+        } catch (IOException ex) {
+            throw IOX.exception(ex);
+        }
+    }
+
+    /** Remove a directory created by {@link #newWorkArea}. */
+    public void deleteWorkArea(Path workArea) {
+        FileOps.clearAll(workArea.toString());
+        FileOps.delete(workArea.toString());
+    }
+
+    private Path directory(Id dsRef) {
+        return location.resolve(dsRef.asPlainString());
+    }
+
+    private Path metaFile(Id dsRef, Version version) {
+        return directory(dsRef).resolve(PREFIX+version.value()+".json");
+    }
+
+    private Path dataFile(Id dsRef, SnapshotInfo info) {
+        String ext = Lang.RDFTHRIFT.equals(lang(info.getContentType())) ? ".rt.gz" : ".nq.gz";
+        return directory(dsRef).resolve(PREFIX+info.getVersion().value()+ext);
+    }
+
+    private static SnapshotInfo readInfo(Path p) {
+        try {
+            return SnapshotInfo.fromJson(JSON.read(p.toString()));
+        } catch (RuntimeException ex) {
+            FmtLog.warn(LOG, "Bad snapshot description: %s : %s", p, ex.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SnapshotStore["+location+"]";
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server.local;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import org.seaborne.delta.PatchLogInfo;
+import org.seaborne.delta.Version;
+
+/**
+ * A request, registered with {@link PatchLog#addWaiter}, to be told when a patch log has
+ * a version after {@link #getVersion}. The waiter does not hold a thread: the action is
+ * called by the thread that appends the patch, or that finds the new version.
+ * <p>
+ * A waiter finishes once, either by being completed or by being cancelled.
+ */
+public class VersionWaiter {
+    private final Version version;
+    private final Consumer<PatchLogInfo> action;
+    private final AtomicBoolean done = new AtomicBoolean(false);
+
+    public VersionWaiter(Version version, Consumer<PatchLogInfo> action) {
+        this.version = version;
+        this.action = action;
+    }
+
+    /** The waiter is for a version after this one. */
+    public Version getVersion() {
+        return version;
+    }
+
+    /** Whether the waiter has been completed or cancelled. */
+    public boolean isDone() {
+        return done.get();
+    }
+
+    /**
+     * Call the action with {@code info}, unless the waiter has already finished.
+     * Return true if the action was called.
+     */
+    public boolean complete(PatchLogInfo info) {
+        if ( ! done.compareAndSet(false, true) )
+            return false;
+        try {
+            action.accept(info);
+        } finally { finish(); }
+        return true;
+    }
+
+    /**
+     * Cancel the waiter, unless it has already finished.
+     * Return true if the waiter was cancelled, and the action will not be called.
+     */
+    public boolean cancel() {
+        if ( ! done.compareAndSet(false, true) )
+            return false;
+        finish();
+        return true;
+    }
+
+    /** Called once, after the waiter has been completed or cancelled. */
+    protected void finish() {}
+
+    @Override
+    public String toString() {
+        return "VersionWaiter["+version+"]";
+    }
+}
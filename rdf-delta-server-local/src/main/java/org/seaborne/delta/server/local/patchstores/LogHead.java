@@ -0,0 +1,86 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server.local.patchstores;
+
+import org.seaborne.delta.Id;
+import org.seaborne.delta.Version;
+
+/**
+ * The state of the ends of a patch log: earliest entry, current entry (the head) and the
+ * entry before the head. A {@code LogHead} does not change; a {@link PatchLogIndex}
+ * replaces it as a whole when the log changes, so the values read from one
+ * {@code LogHead} are consistent with each other.
+ */
+public final class LogHead {
+    /** The state of a new, empty, patch log. */
+    public static final LogHead EMPTY = new LogHead(Version.INIT, null, Version.INIT, null, null);
+
+    private final Version earliestVersion;
+    private final Id      earliestId;
+    private final Version currentVersion;
+    private final Id      currentId;
+    private final Id      previousId;
+
+    public LogHead(Version earliestVersion, Id earliestId, Version currentVersion, Id currentId, Id previousId) {
+        this.earliestVersion = earliestVersion;
+        this.earliestId = earliestId;
+        this.currentVersion = currentVersion;
+        this.currentId = currentId;
+        this.previousId = previousId;
+    }
+
+    /** Whether the log has no entries. */
+    public boolean isEmpty() {
+        return currentId == null;
+    }
+
+    public Version getEarliestVersion() {
+        return earliestVersion;
+    }
+
+    public Id getEarliestId() {
+        return earliestId;
+    }
+
+    public Version getCurrentVersion() {
+        return currentVersion;
+    }
+
+    public Id getCurrentId() {
+        return currentId;
+    }
+
+    public Id getPreviousId() {
+        return previousId;
+    }
+
+    /** The version of the latest entry, or the earliest version if the log is empty. */
+    public Version getLatestVersion() {
+        return isEmpty() ? earliestVersion : currentVersion;
+    }
+
+    /** The id of the latest entry, or the earliest id if the log is empty. */
+    public Id getLatestId() {
+        return isEmpty() ? earliestId : currentId;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[%s, %s] -> [%s, %s, prev=%s]", earliestVersion, earliestId, currentVersion, currentId, previousId);
+    }
+}
@@ -17,8 +17,10 @@
 
 package org.seaborne.delta.server.local.patchstores;
 
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
 
+import org.apache.jena.atlas.lib.Pair;
 import org.seaborne.delta.Id;
 import org.seaborne.delta.Version;
 import org.seaborne.delta.server.local.LogEntry;
@@ -42,6 +44,19 @@ public interface LogIndex {
      */
     public Stream<LogEntry> entries();
 
+    /**
+     * Stream of (version, id) for the versions from {@code start} to {@code finish}
+     * inclusive, in version order. Versions with no entry are skipped.
+     * <p>
+     * The stream is lazy; it should be closed after use.
+     */
+    public default Stream<Pair<Version, Id>> range(Version start, Version finish) {
+        return LongStream.rangeClosed(start.value(), finish.value())
+            .mapToObj(Version::create)
+            .map(v->Pair.create(v, versionToId(v)))
+            .filter(p->p.getRight() != null);
+    }
+
     /** Map version to id.
      * <p>
      * Return return null if the argument is null.
@@ -55,6 +70,29 @@ public interface LogIndex {
      */
     public Version genNextVersion();
 
+    /**
+     * Map id to version. Return null if the patch is not in the index, or the argument
+     * is null.
+     * <p>
+     * Implementations should make this a direct lookup; it is used to check for patches
+     * already in the log when appending.
+     */
+    public default Version idToVersion(Id id) {
+        if ( id == null )
+            return null;
+        LogEntry entry = getPatchInfo(id);
+        return ( entry == null ) ? null : entry.getVersion();
+    }
+
+    /**
+     * Remove the entries for versions before {@code version}. There is an entry for
+     * {@code version} and it is not after the current version. Afterwards, {@link #earliest}
+     * is {@code version}.
+     * <p>
+     * It is called inside the {@link PatchLogIndex} lock.
+     */
+    public void truncate(Version version);
+
     /** Get the {@link LogEntry} for this id.
      * <p>
      * Return return null if the argument is null.
@@ -19,19 +19,42 @@ package org.seaborne.delta.server.local.patchstores;
 
 import static java.lang.String.format;
 
-import java.util.ArrayList;
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
 
-import org.apache.jena.atlas.lib.NotImplemented;
+import org.apache.jena.atlas.lib.Pair;
 import org.apache.jena.atlas.logging.FmtLog;
+import org.apache.jena.graph.Node;
 import org.seaborne.delta.*;
+import org.seaborne.delta.server.local.GroupCommit;
+import org.seaborne.delta.server.local.LockWaiter;
+import org.seaborne.delta.server.local.LogEntry;
+import org.seaborne.delta.server.local.PatchCache;
 import org.seaborne.delta.server.local.PatchLog;
 import org.seaborne.delta.server.local.PatchStore;
 import org.seaborne.delta.server.local.PatchValidation;
+import org.seaborne.delta.server.local.VersionWaiter;
+import org.apache.jena.rdfpatch.PatchHeader;
+import org.apache.jena.rdfpatch.RDFChanges;
 import org.apache.jena.rdfpatch.RDFPatch;
+import org.apache.jena.rdfpatch.changes.RDFChangesBase;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,7 +70,20 @@ import org.slf4j.LoggerFactory;
 public class PatchLogBase implements PatchLog {
     private final static Logger LOG = LoggerFactory.getLogger(PatchLogBase.class);
 
-    private Object lock = new Object();
+    // Waiting for a new version; checked after each append.
+    private final Queue<VersionWaiter> waiters = new ConcurrentLinkedQueue<>();
+    // While there are waiters, the log index is looked at this often, for logs that can be
+    // appended to by another server sharing the patch store.
+    private static final long RECHECK_MILLIS = 1000;
+    private static final ScheduledExecutorService recheckExecutor = Executors.newSingleThreadScheduledExecutor(r->{
+        Thread thread = new Thread(r, "PatchLogWaiters");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean recheckScheduled = new AtomicBoolean(false);
+    // Set when the patch log is closed or deleted; waiters are completed and the storage
+    // or log index is not looked at again.
+    private volatile boolean released = false;
 
     private final DataSourceDescription dsd;
     private final Id logId;
@@ -92,25 +128,98 @@ public class PatchLogBase implements PatchLog {
 
     @Override
     public Id getLatestId() {
-        if ( logIndex.isEmpty() )
-            return getEarliestId();
-        return logIndex.getCurrentId();
+        return logIndex.getHead().getLatestId();
     }
 
     @Override
     public Version getLatestVersion() {
-        if ( logIndex.isEmpty() )
-            return getEarliestVersion();
-        return logIndex.getCurrentVersion();
+        return logIndex.getHead().getLatestVersion();
     }
 
     @Override
     public PatchLogInfo getInfo() {
         // Called when polling for changes during dataset sync.
-        synchronized(lock) {
-            logIndex.syncVersionInfo();
-            return new PatchLogInfo(dsd, getEarliestVersion(), getLatestVersion(), getLatestId());
+        // Does not wait for an append in progress.
+        logIndex.syncVersionInfo();
+        return headInfo();
+    }
+
+    @Override
+    public PatchLogInfo awaitVersion(Version version, long timeoutMillis) {
+        CompletableFuture<PatchLogInfo> result = new CompletableFuture<>();
+        VersionWaiter waiter = new VersionWaiter(version, result::complete);
+        addWaiter(waiter);
+        try {
+            return result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            waiter.cancel();
+        } catch (InterruptedException ex) {
+            waiter.cancel();
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            throw new DeltaException("awaitVersion", ex.getCause());
+        }
+        // Completed between the timeout and the cancel.
+        if ( result.isDone() )
+            return result.join();
+        return released ? headInfo() : getInfo();
+    }
+
+    @Override
+    public void addWaiter(VersionWaiter waiter) {
+        waiters.add(waiter);
+        // Checked after adding the waiter so that an append in between is not missed.
+        checkWaiters(released ? headInfo() : getInfo());
+        if ( ! waiter.isDone() )
+            scheduleRecheck();
+    }
+
+    /** Complete the waiters that {@code info} satisfies, and remove finished waiters. */
+    private void checkWaiters(PatchLogInfo info) {
+        Iterator<VersionWaiter> iter = waiters.iterator();
+        while(iter.hasNext()) {
+            VersionWaiter waiter = iter.next();
+            if ( released || info.getMaxVersion().isAfter(waiter.getVersion()) ) {
+                try {
+                    waiter.complete(info);
+                } catch (RuntimeException ex) {
+                    FmtLog.warn(LOG, ex, "Waiter %s: %s", waiter, ex.getMessage());
+                }
+            }
+            if ( waiter.isDone() )
+                iter.remove();
+        }
+    }
+
+    /** Look at the log index again, later, while there are waiters. */
+    private void scheduleRecheck() {
+        if ( recheckScheduled.compareAndSet(false, true) )
+            recheckExecutor.schedule(this::recheck, RECHECK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void recheck() {
+        recheckScheduled.set(false);
+        if ( released || waiters.isEmpty() )
+            return;
+        try {
+            checkWaiters(getInfo());
+        } catch (RuntimeException ex) {
+            FmtLog.warn(LOG, "Recheck of %s: %s", logId, ex.getMessage());
         }
+        if ( ! waiters.isEmpty() )
+            scheduleRecheck();
+    }
+
+    /** The last known state of the log, without looking at the log index. */
+    private PatchLogInfo headInfo() {
+        LogHead head = logIndex.getHead();
+        return new PatchLogInfo(dsd, head.getEarliestVersion(), head.getLatestVersion(), head.getLatestId());
+    }
+
+    /** Complete the waiters for a version that is now in the log. */
+    private void signalVersion() {
+        if ( ! waiters.isEmpty() )
+            checkWaiters(headInfo());
     }
 
     @Override
@@ -143,7 +252,7 @@ public class PatchLogBase implements PatchLog {
 
     @Override
     public boolean contains(Id patchId) {
-        return false;
+        return logIndex.idToVersion(patchId) != null;
     }
 
     @Override
@@ -153,16 +262,13 @@ public class PatchLogBase implements PatchLog {
 //        RDFPatchOps.write(System.err, patch);
 //        System.err.println("<<append");
 
-        return patchLogLockRtn(()->{
+        Pair<Version, GroupCommit.Batch> result = patchLogLockRtn(()->{
             Id thisId = Id.fromNode(patch.getId());
             Id prevId = Id.fromNode(patch.getPrevious());
 
-            // Is it a reply of the last patch?
-            if ( ! isEmpty() && getLatestId().equals(thisId) ) {
-                if ( ! Objects.equals(prevId, logIndex.getPreviousId()) )
-                    FmtLog.warn(LOG, "Patch id matches log head, but patch previous does not match log previous id");
-                return getLatestVersion();
-            }
+            Version replayVersion = replayVersion(thisId, prevId);
+            if ( replayVersion != null )
+                return Pair.create(replayVersion, registerSync(replayVersion, thisId));
 
             PatchValidation.validateNewPatch(this, thisId, prevId, PatchValidation::badPatchEx);
 
@@ -170,8 +276,24 @@ public class PatchLogBase implements PatchLog {
             // We can inside the patchlog wide lock at this point.
             Version version = logIndex.nextVersion();
 
-            patchStorage.store(version, thisId, patch);
+            commitPatch(version, thisId, prevId, ()->patchStorage.store(version, thisId, patch));
+            patchCache().put(logId, version, thisId, patch);
+            return Pair.create(version, registerSync(version, thisId));
+        });
+        awaitSync(result.getRight());
+        patchStore.logChanged(logId);
+        signalVersion();
+        return result.getLeft();
+    }
 
+    /**
+     * Store the patch, then save the log index entry. If the storage makes these one
+     * atomic write (see {@link PatchStorage#commitPatch}), a failure leaves neither;
+     * otherwise, if saving the index entry fails, the stored patch is deleted.
+     */
+    private void commitPatch(Version version, Id thisId, Id prevId, Runnable storeAction) {
+        patchStorage.commitPatch(()->{
+            storeAction.run();
             try {
                 logIndex.save(version, thisId, prevId);
             } catch (Exception ex) {
@@ -181,11 +303,206 @@ public class PatchLogBase implements PatchLog {
                 }
                 throw ex;
             }
-
-            return version;
         });
     }
 
+    /**
+     * With group commit, add the actions to make the patch durable to the current batch.
+     * Called while holding the patch log lock so patches of this log join batches in log order.
+     */
+    private GroupCommit.Batch registerSync(Version version, Id id) {
+        GroupCommit groupCommit = patchStore.getGroupCommit();
+        if ( groupCommit == null )
+            return null;
+        // Batches complete in order: wait for the last one any action went into.
+        GroupCommit.Batch[] batch = { null };
+        patchStorage.syncActions(version, id, (key, action) -> batch[0] = groupCommit.register(key, action));
+        return batch[0];
+    }
+
+    /** Wait for a group commit batch; called without holding the patch log lock. */
+    private void awaitSync(GroupCommit.Batch batch) {
+        if ( batch != null )
+            patchStore.getGroupCommit().await(batch);
+    }
+
+    /**
+     * Is it a replay of a patch already in the log? This happens when a client retries
+     * an append, for example after a timeout, and the first attempt had succeeded.
+     * Return the version of the patch, or null if it is not in the log.
+     * <p>
+     * A patch already in the log, other than the head, with a different previous patch
+     * is not a replay; it is rejected by validation.
+     * <p>
+     * Called with the patch log lock held, except for the early check of a streamed append.
+     */
+    private Version replayVersion(Id thisId, Id prevId) {
+        if ( thisId == null || isEmpty() )
+            return null;
+        if ( getLatestId().equals(thisId) ) {
+            if ( ! Objects.equals(prevId, logIndex.getPreviousId()) )
+                FmtLog.warn(LOG, "Patch id matches log head, but patch previous does not match log previous id");
+            return getLatestVersion();
+        }
+        LogEntry entry = logIndex.getPatchInfo(thisId);
+        if ( entry == null || ! Objects.equals(prevId, entry.getPrevious()) )
+            return null;
+        FmtLog.info(LOG, "Patch already in the log: patch=%s, version=%s", thisId, entry.getVersion());
+        return entry.getVersion();
+    }
+
+    /**
+     * Append a patch as it is read from the {@code InputStream}. The header is
+     * checked against the log before the rest of the patch is read, and the patch is
+     * passed to the {@link PatchStorage} as it is parsed.
+     * <p>
+     * The patch log lock is not held while the patch is read: the stored patch is given
+     * its version, after checking the header again, with the lock held.
+     */
+    @Override
+    final
+    public Version append(InputStream input, String contentType, Consumer<PatchHeader> header) {
+        StreamAppend appender = new StreamAppend(header);
+        Pair<Version, GroupCommit.Batch> result;
+        try {
+            DeltaOps.readPatch(input, contentType, appender);
+            appender.endBody();
+            result = patchLogLockRtn(appender::complete);
+        } catch (RuntimeException ex) {
+            appender.abort();
+            throw ex;
+        }
+        awaitSync(result.getRight());
+        patchStore.logChanged(logId);
+        signalVersion();
+        return result.getLeft();
+    }
+
+    /**
+     * The stages of a streaming append: collect the header, then, at the first change
+     * after the header, check the patch and open the {@link PatchStorageWriter}. The
+     * patch is committed by {@link #complete}, called with the patch log lock held.
+     */
+    private class StreamAppend implements RDFChanges {
+        private final Consumer<PatchHeader> headerAction;
+        private final Map<String, Node> header = new LinkedHashMap<>();
+        private boolean pendingStart = false;
+        private RDFChanges dest = null;
+        private PatchStorageWriter writer = null;
+        // Set if the patch is already in the log.
+        private Version replayVersion = null;
+        private Id thisId = null;
+        private Id prevId = null;
+
+        StreamAppend(Consumer<PatchHeader> headerAction) {
+            this.headerAction = headerAction;
+        }
+
+        private RDFChanges dest() {
+            if ( dest == null )
+                beginBody();
+            return dest;
+        }
+
+        private void beginBody() {
+            PatchHeader patchHeader = new PatchHeader(header);
+            thisId = Id.fromNode(patchHeader.getId());
+            prevId = Id.fromNode(patchHeader.getPrevious());
+            // Without the lock: the log head can be read at any time, and if the patch
+            // can not be appended now, it can not be appended later.
+            replayVersion = replayVersion(thisId, prevId);
+            if ( replayVersion != null ) {
+                // Read and discard the rest of the patch.
+                dest = new RDFChangesBase() {};
+            } else {
+                PatchValidation.validateNewPatch(PatchLogBase.this, thisId, prevId, PatchValidation::badPatchEx);
+                writer = patchStorage.storeStream(thisId);
+                dest = writer.changes();
+                if ( pendingStart )
+                    dest.start();
+                header.forEach(dest::header);
+            }
+            if ( headerAction != null )
+                headerAction.accept(patchHeader);
+        }
+
+        /** The patch has been read. */
+        void endBody() {
+            // A patch with only a header.
+            dest();
+        }
+
+        /** Commit the patch that has been read. Called with the patch log lock held. */
+        Pair<Version, GroupCommit.Batch> complete() {
+            // Check again: the log may have changed while the patch was read.
+            Version replay = replayVersion(thisId, prevId);
+            if ( replay != null ) {
+                abort();
+                return Pair.create(replay, registerSync(replay, thisId));
+            }
+            if ( writer == null )
+                // In the log when the header was read; removed since by truncation.
+                PatchValidation.badPatchEx("Patch no longer in the log: patch=%s", thisId);
+            PatchValidation.validateNewPatch(PatchLogBase.this, thisId, prevId, PatchValidation::badPatchEx);
+            Version version = logIndex.nextVersion();
+            commitPatch(version, thisId, prevId, ()->writer.commit(version));
+            writer = null;
+            // The patch is not cached - it is not in memory.
+            return Pair.create(version, registerSync(version, thisId));
+        }
+
+        void abort() {
+            if ( writer != null ) {
+                try { writer.abort(); }
+                catch (Exception ex) { FmtLog.warn(LOG, "Error aborting patch storage: patchId=%s : %s", thisId, ex.getMessage()); }
+                writer = null;
+            }
+        }
+
+        @Override
+        public void header(String field, Node value) {
+            if ( dest == null )
+                header.put(field, value);
+            else
+                dest.header(field, value);
+        }
+
+        @Override
+        public void add(Node g, Node s, Node p, Node o)                 { dest().add(g, s, p, o); }
+
+        @Override
+        public void delete(Node g, Node s, Node p, Node o)              { dest().delete(g, s, p, o); }
+
+        @Override
+        public void addPrefix(Node gn, String prefix, String uriStr)    { dest().addPrefix(gn, prefix, uriStr); }
+
+        @Override
+        public void deletePrefix(Node gn, String prefix)                { dest().deletePrefix(gn, prefix); }
+
+        @Override
+        public void txnBegin()      { dest().txnBegin(); }
+
+        @Override
+        public void txnCommit()     { dest().txnCommit(); }
+
+        @Override
+        public void txnAbort()      { dest().txnAbort(); }
+
+        @Override
+        public void segment()       { dest().segment(); }
+
+        @Override
+        public void start() {
+            if ( dest == null )
+                pendingStart = true;
+            else
+                dest.start();
+        }
+
+        @Override
+        public void finish()        { dest().finish(); }
+    }
+
     protected void patchLogLock(Runnable action) {
         logIndex.runWithLock(action);
     }
@@ -194,43 +511,84 @@ public class PatchLogBase implements PatchLog {
         return logIndex.runWithLockRtn(action);
     }
 
+    private PatchCache patchCache() {
+        return patchStore.getPatchCache();
+    }
+
     @Override
     public RDFPatch fetch(Id patchId) {
-        return patchStorage.fetch(patchId);
+        RDFPatch patch = patchCache().get(logId, patchId);
+        if ( patch != null )
+            return patch;
+        patch = patchStorage.fetch(patchId);
+        patchCache().put(logId, null, patchId, patch);
+        return patch;
     }
 
     @Override
     public RDFPatch fetch(Version version) {
+        checkNotTruncated(version);
+        RDFPatch patch = patchCache().get(logId, version);
+        if ( patch != null )
+            return patch;
         Id id = find(version);
         if ( id == null )
             return null;
-        return fetch(id);
+        patch = patchStorage.fetch(id);
+        patchCache().put(logId, version, id, patch);
+        return patch;
+    }
+
+    @Override
+    public ReadableByteChannel fetchRaw(Version version, String contentType) {
+        checkNotTruncated(version);
+        if ( ! Objects.equals(contentType, patchStorage.getStoredContentType()) )
+            return null;
+        Id id = find(version);
+        if ( id == null )
+            return null;
+        return patchStorage.fetchRaw(version, id);
+    }
+
+    @Override
+    public ReadableByteChannel fetchRaw(Id patchId, String contentType) {
+        if ( ! Objects.equals(contentType, patchStorage.getStoredContentType()) )
+            return null;
+        Version version = idToVersionOrNull(patchId);
+        if ( version == null )
+            return null;
+        return patchStorage.fetchRaw(version, patchId);
     }
 
     @Override
     public Stream<RDFPatch> range(Id start, Id finish) {
-        // Assuming start < finish.
-        throw new NotImplemented();
-        //return null;
+        Version startVersion = idToVersionOrNull(start);
+        if ( startVersion == null )
+            throw new DeltaNotFoundException(format("range(%s,%s): No such patch %s", start, finish, start));
+        Version finishVersion = idToVersionOrNull(finish);
+        if ( finishVersion == null )
+            throw new DeltaNotFoundException(format("range(%s,%s): No such patch %s", start, finish, finish));
+        return range(startVersion, finishVersion);
+    }
+
+    private Version idToVersionOrNull(Id id) {
+        return logIndex.idToVersion(id);
     }
 
     @Override
     public Stream<RDFPatch> range(Version start, Version finish) {
-        // Brute force implementation.
+        checkNotTruncated(start);
         if ( start.isValid() && start.isAfter(logIndex.getCurrentVersion()) )
             throw new DeltaException(format("start out of range: range(%s,%s) but log is %s", start, finish, getInfo()));
         if ( finish.isValid() && finish.isBefore(logIndex.getEarliestVersion()) )
             throw new DeltaException(format("finish out of range: range(%s,%s) but log is %s", start, finish, getInfo()));
         if ( start.isAfter(finish) )
             throw new DeltaException(format("Range start after finish: range(%s,%s)", start, finish));
-        List<RDFPatch> x = new ArrayList<>();
         // Range is inclusive.
-        for ( long v = start.value() ; v <= finish.value() ; v++ ) {
-            RDFPatch patch = fetch(Version.create(v));
-            if ( patch != null )
-                x.add(patch);
-        }
-        return x.stream();
+        // Lazy: patches are fetched from storage one at a time as the stream is consumed.
+        // This bypasses the patch cache so that a long catch-up does not flush it.
+        Stream<Pair<Version, Id>> entries = logIndex.range(start, finish);
+        return patchStorage.fetch(entries);
     }
 
     @Override
@@ -245,19 +603,127 @@ public class PatchLogBase implements PatchLog {
 
     @Override
     public Version find(Id id) {
-        FmtLog.warn(LOG, "Not implemented (yet). find(Id)");
-        return Version.UNSET;
+        return logIndex.idToVersion(id);
+    }
+
+    /** The patch for {@code version} has been removed by {@link #truncate}: the client needs a copy of the data. */
+    private void checkNotTruncated(Version version) {
+        if ( isTruncated(version) )
+            throw new DeltaTruncatedException(format("Version %s has been removed from the log: earliest version is %s", version, getEarliestVersion()));
+    }
+
+    /**
+     * Truncate the log: first the log index, then the patch storage. If the storage is not
+     * changed (e.g. a crash), the patches are no longer in the log and storage that can
+     * find them removes them at the next truncation.
+     */
+    @Override
+    public Version truncate(Retention retention) {
+        Objects.requireNonNull(retention, "retention");
+        if ( isEmpty() )
+            return getEarliestVersion();
+        // Find the first version to keep without the lock: it may look at every patch.
+        // Appends meanwhile only add later patches, so the result is still a version to keep.
+        Version latest = getLatestVersion();
+        // Always keep the latest patch.
+        long keepFrom = Math.min(keepFrom(retention, getEarliestVersion(), latest), latest.value());
+        return patchLogLockRtn(()->{
+            Version earliest = getEarliestVersion();
+            if ( keepFrom <= earliest.value() )
+                return earliest;
+            Version truncateTo = patchStorage.truncatePoint(Version.create(keepFrom));
+            if ( ! truncateTo.isAfter(earliest) )
+                return earliest;
+            List<Pair<Version, Id>> removed;
+            try ( Stream<Pair<Version, Id>> entries = logIndex.range(earliest, truncateTo.dec()) ) {
+                removed = entries.toList();
+            }
+            Version newEarliest = logIndex.truncate(truncateTo);
+            patchStorage.truncate(newEarliest, removed);
+            patchCache().invalidate(logId);
+            patchStore.logChanged(logId);
+            FmtLog.info(LOG, "Truncate %s %s: earliest version %s -> %s : %d patches removed",
+                        dsd.getName(), retention, earliest, newEarliest, removed.size());
+            return newEarliest;
+        });
+    }
+
+    /** The first version to keep: the latest of those of the retention settings. */
+    private long keepFrom(Retention retention, Version earliest, Version latest) {
+        long keepFrom = earliest.value();
+        if ( retention.getKeepVersion() != null )
+            keepFrom = Math.max(keepFrom, retention.getKeepVersion().value());
+        if ( retention.getMaxAge() != null ) {
+            if ( patchStorage.timestamp(latest, getLatestId()) < 0 )
+                throw new DeltaBadRequestException("Retention by age is not supported for this log: "+dsd.getName());
+            long cutoff = System.currentTimeMillis() - retention.getMaxAge().toMillis();
+            keepFrom = Math.max(keepFrom, keepFromAge(cutoff, earliest, latest));
+        }
+        if ( retention.getMaxBytes() != null ) {
+            if ( patchStorage.size(latest, getLatestId()) < 0 )
+                throw new DeltaBadRequestException("Retention by size is not supported for this log: "+dsd.getName());
+            keepFrom = Math.max(keepFrom, keepFromSize(retention.getMaxBytes(), earliest, latest));
+        }
+        return keepFrom;
+    }
+
+    /** The version of the first patch stored at or after {@code cutoff}. */
+    private long keepFromAge(long cutoff, Version earliest, Version latest) {
+        try ( Stream<Pair<Version, Id>> entries = logIndex.range(earliest, latest) ) {
+            Iterator<Pair<Version, Id>> iter = entries.iterator();
+            while ( iter.hasNext() ) {
+                Pair<Version, Id> e = iter.next();
+                if ( patchStorage.timestamp(e.getLeft(), e.getRight()) >= cutoff )
+                    return e.getLeft().value();
+            }
+        }
+        return latest.value();
+    }
+
+    /** The version of the earliest patch such that it and later patches total at most {@code maxBytes}. */
+    private long keepFromSize(long maxBytes, Version earliest, Version latest) {
+        // Two passes so the log entries are not held in memory:
+        // the total size, then drop patches from the start until the rest fit.
+        long total;
+        try ( Stream<Pair<Version, Id>> entries = logIndex.range(earliest, latest) ) {
+            total = entries.mapToLong(this::patchSize).sum();
+        }
+        try ( Stream<Pair<Version, Id>> entries = logIndex.range(earliest, latest) ) {
+            Iterator<Pair<Version, Id>> iter = entries.iterator();
+            while ( iter.hasNext() ) {
+                Pair<Version, Id> e = iter.next();
+                if ( total <= maxBytes )
+                    return e.getLeft().value();
+                total -= patchSize(e);
+            }
+        }
+        return latest.value();
+    }
+
+    private long patchSize(Pair<Version, Id> entry) {
+        return Math.max(0, patchStorage.size(entry.getLeft(), entry.getRight()));
     }
 
     @Override
     public void delete() { }
 
     @Override
-    public void releaseLog() { }
+    public void releaseLog() {
+        // Waiters are completed before the storage is released.
+        released = true;
+        signalVersion();
+        patchStorage.release();
+    }
 
     @Override
     public Id acquireLock()                 { return logIndex.acquireLock(); }
 
+    @Override
+    public Id acquireLock(long timeoutMillis) { return logIndex.acquireLock(timeoutMillis); }
+
+    @Override
+    public void acquireLock(LockWaiter waiter) { logIndex.acquireLock(waiter); }
+
     @Override
     public boolean refreshLock(Id session)  { return logIndex.refreshLock(session); }
 
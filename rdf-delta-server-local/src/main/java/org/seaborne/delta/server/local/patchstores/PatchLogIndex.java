@@ -18,11 +18,15 @@
 package org.seaborne.delta.server.local.patchstores;
 
 import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.apache.jena.atlas.lib.Pair;
 
 import org.seaborne.delta.DeltaConst;
 import org.seaborne.delta.Id;
 import org.seaborne.delta.LockState;
 import org.seaborne.delta.Version;
+import org.seaborne.delta.server.local.LockWaiter;
 import org.seaborne.delta.server.local.LogEntry;
 import org.seaborne.delta.server.local.PatchStore;
 
@@ -47,6 +51,12 @@ public interface PatchLogIndex {
     /** Save the new head of log information. */
     public void save(Version newVersion, Id newCurrentId, Id newPreviousId);
 
+    /**
+     * Get the earliest, current and previous entries of the log as one consistent
+     * {@link LogHead}. This does not wait for a change to the log that is in progress.
+     */
+    public LogHead getHead();
+
     /**
      * Get the earliest version in the log.
      * Returns {@link DeltaConst#VERSION_INIT} when the log is empty.
@@ -71,10 +81,22 @@ public interface PatchLogIndex {
     /** Get the {@code Id} of the previous entry, or null if there isn't one. */
     public Id getPreviousId();
 
+    /**
+     * Remove the entries for versions before {@code version}, which is not after the
+     * current version. Return the new earliest version.
+     */
+    public Version truncate(Version version);
+
     /** Map version number to the {@link Id} for the patch it refers to. */
     public Id versionToId(Version version);
 
-    /** Map {@link Id} to version for the patch it refers to. */
+    /**
+     * Stream of (version, id) from {@code start} to {@code finish} inclusive, in version order.
+     * The stream is lazy; it should be closed after use.
+     */
+    public Stream<Pair<Version, Id>> range(Version start, Version finish);
+
+    /** Map {@link Id} to version for the patch it refers to. Return null if there is no such patch. */
     public Version idToVersion(Id id);
 
     /** Map {@link Id} to information about the patch. */
@@ -89,6 +111,20 @@ public interface PatchLogIndex {
      */
     public Id acquireLock();
 
+    /**
+     * Acquire the mutex, waiting up to {@code timeoutMillis} for it to become free,
+     * and return the session id. Waiting requests get the mutex in the order they
+     * asked for it. Returns null for failure to get the lock within the time.
+     */
+    public Id acquireLock(long timeoutMillis);
+
+    /**
+     * Ask for the mutex, in turn with other waiting requests, without waiting: the
+     * {@link LockWaiter} is given the mutex when it is free, which may be before this
+     * method returns.
+     */
+    public void acquireLock(LockWaiter waiter);
+
     /** Refresh the mutex. */
     public boolean refreshLock(Id session);
 
@@ -19,20 +19,33 @@ package org.seaborne.delta.server.local.patchstores;
 
 import static java.lang.String.format;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Objects;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.apache.jena.atlas.lib.Pair;
+import org.apache.jena.atlas.logging.FmtLog;
 
 import org.seaborne.delta.DeltaException;
 import org.seaborne.delta.Id;
 import org.seaborne.delta.LockState;
 import org.seaborne.delta.Version;
+import org.seaborne.delta.server.local.LockWaiter;
 import org.seaborne.delta.server.local.LogEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Implementation framework for a PatchLogIndex based on {@link LogIndex}.
  */
 public abstract class PatchLogIndexBase implements PatchLogIndex {
+    private static Logger LOG = LoggerFactory.getLogger(PatchLogIndexBase.class);
 
     // There is some duplication LogIndex keeping current and earliest.
     // LogIndex is not assumed to be efficient,e.g. it may need to do I/O
@@ -41,37 +54,46 @@ public abstract class PatchLogIndexBase implements PatchLogIndex {
     private final Object lock = new Object();
 
     private final LogIndex logIndex;
-    // Natural values for a new patch log.
-
-    private Version      earliestVersion = Version.INIT;
-    private Id           earliestId      = null;
-    private Version      currentVersion  = Version.INIT;
-    private Id           currentId       = null;
-    private Id           previousId      = null;
 
+    // The ends of the log. Replaced, inside the lock, by "save" and "truncate".
+    // Readers take the reference once and do not need the lock.
+    private volatile LogHead head = LogHead.EMPTY;
 
     protected PatchLogIndexBase(LogIndex logIndex) {
         this.logIndex = logIndex;
 
-        this.currentVersion = logIndex.current();
-        this.currentId = logIndex.versionToId(currentVersion);
+        Version currentVersion = logIndex.current();
+        Id currentId = logIndex.versionToId(currentVersion);
 
         LogEntry e = (currentId==null) ? null : logIndex.getPatchInfo(currentId);
-        if ( e != null )
-            this.previousId = e.getPrevious();
+        Id previousId = ( e != null ) ? e.getPrevious() : null;
 
-        this.earliestVersion = logIndex.earliest();
-        this.earliestId = logIndex.versionToId(earliestVersion);
+        Version earliestVersion = logIndex.earliest();
+        Id earliestId = logIndex.versionToId(earliestVersion);
+        this.head = new LogHead(earliestVersion, earliestId, currentVersion, currentId, previousId);
+    }
+
+    @Override
+    final
+    public LogHead getHead() {
+        return head;
     }
 
     @Override
     final
     public Id versionToId(Version version) {
-        if ( Objects.equals(currentVersion, version) )
-            return currentId;
+        LogHead h = head;
+        if ( Objects.equals(h.getCurrentVersion(), version) )
+            return h.getCurrentId();
         return logIndex.versionToId(version);
     }
 
+    @Override
+    final
+    public Stream<Pair<Version, Id>> range(Version start, Version finish) {
+        return logIndex.range(start, finish);
+    }
+
     //    @Override
     //    public  Version nextVersion() {}
 
@@ -79,20 +101,23 @@ public abstract class PatchLogIndexBase implements PatchLogIndex {
     @Override
     final
     public Version idToVersion(Id id) {
-        if ( Objects.equals(currentId, id) )
-            return currentVersion;
-        return logIndex.getPatchInfo(id).getVersion();
+        if ( id == null )
+            return null;
+        LogHead h = head;
+        if ( Objects.equals(h.getCurrentId(), id) )
+            return h.getCurrentVersion();
+        return logIndex.idToVersion(id);
     }
 
     @Override
     final
     public LogEntry getPatchInfo(Id id) {
-        // Get the three values inside a lock so they are consistent with "save".
-        return runWithLockRtn(()->{
-                if ( Objects.equals(currentId, id) )
-                    return new LogEntry(currentId, currentVersion, previousId);
-                return logIndex.getPatchInfo(id);
-            });
+        // The three values of the head are consistent because they come from one LogHead.
+        // Other entries do not change once written.
+        LogHead h = head;
+        if ( Objects.equals(h.getCurrentId(), id) )
+            return new LogEntry(h.getCurrentId(), h.getCurrentVersion(), h.getPreviousId());
+        return logIndex.getPatchInfo(id);
     }
 
     @Override
@@ -117,8 +142,7 @@ public abstract class PatchLogIndexBase implements PatchLogIndex {
 
     @Override
     public boolean isEmpty() {
-        //return version == DeltaConst.VERSION_UNSET || DeltaConst.VERSION_INIT;
-        return currentId == null;
+        return head.isEmpty();
     }
 
     @Override
@@ -126,49 +150,75 @@ public abstract class PatchLogIndexBase implements PatchLogIndex {
         Objects.requireNonNull(newVersion);
         Objects.requireNonNull(newCurrent);
         synchronized(lock) {
+            LogHead h = head;
+            Version currentVersion = h.getCurrentVersion();
+            Id currentId = h.getCurrentId();
             if ( Objects.equals(newVersion, currentVersion) )
                 throw new DeltaException(
                     format("save: Attempt save state with current version %s", currentVersion));
             if ( newVersion.isBefore(currentVersion) )
                 throw new DeltaException(
                     format("save: Attempt save state at version %s with older version %s", currentVersion, newVersion));
-            if ( ! Objects.equals(this.currentId, newPrevious) )
+            if ( ! Objects.equals(currentId, newPrevious) )
                 throw new DeltaException(
                     format("save: Attempt save state when current != new prev (%s %s)", currentId, newPrevious));
             logIndex.save(newVersion, newCurrent, newPrevious);
-            this.currentVersion = newVersion;
-            this.currentId = newCurrent;
-            this.previousId = newPrevious;
-            if ( earliestId == null ) {
-                earliestId = newCurrent;
-                earliestVersion = newVersion;
+            // Publish the new head after the log index has been updated.
+            if ( h.getEarliestId() == null )
+                head = new LogHead(newVersion, newCurrent, newVersion, newCurrent, newPrevious);
+            else
+                head = new LogHead(h.getEarliestVersion(), h.getEarliestId(), newVersion, newCurrent, newPrevious);
+        }
+    }
+
+    @Override
+    final public Version truncate(Version version) {
+        Objects.requireNonNull(version);
+        synchronized(lock) {
+            LogHead h = head;
+            Version earliestVersion = h.getEarliestVersion();
+            Version currentVersion = h.getCurrentVersion();
+            if ( h.isEmpty() || ! version.isAfter(earliestVersion) )
+                return earliestVersion;
+            if ( version.isAfter(currentVersion) )
+                throw new DeltaException(
+                    format("truncate: Attempt to truncate at version %s after the current version %s", version, currentVersion));
+            // The first entry from "version": versions may have gaps.
+            Pair<Version, Id> first;
+            try ( Stream<Pair<Version, Id>> entries = logIndex.range(version, currentVersion) ) {
+                first = entries.findFirst().orElse(null);
             }
+            if ( first == null )
+                return earliestVersion;
+            logIndex.truncate(first.getLeft());
+            head = new LogHead(first.getLeft(), first.getRight(), currentVersion, h.getCurrentId(), h.getPreviousId());
+            return first.getLeft();
         }
     }
 
     @Override
     final public Version getEarliestVersion() {
-        return earliestVersion;
+        return head.getEarliestVersion();
     }
 
     @Override
     final public Id getEarliestId() {
-        return earliestId;
+        return head.getEarliestId();
     }
 
     @Override
     final public Version getCurrentVersion() {
-        return currentVersion;
+        return head.getCurrentVersion();
     }
 
     @Override
     final public Id getCurrentId() {
-        return currentId;
+        return head.getCurrentId();
     }
 
     @Override
     final public Id getPreviousId() {
-        return previousId;
+        return head.getPreviousId();
     }
 
     @Override
@@ -177,36 +227,73 @@ public abstract class PatchLogIndexBase implements PatchLogIndex {
 
     private final Object lockSync = new Object();
 
-    private Semaphore sema = new Semaphore(1);
     private Id lockToken = null;
     private long refresh = -1;
 
+    // Requests waiting for the lock, first come, first served. When the lock is
+    // released, it is passed to the first waiter so a later request does not get the
+    // lock before it. Waiters do not hold a thread.
+    private final Deque<LockWaiter> waiters = new ArrayDeque<>();
+
     // Implementation as single-machine and transient, not replicated, locks
     @Override
     public Id acquireLock() {
-//        // With timeout.
-//        try {
-//            boolean b = sema.tryAcquire(10, TimeUnit.SECONDS);
-//            if (! b )
-//                return null;
-//        } catch (InterruptedException e) {
-//            return null;
-//        }
-
-        // No wait
+        return acquireLock(0);
+    }
+
+    @Override
+    public Id acquireLock(long timeoutMillis) {
+        CompletableFuture<Id> result = new CompletableFuture<>();
+        LockWaiter waiter = new LockWaiter(result::complete);
+        acquireLock(waiter);
+        try {
+            if ( timeoutMillis > 0 )
+                return result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            throw new DeltaException("acquireLock", ex.getCause());
+        }
+        if ( waiter.cancel() )
+            return null;
+        // Given the lock, possibly between the timeout and the cancel.
+        return result.join();
+    }
+
+    @Override
+    public void acquireLock(LockWaiter waiter) {
+        Id session;
         synchronized(lockSync) {
-            boolean b = sema.tryAcquire();
-            if (! b )
-                return null;
-            Id here = lockToken;
-            if ( here != null )
-                throw new DeltaException("Inconsistent. Got Semaphore but ownership token was present");
-            // May be readers/grabbers
-            Id token = Id.create();
-            refresh = 1;
-            lockToken = token;
-            return token;
+            waiters.removeIf(LockWaiter::isDone);
+            if ( lockToken != null || ! waiters.isEmpty() ) {
+                waiters.addLast(waiter);
+                return;
+            }
+            if ( ! waiter.claim() )
+                return;
+            session = newLockSession();
         }
+        grant(waiter, session);
+    }
+
+    // Outside lockSync: the waiter action may take time or fail.
+    private void grant(LockWaiter waiter, Id session) {
+        try {
+            waiter.grant(session);
+        } catch (RuntimeException ex) {
+            // The waiter does not know it has the lock; pass it on.
+            FmtLog.warn(LOG, "Lock waiter failed: %s", ex.getMessage());
+            releaseLock(session);
+        }
+    }
+
+    // Inside lockSync.
+    private Id newLockSession() {
+        Id token = Id.create();
+        refresh = 1;
+        lockToken = token;
+        return token;
     }
 
     @Override
@@ -239,19 +326,17 @@ public abstract class PatchLogIndexBase implements PatchLogIndex {
             if ( here == null )
                 // No lock.
                 return null;
-            if ( here != null ) {
-                // Release if taken.
-                if ( ! here.equals(oldLockSession) )
-                    return null;
-                releaseLock(oldLockSession);
-            }
-            // New lock session.
-            return acquireLock();
+            if ( ! here.equals(oldLockSession) )
+                return null;
+            // New lock session. The lock is not released so it does not pass to a waiter.
+            return newLockSession();
         }
      }
 
     @Override
     public void releaseLock(Id lockSession) {
+        LockWaiter next;
+        Id nextSession;
         synchronized(lockSync) {
             if ( lockSession == null )
                 return;
@@ -263,7 +348,16 @@ public abstract class PatchLogIndexBase implements PatchLogIndex {
                 return;
             lockToken = null;
             refresh = -1;
-            sema.release();
+            // Skip cancelled waiters.
+            for (;;) {
+                next = waiters.pollFirst();
+                if ( next == null )
+                    return;
+                if ( next.claim() )
+                    break;
+            }
+            nextSession = newLockSession();
         }
+        grant(next, nextSession);
     }
 }
@@ -17,11 +17,18 @@
 
 package org.seaborne.delta.server.local.patchstores;
 
+import java.nio.channels.ReadableByteChannel;
 import java.util.List;
+import java.util.Objects;
+import java.util.function.BiConsumer;
 import java.util.stream.Stream;
 
+import org.apache.jena.atlas.lib.Pair;
+import org.apache.jena.rdfpatch.RDFChanges;
 import org.apache.jena.rdfpatch.RDFPatch;
+import org.apache.jena.rdfpatch.changes.RDFChangesCollector;
 import org.seaborne.delta.Id;
+import org.seaborne.delta.Retention;
 import org.seaborne.delta.Version;
 
 /**
@@ -40,12 +47,108 @@ public interface PatchStorage {
         store(key, patch);
     }
 
+    /**
+     * Run {@code action}, which stores a patch and then saves its log index entry.
+     * Storage that shares a database with the log index overrides this to make both
+     * one atomic write. The default runs the action.
+     */
+    public default void commitPatch(Runnable action) {
+        action.run();
+    }
+
+    /**
+     * Store a patch as it is read. The returned {@link PatchStorageWriter} receives the
+     * patch before its version is known, then {@link PatchStorageWriter#commit(Version)}
+     * stores it.
+     * <p>
+     * The default implementation collects the patch in memory and calls
+     * {@link #store(Version, Id, RDFPatch)} on commit.
+     */
+    public default PatchStorageWriter storeStream(Id key) {
+        RDFChangesCollector collector = new RDFChangesCollector();
+        return new PatchStorageWriter() {
+            @Override public RDFChanges changes()           { return collector; }
+            @Override public void commit(Version version)   { store(version, key, collector.getRDFPatch()); }
+            @Override public void abort()                   { }
+        };
+    }
+
+    /**
+     * Provide the actions that make a stored patch durable, for group commit. Each action
+     * has a key; actions with the same key, from different patches, are run once for a
+     * group. The default is no actions (e.g. in-memory storage).
+     */
+    public default void syncActions(Version version, Id key, BiConsumer<Object, Runnable> action) { }
+
     /** Get a patch */
     public RDFPatch fetch(Id key);
 
+    /**
+     * Get the patches for a stream of (version, id), in the order of the argument stream.
+     * Patches are fetched and parsed one at a time as the returned stream is consumed.
+     * Missing patches are skipped.
+     */
+    public default Stream<RDFPatch> fetch(Stream<Pair<Version, Id>> entries) {
+        return entries.map(e->fetch(e.getRight())).filter(Objects::nonNull);
+    }
+
+    /**
+     * The content type of patches as stored, or null if the stored form is not available
+     * (see {@link #fetchRaw}).
+     */
+    public default String getStoredContentType() {
+        return null;
+    }
+
+    /**
+     * Get the stored bytes of a patch, without parsing, in the format given by
+     * {@link #getStoredContentType}. Returns null if the patch is not found or the
+     * storage does not provide access to the stored form.
+     * The caller is responsible for closing the channel.
+     */
+    public default ReadableByteChannel fetchRaw(Version version, Id key) {
+        return null;
+    }
+
     /** Delete a patch */
     public void delete(Id id);
 
+    /**
+     * The stored size of a patch, in bytes, or -1 if it is not available.
+     * Used for retention by size (see {@link Retention}).
+     */
+    public default long size(Version version, Id key) {
+        return -1;
+    }
+
+    /**
+     * The time a patch was stored, in milliseconds since the epoch, or -1 if it is not
+     * available. It may be later than the time the patch was stored, but not earlier.
+     * Used for retention by age (see {@link Retention}).
+     */
+    public default long timestamp(Version version, Id key) {
+        return -1;
+    }
+
+    /**
+     * The version to truncate the log at to remove the patches before {@code version}.
+     * Storage that removes patches in blocks returns the start of the block holding
+     * {@code version}; no later version is returned.
+     */
+    public default Version truncatePoint(Version version) {
+        return version;
+    }
+
+    /**
+     * Remove the patches before {@code version}. {@code removed} is the (version, id) of
+     * the patches that were in the log index; it is called after the log index has been
+     * truncated, so storage may also remove any other patches before {@code version}.
+     * The default deletes each patch in {@code removed}.
+     */
+    public default void truncate(Version version, List<Pair<Version, Id>> removed) {
+        removed.forEach(e->delete(e.getRight()));
+    }
+
     /** Release all the patches and any other state for this {@code PatchStorage} */
     public default void release() { }
 
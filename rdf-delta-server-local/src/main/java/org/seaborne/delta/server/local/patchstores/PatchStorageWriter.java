@@ -0,0 +1,42 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server.local.patchstores;
+
+import org.apache.jena.rdfpatch.RDFChanges;
+import org.seaborne.delta.Version;
+
+/**
+ * Destination for a patch that is being stored as it is read, for example from a
+ * network stream, so that the whole patch is not held in memory.
+ * <p>
+ * The patch, including the header, is sent to {@link #changes()}. Then
+ * {@link #commit(Version)} makes the patch visible in the {@link PatchStorage}, or
+ * {@link #abort()} discards it.
+ *
+ * @see PatchStorage#storeStream
+ */
+public interface PatchStorageWriter {
+    /** The destination for the patch. */
+    public RDFChanges changes();
+
+    /** The patch has been sent to {@link #changes()}: store it as {@code version}. */
+    public void commit(Version version);
+
+    /** Discard the patch. */
+    public void abort();
+}
@@ -0,0 +1,362 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server.local.patchstores;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import org.seaborne.delta.DeltaException;
+import org.seaborne.delta.Id;
+import org.seaborne.delta.Version;
+import org.seaborne.delta.server.local.LogEntry;
+
+/**
+ * Compact in-memory index of the patches of a log: version to id, id to version, and
+ * the previous patch of each patch.
+ * <p>
+ * Versions of a log are dense and increasing, so entries are kept in arrays indexed by
+ * the offset of the version from the first version: the id, as the two longs of its
+ * UUID, and the offset of the previous patch. Id to version is an open-addressing hash
+ * table of offsets. There are no objects per patch.
+ * <p>
+ * Ids that are not UUIDs, and previous patches that are not in the index, are rare and
+ * are kept in maps.
+ * <p>
+ * There is one writer at a time ({@link #add} is called inside the {@link PatchLogIndex}
+ * lock). Readers do not lock: an entry is published by a release-write of its previous
+ * slot, and then its hash slot. When the arrays grow, new arrays are filled then
+ * published; a reader still using the old arrays sees the index as it was before the
+ * latest additions.
+ */
+public class VersionIndex {
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle INTS  = MethodHandles.arrayElementVarHandle(int[].class);
+
+    // Values of the "previous" slot. Otherwise, the offset of the previous entry, plus one.
+    private static final long EMPTY       = Long.MIN_VALUE;
+    private static final long NO_PREVIOUS = 0;
+    private static final long OTHER_PREVIOUS = -1;
+
+    private static final int INITIAL_SIZE = 16;
+
+    private static final class Entries {
+        // Version of entry 0.
+        final long base;
+        final long[] msb;
+        final long[] lsb;
+        final long[] previous;
+        // Hash table: entry offset plus one; 0 for an empty slot. Size is a power of two.
+        final int[] hash;
+
+        Entries(long base, int size, int hashSize) {
+            this.base = base;
+            this.msb = new long[size];
+            this.lsb = new long[size];
+            this.previous = new long[size];
+            Arrays.fill(previous, EMPTY);
+            this.hash = new int[hashSize];
+        }
+    }
+
+    private volatile Entries arrays = null;
+    // Versions of the first and last entries; -1 when empty.
+    private volatile long first = -1;
+    private volatile long last = -1;
+    private int count = 0;
+
+    // Ids that are not UUIDs, by version, and their versions.
+    private final Map<Long, Id> otherIds = new ConcurrentHashMap<>();
+    private final Map<Id, Long> otherVersions = new ConcurrentHashMap<>();
+    // Previous of an entry when it is not in the index, by version.
+    private final Map<Long, Id> otherPrevious = new ConcurrentHashMap<>();
+
+    public VersionIndex() {}
+
+    /** Add an entry. Versions must be added in increasing order; there may be gaps. */
+    public synchronized void add(Version version, Id id, Id previous) {
+        long ver = version.value();
+        if ( last >= 0 && ver <= last )
+            throw new DeltaException("VersionIndex: version "+ver+" is not after version "+last);
+        Entries a = arrays;
+        if ( a == null ) {
+            a = new Entries(ver, INITIAL_SIZE, 2*INITIAL_SIZE);
+            first = ver;
+        }
+        a = ensureCapacity(a, ver);
+        int offset = (int)(ver - a.base);
+
+        long prevCode = NO_PREVIOUS;
+        if ( previous != null ) {
+            long prevVersion = lookup(a, previous);
+            if ( prevVersion >= 0 )
+                prevCode = prevVersion - a.base + 1;
+            else {
+                otherPrevious.put(ver, previous);
+                prevCode = OTHER_PREVIOUS;
+            }
+        }
+
+        UUID uuid = id.asUUID();
+        if ( uuid != null ) {
+            a.msb[offset] = uuid.getMostSignificantBits();
+            a.lsb[offset] = uuid.getLeastSignificantBits();
+        } else {
+            otherIds.put(ver, id);
+            otherVersions.put(id, ver);
+        }
+        LONGS.setRelease(a.previous, offset, prevCode);
+        if ( uuid != null )
+            insert(a, uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), offset);
+        count++;
+        arrays = a;
+        last = ver;
+    }
+
+    /**
+     * Remove the entries for versions before {@code version}. The last entry is not
+     * removed. Return the number of entries removed.
+     * <p>
+     * The remaining entries are copied to new arrays starting at the first remaining
+     * version, then published. An entry whose previous patch is removed has its previous
+     * recorded in the side map.
+     */
+    public synchronized int truncate(long version) {
+        Entries a = arrays;
+        if ( a == null || version <= first )
+            return 0;
+        if ( version > last )
+            version = last;
+        int start = (int)(version - a.base);
+        int end = (int)(last - a.base);
+        // First remaining entry.
+        while ( (long)LONGS.getAcquire(a.previous, start) == EMPTY )
+            start++;
+        long newBase = a.base + start;
+        int remaining = 0;
+        for ( int i = start ; i <= end ; i++ ) {
+            if ( a.previous[i] != EMPTY )
+                remaining++;
+        }
+        int size = INITIAL_SIZE;
+        while ( size <= end-start )
+            size = (int)Math.min(2L*size, Integer.MAX_VALUE-1);
+        int hashSize = 2*INITIAL_SIZE;
+        while ( 2L*remaining > hashSize )
+            hashSize = 2*hashSize;
+
+        Entries a2 = new Entries(newBase, size, hashSize);
+        for ( int i = start ; i <= end ; i++ ) {
+            long prevCode = a.previous[i];
+            if ( prevCode == EMPTY )
+                continue;
+            int offset = i - start;
+            long ver = a.base + i;
+            if ( prevCode > 0 ) {
+                int prevOffset = (int)(prevCode-1);
+                if ( prevOffset >= start )
+                    prevCode = prevOffset - start + 1;
+                else {
+                    otherPrevious.put(ver, idAt(a, prevOffset));
+                    prevCode = OTHER_PREVIOUS;
+                }
+            }
+            a2.msb[offset] = a.msb[i];
+            a2.lsb[offset] = a.lsb[i];
+            a2.previous[offset] = prevCode;
+            if ( ! otherIds.containsKey(ver) )
+                insert(a2, a2.msb[offset], a2.lsb[offset], offset);
+        }
+        int removed = count - remaining;
+        count = remaining;
+        arrays = a2;
+        first = newBase;
+        // Side map entries of removed versions.
+        otherIds.keySet().removeIf(v->v < newBase);
+        otherVersions.values().removeIf(v->v < newBase);
+        otherPrevious.keySet().removeIf(v->v < newBase);
+        return removed;
+    }
+
+    /** Grow the arrays, returning new, unpublished, arrays if needed. */
+    private Entries ensureCapacity(Entries a, long ver) {
+        long offset = ver - a.base;
+        if ( offset >= Integer.MAX_VALUE-1 )
+            throw new DeltaException("VersionIndex: too many versions: "+ver);
+        boolean growEntries = offset >= a.previous.length;
+        boolean growHash = 2*(count+1) > a.hash.length;
+        if ( ! growEntries && ! growHash )
+            return a;
+        int size = a.previous.length;
+        while ( offset >= size )
+            size = (int)Math.min(2L*size, Integer.MAX_VALUE-1);
+        int hashSize = a.hash.length;
+        while ( 2L*(count+1) > hashSize )
+            hashSize = 2*hashSize;
+        Entries a2 = new Entries(a.base, size, hashSize);
+        System.arraycopy(a.msb, 0, a2.msb, 0, a.msb.length);
+        System.arraycopy(a.lsb, 0, a2.lsb, 0, a.lsb.length);
+        System.arraycopy(a.previous, 0, a2.previous, 0, a.previous.length);
+        for ( int i = 0 ; i < a.previous.length ; i++ ) {
+            if ( a2.previous[i] != EMPTY && ! otherIds.containsKey(a.base+i) )
+                insert(a2, a2.msb[i], a2.lsb[i], i);
+        }
+        return a2;
+    }
+
+    private static int hash(long msb, long lsb) {
+        long h = (msb ^ lsb) * 0x9E3779B97F4A7C15L;
+        return (int)(h ^ (h >>> 32));
+    }
+
+    private static void insert(Entries a, long msb, long lsb, int offset) {
+        int mask = a.hash.length-1;
+        int slot = hash(msb, lsb) & mask;
+        while ( a.hash[slot] != 0 )
+            slot = (slot+1) & mask;
+        INTS.setRelease(a.hash, slot, offset+1);
+    }
+
+    /** Version of {@code id}, or -1. */
+    private long lookup(Entries a, Id id) {
+        UUID uuid = id.asUUID();
+        if ( uuid == null ) {
+            Long v = otherVersions.get(id);
+            return ( v == null ) ? -1 : v;
+        }
+        if ( a == null )
+            return -1;
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        int mask = a.hash.length-1;
+        int slot = hash(msb, lsb) & mask;
+        for ( ;; ) {
+            int x = (int)INTS.getAcquire(a.hash, slot);
+            if ( x == 0 )
+                return -1;
+            int offset = x-1;
+            if ( a.msb[offset] == msb && a.lsb[offset] == lsb )
+                return a.base + offset;
+            slot = (slot+1) & mask;
+        }
+    }
+
+    /** Offset of {@code version} in the arrays, or -1 if there is no entry. */
+    private static int offset(Entries a, long version) {
+        if ( a == null )
+            return -1;
+        long offset = version - a.base;
+        if ( offset < 0 || offset >= a.previous.length )
+            return -1;
+        if ( (long)LONGS.getAcquire(a.previous, (int)offset) == EMPTY )
+            return -1;
+        return (int)offset;
+    }
+
+    private Id idAt(Entries a, int offset) {
+        long msb = a.msb[offset];
+        long lsb = a.lsb[offset];
+        if ( msb == 0 && lsb == 0 ) {
+            Id id = otherIds.get(a.base+offset);
+            if ( id != null )
+                return id;
+        }
+        return Id.fromUUID(new UUID(msb, lsb));
+    }
+
+    /** The id for {@code version}, or null. */
+    public Id versionToId(long version) {
+        Entries a = arrays;
+        int offset = offset(a, version);
+        return ( offset < 0 ) ? null : idAt(a, offset);
+    }
+
+    /** The version of {@code id}, or null. */
+    public Version idToVersion(Id id) {
+        long v = lookup(arrays, id);
+        return ( v < 0 ) ? null : Version.create(v);
+    }
+
+    /** Whether {@code id} is in the index. */
+    public boolean contains(Id id) {
+        return lookup(arrays, id) >= 0;
+    }
+
+    /** The {@link LogEntry} for {@code id}, or null. */
+    public LogEntry getEntry(Id id) {
+        Entries a = arrays;
+        long v = lookup(a, id);
+        if ( v < 0 )
+            return null;
+        return entryAt(a, (int)(v - a.base));
+    }
+
+    /** The {@link LogEntry} for {@code version}, or null. */
+    public LogEntry getEntry(long version) {
+        Entries a = arrays;
+        int offset = offset(a, version);
+        return ( offset < 0 ) ? null : entryAt(a, offset);
+    }
+
+    private LogEntry entryAt(Entries a, int offset) {
+        long prevCode = (long)LONGS.getAcquire(a.previous, offset);
+        long version = a.base+offset;
+        Id previous;
+        if ( prevCode == NO_PREVIOUS )
+            previous = null;
+        else if ( prevCode == OTHER_PREVIOUS )
+            previous = otherPrevious.get(version);
+        else
+            previous = idAt(a, (int)(prevCode-1));
+        return new LogEntry(idAt(a, offset), Version.create(version), previous);
+    }
+
+    /** All the entries, in version order. */
+    public Stream<LogEntry> entries() {
+        Entries a = arrays;
+        long finish = last;
+        if ( a == null || finish < 0 )
+            return Stream.empty();
+        return LongStream.rangeClosed(a.base, finish)
+            .mapToObj(v->{
+                int offset = offset(a, v);
+                return ( offset < 0 ) ? null : entryAt(a, offset);
+            })
+            .filter(e->e != null);
+    }
+
+    /** Version of the first entry, or -1. */
+    public long first() {
+        return first;
+    }
+
+    /** Version of the last entry, or -1. */
+    public long last() {
+        return last;
+    }
+
+    /** Number of entries. */
+    public synchronized int size() {
+        return count;
+    }
+}
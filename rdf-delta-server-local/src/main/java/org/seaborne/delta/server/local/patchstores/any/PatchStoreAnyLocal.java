@@ -38,17 +38,19 @@ import org.seaborne.delta.server.local.patchstores.filestore.FileArea;
 import org.seaborne.delta.server.local.patchstores.mem.PatchStoreMem;
 import org.seaborne.delta.server.local.patchstores.rdb.PatchStoreRocks;
 import org.seaborne.delta.server.local.patchstores.rdb.RocksConst;
+import org.seaborne.delta.server.local.patchstores.segment.PatchStoreSegment;
 
 //This class exists to handle newPatchLog.
 
 /**
- * A {@link PatchStore} that create a local file-based or RocksDB-based {@link PatchLog}
+ * A {@link PatchStore} that create a local file-based, segment file-based or RocksDB-based {@link PatchLog}
  * by intercepting {@link #newPatchLog}.
  */
 public class PatchStoreAnyLocal extends PatchStore {
 
     private final PatchStoreFile   patchStoreFile;
     private final PatchStoreRocks  patchStoreRocks;
+    private final PatchStoreSegment patchStoreSegment;
     // Hidden - or the source.cfg type="mem" case.
     private final PatchStoreMem    patchStoreMem;
     private final PatchStore       patchStoreDefaultNew;
@@ -61,6 +63,7 @@ public class PatchStoreAnyLocal extends PatchStore {
         this.patchLogDirectory = Paths.get(patchLogDirectory);
         patchStoreFile = new PatchStoreFile(patchLogDirectory, PatchStoreMgr.getPatchStoreProvider(Provider.FILE));
         patchStoreRocks = new PatchStoreRocks(patchLogDirectory, PatchStoreMgr.getPatchStoreProvider(Provider.ROCKS));
+        patchStoreSegment = new PatchStoreSegment(patchLogDirectory, PatchStoreMgr.getPatchStoreProvider(Provider.SEGMENT));
         patchStoreMem = new PatchStoreMem(provider);
 
         patchStoreDefaultNew = patchStoreRocks;
@@ -70,7 +73,18 @@ public class PatchStoreAnyLocal extends PatchStore {
     public void initialize(DataSourceRegistry dataSourceRegistry, LocalServerConfig config) {
         patchStoreFile.initialize(dataSourceRegistry, config);
         patchStoreRocks.initialize(dataSourceRegistry, config);
+        patchStoreSegment.initialize(dataSourceRegistry, config);
         super.initialize(dataSourceRegistry, config);
+        // One cache, for all the patch logs, whichever provider they are using.
+        patchStoreFile.setPatchCache(getPatchCache());
+        patchStoreRocks.setPatchCache(getPatchCache());
+        patchStoreSegment.setPatchCache(getPatchCache());
+        patchStoreMem.setPatchCache(getPatchCache());
+        // One group commit, so appends to logs of different providers share the wait.
+        patchStoreFile.setGroupCommit(getGroupCommit());
+        patchStoreRocks.setGroupCommit(getGroupCommit());
+        patchStoreSegment.setGroupCommit(getGroupCommit());
+        patchStoreMem.setGroupCommit(getGroupCommit());
     }
 
     @Override
@@ -88,7 +102,8 @@ public class PatchStoreAnyLocal extends PatchStore {
         PatchStore patchStore = choose(dsd, fileStoreDir);
         if ( patchStore == null )
             return null;
-        return patchStore.createLog(dsd);
+        // Registration is done by this patch store.
+        return patchStore.openLog(dsd);
     }
 
     private PatchStore choose(DataSourceDescription dsd, Path patchLogDir) {
@@ -114,6 +129,7 @@ public class PatchStoreAnyLocal extends PatchStore {
                     case FILE :  return patchStoreFile;
                     case MEM :   return patchStoreMem;
                     case ROCKS : return patchStoreRocks;
+                    case SEGMENT : return patchStoreSegment;
                     case LOCAL :
                         throw new DeltaException(dsdCfg.getName()+":"+FileNames.DS_CONFIG+" : log_type = local");
                     default:
@@ -141,6 +157,18 @@ public class PatchStoreAnyLocal extends PatchStore {
         throw new DeltaException("PatchStoreAnyLocal.newPatchStorage called");
     }
 
+    // Patch logs are opened by the file, RocksDB or memory patch store.
+    @Override
+    public boolean canCloseLog(PatchLog patchLog) {
+        PatchStore patchStore = patchLog.getPatchStore();
+        return patchStore != this && patchStore.canCloseLog(patchLog);
+    }
+
+    @Override
+    protected void closePatchLog(PatchLog patchLog) {
+        patchLog.getPatchStore().closeLog(patchLog);
+    }
+
     @Override
     protected void delete(PatchLog patchLog) {
         // This should have gone to the concrete file/rocks PatchStore
@@ -151,5 +179,6 @@ public class PatchStoreAnyLocal extends PatchStore {
     protected void shutdownSub() {
         patchStoreFile.shutdown();
         patchStoreRocks.shutdown();
+        patchStoreSegment.shutdown();
     }
 }
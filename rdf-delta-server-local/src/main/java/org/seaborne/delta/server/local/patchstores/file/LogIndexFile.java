@@ -18,29 +18,28 @@
 package org.seaborne.delta.server.local.patchstores.file;
 
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
 import java.util.stream.Stream;
 
 import org.seaborne.delta.Id;
 import org.seaborne.delta.Version;
 import org.seaborne.delta.server.local.LogEntry;
 import org.seaborne.delta.server.local.patchstores.LogIndex;
+import org.seaborne.delta.server.local.patchstores.VersionIndex;
 import org.seaborne.delta.server.local.patchstores.filestore.FileStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** The details of the patch file are for one patch log, constructed by parsing the {@link FileStore}. */
+/**
+ * The details of the patch file are for one patch log, constructed from the on-disk
+ * index ({@link PatchIndexFile}) or by parsing the {@link FileStore}.
+ */
 public class LogIndexFile implements LogIndex {
     private static Logger  LOG = LoggerFactory.getLogger(LogIndexFile.class);
 
-    //Use LogIndexMem?
-
     // For reference.
     private final FileStore fileStore;
-    private final Map<Version, Id> versionToId;
-    private final Map<Id, LogEntry> logEntries;
+    private final PatchIndexFile indexFile;
+    private final VersionIndex index;
 
     // Latest patch at the point of starting in this JVM.
     private Id currentId;
@@ -54,15 +53,15 @@ public class LogIndexFile implements LogIndex {
         return logIndexFile;
     }
 
-    /*package*/ LogIndexFile(FileStore fileStore, Map<Version, Id> versionToId,
-                             Version latestVersion, Version latestPrevious, Version earliestVersion, Map<Id, LogEntry> logEntries) {
+    /*package*/ LogIndexFile(FileStore fileStore, PatchIndexFile indexFile, VersionIndex index,
+                             Version latestVersion, Version latestPrevious, Version earliestVersion) {
         this.fileStore = fileStore;
-        this.versionToId = versionToId;
+        this.indexFile = indexFile;
+        this.index = index;
         this.currentVersion = versionOrDft(latestVersion, Version.INIT);
         this.currentId = versionToId(currentVersion);
         this.earliestVersion = versionOrDft(earliestVersion, Version.INIT);
         this.earliestId = versionToId(earliestVersion);
-        this.logEntries = logEntries;
 
         // FileStore is not used again except to be carried around for PatchStorageFile.
     }
@@ -79,13 +78,16 @@ public class LogIndexFile implements LogIndex {
         return fileStore.getPath();
     }
 
-    /*package*/ Version idToVersion(Id id) {
+    /** Release the on-disk index. */
+    public void close() {
+        indexFile.close();
+    }
+
+    @Override
+    public Version idToVersion(Id id) {
         if ( id == null )
             return null;
-        LogEntry entry = logEntries.get(id);
-        if ( entry == null )
-            return null;
-        return entry.getVersion();
+        return index.idToVersion(id);
     }
 
     @Override
@@ -96,28 +98,36 @@ public class LogIndexFile implements LogIndex {
             return null;
         if ( Version.INIT.equals(version) )
             return null;
-        return versionToId.get(version);
+        return index.versionToId(version.value());
     }
 
     @Override
     public void save(Version version, Id id, Id previous) {
         // Does not update FileStore.
         // The update to the PatchStorageFile updates the on-disk recovery state.
+        // The on-disk index is updated first: if that fails, the patch is not in the log.
+        indexFile.append(version, id, previous);
         currentId = id;
         currentVersion = version;
-        versionToId.put(version, id);
-        LogEntry entry = new LogEntry(id, version, previous);
-        logEntries.put(id, entry);
+        index.add(version, id, previous);
         if ( earliestId == null ) {
             earliestId = id;
             earliestVersion = version;
         }
     }
 
+    @Override
+    public void truncate(Version version) {
+        index.truncate(version.value());
+        // The on-disk index is rewritten before any patch file is removed.
+        indexFile.rewrite(index.entries().toList());
+        earliestVersion = version;
+        earliestId = versionToId(version);
+    }
+
     @Override
     public Stream<LogEntry> entries() {
-        List<LogEntry> x = new ArrayList<>(logEntries.values());
-        return x.stream();
+        return index.entries();
     }
 
     @Override
@@ -127,7 +137,9 @@ public class LogIndexFile implements LogIndex {
 
     @Override
     public LogEntry getPatchInfo(Id id) {
-        return logEntries.get(id);
+        if ( id == null )
+            return null;
+        return index.getEntry(id);
     }
 
     @Override
@@ -20,94 +20,181 @@ package org.seaborne.delta.server.local.patchstores.file;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
 
 import org.apache.jena.atlas.logging.FmtLog;
 import org.seaborne.delta.Id;
 import org.seaborne.delta.Version;
 import org.apache.jena.atlas.io.IOX;
 import org.seaborne.delta.server.local.LogEntry;
+import org.seaborne.delta.server.local.patchstores.VersionIndex;
 import org.seaborne.delta.server.local.patchstores.filestore.FileStore;
 import org.apache.jena.rdfpatch.PatchHeader;
 import org.apache.jena.rdfpatch.text.RDFPatchReaderText;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** Build LogIndexFile from a FileStore */
+/**
+ * Build LogIndexFile from a FileStore, using the on-disk index ({@link PatchIndexFile})
+ * if it is present and agrees with the FileStore.
+ */
 public class LogIndexFileBuilder {
     private static Logger LOG = LoggerFactory.getLogger(LogIndexFile.class);
 
+    /*package*/ static LogIndexFile initFromFileStore(FileStore fileStore) {
+        PatchIndexFile indexFile = new PatchIndexFile(fileStore.getPath());
+        LogIndexFile logIndexFile = initFromIndexFile(fileStore, indexFile);
+        if ( logIndexFile != null )
+            return logIndexFile;
+        return initFromPatchFiles(fileStore, indexFile);
+    }
+
     /**
-     * Inspect a {@link FileStore} and build the in-memory maps.
-     * Return the latest version or null if no patches.
+     * Build from the on-disk index, reading the headers only of the patch files that are not in the index.
+     * Return null if there is no index, or it does not agree with the patch files.
      */
-    /*package*/ static LogIndexFile initFromFileStore(FileStore fileStore) {
-        Map<Version, Id> versionToId = new ConcurrentHashMap<>();
-        Map<Id, LogEntry> logEntries = new ConcurrentHashMap<>();
+    private static LogIndexFile initFromIndexFile(FileStore fileStore, PatchIndexFile indexFile) {
+        List<LogEntry> entries = indexFile.read();
+        if ( entries == null )
+            return null;
+        // Patch files, from the directory listing.
+        List<Long> indexes = fileStore.getIndexes().toList();
+        Set<Long> patchFiles = new HashSet<>(indexes);
+
+        VersionIndex index = new VersionIndex();
+        Map<Id, Version> trackIdToVersion = new HashMap<>();
+
+        long lastIndexed = -1;
+        for ( LogEntry entry : entries ) {
+            Version ver = entry.getVersion();
+            if ( ver.value() <= lastIndexed || ! patchFiles.contains(ver.value()) ) {
+                FmtLog.warn(LOG, "Index does not match patch files at version %s: %s", ver, fileStore);
+                return null;
+            }
+            lastIndexed = ver.value();
+            Id prev = entry.getPrevious();
+            // The first patch of a truncated log has a previous that is not in the log.
+            if ( prev != null && ! trackIdToVersion.isEmpty() && ! trackIdToVersion.containsKey(prev) ) {
+                FmtLog.warn(LOG, "Index: can't find previous: version=%s: id=%s, prev=%s", ver, entry.getPatchId(), prev);
+                return null;
+            }
+            trackIdToVersion.put(entry.getPatchId(), ver);
+            index.add(ver, entry.getPatchId(), entry.getPrevious());
+        }
+
+        // Verify the last indexed entry against its patch file.
+        if ( ! entries.isEmpty() ) {
+            LogEntry last = entries.get(entries.size()-1);
+            PatchHeader header = readHeader(fileStore, last.getVersion().value());
+            if ( header == null || ! last.getPatchId().equals(Id.fromNode(header.getId())) ) {
+                FmtLog.warn(LOG, "Index does not match the patch file for version %s: %s", last.getVersion(), fileStore);
+                return null;
+            }
+        }
+
+        // Patch files written after the last index update.
+        for ( long idx : indexes ) {
+            if ( idx <= lastIndexed )
+                continue;
+            LogEntry entry = readEntry(fileStore, idx, trackIdToVersion);
+            if ( entry == null )
+                continue;
+            indexFile.append(entry.getVersion(), entry.getPatchId(), entry.getPrevious());
+            entries.add(entry);
+            trackIdToVersion.put(entry.getPatchId(), entry.getVersion());
+            index.add(entry.getVersion(), entry.getPatchId(), entry.getPrevious());
+        }
+
+        Version earliestVersion = entries.isEmpty() ? null : entries.get(0).getVersion();
+        Version currentVersion = entries.isEmpty() ? null : entries.get(entries.size()-1).getVersion();
+        Version currentPreviousVersion = entries.size() < 2 ? null : entries.get(entries.size()-2).getVersion();
+        return new LogIndexFile(fileStore, indexFile, index, currentVersion, currentPreviousVersion, earliestVersion);
+    }
+
+    /**
+     * Inspect a {@link FileStore}, reading the header of every patch file, to build the in-memory maps.
+     * The on-disk index is rewritten from the patch files.
+     */
+    private static LogIndexFile initFromPatchFiles(FileStore fileStore, PatchIndexFile indexFile) {
+        VersionIndex index = new VersionIndex();
+        List<LogEntry> entries = new ArrayList<>();
 
         // Only used locally.
         Map<Id, Version> trackIdToVersion = new HashMap<>();
 
         // Iterator is sorted.
         Iterator<Long> iter = fileStore.getIndexes().iterator();
-        // DEBUG
-//        List<Long> x = Iter.toList(iter);
-//        System.out.println(x);
-//        iter = x.iterator();
-        // DEBUG
 
         Version earliestVersion = null;     // Not found yet.
         Version currentPreviousVersion = null;
         Version currentVersion = null;      // Not found yet.
-        PatchHeader previous = null;
-        boolean first = true;
 
         for ( ; iter.hasNext() ; ) {
             long idx = iter.next();
-            try ( InputStream in = fileStore.open(idx) ) {
-                PatchHeader patchHeader = RDFPatchReaderText.readerHeader(in);
-                if ( patchHeader == null ) {
-                    FmtLog.error(LOG, "Can't read header: idx=%d", idx);
-                    continue;
-                }
-                Id id = Id.fromNode(patchHeader.getId());
-                if ( id == null ) {
-                    FmtLog.error(LOG, "Can't find id: idx=%d: id=%s", idx, id);
-                    continue;
-                }
-                else {
-                    if ( trackIdToVersion.containsKey(id) ) {
-                        FmtLog.error(LOG, "Duplicate: idx=%d: id=%s", idx, id);
-                    }
-                }
-
-                Id prev = Id.fromNode(patchHeader.getPrevious());
-                if ( prev != null ) {
-                    // We process entries in order so we should have seen previous by now.
-                    if ( ! trackIdToVersion.containsKey(prev) ) {
-                        FmtLog.error(LOG, "Can't find previous: idx=%d: id=%s, prev=%s", idx, id, prev);
-                        continue;
-                    }
-                }
-
-                Version ver = Version.create(idx);
-                if ( logEntries != null ) {
-                    LogEntry patchInfo = new LogEntry(id, ver, prev);
-                    logEntries.put(id, patchInfo);
-                }
-                trackIdToVersion.put(id, ver);
-                versionToId.put(ver, id);
-                if ( earliestVersion == null )
-                    earliestVersion = ver;
-                currentPreviousVersion = currentVersion;
-                currentVersion = ver;
+            LogEntry patchInfo = readEntry(fileStore, idx, trackIdToVersion);
+            if ( patchInfo == null )
+                continue;
+            Id id = patchInfo.getPatchId();
+            Version ver = patchInfo.getVersion();
+            entries.add(patchInfo);
+            trackIdToVersion.put(id, ver);
+            index.add(ver, id, patchInfo.getPrevious());
+            if ( earliestVersion == null )
+                earliestVersion = ver;
+            currentPreviousVersion = currentVersion;
+            currentVersion = ver;
+        }
+        // An empty log gets an index file on the first append.
+        if ( ! entries.isEmpty() || indexFile.exists() )
+            indexFile.rewrite(entries);
+        return new LogIndexFile(fileStore, indexFile, index, currentVersion, currentPreviousVersion, earliestVersion);
+    }
+
+    /**
+     * Read the header of the patch file {@code idx}.
+     * Return null, after logging the error, if the header is not usable.
+     */
+    private static LogEntry readEntry(FileStore fileStore, long idx, Map<Id, Version> trackIdToVersion) {
+        PatchHeader patchHeader = readHeader(fileStore, idx);
+        if ( patchHeader == null ) {
+            FmtLog.error(LOG, "Can't read header: idx=%d", idx);
+            return null;
+        }
+        Id id = Id.fromNode(patchHeader.getId());
+        if ( id == null ) {
+            FmtLog.error(LOG, "Can't find id: idx=%d: id=%s", idx, id);
+            return null;
+        }
+        else {
+            if ( trackIdToVersion.containsKey(id) ) {
+                FmtLog.error(LOG, "Duplicate: idx=%d: id=%s", idx, id);
+            }
+        }
+
+        Id prev = Id.fromNode(patchHeader.getPrevious());
+        if ( prev != null ) {
+            // We process entries in order so we should have seen previous by now,
+            // except for the first patch of a truncated log.
+            if ( ! trackIdToVersion.isEmpty() && ! trackIdToVersion.containsKey(prev) ) {
+                FmtLog.error(LOG, "Can't find previous: idx=%d: id=%s, prev=%s", idx, id, prev);
+                return null;
             }
-            catch (NoSuchFileException ex) { throw IOX.exception(ex); }
-            catch (IOException ex)  { throw IOX.exception(ex); }
         }
-        return new LogIndexFile(fileStore, versionToId, currentVersion, currentPreviousVersion, earliestVersion, logEntries);
+        return new LogEntry(id, Version.create(idx), prev);
+    }
+
+    /** Read the header of the patch file {@code idx}. */
+    private static PatchHeader readHeader(FileStore fileStore, long idx) {
+        try ( InputStream in = fileStore.open(idx) ) {
+            return RDFPatchReaderText.readerHeader(in);
+        }
+        catch (NoSuchFileException ex) { throw IOX.exception(ex); }
+        catch (IOException ex)  { throw IOX.exception(ex); }
     }
 }
@@ -0,0 +1,211 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server.local.patchstores.file;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.apache.jena.atlas.io.IOX;
+import org.apache.jena.atlas.logging.FmtLog;
+import org.seaborne.delta.Id;
+import org.seaborne.delta.Version;
+import org.seaborne.delta.server.local.LogEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The on-disk index of a file-based patch log: one record for each patch, (version, id,
+ * previous), appended when the patch is committed. It saves reading the header of every
+ * patch file when the log is opened.
+ * <p>
+ * The index is not the primary record of the log - the patch files are. It is not forced
+ * to disk; if it is behind the patch files, the missing entries are added when the log is
+ * opened (see {@link LogIndexFileBuilder}).
+ * <p>
+ * Record: length (int), payload, CRC32 of the payload (int).<br/>
+ * Payload: version (long), id, previous (each as a short length then bytes; length 0 for
+ * "no previous").
+ */
+public class PatchIndexFile {
+    private static Logger LOG = LoggerFactory.getLogger(PatchIndexFile.class);
+
+    /** File name of the index, in the patch log directory. Must not start with the patch file basename. */
+    public static final String FILENAME = "log-index";
+
+    private final Path path;
+    // Open for appending, on first use.
+    private FileChannel channel = null;
+
+    public PatchIndexFile(Path directory) {
+        this.path = directory.resolve(FILENAME);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public boolean exists() {
+        return Files.exists(path);
+    }
+
+    /**
+     * Read the index, in file order. Return null if there is no index file.
+     * Reading stops at the first damaged or incomplete record (e.g. a partial write at
+     * the time of a crash) and the file is truncated to the records before it.
+     */
+    public List<LogEntry> read() {
+        if ( ! Files.exists(path) )
+            return null;
+        List<LogEntry> entries = new ArrayList<>();
+        long validLength = 0;
+        long fileLength;
+        try ( FileChannel ch = FileChannel.open(path, READ) ) {
+            fileLength = ch.size();
+            MappedByteBuffer bb = ch.map(FileChannel.MapMode.READ_ONLY, 0, fileLength);
+            while ( bb.remaining() >= Integer.BYTES ) {
+                int len = bb.getInt();
+                if ( len <= 0 || len > bb.remaining() - Integer.BYTES )
+                    break;
+                byte[] payload = new byte[len];
+                bb.get(payload);
+                int crc = bb.getInt();
+                if ( crc != crc(payload) )
+                    break;
+                LogEntry entry = decode(payload);
+                if ( entry == null )
+                    break;
+                entries.add(entry);
+                validLength = bb.position();
+            }
+        } catch (IOException ex) {
+            throw IOX.exception(ex);
+        }
+        if ( validLength < fileLength ) {
+            FmtLog.warn(LOG, "Damaged index record at %d in %s: truncating", validLength, path);
+            try ( FileChannel ch = FileChannel.open(path, WRITE) ) {
+                ch.truncate(validLength);
+            } catch (IOException ex) {
+                throw IOX.exception(ex);
+            }
+        }
+        return entries;
+    }
+
+    /** Add an entry to the end of the index. */
+    public synchronized void append(Version version, Id id, Id previous) {
+        ByteBuffer record = encode(version, id, previous);
+        try {
+            if ( channel == null ) {
+                channel = FileChannel.open(path, CREATE, WRITE);
+                channel.position(channel.size());
+            }
+            long position = channel.position();
+            try {
+                while ( record.hasRemaining() )
+                    channel.write(record);
+            } catch (IOException ex) {
+                // Do not leave a partial record for the next append to follow.
+                try { channel.truncate(position); channel.position(position); } catch (IOException ex2) {}
+                throw ex;
+            }
+        } catch (IOException ex) {
+            throw IOX.exception(ex);
+        }
+    }
+
+    /** Replace the index with the given entries. The new index is written to one side, then moved into place. */
+    public synchronized void rewrite(List<LogEntry> entries) {
+        close();
+        Path tmp = path.resolveSibling(FILENAME+".tmp");
+        try {
+            try ( FileChannel ch = FileChannel.open(tmp, CREATE, WRITE, TRUNCATE_EXISTING) ) {
+                for ( LogEntry e : entries ) {
+                    ByteBuffer record = encode(e.getVersion(), e.getPatchId(), e.getPrevious());
+                    while ( record.hasRemaining() )
+                        ch.write(record);
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            throw IOX.exception(ex);
+        }
+    }
+
+    public synchronized void close() {
+        if ( channel == null )
+            return;
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            FmtLog.warn(LOG, "Exception closing %s: %s", path, ex.getMessage());
+        }
+        channel = null;
+    }
+
+    private static ByteBuffer encode(Version version, Id id, Id previous) {
+        byte[] idBytes = id.asBytes();
+        byte[] prevBytes = ( previous == null ) ? new byte[0] : previous.asBytes();
+        int len = Long.BYTES + Short.BYTES + idBytes.length + Short.BYTES + prevBytes.length;
+        ByteBuffer payload = ByteBuffer.allocate(len);
+        payload.putLong(version.value());
+        payload.putShort((short)idBytes.length).put(idBytes);
+        payload.putShort((short)prevBytes.length).put(prevBytes);
+        byte[] p = payload.array();
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + len + Integer.BYTES);
+        record.putInt(len).put(p).putInt(crc(p));
+        record.flip();
+        return record;
+    }
+
+    private static LogEntry decode(byte[] payload) {
+        try {
+            ByteBuffer bb = ByteBuffer.wrap(payload);
+            long ver = bb.getLong();
+            byte[] idBytes = new byte[bb.getShort()];
+            bb.get(idBytes);
+            byte[] prevBytes = new byte[bb.getShort()];
+            bb.get(prevBytes);
+            if ( bb.hasRemaining() || idBytes.length == 0 )
+                return null;
+            Id id = Id.fromBytes(idBytes);
+            Id prev = ( prevBytes.length == 0 ) ? null : Id.fromBytes(prevBytes);
+            return new LogEntry(id, Version.create(ver), prev);
+        } catch (RuntimeException ex) {
+            return null;
+        }
+    }
+
+    private static int crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int)crc.getValue();
+    }
+}
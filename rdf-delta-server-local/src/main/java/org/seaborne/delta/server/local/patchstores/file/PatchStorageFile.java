@@ -20,25 +20,39 @@ package org.seaborne.delta.server.local.patchstores.file;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
 import org.apache.jena.atlas.lib.InternalErrorException;
+import org.apache.jena.atlas.lib.Pair;
 import org.apache.jena.graph.Node;
+import org.seaborne.delta.DeltaConst;
 import org.seaborne.delta.DeltaNotFoundException;
 import org.seaborne.delta.Id;
 import org.seaborne.delta.Version;
+import org.apache.jena.atlas.io.IO;
 import org.apache.jena.atlas.io.IOX;
 import org.apache.jena.atlas.io.IOX.IOConsumer;
 import org.seaborne.delta.server.local.patchstores.PatchStorage;
+import org.seaborne.delta.server.local.patchstores.PatchStorageWriter;
+import org.seaborne.delta.server.local.patchstores.filestore.FS;
 import org.seaborne.delta.server.local.patchstores.filestore.FileEntry;
 import org.seaborne.delta.server.local.patchstores.filestore.FileStore;
 import org.apache.jena.rdfpatch.PatchHeader;
+import org.apache.jena.rdfpatch.RDFChanges;
 import org.apache.jena.rdfpatch.RDFPatch;
 import org.apache.jena.rdfpatch.RDFPatchOps;
 import org.apache.jena.rdfpatch.text.RDFChangesWriterText;
@@ -46,16 +60,43 @@ import org.apache.jena.rdfpatch.text.RDFPatchReaderText;
 import org.apache.jena.rdfpatch.text.TokenWriter;
 import org.apache.jena.rdfpatch.text.TokenWriterText;
 
-/** Storage of patches using files. */
+/**
+ * Storage of patches using files.
+ * <p>
+ * Patch files do not change once written. When reading, a patch file of at least
+ * {@link #MMAP_THRESHOLD} bytes is memory mapped and the mapping kept for later requests;
+ * the most recently used {@link #MAX_MAPPED} mappings are kept. The mappings are dropped
+ * by {@link #release}. Smaller patch files are read each time; mapping them costs more
+ * than it saves.
+ */
 public class PatchStorageFile implements PatchStorage {
 
+    /** Number of mapped patch files kept by each {@code PatchStorageFile}. */
+    public static final int MAX_MAPPED = 256;
+
+    /** Size, in bytes, of the smallest patch file that is memory mapped. */
+    public static final long MMAP_THRESHOLD = 64*1024;
+
     private final Function<Id, Version> id2version;
     private final FileStore fileStore;
+    private final boolean mmap;
+    // Version to mapped patch file. Access order, for least recently used eviction.
+    private final Map<Long, ByteBuffer> mapped = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, ByteBuffer> eldest) {
+            return size() > MAX_MAPPED;
+        }
+    };
 
     public PatchStorageFile(FileStore fileStore, Function<Id, Version> id2version) {
+        this(fileStore, id2version, true);
+    }
+
+    public PatchStorageFile(FileStore fileStore, Function<Id, Version> id2version, boolean mmap) {
         // File-based patch storage is by version number, hence "id2version" required.
         this.fileStore = fileStore;
         this.id2version = id2version;
+        this.mmap = mmap;
     }
 
     @Override
@@ -93,6 +134,49 @@ public class PatchStorageFile implements PatchStorage {
         fileStore.completeWrite(file);
     }
 
+    @Override
+    public PatchStorageWriter storeStream(Id key) {
+        // Write to a temporary file as the patch arrives; the version is allocated,
+        // and the file moved into place, on commit.
+        Path tmpFile = fileStore.newTmpFile();
+        OutputStream out;
+        try {
+            out = Files.newOutputStream(tmpFile);
+        } catch (IOException ex) { throw IOX.exception(ex); }
+        TokenWriter tw = TokenWriterText.create(out) ;
+        RDFChangesWriterText dest = new RDFChangesWriterText(tw) ;
+        return new PatchStorageWriter() {
+            @Override
+            public RDFChanges changes() { return dest; }
+
+            @Override
+            public void commit(Version version) {
+                tw.flush();
+                IO.close(out);
+                FileEntry file = fileStore.allocateFilename(version.value());
+                file.completeWrite(tmpFile);
+                fileStore.completeWrite(file);
+            }
+
+            @Override
+            public void abort() {
+                IO.close(out);
+                try {
+                    Files.deleteIfExists(tmpFile);
+                } catch (IOException ex) { throw IOX.exception(ex); }
+            }
+        };
+    }
+
+    @Override
+    public void syncActions(Version version, Id key, BiConsumer<Object, Runnable> action) {
+        // The patch file, then the directory for the rename of the temporary file.
+        Path path = fileStore.filename(version.value());
+        action.accept(path, ()->FS.fsync(path, false));
+        Path dir = fileStore.getPath();
+        action.accept(dir, ()->FS.fsync(dir, true));
+    }
+
     private Version idToVersion(Id id) {
         return id2version.apply(id);
     }
@@ -100,6 +184,19 @@ public class PatchStorageFile implements PatchStorage {
     @Override
     public RDFPatch fetch(Id id) {
         Version ver = idToVersion(id);
+        return fetch(ver);
+    }
+
+    @Override
+    public Stream<RDFPatch> fetch(Stream<Pair<Version, Id>> entries) {
+        // Files are by version - no need to go via the id.
+        return entries.map(e->fetch(e.getLeft())).filter(Objects::nonNull);
+    }
+
+    private RDFPatch fetch(Version ver) {
+        ByteBuffer bytes = mapped(ver.value());
+        if ( bytes != null )
+            return RDFPatchOps.read(FS.asInputStream(bytes));
         try ( InputStream in = fileStore.open(ver.value()) ) {
             RDFPatch patch = RDFPatchOps.read(in) ;
             return patch;
@@ -111,14 +208,108 @@ public class PatchStorageFile implements PatchStorage {
         }
     }
 
+    /**
+     * The contents of the patch file for {@code version}, as a new {@code ByteBuffer}
+     * over the mapping. Return null if the file is not mapped: mapping is not enabled,
+     * the file is smaller than {@link #MMAP_THRESHOLD}, or there is no such file.
+     */
+    private ByteBuffer mapped(long version) {
+        if ( ! mmap )
+            return null;
+        ByteBuffer bytes;
+        synchronized(mapped) {
+            bytes = mapped.get(version);
+        }
+        if ( bytes == null ) {
+            if ( fileSize(version) < MMAP_THRESHOLD )
+                return null;
+            try {
+                bytes = fileStore.map(version);
+            } catch ( DeltaNotFoundException ex) {
+                return null;
+            }
+            synchronized(mapped) {
+                mapped.put(version, bytes);
+            }
+        }
+        return bytes.duplicate();
+    }
+
+    @Override
+    public String getStoredContentType() {
+        return DeltaConst.contentTypePatchText;
+    }
+
+    @Override
+    public ReadableByteChannel fetchRaw(Version version, Id id) {
+        // The file is the text form of the patch.
+        ByteBuffer bytes = mapped(version.value());
+        if ( bytes != null )
+            return Channels.newChannel(FS.asInputStream(bytes));
+        try {
+            return fileStore.openChannel(version.value());
+        } catch ( DeltaNotFoundException ex) {
+            return null;
+        }
+    }
+
     @Override
     public void delete(Id id) {
         Version ver = idToVersion(id);
         Path p = fileStore.filename(ver.value());
+        synchronized(mapped) {
+            mapped.remove(ver.value());
+        }
         try {
             Files.delete(p);
         } catch (IOException ex) {
             throw IOX.exception(ex);
         }
     }
+
+    @Override
+    public long size(Version version, Id id) {
+        return fileSize(version.value());
+    }
+
+    /** The size of the patch file for {@code version}, or -1 if there is no such file. */
+    private long fileSize(long version) {
+        try {
+            return Files.size(fileStore.filename(version));
+        } catch (NoSuchFileException ex) {
+            return -1;
+        } catch (IOException ex) {
+            throw IOX.exception(ex);
+        }
+    }
+
+    @Override
+    public long timestamp(Version version, Id id) {
+        try {
+            return Files.getLastModifiedTime(fileStore.filename(version.value())).toMillis();
+        } catch (NoSuchFileException ex) {
+            return -1;
+        } catch (IOException ex) {
+            throw IOX.exception(ex);
+        }
+    }
+
+    /**
+     * Delete the patch files before {@code version}, including any left by an earlier
+     * truncation that did not finish.
+     */
+    @Override
+    public void truncate(Version version, List<Pair<Version, Id>> removed) {
+        synchronized(mapped) {
+            mapped.keySet().removeIf(v->v < version.value());
+        }
+        fileStore.deleteBefore(version.value());
+    }
+
+    @Override
+    public void release() {
+        synchronized(mapped) {
+            mapped.clear();
+        }
+    }
 }
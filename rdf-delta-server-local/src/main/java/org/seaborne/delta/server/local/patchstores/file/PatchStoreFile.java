@@ -34,6 +34,7 @@ import org.seaborne.delta.server.local.PatchStore;
 import org.seaborne.delta.server.local.PatchStoreProvider;
 import org.seaborne.delta.server.local.patchstores.PatchLogIndex;
 import org.seaborne.delta.server.local.patchstores.PatchStorage;
+import org.seaborne.delta.server.local.patchstores.filestore.FS;
 import org.seaborne.delta.server.local.patchstores.filestore.FileArea;
 import org.seaborne.delta.server.local.patchstores.filestore.FileStore;
 
@@ -42,6 +43,8 @@ public class PatchStoreFile extends PatchStore {
      *      delta.cfg
      *      /NAME ... per DataSource.
      *          /source.cfg
+     *          /patch-NNNN -- patches
+     *          /log-index -- index of the patches (see PatchIndexFile)
      *          /data -- TDB database (optional)
      *          /disabled -- if this file is present, then the datasource is not accessible.
      */
@@ -50,6 +53,7 @@ public class PatchStoreFile extends PatchStore {
     private static Map<Id, LogIndexFile> logIndexes = new ConcurrentHashMap<>();
 
     private final Path patchLogDirectory;
+    private boolean mmap = true;
 
     public PatchStoreFile(String patchLogDirectory, PatchStoreProvider provider) {
         super(provider);
@@ -58,6 +62,7 @@ public class PatchStoreFile extends PatchStore {
     }
 
     public static void resetTracked() {
+        logIndexes.values().forEach(LogIndexFile::close);
         logIndexes.clear();
     }
 
@@ -67,7 +72,7 @@ public class PatchStoreFile extends PatchStore {
 
     @Override
     protected void initialize(LocalServerConfig config) {
-        return;
+        mmap = FS.mmapEnabled(config);
     }
 
     @Override
@@ -102,13 +107,29 @@ public class PatchStoreFile extends PatchStore {
     protected PatchStorage newPatchStorage(DataSourceDescription dsd, PatchStore patchStore, LocalServerConfig configuration) {
         PatchStoreFile patchStoreFile = (PatchStoreFile)patchStore;
         LogIndexFile logIndexFile = patchStoreFile.getLogIndex(dsd.getId());
-        return new PatchStorageFile(logIndexFile.fileStore(), logIndexFile::idToVersion);
+        return new PatchStorageFile(logIndexFile.fileStore(), logIndexFile::idToVersion, mmap);
+    }
+
+    @Override
+    public boolean canCloseLog(PatchLog patchLog) {
+        return true;
+    }
+
+    @Override
+    protected void closePatchLog(PatchLog patchLog) {
+        // The index is rebuilt from the log-index file when the patch log is opened again.
+        LogIndexFile logIndexFile = logIndexes.remove(patchLog.getLogId());
+        if ( logIndexFile == null )
+            return;
+        logIndexFile.close();
+        logIndexFile.fileStore().release();
     }
 
     @Override
     protected void delete(PatchLog patchLog) {
         Id id = patchLog.getDescription().getId();
         LogIndexFile logIndexFile = logIndexes.remove(id);
+        logIndexFile.close();
         logIndexFile.fileStore().release();
         Path path = logIndexFile.getPath();
         FileArea.retire(path);
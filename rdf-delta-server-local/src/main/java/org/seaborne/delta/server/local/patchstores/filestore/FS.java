@@ -19,17 +19,23 @@ package org.seaborne.delta.server.local.patchstores.filestore;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.NoSuchFileException;
 import java.util.Iterator;
 import java.util.Map;
 
 import org.apache.jena.atlas.logging.FmtLog;
+import org.seaborne.delta.DeltaConst;
 import org.seaborne.delta.Id;
 import org.seaborne.delta.Version;
 import org.apache.commons.collections4.BidiMap;
 import org.apache.jena.atlas.io.IOX;
 import org.apache.jena.rdfpatch.PatchHeader;
 import org.apache.jena.rdfpatch.text.RDFPatchReaderText;
+import org.seaborne.delta.server.local.LocalServerConfig;
 import org.slf4j.Logger;
 
 public class FS {
@@ -86,4 +92,69 @@ public class FS {
         return currentVersion;
     }
 
+    /**
+     * Force a file, or a directory, to persistent storage. Forcing a directory makes a
+     * rename in the directory durable; not all platforms support this, in which case it is
+     * ignored.
+     */
+    public static void fsync(Path path, boolean isDirectory) {
+        try ( FileChannel channel = FileChannel.open(path, isDirectory ? StandardOpenOption.READ : StandardOpenOption.WRITE) ) {
+            channel.force(true);
+        } catch (IOException ex) {
+            if ( isDirectory )
+                return;
+            throw IOX.exception(ex);
+        }
+    }
+
+    /** Whether file-based patch stores memory map their files for reading (default "true"). */
+    public static boolean mmapEnabled(LocalServerConfig config) {
+        String x = config.getProperty(DeltaConst.pDeltaMmap);
+        if ( x == null )
+            return true;
+        return Boolean.parseBoolean(x.trim());
+    }
+
+    /** An {@code InputStream} reading the remaining bytes of a {@code ByteBuffer}. */
+    public static InputStream asInputStream(ByteBuffer bytes) {
+        return new ByteBufferInputStream(bytes);
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer bytes;
+
+        ByteBufferInputStream(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int read() {
+            if ( ! bytes.hasRemaining() )
+                return -1;
+            return bytes.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if ( len == 0 )
+                return 0;
+            if ( ! bytes.hasRemaining() )
+                return -1;
+            int n = Math.min(len, bytes.remaining());
+            bytes.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            int x = (int)Math.max(0, Math.min(n, bytes.remaining()));
+            bytes.position(bytes.position()+x);
+            return x;
+        }
+
+        @Override
+        public int available() {
+            return bytes.remaining();
+        }
+    }
 }
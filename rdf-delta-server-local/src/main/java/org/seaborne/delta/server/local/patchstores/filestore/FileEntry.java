@@ -104,6 +104,18 @@ public class FileEntry {
         out = null ;
     }
 
+    /**
+     * Write the file by moving {@code file}, already written, into place.
+     * {@code file} must be on the same filing system, for example from
+     * {@link FileStore#newTmpFile}.
+     */
+    public void completeWrite(Path file) {
+        if ( haveWritten )
+            throw new RuntimeIOException("FileEntry has already been written: "+datafile);
+        IOX.move(file, datafile);
+        haveWritten = true;
+    }
+
     public String getDatafileName() {
         return datafile.toString();
     }
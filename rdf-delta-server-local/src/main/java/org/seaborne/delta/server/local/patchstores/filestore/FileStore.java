@@ -20,10 +20,13 @@ package org.seaborne.delta.server.local.patchstores.filestore;
 import java.io.IOException ;
 import java.io.InputStream ;
 import java.io.OutputStream ;
+import java.nio.ByteBuffer ;
+import java.nio.channels.FileChannel ;
 import java.nio.file.DirectoryStream ;
 import java.nio.file.Files ;
 import java.nio.file.NoSuchFileException ;
 import java.nio.file.Path ;
+import java.nio.file.StandardOpenOption ;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -196,6 +199,37 @@ public class FileStore {
         }
     }
 
+    /**
+     * Open a file as a {@link FileChannel} for reading.
+     * The caller is responsible for closing the {@code FileChannel}.
+     */
+    public FileChannel openChannel(long idx) {
+        Path path = filename(idx);
+        try {
+            return FileChannel.open(path, StandardOpenOption.READ);
+        } catch (NoSuchFileException ex) {
+            throw new DeltaNotFoundException(ex.getMessage());
+        } catch (IOException ex) {
+            throw IOX.exception(ex);
+        }
+    }
+
+    /**
+     * Memory map the file for {@code idx}, read-only. The file is closed; the mapping
+     * remains valid until the {@code ByteBuffer} is no longer referenced.
+     * Files of the store do not change once written.
+     */
+    public ByteBuffer map(long idx) {
+        Path path = filename(idx);
+        try ( FileChannel channel = FileChannel.open(path, StandardOpenOption.READ) ) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException ex) {
+            throw new DeltaNotFoundException(ex.getMessage());
+        } catch (IOException ex) {
+            throw IOX.exception(ex);
+        }
+    }
+
     /**
      * Return details of the next file slot to use in the file store. The file for
      * this name does not exist.
@@ -278,6 +312,42 @@ public class FileStore {
             minIndex = entry.version;
     }
 
+    /**
+     * A new temporary file in the directory of this {@code FileStore}, for writing
+     * before the index of the file is known. It is moved into place with
+     * {@link FileEntry#completeWrite(Path)}. Temporary files left behind are removed
+     * when the {@code FileStore} is next attached.
+     */
+    public Path newTmpFile() {
+        try {
+            return Files.createTempFile(directory, "spool-", "."+tmpBasename);
+        } catch (IOException ex) { throw IOX.exception(ex); }
+    }
+
+    /**
+     * Delete the files with an index below {@code idx}, found by looking at the
+     * directory. Return the number of files deleted.
+     */
+    public int deleteBefore(long idx) {
+        synchronized(this) {
+            int count = 0;
+            for ( long x : scanIndex() ) {
+                if ( x >= idx )
+                    break;
+                try {
+                    Files.deleteIfExists(filename(x));
+                    count++;
+                } catch (IOException ex) {
+                    throw IOX.exception(ex);
+                }
+            }
+            indexes.removeIf(x->x < idx);
+            if ( minIndex < idx && ! indexes.isEmpty() )
+                minIndex = indexes.get(0);
+            return count;
+        }
+    }
+
     /** Release this {@code FileStore} - do not use again. */
     public void release() {
         // Overlapping outstanding operations can continue.
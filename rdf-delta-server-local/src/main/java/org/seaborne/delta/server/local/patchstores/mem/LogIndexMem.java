@@ -17,9 +17,7 @@
 
 package org.seaborne.delta.server.local.patchstores.mem;
 
-import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
 
@@ -27,6 +25,7 @@ import org.seaborne.delta.Id;
 import org.seaborne.delta.Version;
 import org.seaborne.delta.server.local.LogEntry;
 import org.seaborne.delta.server.local.patchstores.LogIndex;
+import org.seaborne.delta.server.local.patchstores.VersionIndex;
 
 /** Implementation of {@link LogIndex} in-memory. */
 public class LogIndexMem implements LogIndex {
@@ -34,15 +33,13 @@ public class LogIndexMem implements LogIndex {
     private Version currentVersion = Version.INIT;
     private AtomicLong currentVersionCounter = new AtomicLong(0);
     private Version earliest = Version.INIT;
-    private Map<Version, Id> versionToId = new ConcurrentHashMap<>();
-    private Map<Id, LogEntry> entries = new ConcurrentHashMap<>();
+    private final VersionIndex index = new VersionIndex();
 
     public LogIndexMem() {}
 
     @Override
     public void save(Version version, Id id, Id previous) {
-        entries.put(id, new LogEntry(id, version, previous));
-        versionToId.put(version, id);
+        index.add(version, id, previous);
         currentVersion = version;
         if ( earliest == null )
             earliest = version;
@@ -50,14 +47,27 @@ public class LogIndexMem implements LogIndex {
 
     @Override
     public Stream<LogEntry> entries() {
-        return entries.values().stream();
+        return index.entries();
     }
 
     @Override
     public Id versionToId(Version version) {
         Objects.requireNonNull(version);
 
-        return versionToId.get(version);
+        return index.versionToId(version.value());
+    }
+
+    @Override
+    public Version idToVersion(Id id) {
+        if ( id == null )
+            return null;
+        return index.idToVersion(id);
+    }
+
+    @Override
+    public void truncate(Version version) {
+        index.truncate(version.value());
+        earliest = version;
     }
 
     @Override
@@ -67,7 +77,9 @@ public class LogIndexMem implements LogIndex {
 
     @Override
     public LogEntry getPatchInfo(Id id) {
-        return entries.get(id);
+        if ( id == null )
+            return null;
+        return index.getEntry(id);
     }
 
     @Override
@@ -21,9 +21,12 @@ import static java.util.Objects.requireNonNull;
 
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.stream.Stream;
 
+import org.apache.jena.atlas.iterator.Iter;
 import org.apache.jena.atlas.json.JsonObject;
 import org.apache.jena.atlas.lib.Bytes;
 import org.apache.jena.atlas.lib.Pair;
@@ -48,6 +51,8 @@ public class LogIndexRocks implements LogIndex {
 
     // Assumes calling code (PatchLogIndexBase) makes thread safe calls.
     private final RocksDatabase rdb;
+    // The keys of this log in the database.
+    private final LogKeys keys;
     private Version current;
     private Version earliest = null;
 
@@ -55,11 +60,17 @@ public class LogIndexRocks implements LogIndex {
     private final ColumnFamilyHandle cfh_versionToId;
 
     public LogIndexRocks(RocksDatabase database) {
+        this(database, LogKeys.WHOLE_DATABASE);
+    }
+
+    /** A log index for the log with keys {@code keys} in a database that may be shared with other logs. */
+    public LogIndexRocks(RocksDatabase database, LogKeys keys) {
         rdb = requireNonNull(database);
+        this.keys = requireNonNull(keys);
         cfh_idToLogEntry = rdb.columnFamilyHandles.get(RocksConst.CF_ID_ENTRY);
         cfh_versionToId = rdb.columnFamilyHandles.get(RocksConst.CF_VERSION_ID);
-        long ver = findLatest(rdb);
-        long verFirst = findEarliest(rdb);
+        long ver = findLatest(rdb, keys);
+        long verFirst = findEarliest(rdb, keys);
 
         current = (ver > 0 ) ? Version.create(ver) : Version.INIT;
         earliest = verFirst > 0 ? Version.create(verFirst) : Version.INIT;
@@ -73,24 +84,50 @@ public class LogIndexRocks implements LogIndex {
         return rdb;
     }
 
+    public LogKeys keys() {
+        return keys;
+    }
+
     @Override
     public void save(Version version, Id id, Id previous) {
         LogEntry entry = new LogEntry(id, version, previous);
-        putLogEntry(rdb, entry);
-        if ( earliest == null )
-            earliest = version;
-        current = version;
+        putLogEntry(rdb, keys, entry);
+        // Update in-memory state when the database has been updated.
+        rdb.afterUpdate(()->{
+            if ( earliest == null )
+                earliest = version;
+            current = version;
+        });
+    }
+
+    /**
+     * Remove the entries before {@code version}: one {@code WriteBatch} with a range
+     * delete of the version-id column family, and a delete of each removed id.
+     */
+    @Override
+    public void truncate(Version version) {
+        List<byte[]> idKeys = new ArrayList<>();
+        try ( Stream<Pair<Version, Id>> removed = range(Version.INIT, version.dec()) ) {
+            removed.forEach(p->idKeys.add(keys.key(p.getRight().asBytes())));
+        }
+        byte[] kStart = keys.key(Bytes.packLong(Version.INIT.value()));
+        byte[] kFinish = keys.key(Bytes.packLong(version.value()));
+        rdb.update(wb->{
+            try {
+                wb.deleteRange(cfh_versionToId, kStart, kFinish);
+                for ( byte[] kId : idKeys )
+                    wb.delete(cfh_idToLogEntry, kId);
+            } catch (RocksDBException ex) { throw new DeltaException(ex); }
+        });
+        rdb.afterUpdate(()->earliest = version);
     }
 
     @Override
     public Stream<LogEntry> entries() {
         List<LogEntry> entries = new ArrayList<>();
         try( RocksIterator iter = rdb.iterator(RocksConst.CF_ID_ENTRY) ) {
-            iter.seekToFirst();
-            while(iter.isValid()) {
-                // e = getEntry(long)
-                byte[] k = iter.key();
-                Id id = Id.fromBytes(k);
+            keys.seekFirst(iter);
+            while(keys.isValid(iter)) {
                 byte[] v = iter.value();
                 JsonObject obj = JSONX.fromBytes(v);
                 LogEntry e = JsonLogEntry.jsonToLogEntry(obj);
@@ -104,9 +141,9 @@ public class LogIndexRocks implements LogIndex {
     public Stream<Pair<Version, Id>> versions() {
         List<Pair<Version, Id>> rows = new ArrayList<>();
         try( RocksIterator iter = rdb.iterator(RocksConst.CF_VERSION_ID) ) {
-            iter.seekToFirst();
-            while(iter.isValid()) {
-                byte[] k = iter.key();
+            keys.seekFirst(iter);
+            while(keys.isValid(iter)) {
+                byte[] k = keys.strip(iter.key());
                 long ver = Bytes.getLong(k);
                 byte[] v = iter.value();
                 Id id = Id.fromBytes(v);
@@ -117,11 +154,36 @@ public class LogIndexRocks implements LogIndex {
         return rows.stream();
     }
 
+    /** Range of (version, id), by iterating over the version-id column family. */
+    @Override
+    public Stream<Pair<Version, Id>> range(Version start, Version finish) {
+        RocksIterator iter = rdb.iterator(RocksConst.CF_VERSION_ID);
+        iter.seek(keys.key(Bytes.packLong(start.value())));
+        long last = finish.value();
+        Iterator<Pair<Version, Id>> iterator = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return keys.isValid(iter) && Bytes.getLong(keys.strip(iter.key())) <= last;
+            }
+
+            @Override
+            public Pair<Version, Id> next() {
+                if ( ! hasNext() )
+                    throw new NoSuchElementException();
+                long ver = Bytes.getLong(keys.strip(iter.key()));
+                Id id = Id.fromBytes(iter.value());
+                iter.next();
+                return Pair.create(Version.create(ver), id);
+            }
+        };
+        return Iter.asStream(iterator).onClose(iter::close);
+    }
+
     @Override
     public Id versionToId(Version version) {
         if ( ! version.isValid() )
             return null;
-        return versionToId(rdb, version.value());
+        return versionToId(rdb, keys, version.value());
     }
 
     @Override
@@ -134,7 +196,7 @@ public class LogIndexRocks implements LogIndex {
     @Override
     public LogEntry getPatchInfo(Id id) {
         requireNonNull(id);
-        return getLogEntry(rdb, id);
+        return getLogEntry(rdb, keys, id);
     }
 
     @Override
@@ -147,38 +209,40 @@ public class LogIndexRocks implements LogIndex {
         return current;
     }
 
+    /** Close the database, unless it is shared with other logs. */
     public void shutdown() {
-        rdb.close();
+        if ( keys.isWholeDatabase() )
+            rdb.close();
     }
 
-    private static long findLatest(RocksDatabase rdb) {
-        byte[] ver = findEnd(rdb, RocksConst.CF_VERSION_ID, true);
+    private static long findLatest(RocksDatabase rdb, LogKeys keys) {
+        byte[] ver = findEnd(rdb, keys, true);
         if ( ver == null )
             return -1;
         return Bytes.getLong(ver);
     }
 
-    private static long findEarliest(RocksDatabase rdb) {
-        byte[] ver = findEnd(rdb, RocksConst.CF_VERSION_ID, false);
+    private static long findEarliest(RocksDatabase rdb, LogKeys keys) {
+        byte[] ver = findEnd(rdb, keys, false);
         if ( ver == null )
             return -1;
         return Bytes.getLong(ver);
     }
 
-    private static byte[] findEnd(RocksDatabase rdb, String cfName, boolean highest) {
+    private static byte[] findEnd(RocksDatabase rdb, LogKeys keys, boolean highest) {
         try( RocksIterator iter = rdb.iterator(RocksConst.CF_VERSION_ID) ) {
             if ( highest )
-                iter.seekToLast();
+                keys.seekLast(iter);
             else
-                iter.seekToFirst();
-            if ( iter.isValid() )
-                return iter.key();
+                keys.seekFirst(iter);
+            if ( keys.isValid(iter) )
+                return keys.strip(iter.key());
             return null;
         }
     }
 
-    private static Id versionToId(RocksDatabase rdb, long latest) {
-        byte[] k = Bytes.packLong(latest);
+    private static Id versionToId(RocksDatabase rdb, LogKeys keys, long latest) {
+        byte[] k = keys.key(Bytes.packLong(latest));
         byte[] v = rdb.get(RocksConst.CF_VERSION_ID, k);
         if ( v == null )
             return null;
@@ -186,27 +250,29 @@ public class LogIndexRocks implements LogIndex {
         return id;
     }
 
-    private static LogEntry getLogEntry(RocksDatabase rdb, Id id) {
-        byte[] k = id.asBytes();
+    private static LogEntry getLogEntry(RocksDatabase rdb, LogKeys keys, Id id) {
+        byte[] k = keys.key(id.asBytes());
         byte[] v = rdb.get(RocksConst.CF_ID_ENTRY, k);
+        if ( v == null )
+            return null;
         JsonObject obj = JSONX.fromBytes(v);
         LogEntry e = JsonLogEntry.jsonToLogEntry(obj);
         return e;
     }
 
-    private static void putLogEntry(RocksDatabase rdb, LogEntry entry) {
-        byte[] kVer = new byte[Long.BYTES];
-        Bytes.setLong(entry.getVersion().value(), kVer);
+    private static void putLogEntry(RocksDatabase rdb, LogKeys keys, LogEntry entry) {
+        byte[] kVer = keys.key(Bytes.packLong(entry.getVersion().value()));
 
         ColumnFamilyHandle cfh_idToLogEntry = rdb.columnFamilyHandles.get(RocksConst.CF_ID_ENTRY);
         ColumnFamilyHandle cfh_versionToId = rdb.columnFamilyHandles.get(RocksConst.CF_VERSION_ID);
 
         byte[] idBytes = entry.getPatchId().asBytes();
+        byte[] kId = keys.key(idBytes);
         JsonObject obj = JsonLogEntry.logEntryToJson(entry);
         byte[] value = JSONX.asBytes(obj);
         rdb.update(wb->{
             try {
-                wb.put(cfh_idToLogEntry, idBytes, value);
+                wb.put(cfh_idToLogEntry, kId, value);
                 wb.put(cfh_versionToId, kVer, idBytes);
             } catch (RocksDBException ex) { throw new DeltaException(ex); }
         });
@@ -0,0 +1,128 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server.local.patchstores.rdb;
+
+import java.util.Arrays;
+
+import org.apache.jena.atlas.lib.Bytes;
+import org.rocksdb.RocksIterator;
+
+/**
+ * The keys of one patch log in a {@link RocksDatabase}.
+ * <p>
+ * When the database holds one patch log, keys are used as-is ({@link #WHOLE_DATABASE}).
+ * When the database is shared by several patch logs, each log has a number and all its
+ * keys, in every column family, start with that number as 8 bytes, big-endian. The keys of a
+ * log are then a contiguous range, from {@code prefix(n)} (inclusive) to
+ * {@code prefix(n+1)} (exclusive).
+ */
+public class LogKeys {
+
+    /** The database is used by one patch log. */
+    public static final LogKeys WHOLE_DATABASE = new LogKeys(-1);
+
+    private final long logNumber;
+    private final byte[] prefix;
+    private final byte[] prefixEnd;
+
+    /** Keys for the log numbered {@code logNumber} in a shared database. */
+    public static LogKeys create(long logNumber) {
+        if ( logNumber < 0 )
+            throw new IllegalArgumentException("Negative log number: "+logNumber);
+        return new LogKeys(logNumber);
+    }
+
+    private LogKeys(long logNumber) {
+        this.logNumber = logNumber;
+        if ( logNumber < 0 ) {
+            this.prefix = new byte[0];
+            this.prefixEnd = null;
+        } else {
+            this.prefix = Bytes.packLong(logNumber);
+            this.prefixEnd = Bytes.packLong(logNumber+1);
+        }
+    }
+
+    public boolean isWholeDatabase() {
+        return logNumber < 0;
+    }
+
+    public long getLogNumber() {
+        return logNumber;
+    }
+
+    /** Start of the key range (inclusive). Not valid for {@link #WHOLE_DATABASE}. */
+    public byte[] rangeStart() {
+        return prefix;
+    }
+
+    /** End of the key range (exclusive). Not valid for {@link #WHOLE_DATABASE}. */
+    public byte[] rangeEnd() {
+        return prefixEnd;
+    }
+
+    /** The database key for a key of this log. */
+    public byte[] key(byte[] key) {
+        if ( prefix.length == 0 )
+            return key;
+        byte[] k = Arrays.copyOf(prefix, prefix.length+key.length);
+        System.arraycopy(key, 0, k, prefix.length, key.length);
+        return k;
+    }
+
+    /** The key of this log from a database key. */
+    public byte[] strip(byte[] dbKey) {
+        if ( prefix.length == 0 )
+            return dbKey;
+        return Arrays.copyOfRange(dbKey, prefix.length, dbKey.length);
+    }
+
+    /** Whether a database key belongs to this log. */
+    public boolean contains(byte[] dbKey) {
+        if ( prefix.length == 0 )
+            return true;
+        return Arrays.equals(dbKey, 0, Math.min(dbKey.length, prefix.length), prefix, 0, prefix.length);
+    }
+
+    /** Position the iterator at the first key of this log, if any. */
+    public void seekFirst(RocksIterator iter) {
+        if ( prefix.length == 0 )
+            iter.seekToFirst();
+        else
+            iter.seek(prefix);
+    }
+
+    /** Position the iterator at the last key of this log, if any. */
+    public void seekLast(RocksIterator iter) {
+        if ( prefix.length == 0 )
+            iter.seekToLast();
+        else
+            // No key is exactly the prefix of the next log.
+            iter.seekForPrev(prefixEnd);
+    }
+
+    /** Whether the iterator is at a key of this log. */
+    public boolean isValid(RocksIterator iter) {
+        return iter.isValid() && contains(iter.key());
+    }
+
+    @Override
+    public String toString() {
+        return isWholeDatabase() ? "LogKeys[all]" : "LogKeys["+logNumber+"]";
+    }
+}
@@ -20,16 +20,22 @@ package org.seaborne.delta.server.local.patchstores.rdb;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.BiConsumer;
 import java.util.stream.Stream;
 
+import org.apache.jena.atlas.lib.Pair;
 import org.rocksdb.ColumnFamilyHandle;
 import org.rocksdb.RocksDBException;
 import org.rocksdb.RocksIterator;
+import org.seaborne.delta.DeltaConst;
 import org.seaborne.delta.DeltaException;
 import org.seaborne.delta.Id;
+import org.seaborne.delta.Version;
 import org.seaborne.delta.server.local.patchstores.PatchStorage;
 import org.apache.jena.rdfpatch.RDFPatch;
 import org.apache.jena.rdfpatch.RDFPatchOps;
@@ -40,10 +46,17 @@ import org.apache.jena.rdfpatch.RDFPatchOps;
 public class PatchStorageRocks implements PatchStorage {
 
     private final RocksDatabase rdb;
+    private final LogKeys keys;
     private final ColumnFamilyHandle handle;
 
     public PatchStorageRocks(RocksDatabase rdb) {
+        this(rdb, LogKeys.WHOLE_DATABASE);
+    }
+
+    /** Patch storage for the log with keys {@code keys} in a database that may be shared with other logs. */
+    public PatchStorageRocks(RocksDatabase rdb, LogKeys keys) {
         this.rdb = Objects.requireNonNull(rdb);
+        this.keys = Objects.requireNonNull(keys);
         this.handle = rdb.getColumnFamilyHandle(RocksConst.CF_PATCH);
     }
 
@@ -51,9 +64,9 @@ public class PatchStorageRocks implements PatchStorage {
     public Stream<Id> find() {
         List<Id> ids = new ArrayList<>();
         try( RocksIterator iter = rdb.iterator(RocksConst.CF_PATCH) ) {
-            iter.seekToFirst();
-            while(iter.isValid()) {
-                byte[] k = iter.key();
+            keys.seekFirst(iter);
+            while(keys.isValid(iter)) {
+                byte[] k = keys.strip(iter.key());
                 Id id = Id.fromBytes(k);
                 ids.add(id);
                 iter.next();
@@ -64,9 +77,10 @@ public class PatchStorageRocks implements PatchStorage {
 
     @Override
     public void store(Id id, RDFPatch value) {
-        ByteArrayOutputStream out = new ByteArrayOutputStream(1024*1024);
+        // Grows as needed; do not preallocate a large buffer per write.
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8*1024);
         RDFPatchOps.writeBinary(out, value);
-        byte[] key = id.asBytes();
+        byte[] key = keys.key(id.asBytes());
         byte[] data = out.toByteArray();
         rdb.update(batch-> {
             try {
@@ -77,9 +91,24 @@ public class PatchStorageRocks implements PatchStorage {
         });
     }
 
+    @Override
+    public void syncActions(Version version, Id key, BiConsumer<Object, Runnable> action) {
+        // The patch and the log index are in the same database: one sync of the WAL.
+        action.accept(rdb, rdb::syncWal);
+    }
+
+    /**
+     * The patch (CF_PATCH) and the log index entry (CF_ID_ENTRY, CF_VERSION_ID) are in
+     * the same database: write them as one {@code WriteBatch}.
+     */
+    @Override
+    public void commitPatch(Runnable action) {
+        rdb.atomic(action);
+    }
+
     @Override
     public RDFPatch fetch(Id id) {
-        byte[] key = id.asBytes();
+        byte[] key = keys.key(id.asBytes());
         byte[] value = rdb.get(RocksConst.CF_PATCH, key);
         if ( value == null )
             return null;
@@ -88,9 +117,22 @@ public class PatchStorageRocks implements PatchStorage {
         return patch;
     }
 
+    @Override
+    public String getStoredContentType() {
+        return DeltaConst.contentTypePatchBinary;
+    }
+
+    @Override
+    public ReadableByteChannel fetchRaw(Version version, Id id) {
+        byte[] value = rdb.get(RocksConst.CF_PATCH, keys.key(id.asBytes()));
+        if ( value == null )
+            return null;
+        return Channels.newChannel(new ByteArrayInputStream(value));
+    }
+
     @Override
     public void delete(Id id) {
-        byte[] key = id.asBytes();
+        byte[] key = keys.key(id.asBytes());
         rdb.update(batch-> {
             try {
                 batch.delete(handle, key);
@@ -100,8 +142,28 @@ public class PatchStorageRocks implements PatchStorage {
         });
     }
 
+    @Override
+    public long size(Version version, Id id) {
+        return rdb.valueSize(RocksConst.CF_PATCH, keys.key(id.asBytes()));
+    }
+
+    /** Delete the patches as one {@code WriteBatch}. */
+    @Override
+    public void truncate(Version version, List<Pair<Version, Id>> removed) {
+        rdb.update(batch-> {
+            try {
+                for ( Pair<Version, Id> e : removed )
+                    batch.delete(handle, keys.key(e.getRight().asBytes()));
+            } catch (RocksDBException ex) {
+               throw new DeltaException("Exception deleting patches", ex);
+            }
+        });
+    }
+
     @Override
     public void release() {
-        rdb.close();
+        // A shared database is closed by the patch store.
+        if ( keys.isWholeDatabase() )
+            rdb.close();
     }
 }
@@ -17,20 +17,36 @@
 
 package org.seaborne.delta.server.local.patchstores.rdb;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
+import org.apache.jena.atlas.io.IOX;
+import org.apache.jena.atlas.json.JsonObject;
+import org.apache.jena.atlas.lib.Bytes;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.ReadOptions;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.WriteBatch;
 import org.seaborne.delta.DataSourceDescription;
+import org.seaborne.delta.DeltaConfigException;
+import org.seaborne.delta.DeltaConst;
+import org.seaborne.delta.DeltaException;
 import org.seaborne.delta.Id;
+import org.seaborne.delta.lib.JSONX;
 import org.seaborne.delta.server.local.LocalServerConfig;
 import org.seaborne.delta.server.local.PatchLog;
 import org.seaborne.delta.server.local.PatchStore;
 import org.seaborne.delta.server.local.PatchStoreProvider;
+import org.seaborne.delta.server.local.patchstores.FileNames;
+import org.seaborne.delta.server.local.patchstores.PatchLogBase;
 import org.seaborne.delta.server.local.patchstores.PatchLogIndex;
 import org.seaborne.delta.server.local.patchstores.PatchStorage;
 import org.seaborne.delta.server.local.patchstores.filestore.FileArea;
@@ -48,13 +64,35 @@ public class PatchStoreRocks extends PatchStore {
      *     (id, PatchInfo)  ?? for PatchLogIndex.getPatchInfo(Id)
      *   RocksDB: patch storage
      *     (id, patch)
+     *
+     * Shared database (delta.rocks.shared=true, or the shared database exists):
+     *  / server root
+     *    / rdb -- one Rocks database for all patch logs.
+     *   RocksDB: logs:
+     *     (log id, {id, name, uri, log_number})
+     *     (empty key, next log number)
+     *   Keys of the index and patch storage are prefixed by the log number (see LogKeys).
+     *   Creating, renaming and deleting a patch log are updates to the "logs" column family
+     *   (and a range delete).
      */
 
     // Singletons.
     // "static" so two PatchStoreRocks go to the same databases.
     private static Map<Id, LogIndexRocks> logIndexes = new ConcurrentHashMap<>();
+    private static Map<Path, RocksDatabase> sharedDatabases = new ConcurrentHashMap<>();
 
     private final Path patchLogDirectory;
+    // RocksDB settings for the databases of this patch store.
+    private RocksOptions rocksOptions = RocksOptions.DEFAULT;
+
+    // Shared database, or null for "one database per patch log".
+    private RocksDatabase sharedDatabase = null;
+    // Shared database: the keys of each patch log.
+    private final Map<Id, LogKeys> logKeys = new ConcurrentHashMap<>();
+    // Shared database: bytes of keys and values copied in each write when copying a patch log.
+    private static final long COPY_BATCH_SIZE = 4*1024*1024;
+    // Shared database: the column families with the keys of each patch log.
+    private static final List<String> LOG_COLUMN_FAMILIES = List.of(RocksConst.CF_VERSION_ID, RocksConst.CF_ID_ENTRY, RocksConst.CF_PATCH);
 
     public PatchStoreRocks(String patchLogDirectory, PatchStoreProvider provider) {
         super(provider);
@@ -65,29 +103,89 @@ public class PatchStoreRocks extends PatchStore {
     public static void resetTracked() {
         logIndexes.values().forEach(idx->idx.shutdown());
         logIndexes.clear();
+        sharedDatabases.values().forEach(RocksDatabase::close);
+        sharedDatabases.clear();
     }
 
     /*package*/ LogIndexRocks getLogIndex(Id id) {
         return logIndexes.get(id);
     }
 
+    /** Whether all the patch logs of this patch store are in one database. */
+    public boolean isShared() {
+        return sharedDatabase != null;
+    }
+
     @Override
-    protected void initialize(LocalServerConfig config) {}
+    protected void initialize(LocalServerConfig config) {
+        rocksOptions = RocksOptions.create(config);
+        Path dbPath = patchLogDirectory.resolve(RocksConst.databaseFilename).toAbsolutePath();
+        String x = config.getProperty(DeltaConst.pDeltaRocksShared);
+        boolean shared = ( x != null && Boolean.parseBoolean(x.trim()) ) || Files.exists(dbPath);
+        if ( ! shared )
+            return;
+        // A shared database does not include the patch logs with their own database.
+        List<Path> logAreas = logAreas(patchLogDirectory);
+        if ( ! logAreas.isEmpty() )
+            throw new DeltaConfigException("Patch logs with their own RocksDB database can not be used with a shared database: "+logAreas);
+        sharedDatabase = sharedDatabases.computeIfAbsent(dbPath, p->new RocksDatabase(p, rocksOptions));
+    }
+
+    /** The enabled patch log areas in {@code directory} with their own RocksDB database. */
+    private static List<Path> logAreas(Path directory) {
+        if ( ! Files.isDirectory(directory) )
+            return List.of();
+        try ( Stream<Path> paths = Files.list(directory) ) {
+            return paths
+                .filter(p->Files.exists(p.resolve(FileNames.DS_CONFIG)))
+                .filter(p->Files.exists(p.resolve(RocksConst.databaseFilename)))
+                .filter(p->! Files.exists(p.resolve(FileNames.DISABLED)))
+                .sorted()
+                .toList();
+        } catch (IOException ex) {
+            throw IOX.exception(ex);
+        }
+    }
 
     @Override
     protected List<DataSourceDescription> initialDataSources() {
-        return FileArea.scanForLogs(patchLogDirectory);
+        if ( ! isShared() )
+            return FileArea.scanForLogs(patchLogDirectory);
+        List<DataSourceDescription> descriptions = new ArrayList<>();
+        sharedDatabase.iterator(RocksConst.CF_LOGS, iter->{
+            iter.seekToFirst();
+            while(iter.isValid()) {
+                if ( iter.key().length == 0 ) {
+                    // RocksConst.K_NEXT_LOG_NUMBER
+                    iter.next();
+                    continue;
+                }
+                JsonObject obj = JSONX.fromBytes(iter.value());
+                DataSourceDescription dsd = DataSourceDescription.fromJson(obj);
+                long logNumber = JSONX.getLong(obj, RocksConst.F_LOG_NUMBER, -1);
+                if ( logNumber < 0 )
+                    throw new DeltaException("No log number for patch log "+dsd);
+                logKeys.put(dsd.getId(), LogKeys.create(logNumber));
+                descriptions.add(dsd);
+                iter.next();
+            }
+        });
+        return descriptions;
     }
 
     @Override
     protected PatchLog newPatchLog(DataSourceDescription dsd) {
         Id id = dsd.getId();
         logIndexes.computeIfAbsent(id, x->{
+            if ( isShared() ) {
+                LogKeys keys = logKeys.computeIfAbsent(id, x2->allocateLogKeys(dsd));
+                return new LogIndexRocks(sharedDatabase, keys);
+            }
             Path fileStoreDir = patchLogDirectory.resolve(dsd.getName());
             if ( ! Files.exists(fileStoreDir) )
                 FileArea.setupDataSourceByFile(patchLogDirectory, this, dsd);
             Path dbPath = fileStoreDir.resolve(RocksConst.databaseFilename).toAbsolutePath();
-            RocksDatabase db = new RocksDatabase(dbPath);
+            RocksDatabase db = new RocksDatabase(dbPath, rocksOptions);
             LogIndexRocks idx = new LogIndexRocks(db);
             return idx;
         });
@@ -107,20 +205,192 @@ public class PatchStoreRocks extends PatchStore {
     protected PatchStorage newPatchStorage(DataSourceDescription dsd, PatchStore patchStore, LocalServerConfig configuration) {
         PatchStoreRocks patchStoreRocks = (PatchStoreRocks)patchStore;
         LogIndexRocks rIdx = patchStoreRocks.getLogIndex(dsd.getId());
-        return new PatchStorageRocks(rIdx.database());
+        return new PatchStorageRocks(rIdx.database(), rIdx.keys());
+    }
+
+    /**
+     * Shared database: copy the keys of the patch log, without decoding the patches,
+     * and register the new patch log.
+     * <p>
+     * The keys are copied, from one snapshot of the database, in writes of bounded size.
+     * The log description is written last: until then, the copy is not a patch log. A
+     * copy that fails is removed. Keys left by a crash during a copy are not removed but
+     * do not become part of another patch log because log numbers are not reused.
+     */
+    @Override
+    protected PatchLog copyPatchLog(PatchLog patchLog, String oldName, String newName) {
+        if ( ! isShared() )
+            return super.copyPatchLog(patchLog, oldName, newName);
+        LogKeys src = logKeys.get(patchLog.getLogId());
+        if ( src == null )
+            throw new DeltaException("Copy: patch log not found: "+patchLog.getDescription());
+        DataSourceDescription dsd2 = copyDescription(patchLog, newName);
+        LogKeys dst = allocateLogKeys(null);
+        try {
+            sharedDatabase.snapshot(readOptions->{
+                for ( String cf : LOG_COLUMN_FAMILIES )
+                    copyRange(cf, readOptions, src, dst);
+            });
+        } catch (RuntimeException ex) {
+            sharedDatabase.update(wb->deleteRanges(wb, dst));
+            throw ex;
+        }
+        putLogDescription(dsd2, dst);
+        logKeys.put(dsd2.getId(), dst);
+        return createPatchLog(dsd2);
+    }
+
+    /** Shared database: change the name in the log description. The id is unchanged. */
+    @Override
+    protected PatchLog renamePatchLog(PatchLog patchLog, String oldName, String newName) {
+        if ( ! isShared() )
+            return super.renamePatchLog(patchLog, oldName, newName);
+        DataSourceDescription dsd1 = patchLog.getDescription();
+        LogKeys keys = logKeys.get(dsd1.getId());
+        if ( keys == null )
+            throw new DeltaException("Rename: patch log not found: "+dsd1);
+        DataSourceDescription dsd2 = new DataSourceDescription(dsd1.getId(), newName, dsd1.getUri());
+        putLogDescription(dsd2, keys);
+        PatchLogBase plb = (PatchLogBase)patchLog;
+        return new PatchLogBase(dsd2, plb.getPatchLogIndex(), plb.getPatchLogStorage(), this);
+    }
+
+    @Override
+    public boolean canCloseLog(PatchLog patchLog) {
+        return true;
+    }
+
+    /** Close the database of the patch log; in a shared database, drop the index of the patch log. */
+    @Override
+    protected void closePatchLog(PatchLog patchLog) {
+        LogIndexRocks idx = logIndexes.remove(patchLog.getLogId());
+        if ( idx != null )
+            idx.shutdown();
     }
 
+    /**
+     * Delete the patch log and its patches. In a shared database, the description and the
+     * keys of the patch log are removed, as the directory of the patch log is removed
+     * ({@link FileArea#retire}) for a patch log in its own database.
+     */
     @Override
     protected void delete(PatchLog patchLog) {
+        Id id = patchLog.getDescription().getId();
+        if ( isShared() ) {
+            logIndexes.remove(id);
+            LogKeys keys = logKeys.remove(id);
+            if ( keys == null )
+                return;
+            // Remove the description and all the keys of the log in one write.
+            sharedDatabase.update(wb->{
+                try {
+                    wb.delete(sharedDatabase.getColumnFamilyHandle(RocksConst.CF_LOGS), id.asBytes());
+                } catch (RocksDBException ex) { throw new DeltaException("Exception deleting patch log", ex); }
+                deleteRanges(wb, keys);
+            });
+            return;
+        }
         String logName = patchLog.getDescription().getName();
         Path patchLogArea = patchLogDirectory.resolve(logName);
-        Id id = patchLog.getDescription().getId();
+        // Not present if the patch log was closed because it was idle.
         LogIndexRocks idx = logIndexes.remove(id);
-        idx.database().close();
+        if ( idx != null )
+            idx.database().close();
         FileArea.retire(patchLogArea);
     }
 
     @Override
     protected void shutdownSub() {}
 
+    /**
+     * Allocate the keys for a new patch log and, if {@code dsd} is not null, write the
+     * log description in the same write as the next log number.
+     * <p>
+     * The next log number is kept in the database, not in the patch store, so a log
+     * number is never used twice, whichever PatchStoreRocks, on the same database,
+     * allocates it.
+     */
+    private LogKeys allocateLogKeys(DataSourceDescription dsd) {
+        ColumnFamilyHandle cfh = sharedDatabase.getColumnFamilyHandle(RocksConst.CF_LOGS);
+        // The RocksDatabase object is shared by all the patch stores for the database.
+        synchronized(sharedDatabase) {
+            byte[] bytes = sharedDatabase.get(RocksConst.CF_LOGS, RocksConst.K_NEXT_LOG_NUMBER);
+            long logNumber = ( bytes != null ) ? Bytes.getLong(bytes) : firstLogNumber();
+            LogKeys keys = LogKeys.create(logNumber);
+            sharedDatabase.update(wb->{
+                try {
+                    wb.put(cfh, RocksConst.K_NEXT_LOG_NUMBER, Bytes.packLong(logNumber+1));
+                } catch (RocksDBException ex) { throw new DeltaException("Exception writing the next log number", ex); }
+                if ( dsd != null )
+                    putLogDescription(wb, dsd, keys);
+            });
+            return keys;
+        }
+    }
+
+    /**
+     * The next log number in a database without one: after the log numbers of the
+     * patch logs in the database.
+     */
+    private long firstLogNumber() {
+        long[] next = { 0 };
+        sharedDatabase.iterator(RocksConst.CF_LOGS, iter->{
+            iter.seekToFirst();
+            while(iter.isValid()) {
+                if ( iter.key().length > 0 ) {
+                    long logNumber = JSONX.getLong(JSONX.fromBytes(iter.value()), RocksConst.F_LOG_NUMBER, -1);
+                    next[0] = Math.max(next[0], logNumber+1);
+                }
+                iter.next();
+            }
+        });
+        return next[0];
+    }
+
+    /** Delete all the keys of a patch log, other than the log description. */
+    private void deleteRanges(WriteBatch wb, LogKeys keys) {
+        try {
+            for ( String cf : LOG_COLUMN_FAMILIES )
+                wb.deleteRange(sharedDatabase.getColumnFamilyHandle(cf), keys.rangeStart(), keys.rangeEnd());
+        } catch (RocksDBException ex) { throw new DeltaException("Exception deleting patch log keys", ex); }
+    }
+
+    private void putLogDescription(DataSourceDescription dsd, LogKeys keys) {
+        sharedDatabase.update(wb->putLogDescription(wb, dsd, keys));
+    }
+
+    private void putLogDescription(WriteBatch wb, DataSourceDescription dsd, LogKeys keys) {
+        JsonObject obj = JSONX.buildObject(b->{
+            dsd.addJsonFields(b);
+            b.key(RocksConst.F_LOG_NUMBER).value(keys.getLogNumber());
+        });
+        byte[] value = JSONX.asBytes(obj);
+        byte[] key = dsd.getId().asBytes();
+        ColumnFamilyHandle cfh = sharedDatabase.getColumnFamilyHandle(RocksConst.CF_LOGS);
+        try {
+            wb.put(cfh, key, value);
+        } catch (RocksDBException ex) { throw new DeltaException("Exception writing patch log description", ex); }
+    }
+
+    /** Copy the keys of a patch log in a column family, {@link #COPY_BATCH_SIZE} bytes to a write. */
+    private void copyRange(String columnFamily, ReadOptions readOptions, LogKeys src, LogKeys dst) {
+        ColumnFamilyHandle cfh = sharedDatabase.getColumnFamilyHandle(columnFamily);
+        sharedDatabase.iterator(columnFamily, readOptions, iter->{
+            src.seekFirst(iter);
+            while(src.isValid(iter)) {
+                sharedDatabase.update(wb->{
+                    try {
+                        long size = 0;
+                        while ( src.isValid(iter) && size < COPY_BATCH_SIZE ) {
+                            byte[] k = dst.key(src.strip(iter.key()));
+                            byte[] v = iter.value();
+                            wb.put(cfh, k, v);
+                            size += k.length + v.length;
+                            iter.next();
+                        }
+                    } catch (RocksDBException ex) { throw new DeltaException("Exception copying patch log", ex); }
+                });
+            }
+        });
+    }
 }
@@ -26,9 +26,17 @@ public class RocksConst {
     public static final String CF_VERSION_ID   = "versionToId";
     public static final String CF_ID_ENTRY     = "idToLogEntry";
     public static final String CF_PATCH        = "patchStorage";
+    // Shared database: the patch logs in the database, (log id, description and log number).
+    public static final String CF_LOGS         = "logs";
 
     public static final byte[] B_CF_VERSION_ID = asUTF8bytes(CF_VERSION_ID);
     public static final byte[] B_CF_ID_ENTRY   = asUTF8bytes(CF_ID_ENTRY);
     public static final byte[] B_CF_PATCH      = asUTF8bytes(CF_PATCH);
+    public static final byte[] B_CF_LOGS       = asUTF8bytes(CF_LOGS);
+
+    // Shared database: JSON field for the log number of a patch log.
+    public static final String F_LOG_NUMBER    = "log_number";
+    // Shared database: key, in the "logs" column family, of the next log number. No log id is empty.
+    public static final byte[] K_NEXT_LOG_NUMBER = new byte[0];
 
 }
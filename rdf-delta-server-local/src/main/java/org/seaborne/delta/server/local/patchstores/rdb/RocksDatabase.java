@@ -41,22 +41,59 @@ public class RocksDatabase {
     //May not need a TransactionDB
     // [TransactionDB]
     private RocksDB rocksDB;
+    private final WriteOptions writeOptions;
     private boolean closed = false;
 
+    // The write batch of the current thread inside "atomic".
+    private final ThreadLocal<PendingBatch> pendingBatch = new ThreadLocal<>();
+
+    private static class PendingBatch {
+        final WriteBatch batch;
+        final List<Runnable> afterWrite = new ArrayList<>();
+        PendingBatch(WriteBatch batch) { this.batch = batch; }
+    }
+
     public RocksDatabase(Path database) {
+        this(database, RocksOptions.DEFAULT);
+    }
+
+    public RocksDatabase(Path database, boolean syncWrites) {
+        this(database, RocksOptions.DEFAULT.syncWrites(syncWrites));
+    }
+
+    /**
+     * Open (create if necessary) a database.
+     * If {@link RocksOptions#isSyncWrites} is true, each write waits for the write-ahead log to be
+     * forced to disk. If false, writes go to the write-ahead log and are forced to disk
+     * later by RocksDB (or by {@link #syncWal}).
+     */
+    public RocksDatabase(Path database, RocksOptions options) {
         Objects.requireNonNull(database, "database");
+        Objects.requireNonNull(options, "options");
         path = database;
+        writeOptions = new WriteOptions().setSync(options.isSyncWrites());
+        closeables.add(writeOptions);
         try {
-            ColumnFamilyOptions cfOpts = new ColumnFamilyOptions();
-            cfOpts.optimizeUniversalStyleCompaction();
-            closeables.add(cfOpts);
+            // Column families:
+            //   versionToId  : small, keys read in order.
+            //   idToLogEntry : point lookups by id, so a bloom filter.
+            //   patchStorage : the patches themselves, compressed.
+            //   logs         : shared database only; the patch logs.
+            // All use the process-wide block cache.
+            ColumnFamilyOptions cfOpts = columnFamilyOptions(options, false);
+            cfOpts.setCompressionType(CompressionType.NO_COMPRESSION);
+            ColumnFamilyOptions cfOptsIdEntry = columnFamilyOptions(options, true);
+            cfOptsIdEntry.setCompressionType(CompressionType.NO_COMPRESSION);
+            ColumnFamilyOptions cfOptsPatch = columnFamilyOptions(options, false);
+            cfOptsPatch.setCompressionType(options.getPatchCompression());
 
             // list of column family descriptors, first entry must always be default column family
             List<ColumnFamilyDescriptor> cfDescriptors = Arrays.asList(
                 new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY, cfOpts),
                 new ColumnFamilyDescriptor(RocksConst.B_CF_VERSION_ID, cfOpts),
-                new ColumnFamilyDescriptor(RocksConst.B_CF_ID_ENTRY, cfOpts),
-                new ColumnFamilyDescriptor(RocksConst.B_CF_PATCH, cfOpts)
+                new ColumnFamilyDescriptor(RocksConst.B_CF_ID_ENTRY, cfOptsIdEntry),
+                new ColumnFamilyDescriptor(RocksConst.B_CF_PATCH, cfOptsPatch),
+                new ColumnFamilyDescriptor(RocksConst.B_CF_LOGS, cfOpts)
                 );
 
             // a list which will hold the handles for the column families once the db is opened
@@ -64,7 +101,7 @@ public class RocksDatabase {
             DBOptions dbOptions = new DBOptions();
             dbOptions.setCreateIfMissing(true)
                      .setCreateMissingColumnFamilies(true)
-                     .setCompactionReadaheadSize(2*1024*1024);
+                     .setCompactionReadaheadSize(options.getCompactionReadahead());
             closeables.add(dbOptions);
 
             TransactionDBOptions txnOpt = new TransactionDBOptions();
@@ -82,6 +119,7 @@ public class RocksDatabase {
             columnFamilyHandles.put(RocksConst.CF_VERSION_ID, columnFamilyHandleList.get(1));
             columnFamilyHandles.put(RocksConst.CF_ID_ENTRY, columnFamilyHandleList.get(2));
             columnFamilyHandles.put(RocksConst.CF_PATCH, columnFamilyHandleList.get(3));
+            columnFamilyHandles.put(RocksConst.CF_LOGS, columnFamilyHandleList.get(4));
 
             closeables.add(rocksDB);
 
@@ -90,6 +128,26 @@ public class RocksDatabase {
         }
     }
 
+    private ColumnFamilyOptions columnFamilyOptions(RocksOptions options, boolean bloomFilter) {
+        BlockBasedTableConfig tableConfig = new BlockBasedTableConfig();
+        LRUCache blockCache = options.blockCache();
+        if ( blockCache != null )
+            tableConfig.setBlockCache(blockCache).setCacheIndexAndFilterBlocks(true);
+        else
+            tableConfig.setNoBlockCache(true);
+        if ( bloomFilter && options.getBloomBitsPerKey() > 0 ) {
+            Filter filter = new BloomFilter(options.getBloomBitsPerKey());
+            closeables.add(filter);
+            tableConfig.setFilterPolicy(filter);
+        }
+        ColumnFamilyOptions cfOpts = new ColumnFamilyOptions();
+        cfOpts.optimizeUniversalStyleCompaction();
+        cfOpts.setWriteBufferSize(options.getWriteBufferSize());
+        cfOpts.setTableFormatConfig(tableConfig);
+        closeables.add(cfOpts);
+        return cfOpts;
+    }
+
     /** Return the RocksDB database handle. */
     public Path getPath() {
         return path;
@@ -113,6 +171,27 @@ public class RocksDatabase {
         }
     }
 
+    /** Iterate with {@code ReadOptions}, for example from {@link #snapshot}. */
+    public void iterator(String columnFamily, ReadOptions readOptions, Consumer<RocksIterator> action) {
+        ColumnFamilyHandle cfh = getColumnFamilyHandle(columnFamily);
+        try ( RocksIterator iter = rocksDB.newIterator(cfh, readOptions) ) {
+            action.accept(iter);
+        }
+    }
+
+    /**
+     * Run {@code action} with {@code ReadOptions} that read the database as it is when
+     * this is called, across all column families.
+     */
+    public void snapshot(Consumer<ReadOptions> action) {
+        Snapshot snapshot = rocksDB.getSnapshot();
+        try ( ReadOptions readOptions = new ReadOptions().setSnapshot(snapshot) ) {
+            action.accept(readOptions);
+        } finally {
+            rocksDB.releaseSnapshot(snapshot);
+        }
+    }
+
 //    public void txn(Consumer<Transaction> action) {
 //        try ( WriteOptions wOpt = new WriteOptions() ) {
 //            try ( Transaction txn = rocksDB.beginTransaction(wOpt) ) {
@@ -121,17 +200,73 @@ public class RocksDatabase {
 //        }
 //    }
 
+    /**
+     * Perform an update. Inside {@link #atomic}, the changes are added to the
+     * batch for the atomic action, otherwise they are written immediately.
+     */
     public void update(Consumer<WriteBatch> action) {
+        PendingBatch pending = pendingBatch.get();
+        if ( pending != null ) {
+            action.accept(pending.batch);
+            return;
+        }
         try ( WriteBatch batch = new WriteBatch() ) {
-            try ( WriteOptions wOpt = new WriteOptions() ) {
-                action.accept(batch);
-                rocksDB.write(wOpt, batch);
-            }
+            action.accept(batch);
+            rocksDB.write(writeOptions, batch);
         } catch (Exception ex) {
             throw new RuntimeException(ex);
         }
     }
 
+    /**
+     * Run {@code action} so that all the calls of {@link #update} it makes become one
+     * {@link WriteBatch}, written when the action finishes. If the action throws
+     * an exception, nothing is written. Nested calls are part of the outer atomic action.
+     */
+    public void atomic(Runnable action) {
+        if ( pendingBatch.get() != null ) {
+            action.run();
+            return;
+        }
+        try ( WriteBatch batch = new WriteBatch() ) {
+            PendingBatch pending = new PendingBatch(batch);
+            pendingBatch.set(pending);
+            try {
+                action.run();
+            } finally {
+                pendingBatch.remove();
+            }
+            try {
+                rocksDB.write(writeOptions, batch);
+            } catch (RocksDBException ex) {
+                throw new DeltaException("Exception writing batch", ex);
+            }
+            pending.afterWrite.forEach(Runnable::run);
+        }
+    }
+
+    /**
+     * Run an action after the current update has been written: immediately, or,
+     * inside {@link #atomic}, after the batch is written. Used to keep in-memory state in
+     * step with the database.
+     */
+    public void afterUpdate(Runnable action) {
+        PendingBatch pending = pendingBatch.get();
+        if ( pending != null )
+            pending.afterWrite.add(action);
+        else
+            action.run();
+    }
+
+    /** Force the write-ahead log to persistent storage. */
+    public void syncWal() {
+        try {
+            rocksDB.syncWal();
+        } catch (RocksDBException ex) {
+            throw new DeltaException("Exception syncing RocksDB WAL at "+path, ex);
+        }
+    }
+
     public void close() {
         if ( closed )
             return;
@@ -157,6 +292,19 @@ public class RocksDatabase {
         }
     }
 
+    private static final byte[] NO_BYTES = new byte[0];
+
+    /** The size of the value for {@code k}, or -1 if there is no such key. The value is not copied. */
+    public int valueSize(String columnFamily, byte[] k) {
+        try {
+            ColumnFamilyHandle cfh = getColumnFamilyHandle(columnFamily);
+            int size = rocksDB.get(cfh, k, NO_BYTES);
+            return ( size == RocksDB.NOT_FOUND ) ? -1 : size;
+        } catch (RocksDBException e) {
+            throw new DeltaException(e);
+        }
+    }
+
     public ColumnFamilyHandle getColumnFamilyHandle(String columnFamily) {
         ColumnFamilyHandle cfh = columnFamilyHandles.get(columnFamily);
         if ( cfh == null ) throw new DeltaException("No ColumnFamilyHandle for "+columnFamily);
@@ -0,0 +1,171 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server.local.patchstores.rdb;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.rocksdb.CompressionType;
+import org.rocksdb.LRUCache;
+import org.rocksdb.RocksDB;
+import org.seaborne.delta.DeltaConfigException;
+import org.seaborne.delta.DeltaConst;
+import org.seaborne.delta.server.local.LocalServerConfig;
+
+/**
+ * Settings for the RocksDB databases of a {@link PatchStoreRocks}.
+ * <p>
+ * The block cache is shared by all the databases in the process that have the
+ * same block cache size, so adding patch logs does not add to the memory used for
+ * caching.
+ */
+public class RocksOptions {
+
+    static { RocksDB.loadLibrary(); }
+
+    public static final long   dftBlockCacheSize     = 64L*1024*1024;
+    public static final double dftBloomBitsPerKey    = 10;
+    public static final long   dftWriteBufferSize    = 16L*1024*1024;
+    public static final long   dftCompactionReadahead = 2L*1024*1024;
+    public static final CompressionType dftCompression = CompressionType.LZ4_COMPRESSION;
+
+    /** The default settings. */
+    public static final RocksOptions DEFAULT = new RocksOptions(false, dftBlockCacheSize, dftBloomBitsPerKey, dftCompression,
+                                                                dftWriteBufferSize, dftCompactionReadahead);
+
+    // Block caches, by size. Caches live as long as the process.
+    private static Map<Long, LRUCache> blockCaches = new ConcurrentHashMap<>();
+
+    private final boolean syncWrites;
+    private final long blockCacheSize;
+    private final double bloomBitsPerKey;
+    private final CompressionType patchCompression;
+    private final long writeBufferSize;
+    private final long compactionReadahead;
+
+    private RocksOptions(boolean syncWrites, long blockCacheSize, double bloomBitsPerKey, CompressionType patchCompression,
+                         long writeBufferSize, long compactionReadahead) {
+        this.syncWrites = syncWrites;
+        this.blockCacheSize = blockCacheSize;
+        this.bloomBitsPerKey = bloomBitsPerKey;
+        this.patchCompression = patchCompression;
+        this.writeBufferSize = writeBufferSize;
+        this.compactionReadahead = compactionReadahead;
+    }
+
+    /** Read the settings from the server configuration properties, using defaults for any not set. */
+    public static RocksOptions create(LocalServerConfig config) {
+        boolean syncWrites = getBoolean(config, DeltaConst.pDeltaRocksSync, false);
+        long blockCacheSize = getLong(config, DeltaConst.pDeltaRocksBlockCache, dftBlockCacheSize);
+        double bloomBits = getDouble(config, DeltaConst.pDeltaRocksBloomBits, dftBloomBitsPerKey);
+        CompressionType compression = getCompression(config, DeltaConst.pDeltaRocksCompression, dftCompression);
+        long writeBufferSize = getLong(config, DeltaConst.pDeltaRocksWriteBuffer, dftWriteBufferSize);
+        long readahead = getLong(config, DeltaConst.pDeltaRocksReadahead, dftCompactionReadahead);
+        return new RocksOptions(syncWrites, blockCacheSize, bloomBits, compression, writeBufferSize, readahead);
+    }
+
+    /** As this {@code RocksOptions}, with a different setting for synchronous writes. */
+    public RocksOptions syncWrites(boolean syncWrites) {
+        return new RocksOptions(syncWrites, blockCacheSize, bloomBitsPerKey, patchCompression, writeBufferSize, compactionReadahead);
+    }
+
+    /** Whether each write waits for the write-ahead log to be forced to disk. */
+    public boolean isSyncWrites() {
+        return syncWrites;
+    }
+
+    /** Block cache size in bytes. 0 means "no block cache". */
+    public long getBlockCacheSize() {
+        return blockCacheSize;
+    }
+
+    /** Bloom filter bits per key for the id lookup column family. 0 means "no bloom filter". */
+    public double getBloomBitsPerKey() {
+        return bloomBitsPerKey;
+    }
+
+    /** Compression for the patch storage column family. */
+    public CompressionType getPatchCompression() {
+        return patchCompression;
+    }
+
+    public long getWriteBufferSize() {
+        return writeBufferSize;
+    }
+
+    public long getCompactionReadahead() {
+        return compactionReadahead;
+    }
+
+    /** The process-wide block cache for this size, or null for "no block cache". */
+    /*package*/ LRUCache blockCache() {
+        if ( blockCacheSize <= 0 )
+            return null;
+        return blockCaches.computeIfAbsent(blockCacheSize, LRUCache::new);
+    }
+
+    private static boolean getBoolean(LocalServerConfig config, String property, boolean dft) {
+        String x = config.getProperty(property);
+        if ( x == null )
+            return dft;
+        return Boolean.parseBoolean(x.trim());
+    }
+
+    private static long getLong(LocalServerConfig config, String property, long dft) {
+        String x = config.getProperty(property);
+        if ( x == null )
+            return dft;
+        try {
+            return Long.parseLong(x.trim());
+        } catch (NumberFormatException ex) {
+            throw new DeltaConfigException("Bad value for "+property+": '"+x+"'");
+        }
+    }
+
+    private static double getDouble(LocalServerConfig config, String property, double dft) {
+        String x = config.getProperty(property);
+        if ( x == null )
+            return dft;
+        try {
+            return Double.parseDouble(x.trim());
+        } catch (NumberFormatException ex) {
+            throw new DeltaConfigException("Bad value for "+property+": '"+x+"'");
+        }
+    }
+
+    private static CompressionType getCompression(LocalServerConfig config, String property, CompressionType dft) {
+        String x = config.getProperty(property);
+        if ( x == null )
+            return dft;
+        switch (x.trim().toLowerCase(Locale.ROOT)) {
+            case "none":    return CompressionType.NO_COMPRESSION;
+            case "lz4":     return CompressionType.LZ4_COMPRESSION;
+            case "zstd":    return CompressionType.ZSTD_COMPRESSION;
+            case "snappy":  return CompressionType.SNAPPY_COMPRESSION;
+            default:
+                throw new DeltaConfigException("Bad value for "+property+": '"+x+"' (expected none, lz4, zstd or snappy)");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RocksOptions[sync=%s, blockCache=%d, bloom=%s, compression=%s, writeBuffer=%d, readahead=%d]",
+                             syncWrites, blockCacheSize, bloomBitsPerKey, patchCompression, writeBufferSize, compactionReadahead);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server.local.patchstores.segment;
+
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.seaborne.delta.Id;
+import org.seaborne.delta.Version;
+import org.seaborne.delta.server.local.LogEntry;
+import org.seaborne.delta.server.local.patchstores.LogIndex;
+import org.seaborne.delta.server.local.patchstores.VersionIndex;
+
+/**
+ * The index of a patch log kept in a {@link SegmentLog}, built from the record headers
+ * when the log is opened. The segment log is the on-disk record of the index.
+ */
+public class LogIndexSegment implements LogIndex {
+
+    private final SegmentLog segmentLog;
+    private final VersionIndex index = new VersionIndex();
+
+    private Version currentVersion = Version.INIT;
+    private Version earliestVersion = Version.INIT;
+
+    /** Open the segment log in {@code directory} and build the index. */
+    public static LogIndexSegment open(Path directory, long segmentSize) {
+        return open(directory, segmentSize, true);
+    }
+
+    /** Open the segment log in {@code directory} and build the index. */
+    public static LogIndexSegment open(Path directory, long segmentSize, boolean mmap) {
+        return new LogIndexSegment(directory, segmentSize, mmap);
+    }
+
+    private LogIndexSegment(Path directory, long segmentSize, boolean mmap) {
+        this.segmentLog = SegmentLog.open(directory, segmentSize, mmap, this::add);
+    }
+
+    private void add(LogEntry entry) {
+        index.add(entry.getVersion(), entry.getPatchId(), entry.getPrevious());
+        currentVersion = entry.getVersion();
+        if ( Version.INIT.equals(earliestVersion) )
+            earliestVersion = entry.getVersion();
+    }
+
+    public SegmentLog segmentLog() {
+        return segmentLog;
+    }
+
+    public Path getPath() {
+        return segmentLog.getPath();
+    }
+
+    /** Release the segment files. */
+    public void close() {
+        segmentLog.close();
+    }
+
+    @Override
+    public Version idToVersion(Id id) {
+        if ( id == null )
+            return null;
+        return index.idToVersion(id);
+    }
+
+    @Override
+    public void save(Version version, Id id, Id previous) {
+        // The patch record, written by PatchStorageSegment, is the on-disk entry.
+        add(new LogEntry(id, version, previous));
+    }
+
+    @Override
+    public void truncate(Version version) {
+        // The segment files are removed by PatchStorageSegment.
+        index.truncate(version.value());
+        earliestVersion = version;
+    }
+
+    @Override
+    public Stream<LogEntry> entries() {
+        return index.entries();
+    }
+
+    @Override
+    public Id versionToId(Version version) {
+        if ( version == null )
+            return null;
+        if ( Version.UNSET.equals(version) || Version.INIT.equals(version) )
+            return null;
+        return index.versionToId(version.value());
+    }
+
+    @Override
+    public Version genNextVersion() {
+        return currentVersion.inc();
+    }
+
+    @Override
+    public LogEntry getPatchInfo(Id id) {
+        if ( id == null )
+            return null;
+        return index.getEntry(id);
+    }
+
+    @Override
+    public Version earliest() {
+        return earliestVersion;
+    }
+
+    @Override
+    public Version current() {
+        return currentVersion;
+    }
+}
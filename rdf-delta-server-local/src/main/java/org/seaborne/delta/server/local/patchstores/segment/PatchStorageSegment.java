@@ -0,0 +1,179 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server.local.patchstores.segment;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.apache.jena.atlas.io.IOX;
+import org.apache.jena.atlas.lib.InternalErrorException;
+import org.apache.jena.atlas.lib.Pair;
+import org.apache.jena.atlas.logging.FmtLog;
+import org.apache.jena.rdfpatch.RDFPatch;
+import org.apache.jena.rdfpatch.RDFPatchOps;
+import org.apache.jena.rdfpatch.text.RDFChangesWriterText;
+import org.apache.jena.rdfpatch.text.TokenWriter;
+import org.apache.jena.rdfpatch.text.TokenWriterText;
+import org.seaborne.delta.DeltaConst;
+import org.seaborne.delta.Id;
+import org.seaborne.delta.Version;
+import org.seaborne.delta.server.local.patchstores.PatchStorage;
+import org.seaborne.delta.server.local.patchstores.segment.SegmentLog.PatchRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Storage of patches in a {@link SegmentLog}. */
+public class PatchStorageSegment implements PatchStorage {
+    private static Logger LOG = LoggerFactory.getLogger(PatchStorageSegment.class);
+
+    private final SegmentLog segmentLog;
+    private final Function<Id, Version> id2version;
+
+    public PatchStorageSegment(SegmentLog segmentLog, Function<Id, Version> id2version) {
+        // Records are by version number, hence "id2version" required.
+        this.segmentLog = segmentLog;
+        this.id2version = id2version;
+    }
+
+    @Override
+    public Stream<Id> find() {
+        // Reads the segments to find the ids. For testing.
+        try ( Stream<PatchRecord> records = segmentLog.records() ) {
+            return records.map(r->r.id).toList().stream();
+        }
+    }
+
+    @Override
+    public void store(Id key, RDFPatch patch) {
+        throw new InternalErrorException("Call to PatchStorageSegment.store(id, patch)");
+    }
+
+    @Override
+    public void store(Version version, Id key, RDFPatch patch) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TokenWriter tw = TokenWriterText.create(out) ;
+        RDFChangesWriterText dest = new RDFChangesWriterText(tw) ;
+        patch.apply(dest);
+        tw.flush();
+        segmentLog.append(version.value(), key, Id.fromNode(patch.getPrevious()), out.toByteArray());
+    }
+
+    @Override
+    public void syncActions(Version version, Id key, BiConsumer<Object, Runnable> action) {
+        // Patches of one segment are made durable together.
+        Path path = segmentLog.segmentFile(version.value());
+        if ( path != null )
+            action.accept(path, ()->segmentLog.force(version.value()));
+    }
+
+    @Override
+    public RDFPatch fetch(Id id) {
+        Version version = id2version.apply(id);
+        if ( version == null )
+            return null;
+        return fetch(version);
+    }
+
+    private RDFPatch fetch(Version version) {
+        PatchRecord record = segmentLog.read(version.value());
+        return ( record == null ) ? null : parse(record);
+    }
+
+    /** Read the patches in a range sequentially through the segment files. */
+    @Override
+    public Stream<RDFPatch> fetch(Stream<Pair<Version, Id>> entries) {
+        SegmentLog.Reader reader = segmentLog.reader();
+        return entries
+            .map(e->reader.read(e.getLeft().value()))
+            .filter(Objects::nonNull)
+            .map(PatchStorageSegment::parse)
+            .onClose(reader::close);
+    }
+
+    private static RDFPatch parse(PatchRecord record) {
+        return RDFPatchOps.read(record.patchInputStream());
+    }
+
+    @Override
+    public String getStoredContentType() {
+        return DeltaConst.contentTypePatchText;
+    }
+
+    @Override
+    public ReadableByteChannel fetchRaw(Version version, Id id) {
+        // The record holds the text form of the patch.
+        PatchRecord record = segmentLog.read(version.value());
+        if ( record == null )
+            return null;
+        return Channels.newChannel(record.patchInputStream());
+    }
+
+    @Override
+    public void delete(Id id) {
+        // Segments are append-only: only the last patch, not yet in the log, can be removed.
+        if ( ! segmentLog.undo(id) )
+            FmtLog.warn(LOG, "Can't delete patch %s from %s", id, segmentLog.getPath());
+    }
+
+    @Override
+    public long size(Version version, Id id) {
+        PatchRecord record = segmentLog.read(version.value());
+        return ( record == null ) ? -1 : record.patchLength();
+    }
+
+    /** The time of the last change to the segment holding the patch. */
+    @Override
+    public long timestamp(Version version, Id id) {
+        Path path = segmentLog.segmentFile(version.value());
+        if ( path == null )
+            return -1;
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (NoSuchFileException ex) {
+            return -1;
+        } catch (IOException ex) {
+            throw IOX.exception(ex);
+        }
+    }
+
+    /** Segments are removed whole: truncate at the start of the segment holding {@code version}. */
+    @Override
+    public Version truncatePoint(Version version) {
+        return Version.create(segmentLog.truncatePoint(version.value()));
+    }
+
+    @Override
+    public void truncate(Version version, List<Pair<Version, Id>> removed) {
+        segmentLog.truncate(version.value());
+    }
+
+    @Override
+    public void release() {
+        segmentLog.close();
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server.local.patchstores.segment;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.seaborne.delta.DataSourceDescription;
+import org.seaborne.delta.DeltaConfigException;
+import org.seaborne.delta.DeltaConst;
+import org.seaborne.delta.Id;
+import org.seaborne.delta.server.local.LocalServerConfig;
+import org.seaborne.delta.server.local.PatchLog;
+import org.seaborne.delta.server.local.PatchStore;
+import org.seaborne.delta.server.local.PatchStoreProvider;
+import org.seaborne.delta.server.local.patchstores.PatchLogIndex;
+import org.seaborne.delta.server.local.patchstores.PatchStorage;
+import org.seaborne.delta.server.local.patchstores.filestore.FS;
+import org.seaborne.delta.server.local.patchstores.filestore.FileArea;
+
+/** A {@link PatchStore} keeping each patch log in append-only segment files (see {@link SegmentLog}). */
+public class PatchStoreSegment extends PatchStore {
+    /*   Server Root
+     *      delta.cfg
+     *      /NAME ... per DataSource.
+     *          /source.cfg
+     *          /segment-NNNN -- patches, in segment files named by the first version.
+     *          /disabled -- if this file is present, then the datasource is not accessible.
+     */
+    // Singleton.
+    // "static" so two PatchStoreSegment's go to the same log.
+    private static Map<Id, LogIndexSegment> logIndexes = new ConcurrentHashMap<>();
+
+    private final Path patchLogDirectory;
+    private long segmentSize = SegmentLog.dftSegmentSize;
+    private boolean mmap = true;
+
+    public PatchStoreSegment(String patchLogDirectory, PatchStoreProvider provider) {
+        super(provider);
+        Objects.requireNonNull(patchLogDirectory);
+        this.patchLogDirectory = Paths.get(patchLogDirectory);
+    }
+
+    public static void resetTracked() {
+        logIndexes.values().forEach(LogIndexSegment::close);
+        logIndexes.clear();
+    }
+
+    /*package*/ LogIndexSegment getLogIndex(Id id) {
+        return logIndexes.get(id);
+    }
+
+    @Override
+    protected void initialize(LocalServerConfig config) {
+        mmap = FS.mmapEnabled(config);
+        String x = config.getProperty(DeltaConst.pDeltaSegmentSize);
+        if ( x == null )
+            return;
+        try {
+            segmentSize = Long.parseLong(x.trim());
+        } catch (NumberFormatException ex) {
+            throw new DeltaConfigException("Bad value for "+DeltaConst.pDeltaSegmentSize+": "+x);
+        }
+        if ( segmentSize <= 0 )
+            throw new DeltaConfigException("Bad value for "+DeltaConst.pDeltaSegmentSize+": "+x);
+    }
+
+    @Override
+    protected List<DataSourceDescription> initialDataSources() {
+        return FileArea.scanForLogs(patchLogDirectory);
+    }
+
+    @Override
+    protected PatchLog newPatchLog(DataSourceDescription dsd) {
+        Id id = dsd.getId();
+        logIndexes.computeIfAbsent(id, x->{
+            Path logDir = patchLogDirectory.resolve(dsd.getName());
+            if ( ! Files.exists(logDir) )
+                FileArea.setupDataSourceByFile(patchLogDirectory, this, dsd);
+            return LogIndexSegment.open(logDir, segmentSize, mmap);
+        });
+        // The LogIndexSegment will be picked up by newPatchLogIndex, newPatchStorage.
+        PatchLog newPatchLog = newPatchLogFromIndexAndStorage(dsd);
+        return newPatchLog;
+    }
+
+    @Override
+    protected PatchLogIndex newPatchLogIndex(DataSourceDescription dsd, PatchStore patchStore, LocalServerConfig configuration) {
+        PatchStoreSegment patchStoreSegment = (PatchStoreSegment)patchStore;
+        LogIndexSegment logIndex = patchStoreSegment.getLogIndex(dsd.getId());
+        return new PatchLogIndexSegment(logIndex);
+    }
+
+    @Override
+    protected PatchStorage newPatchStorage(DataSourceDescription dsd, PatchStore patchStore, LocalServerConfig configuration) {
+        PatchStoreSegment patchStoreSegment = (PatchStoreSegment)patchStore;
+        LogIndexSegment logIndex = patchStoreSegment.getLogIndex(dsd.getId());
+        return new PatchStorageSegment(logIndex.segmentLog(), logIndex::idToVersion);
+    }
+
+    @Override
+    public boolean canCloseLog(PatchLog patchLog) {
+        return true;
+    }
+
+    @Override
+    protected void closePatchLog(PatchLog patchLog) {
+        LogIndexSegment logIndex = logIndexes.remove(patchLog.getLogId());
+        if ( logIndex != null )
+            logIndex.close();
+    }
+
+    @Override
+    protected void delete(PatchLog patchLog) {
+        Id id = patchLog.getDescription().getId();
+        LogIndexSegment logIndex = logIndexes.remove(id);
+        if ( logIndex == null )
+            return;
+        logIndex.close();
+        FileArea.retire(logIndex.getPath());
+    }
+
+    @Override
+    protected void shutdownSub() {}
+}
@@ -0,0 +1,800 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server.local.patchstores.segment;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.apache.jena.atlas.io.IOX;
+import org.apache.jena.atlas.logging.FmtLog;
+import org.seaborne.delta.DeltaException;
+import org.seaborne.delta.Id;
+import org.seaborne.delta.Version;
+import org.seaborne.delta.server.local.LogEntry;
+import org.seaborne.delta.server.local.patchstores.filestore.FS;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The patches of one patch log, appended to segment files in a directory.
+ * <p>
+ * A segment file is named by the version of its first patch ("segment-0000000001").
+ * When appending a patch would take the current segment over the segment size, a new
+ * segment is started. Segment files are only ever appended to.
+ * <p>
+ * Record: length (int), payload, CRC32 of the payload (int).<br/>
+ * Payload: version (long), id, previous (each as a short length then bytes; length 0 for
+ * "no previous"), the patch in text format.
+ * <p>
+ * The position of every {@link #SPARSE}th record, and of the first record of each segment,
+ * is kept in memory. A patch is read by a positioned read, starting from the nearest
+ * recorded position and stepping over any records before it. A range of patches is read
+ * sequentially (see {@link Reader}).
+ * <p>
+ * Once a segment is full, it does not change. Such a "sealed" segment is memory mapped, on
+ * first read, and records are read from the mapping; the patch of a {@link PatchRecord} is
+ * then a view of the mapped file, not a copy. The mappings are dropped by {@link #close}.
+ * Only the segment being appended to is read through its file channel.
+ * <p>
+ * The log is truncated by removing whole segments from the start.
+ * <p>
+ * When the log is opened, the segments are scanned for the record headers. The records
+ * of the last segment are checked against their CRC; a damaged or incomplete record at
+ * the end (e.g. a partial write at the time of a crash) is truncated.
+ */
+public class SegmentLog {
+    private static Logger LOG = LoggerFactory.getLogger(SegmentLog.class);
+
+    public static final String SEGMENT_BASENAME = "segment";
+    private static final Pattern segmentName = Pattern.compile(SEGMENT_BASENAME+"-([0-9]+)");
+
+    /** Default segment size, in bytes. */
+    public static final long dftSegmentSize = 64L*1024*1024;
+    /** Record the position of one record in this many. */
+    public static final int SPARSE = 64;
+
+    // Length and version : the start of every record.
+    private static final int RECORD_START = Integer.BYTES + Long.BYTES;
+    private static final int BUFSIZE = 128*1024;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final boolean mmap;
+    // Segments, by the version of their first record.
+    private final NavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    // Sparse index : version to record position.
+    private final NavigableMap<Long, Position> positions = new ConcurrentSkipListMap<>();
+
+    // Appending.
+    private Segment active = null;
+    private long lastVersion = -1;
+    // The last record, for undo.
+    private long lastOffset = -1;
+    private Id lastId = null;
+
+    private static final class Segment {
+        final long firstVersion;
+        final Path path;
+        final FileChannel channel;
+        // Bytes of complete records.
+        volatile long size;
+        // No more records will be added.
+        volatile boolean sealed = false;
+        // Read-only mapping of a sealed segment, made on first use.
+        volatile ByteBuffer mapped = null;
+
+        Segment(long firstVersion, Path path, FileChannel channel, long size) {
+            this.firstVersion = firstVersion;
+            this.path = path;
+            this.channel = channel;
+            this.size = size;
+        }
+    }
+
+    private static final class Position {
+        final Segment segment;
+        final long offset;
+        Position(Segment segment, long offset) {
+            this.segment = segment;
+            this.offset = offset;
+        }
+    }
+
+    /** A record of the log. */
+    public static final class PatchRecord {
+        public final long version;
+        public final Id id;
+        public final Id previous;
+        // The patch text; may be a view of a mapped segment.
+        private final ByteBuffer patch;
+
+        PatchRecord(long version, Id id, Id previous, ByteBuffer patch) {
+            this.version = version;
+            this.id = id;
+            this.previous = previous;
+            this.patch = patch;
+        }
+
+        /** The patch, in text format, as an {@code InputStream}. */
+        public InputStream patchInputStream() {
+            return FS.asInputStream(patch.duplicate());
+        }
+
+        /** The length of the patch, in bytes. */
+        public int patchLength() {
+            return patch.remaining();
+        }
+
+        /** A copy of the patch, in text format. */
+        public byte[] patchBytes() {
+            ByteBuffer bb = patch.duplicate();
+            byte[] bytes = new byte[bb.remaining()];
+            bb.get(bytes);
+            return bytes;
+        }
+
+        public LogEntry asLogEntry() {
+            return new LogEntry(id, Version.create(version), previous);
+        }
+    }
+
+    /**
+     * Open the segment log in {@code directory}, calling {@code entries} for each
+     * record, in version order.
+     */
+    public static SegmentLog open(Path directory, long segmentSize, Consumer<LogEntry> entries) {
+        return open(directory, segmentSize, true, entries);
+    }
+
+    /**
+     * Open the segment log in {@code directory}, calling {@code entries} for each
+     * record, in version order. If {@code mmap} is false, sealed segments are read
+     * through their file channel, not memory mapped.
+     */
+    public static SegmentLog open(Path directory, long segmentSize, boolean mmap, Consumer<LogEntry> entries) {
+        if ( segmentSize <= 0 )
+            throw new IllegalArgumentException("Segment size must be positive: "+segmentSize);
+        SegmentLog segmentLog = new SegmentLog(directory, segmentSize, mmap);
+        segmentLog.init(entries);
+        return segmentLog;
+    }
+
+    private SegmentLog(Path directory, long segmentSize, boolean mmap) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.mmap = mmap;
+    }
+
+    public Path getPath() {
+        return directory;
+    }
+
+    /** Version of the last record, or -1 if there are no records. */
+    public synchronized long getLastVersion() {
+        return lastVersion;
+    }
+
+    /** The segment files, in version order. */
+    public List<Path> segmentFiles() {
+        return segments.values().stream().map(s->s.path).toList();
+    }
+
+    private void init(Consumer<LogEntry> entries) {
+        List<Long> starts = scanForSegments(directory);
+        for ( int i = 0 ; i < starts.size() ; i++ ) {
+            long start = starts.get(i);
+            boolean isLast = ( i == starts.size()-1 );
+            Segment segment = openSegment(start);
+            segments.put(start, segment);
+            long end = scanSegment(segment, isLast, entries);
+            if ( end < segment.size ) {
+                if ( ! isLast )
+                    throw new DeltaException("Damaged segment file: "+segment.path+" at "+end);
+                FmtLog.warn(LOG, "Damaged record at %d in %s: truncating", end, segment.path);
+                try {
+                    segment.channel.truncate(end);
+                } catch (IOException ex) { throw IOX.exception(ex); }
+                segment.size = end;
+            }
+            if ( active != null )
+                active.sealed = true;
+            active = segment;
+        }
+    }
+
+    /** Read the records of a segment; return the end of the last good record. */
+    private long scanSegment(Segment segment, boolean checkCRC, Consumer<LogEntry> entries) {
+        long offset = 0;
+        long fileSize = segment.size;
+        long expected = ( lastVersion < 0 ) ? segment.firstVersion : lastVersion+1;
+        if ( expected != segment.firstVersion )
+            throw new DeltaException("Segment file "+segment.path+" does not follow on from version "+lastVersion);
+        try ( FileChannel ch = FileChannel.open(segment.path, READ);
+              DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(ch), BUFSIZE)) ) {
+            while ( offset + RECORD_START < fileSize ) {
+                int len = in.readInt();
+                long recordEnd = offset + Integer.BYTES + (long)len + Integer.BYTES;
+                if ( len < Long.BYTES + 2*Short.BYTES || recordEnd > fileSize )
+                    break;
+                PatchRecord record;
+                if ( checkCRC ) {
+                    byte[] payload = new byte[len];
+                    in.readFully(payload);
+                    int crc = in.readInt();
+                    ByteBuffer bb = ByteBuffer.wrap(payload);
+                    if ( crc != crc(bb) )
+                        break;
+                    record = decode(bb, false);
+                } else {
+                    record = readHeader(in, len);
+                }
+                if ( record == null || record.version != expected )
+                    break;
+                if ( record.version == segment.firstVersion || record.version % SPARSE == 0 )
+                    positions.put(record.version, new Position(segment, offset));
+                entries.accept(record.asLogEntry());
+                lastVersion = record.version;
+                lastOffset = offset;
+                lastId = record.id;
+                expected++;
+                offset = recordEnd;
+            }
+        } catch (EOFException ex) {
+            // Incomplete record.
+        } catch (IOException ex) {
+            throw IOX.exception(ex);
+        }
+        return offset;
+    }
+
+    /** Read the version, id and previous of a record and skip the rest. */
+    private static PatchRecord readHeader(DataInputStream in, int len) throws IOException {
+        long version = in.readLong();
+        int idLen = in.readShort();
+        if ( idLen <= 0 || Long.BYTES + 2*Short.BYTES + idLen > len )
+            return null;
+        byte[] idBytes = new byte[idLen];
+        in.readFully(idBytes);
+        int prevLen = in.readShort();
+        int headerLen = Long.BYTES + 2*Short.BYTES + idLen + prevLen;
+        if ( prevLen < 0 || headerLen > len )
+            return null;
+        byte[] prevBytes = new byte[prevLen];
+        in.readFully(prevBytes);
+        in.skipNBytes(len - headerLen + Integer.BYTES);
+        Id prev = ( prevLen == 0 ) ? null : Id.fromBytes(prevBytes);
+        return new PatchRecord(version, Id.fromBytes(idBytes), prev, null);
+    }
+
+    /** Add a record. The version must be the next version of the log. */
+    public synchronized void append(long version, Id id, Id previous, byte[] patch) {
+        if ( lastVersion >= 0 && version != lastVersion+1 )
+            throw new DeltaException("Append: version "+version+" does not follow on from version "+lastVersion);
+        ByteBuffer record = encode(version, id, previous, patch);
+        int recordLength = record.remaining();
+        if ( active == null || ( active.size > 0 && active.size + recordLength > segmentSize ) )
+            roll(version);
+        else if ( active.size == 0 && active.firstVersion != version ) {
+            // Empty segment, left when a segment was started but not written to.
+            Segment empty = segments.remove(active.firstVersion);
+            closeSegment(empty);
+            try { Files.deleteIfExists(empty.path); } catch (IOException ex) { throw IOX.exception(ex); }
+            roll(version);
+        }
+        long offset = active.size;
+        try {
+            long pos = offset;
+            while ( record.hasRemaining() )
+                pos += active.channel.write(record, pos);
+        } catch (IOException ex) {
+            // Do not leave a partial record.
+            try { active.channel.truncate(offset); } catch (IOException ex2) {}
+            throw IOX.exception(ex);
+        }
+        active.size = offset + recordLength;
+        if ( offset == 0 || version % SPARSE == 0 )
+            positions.put(version, new Position(active, offset));
+        lastVersion = version;
+        lastOffset = offset;
+        lastId = id;
+    }
+
+    /** Start a new segment for records from {@code version}. */
+    private void roll(long version) {
+        if ( active != null )
+            active.sealed = true;
+        Segment segment = openSegment(version);
+        segments.put(version, segment);
+        active = segment;
+        // Make the new file name durable.
+        FS.fsync(directory, true);
+    }
+
+    /**
+     * Remove the last record, if it is for the patch {@code id}. Used when the patch log
+     * does not commit the patch after it has been stored. Return true if the record was
+     * removed.
+     */
+    public synchronized boolean undo(Id id) {
+        if ( lastOffset < 0 || ! id.equals(lastId) )
+            return false;
+        try {
+            active.channel.truncate(lastOffset);
+        } catch (IOException ex) { throw IOX.exception(ex); }
+        active.size = lastOffset;
+        positions.remove(lastVersion);
+        lastVersion = ( lastVersion == active.firstVersion && segments.size() == 1 ) ? -1 : lastVersion-1;
+        // Only one level of undo.
+        lastOffset = -1;
+        lastId = null;
+        return true;
+    }
+
+    /**
+     * The first version of the segment holding {@code version}. Records are removed a
+     * whole segment at a time (see {@link #truncate}).
+     */
+    public long truncatePoint(long version) {
+        Long start = segments.floorKey(version);
+        return ( start == null ) ? version : start;
+    }
+
+    /**
+     * Remove the segments whose records are all before {@code version}. The segment
+     * being appended to is not removed. Return the number of segments removed.
+     */
+    public synchronized int truncate(long version) {
+        int count = 0;
+        for ( ;; ) {
+            Map.Entry<Long, Segment> e = segments.firstEntry();
+            if ( e == null || e.getValue() == active )
+                break;
+            Long next = segments.higherKey(e.getKey());
+            if ( next == null || next > version )
+                break;
+            Segment segment = e.getValue();
+            segments.remove(e.getKey());
+            positions.headMap(next).clear();
+            closeSegment(segment);
+            try {
+                Files.deleteIfExists(segment.path);
+            } catch (IOException ex) { throw IOX.exception(ex); }
+            count++;
+        }
+        if ( count > 0 )
+            FS.fsync(directory, true);
+        return count;
+    }
+
+    /** Force the segment holding {@code version} to disk. */
+    public void force(long version) {
+        Map.Entry<Long, Segment> e = segments.floorEntry(version);
+        if ( e == null )
+            return;
+        try {
+            e.getValue().channel.force(false);
+        } catch (IOException ex) { throw IOX.exception(ex); }
+    }
+
+    /** The segment file holding {@code version}, or null. */
+    public Path segmentFile(long version) {
+        Map.Entry<Long, Segment> e = segments.floorEntry(version);
+        return ( e == null ) ? null : e.getValue().path;
+    }
+
+    /** Read the record for {@code version}. Return null if there is no such record. */
+    public PatchRecord read(long version) {
+        Map.Entry<Long, Position> e = positions.floorEntry(version);
+        if ( e == null )
+            return null;
+        Segment segment = e.getValue().segment;
+        long offset = e.getValue().offset;
+        ByteBuffer mapped = mapped(segment);
+        if ( mapped != null )
+            return readMapped(segment, mapped, (int)offset, version);
+        ByteBuffer start = ByteBuffer.allocate(RECORD_START);
+        try {
+            while ( offset + RECORD_START <= segment.size ) {
+                start.clear();
+                readFully(segment.channel, start, offset);
+                start.flip();
+                int len = start.getInt();
+                long ver = start.getLong();
+                if ( ver == version ) {
+                    ByteBuffer bb = ByteBuffer.allocate(len + Integer.BYTES);
+                    readFully(segment.channel, bb, offset+Integer.BYTES);
+                    bb.flip();
+                    ByteBuffer payload = bb.slice(0, len);
+                    if ( bb.getInt(len) != crc(payload) )
+                        throw new DeltaException("Bad CRC: record for version "+version+" in "+segment.path);
+                    return decode(payload, true);
+                }
+                if ( ver > version )
+                    return null;
+                offset += Integer.BYTES + len + Integer.BYTES;
+            }
+        } catch (IOException ex) {
+            throw IOX.exception(ex);
+        }
+        return null;
+    }
+
+    /** Read the record for {@code version} from a mapped segment, starting at {@code offset}. */
+    private static PatchRecord readMapped(Segment segment, ByteBuffer mapped, int offset, long version) {
+        int end = mapped.limit();
+        while ( offset + RECORD_START <= end ) {
+            int len = mapped.getInt(offset);
+            long ver = mapped.getLong(offset+Integer.BYTES);
+            if ( ver == version )
+                return recordAt(segment, mapped, offset);
+            if ( ver > version )
+                return null;
+            offset += Integer.BYTES + len + Integer.BYTES;
+        }
+        return null;
+    }
+
+    /** The record at {@code offset} of a mapped segment. The patch is a view of the mapping. */
+    private static PatchRecord recordAt(Segment segment, ByteBuffer mapped, int offset) {
+        int len = mapped.getInt(offset);
+        ByteBuffer payload = mapped.slice(offset+Integer.BYTES, len);
+        if ( mapped.getInt(offset+Integer.BYTES+len) != crc(payload) )
+            throw new DeltaException("Bad CRC: record at "+offset+" in "+segment.path);
+        PatchRecord record = decode(payload, true);
+        if ( record == null )
+            throw new DeltaException("Bad record at "+offset+" in "+segment.path);
+        return record;
+    }
+
+    /**
+     * The read-only mapping of a segment, or null if the segment is to be read through its
+     * file channel: it is still being appended to, or mapping is not enabled.
+     */
+    private ByteBuffer mapped(Segment segment) {
+        if ( ! mmap || ! segment.sealed )
+            return null;
+        ByteBuffer bb = segment.mapped;
+        if ( bb != null )
+            return bb;
+        synchronized(segment) {
+            if ( segment.mapped == null ) {
+                // A mapping is limited to 2G bytes.
+                if ( segment.size > Integer.MAX_VALUE )
+                    return null;
+                try {
+                    segment.mapped = segment.channel.map(MapMode.READ_ONLY, 0, segment.size);
+                } catch (IOException ex) { throw IOX.exception(ex); }
+            }
+            return segment.mapped;
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer bb, long position) throws IOException {
+        while ( bb.hasRemaining() ) {
+            int n = channel.read(bb, position);
+            if ( n < 0 )
+                throw new EOFException();
+            position += n;
+        }
+    }
+
+    /** All the records, in version order. For administration and testing. The stream must be closed. */
+    public Stream<PatchRecord> records() {
+        Map.Entry<Long, Position> e = positions.firstEntry();
+        if ( e == null )
+            return Stream.empty();
+        Reader reader = reader();
+        long first = e.getKey();
+        long last = getLastVersion();
+        return Stream.iterate(first, v->v <= last, v->v+1)
+            .map(reader::read)
+            .takeWhile(r->r != null)
+            .onClose(reader::close);
+    }
+
+    /**
+     * Return a {@link Reader}, for reading records in version order. Reading goes
+     * through the segment files sequentially. The reader must be closed after use.
+     */
+    public Reader reader() {
+        return new Reader();
+    }
+
+    /**
+     * Sequential reading of records. A sealed segment is read from its mapping, otherwise
+     * through a file channel. Not thread-safe.
+     */
+    public class Reader implements AutoCloseable {
+        private Segment segment = null;
+        // Either a mapped segment, or a channel and stream.
+        private ByteBuffer view = null;
+        private FileChannel channel = null;
+        private DataInputStream in = null;
+        // Position in the segment of the next record.
+        private long offset = -1;
+        // End of the complete records of the segment when opened. Reading stops here so
+        // that a record being appended is not partly read into the buffer.
+        private long limit = -1;
+        // Version of the next record, if known.
+        private long nextVersion = -1;
+
+        private Reader() {}
+
+        /** Read the record for {@code version}. Return null if there is no such record. */
+        public PatchRecord read(long version) {
+            try {
+                if ( segment == null || version != nextVersion )
+                    seek(version);
+                if ( segment == null )
+                    return null;
+                for (;;) {
+                    if ( offset + RECORD_START > limit ) {
+                        if ( ! nextSegment() )
+                            return null;
+                        continue;
+                    }
+                    PatchRecord record = ( view != null ) ? readView() : readStream();
+                    if ( record == null )
+                        throw new DeltaException("Bad record at "+offset+" in "+segment.path);
+                    nextVersion = record.version+1;
+                    if ( record.version == version )
+                        return record;
+                    if ( record.version > version )
+                        return null;
+                }
+            } catch (IOException ex) {
+                throw IOX.exception(ex);
+            }
+        }
+
+        private PatchRecord readView() {
+            PatchRecord record = recordAt(segment, view, (int)offset);
+            offset += Integer.BYTES + view.getInt((int)offset) + Integer.BYTES;
+            return record;
+        }
+
+        private PatchRecord readStream() throws IOException {
+            int len = in.readInt();
+            byte[] payload = new byte[len];
+            in.readFully(payload);
+            int crc = in.readInt();
+            ByteBuffer bb = ByteBuffer.wrap(payload);
+            if ( crc != crc(bb) )
+                throw new DeltaException("Bad CRC: record at "+offset+" in "+segment.path);
+            offset += Integer.BYTES + len + Integer.BYTES;
+            return decode(bb, true);
+        }
+
+        private void seek(long version) throws IOException {
+            closeChannel();
+            Map.Entry<Long, Position> e = positions.floorEntry(version);
+            if ( e == null )
+                return;
+            open(e.getValue().segment, e.getValue().offset);
+            nextVersion = e.getKey();
+        }
+
+        private boolean nextSegment() throws IOException {
+            Segment current = segment;
+            long position = offset;
+            if ( current.size > limit ) {
+                // Records have been added since the segment was opened.
+                closeChannel();
+                open(current, position);
+                return true;
+            }
+            Map.Entry<Long, Segment> e = segments.higherEntry(current.firstVersion);
+            closeChannel();
+            if ( e == null )
+                return false;
+            open(e.getValue(), 0);
+            return true;
+        }
+
+        private void open(Segment seg, long position) throws IOException {
+            segment = seg;
+            offset = position;
+            view = mapped(seg);
+            if ( view != null ) {
+                limit = view.limit();
+                return;
+            }
+            limit = seg.size;
+            channel = FileChannel.open(seg.path, READ);
+            channel.position(position);
+            InputStream input = new BoundedInputStream(Channels.newInputStream(channel), limit-position);
+            in = new DataInputStream(new BufferedInputStream(input, BUFSIZE));
+            offset = position;
+        }
+
+        private void closeChannel() {
+            if ( channel != null ) {
+                try { channel.close(); } catch (IOException ex) {}
+            }
+            segment = null;
+            view = null;
+            channel = null;
+            in = null;
+            offset = -1;
+            limit = -1;
+            nextVersion = -1;
+        }
+
+        @Override
+        public void close() {
+            closeChannel();
+        }
+    }
+
+    /** An {@code InputStream} that ends after a number of bytes. */
+    private static class BoundedInputStream extends FilterInputStream {
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if ( remaining <= 0 )
+                return -1;
+            int b = super.read();
+            if ( b >= 0 )
+                remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if ( remaining <= 0 )
+                return -1;
+            int n = super.read(b, off, (int)Math.min(len, remaining));
+            if ( n > 0 )
+                remaining -= n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long x = super.skip(Math.min(n, remaining));
+            remaining -= x;
+            return x;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int)Math.min(super.available(), remaining);
+        }
+    }
+
+    /**
+     * Close the segment files and drop the mappings. A mapping is unmapped when it is no
+     * longer referenced, including by any {@link PatchRecord} still in use.
+     */
+    public synchronized void close() {
+        segments.values().forEach(SegmentLog::closeSegment);
+    }
+
+    private Segment openSegment(long firstVersion) {
+        Path path = directory.resolve(filename(firstVersion));
+        try {
+            FileChannel channel = FileChannel.open(path, CREATE, READ, WRITE);
+            return new Segment(firstVersion, path, channel, channel.size());
+        } catch (IOException ex) {
+            throw IOX.exception(ex);
+        }
+    }
+
+    private static void closeSegment(Segment segment) {
+        segment.mapped = null;
+        try {
+            segment.channel.close();
+        } catch (IOException ex) {
+            FmtLog.warn(LOG, "Exception closing %s: %s", segment.path, ex.getMessage());
+        }
+    }
+
+    /** The file name of the segment starting at {@code version}. */
+    public static String filename(long version) {
+        return String.format("%s-%010d", SEGMENT_BASENAME, version);
+    }
+
+    /** Find the segment files in a directory; return their starting versions, in order. */
+    private static List<Long> scanForSegments(Path directory) {
+        List<Long> starts = new ArrayList<>();
+        try ( Stream<Path> paths = Files.list(directory) ) {
+            paths.forEach(p->{
+                Matcher m = segmentName.matcher(p.getFileName().toString());
+                if ( m.matches() )
+                    starts.add(Long.parseLong(m.group(1)));
+            });
+        } catch (IOException ex) {
+            throw IOX.exception(ex);
+        }
+        starts.sort(Long::compare);
+        return starts;
+    }
+
+    private static ByteBuffer encode(long version, Id id, Id previous, byte[] patch) {
+        byte[] idBytes = id.asBytes();
+        byte[] prevBytes = ( previous == null ) ? new byte[0] : previous.asBytes();
+        int len = Long.BYTES + Short.BYTES + idBytes.length + Short.BYTES + prevBytes.length + patch.length;
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + len + Integer.BYTES);
+        record.putInt(len);
+        record.putLong(version);
+        record.putShort((short)idBytes.length).put(idBytes);
+        record.putShort((short)prevBytes.length).put(prevBytes);
+        record.put(patch);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), Integer.BYTES, len);
+        record.putInt((int)crc.getValue());
+        record.flip();
+        return record;
+    }
+
+    /** Decode a payload. The patch, if asked for, is a read-only view of the payload. */
+    private static PatchRecord decode(ByteBuffer payload, boolean withPatch) {
+        try {
+            ByteBuffer bb = payload.duplicate();
+            long version = bb.getLong();
+            byte[] idBytes = new byte[bb.getShort()];
+            bb.get(idBytes);
+            byte[] prevBytes = new byte[bb.getShort()];
+            bb.get(prevBytes);
+            if ( idBytes.length == 0 )
+                return null;
+            ByteBuffer patch = withPatch ? bb.slice().asReadOnlyBuffer() : null;
+            Id id = Id.fromBytes(idBytes);
+            Id prev = ( prevBytes.length == 0 ) ? null : Id.fromBytes(prevBytes);
+            return new PatchRecord(version, id, prev, patch);
+        } catch (RuntimeException ex) {
+            return null;
+        }
+    }
+
+    private static int crc(ByteBuffer bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes.duplicate());
+        return (int)crc.getValue();
+    }
+}
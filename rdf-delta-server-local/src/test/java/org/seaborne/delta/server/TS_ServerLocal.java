@@ -27,12 +27,17 @@ import org.seaborne.delta.server.patchstores.*;
 @Suite.SuiteClasses( {
     TestLocalServerBuildConfig.class
     , TestFileStore.class
+    , TestPatchCache.class
+    , TestGroupCommit.class
+    , TestSegmentLog.class
 
     , TestPatchStorageMem.class
     // , TestPatchStorageFile.class :: TestFileStore covers it.
     , TestPatchStorageRocks.class
 
+    , TestVersionIndex.class
     , TestPatchLogIndexMem.class
+    , TestLogIndexFile.class
     // XXX ToDo
     //, TestPatchLogIndexFile.class
     //, TestPatchLogIndexRocks.class
@@ -40,13 +45,18 @@ import org.seaborne.delta.server.patchstores.*;
     // TestPatchLog* and TestPatchStore* should be enough.
     , TestPatchLogMem.class
     , TestPatchLogFile.class   // New
+    , TestPatchLogRocksShared.class
+    , TestPatchLogSegment.class
 
     , TestPatchStoreMem.class
     , TestPatchStoreFile.class
     , TestPatchStoreRocks.class
+    , TestPatchStoreSegment.class
 
     , TestLocalServer.class
     , TestLocalServerCreateDelete.class
+    , TestSnapshotStore.class
+    , TestLogChanges.class
 })
 
 public class TS_ServerLocal {
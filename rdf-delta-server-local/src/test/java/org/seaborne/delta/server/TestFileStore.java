@@ -22,6 +22,8 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.regex.Matcher;
@@ -34,6 +36,7 @@ import org.apache.jena.util.FileUtils;
 import org.junit.After;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.seaborne.delta.DeltaNotFoundException;
 import org.seaborne.delta.server.local.patchstores.filestore.FileEntry;
 import org.seaborne.delta.server.local.patchstores.filestore.FileStore;
 
@@ -99,6 +102,24 @@ public class TestFileStore {
         assertEquals("abc", s);
     }
 
+    @Test
+    public void fs_map_01() {
+        FileStore fs = FileStore.attach(STORE, "FILE");
+        fs.writeNewFile(out->{
+            try(AWriter aw = IO .wrapUTF8(out)) {
+              aw.write("abc");
+            }
+        }) ;
+        ByteBuffer bb = fs.map(1);
+        assertEquals("abc", StandardCharsets.UTF_8.decode(bb).toString());
+    }
+
+    @Test(expected = DeltaNotFoundException.class)
+    public void fs_map_02() {
+        FileStore fs = FileStore.attach(STORE, "FILE");
+        fs.map(1);
+    }
+
     private int checkFilename(Path path) {
         Matcher m = pattern.matcher(path.toString());
         assertTrue(m.find());
@@ -0,0 +1,81 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.seaborne.delta.DeltaException;
+import org.seaborne.delta.server.local.GroupCommit;
+
+public class TestGroupCommit {
+
+    @Test public void groupCommit_1() {
+        GroupCommit groupCommit = new GroupCommit(0);
+        AtomicInteger counter = new AtomicInteger();
+        GroupCommit.Batch batch = groupCommit.register("A", counter::incrementAndGet);
+        groupCommit.register("A", counter::incrementAndGet);
+        groupCommit.register("B", counter::incrementAndGet);
+        groupCommit.await(batch);
+        // "A" once.
+        assertEquals(2, counter.get());
+        assertEquals(1, groupCommit.getBatches());
+        // Already done.
+        groupCommit.await(batch);
+        assertEquals(1, groupCommit.getBatches());
+    }
+
+    @Test public void groupCommit_2() throws Exception {
+        // Many threads, one shared key: fewer syncs than appends.
+        GroupCommit groupCommit = new GroupCommit(20);
+        AtomicInteger counter = new AtomicInteger();
+        int N = 10;
+        ExecutorService executor = Executors.newFixedThreadPool(N);
+        CyclicBarrier barrier = new CyclicBarrier(N);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for ( int i = 0 ; i < N ; i++ ) {
+                results.add(executor.submit(()->{
+                    barrier.await();
+                    GroupCommit.Batch batch = groupCommit.register("db", counter::incrementAndGet);
+                    groupCommit.await(batch);
+                    return null;
+                }));
+            }
+            for ( Future<?> f : results )
+                f.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(counter.get(), groupCommit.getActions());
+        assertTrue(counter.get() >= 1);
+        assertTrue("Expected shared syncs: "+counter.get(), counter.get() < N);
+    }
+
+    @Test(expected=DeltaException.class)
+    public void groupCommit_3() {
+        GroupCommit groupCommit = new GroupCommit(0);
+        GroupCommit.Batch batch = groupCommit.register("A", ()->{ throw new RuntimeException("Sync failed"); });
+        groupCommit.await(batch);
+    }
+}
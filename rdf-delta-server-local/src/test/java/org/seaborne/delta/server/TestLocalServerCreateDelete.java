@@ -18,7 +18,9 @@
 package org.seaborne.delta.server;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -26,21 +28,29 @@ import java.io.File;
 import java.io.IOException;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.jena.atlas.lib.FileOps;
 import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.rdfpatch.RDFPatch;
+import org.apache.jena.rdfpatch.RDFPatchOps;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.seaborne.delta.DeltaException;
 import org.seaborne.delta.Id;
+import org.seaborne.delta.Version;
 import org.apache.jena.atlas.io.IOX;
 import org.seaborne.delta.lib.LogX;
 import org.seaborne.delta.server.local.DPS;
+import org.seaborne.delta.server.local.DataSource;
+import org.seaborne.delta.server.local.DeltaLinkLocal;
 import org.seaborne.delta.server.local.LocalServer;
+import org.seaborne.delta.server.local.LocalServerConfig;
 import org.seaborne.delta.server.local.LocalServers;
+import org.seaborne.delta.server.local.PatchLog;
 import org.seaborne.delta.server.local.PatchStoreProvider;
 
 /**
@@ -144,4 +154,95 @@ public class TestLocalServerCreateDelete {
         assertTrue(ids.contains(newId1));
     }
 
+    // Restart, opening the patch logs in parallel.
+    @Test public void local_server_restart_02() {
+        LocalServer server1 = LocalServers.createFile(DIR);
+        for ( int i = 0 ; i < 5 ; i++ )
+            server1.createDataSource("ABC"+i, "http://example/abc"+i);
+        LocalServer.release(server1);
+        DPS.resetSystem();
+
+        LocalServerConfig config = LocalServerConfig.create(LocalServers.configFile(DIR)).setOpenThreads(3).build();
+        LocalServer server2 = LocalServer.create(config);
+        // data1, data2 and 5 new.
+        assertEquals(7, server2.listDataSources().size());
+        server2.listDataSources().forEach(ds->assertTrue(ds.isOpen()));
+    }
+
+    // Restart, opening the patch logs on first use.
+    @Test public void local_server_restart_lazy_01() {
+        LocalServer server1 = LocalServers.createFile(DIR);
+        Id newId1 = server1.createDataSource("AXYZ", "http://example/axyz");
+        LocalServer.release(server1);
+        DPS.resetSystem();
+
+        LocalServerConfig config = LocalServerConfig.create(LocalServers.configFile(DIR)).setOpenLazy(true).build();
+        LocalServer server2 = LocalServer.create(config);
+        assertEquals(3, server2.listDataSources().size());
+        DataSource ds = server2.getDataSource(newId1);
+        assertNotNull(ds);
+        assertFalse(ds.isOpen());
+        // The patch store knows the log before it is opened.
+        assertTrue(server2.getPatchStore().logExists(newId1));
+        assertFalse(ds.isOpen());
+        PatchLog patchLog = ds.getPatchLog();
+        assertTrue(ds.isOpen());
+        assertEquals(newId1, patchLog.getLogId());
+        assertSame(patchLog, ds.getPatchLog());
+    }
+
+    // Close idle patch logs; they are opened again on next use.
+    @Test public void local_server_idle_close_01() {
+        LocalServer server = LocalServers.createFile(DIR);
+        Id newId1 = server.createDataSource("AXYZ", "http://example/axyz");
+        DataSource ds = server.getDataSource(newId1);
+        ds.getPatchLog().append(RDFPatchOps.emptyPatch());
+        assertEquals(3, server.countOpenLogs());
+
+        // Everything is idle.
+        int n = server.closeIdleLogs(0);
+        assertEquals(3, n);
+        assertFalse(ds.isOpen());
+        assertEquals(0, server.countOpenLogs());
+        assertEquals(3, server.countClosedLogs());
+        assertEquals(3, server.getIdleClosedCount());
+
+        PatchLog patchLog = ds.getPatchLog();
+        assertTrue(ds.isOpen());
+        assertEquals(Version.FIRST, patchLog.getLatestVersion());
+        assertNotNull(patchLog.fetch(Version.FIRST));
+        assertEquals(1, server.countOpenLogs());
+    }
+
+    // A locked patch log is not closed.
+    @Test public void local_server_idle_close_02() {
+        LocalServer server = LocalServers.createFile(DIR);
+        Id newId1 = server.createDataSource("AXYZ", "http://example/axyz");
+        DataSource ds = server.getDataSource(newId1);
+        Id session = ds.getPatchLog().acquireLock();
+        assertNotNull(session);
+        server.closeIdleLogs(0);
+        assertTrue(ds.isOpen());
+        ds.getPatchLog().releaseLock(session);
+        server.closeIdleLogs(0);
+        assertFalse(ds.isOpen());
+    }
+
+    // A patch log in use is not closed; an open stream of patches is a use.
+    @Test public void local_server_idle_close_03() {
+        LocalServer server = LocalServers.createFile(DIR);
+        Id newId1 = server.createDataSource("AXYZ", "http://example/axyz");
+        DataSource ds = server.getDataSource(newId1);
+        ds.getPatchLog().append(RDFPatchOps.emptyPatch());
+        DeltaLinkLocal dLink = (DeltaLinkLocal)DeltaLinkLocal.connect(server);
+        try ( Stream<RDFPatch> patches = dLink.fetchRange(newId1, Version.FIRST, Version.FIRST) ) {
+            assertTrue(ds.isInUse());
+            server.closeIdleLogs(0);
+            assertTrue(ds.isOpen());
+            assertEquals(1, patches.count());
+        }
+        assertFalse(ds.isInUse());
+        server.closeIdleLogs(0);
+        assertFalse(ds.isOpen());
+    }
 }
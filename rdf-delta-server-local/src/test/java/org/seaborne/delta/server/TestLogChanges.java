@@ -0,0 +1,118 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.jena.rdfpatch.RDFPatchOps;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.seaborne.delta.Id;
+import org.seaborne.delta.PatchLogChanges;
+import org.seaborne.delta.server.local.DPS;
+import org.seaborne.delta.server.local.LocalServer;
+import org.seaborne.delta.server.local.LocalServers;
+
+/** Tests of {@link LocalServer#listPatchLogChanges}. */
+public class TestLogChanges {
+    private LocalServer server;
+
+    @Before public void beforeTest() {
+        DPS.resetSystem();
+        server = LocalServers.createMem();
+    }
+
+    @AfterClass public static void afterClass() {
+        DPS.resetSystem();
+    }
+
+    @Test public void log_changes_01() {
+        server.createDataSource("ABC", "http://example/abc");
+        PatchLogChanges changes = server.listPatchLogChanges(null);
+        assertTrue(changes.isComplete());
+        assertNotNull(changes.getToken());
+        assertEquals(1, changes.getChanged().size());
+        assertTrue(changes.getRemoved().isEmpty());
+    }
+
+    @Test public void log_changes_02() {
+        server.createDataSource("ABC", "http://example/abc");
+        PatchLogChanges changes1 = server.listPatchLogChanges(null);
+        PatchLogChanges changes2 = server.listPatchLogChanges(changes1.getToken());
+        assertFalse(changes2.isComplete());
+        assertTrue(changes2.getChanged().isEmpty());
+        assertTrue(changes2.getRemoved().isEmpty());
+    }
+
+    @Test public void log_changes_append() {
+        Id dsRef1 = server.createDataSource("ABC", "http://example/abc");
+        server.createDataSource("XYZ", "http://example/xyz");
+        PatchLogChanges changes1 = server.listPatchLogChanges(null);
+        assertEquals(2, changes1.getChanged().size());
+
+        server.getDataSource(dsRef1).getPatchLog().append(RDFPatchOps.emptyPatch());
+        PatchLogChanges changes2 = server.listPatchLogChanges(changes1.getToken());
+        assertFalse(changes2.isComplete());
+        assertEquals(1, changes2.getChanged().size());
+        assertEquals(dsRef1, changes2.getChanged().get(0).getDataSourceId());
+
+        PatchLogChanges changes3 = server.listPatchLogChanges(changes2.getToken());
+        assertTrue(changes3.getChanged().isEmpty());
+    }
+
+    @Test public void log_changes_create() {
+        server.createDataSource("ABC", "http://example/abc");
+        PatchLogChanges changes1 = server.listPatchLogChanges(null);
+        Id dsRef2 = server.createDataSource("XYZ", "http://example/xyz");
+        PatchLogChanges changes2 = server.listPatchLogChanges(changes1.getToken());
+        assertFalse(changes2.isComplete());
+        assertEquals(1, changes2.getChanged().size());
+        assertEquals(dsRef2, changes2.getChanged().get(0).getDataSourceId());
+        assertTrue(changes2.getRemoved().isEmpty());
+    }
+
+    @Test public void log_changes_remove() {
+        Id dsRef1 = server.createDataSource("ABC", "http://example/abc");
+        Id dsRef2 = server.createDataSource("XYZ", "http://example/xyz");
+        PatchLogChanges changes1 = server.listPatchLogChanges(null);
+
+        server.removeDataSource(dsRef2);
+        PatchLogChanges changes2 = server.listPatchLogChanges(changes1.getToken());
+        assertFalse(changes2.isComplete());
+        assertTrue(changes2.getChanged().isEmpty());
+        assertEquals(1, changes2.getRemoved().size());
+        assertEquals(dsRef2, changes2.getRemoved().get(0));
+
+        PatchLogChanges changes3 = server.listPatchLogChanges(null);
+        assertTrue(changes3.isComplete());
+        assertEquals(1, changes3.getChanged().size());
+        assertEquals(dsRef1, changes3.getChanged().get(0).getDataSourceId());
+    }
+
+    @Test public void log_changes_bad_token() {
+        server.createDataSource("ABC", "http://example/abc");
+        server.listPatchLogChanges(null);
+        PatchLogChanges changes = server.listPatchLogChanges(Id.create().asPlainString()+":1");
+        assertTrue(changes.isComplete());
+        assertEquals(1, changes.getChanged().size());
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server;
+
+import static org.junit.Assert.*;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.rdfpatch.RDFPatch;
+import org.apache.jena.rdfpatch.RDFPatchConst;
+import org.apache.jena.rdfpatch.RDFPatchOps;
+import org.apache.jena.rdfpatch.changes.RDFChangesCollector;
+import org.junit.Test;
+import org.seaborne.delta.Id;
+import org.seaborne.delta.Version;
+import org.seaborne.delta.server.local.PatchCache;
+
+public class TestPatchCache {
+    private static Id log1 = Id.create();
+    private static Id log2 = Id.create();
+    private static Version version_1 = Version.create(1);
+    private static Version version_2 = Version.create(2);
+
+    private static RDFPatch patch() {
+        RDFChangesCollector c = new RDFChangesCollector();
+        c.header(RDFPatchConst.ID, Id.create().asNode());
+        c.txnBegin();
+        Node n = NodeFactory.createURI("http://example/s");
+        c.add(null, n, n, n);
+        c.delete(null, n, n, NodeFactory.createLiteralString("old"));
+        c.txnCommit();
+        return c.getRDFPatch();
+    }
+
+    private static Id id(RDFPatch patch) { return Id.fromNode(patch.getId()); }
+
+    @Test public void patchCache_1() {
+        PatchCache cache = new PatchCache(1024*1024);
+        RDFPatch patch = patch();
+        assertNull(cache.get(log1, version_1));
+        cache.put(log1, version_1, id(patch), patch);
+        assertSame(patch, cache.get(log1, version_1));
+        assertSame(patch, cache.get(log1, id(patch)));
+        // Different log.
+        assertNull(cache.get(log2, version_1));
+        assertNull(cache.get(log2, id(patch)));
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.getHits());
+        assertEquals(3, cache.getMisses());
+    }
+
+    @Test public void patchCache_2() {
+        PatchCache cache = new PatchCache(1024*1024);
+        RDFPatch patch1 = patch();
+        RDFPatch patch2 = patch();
+        cache.put(log1, version_1, id(patch1), patch1);
+        cache.put(log2, version_2, id(patch2), patch2);
+        cache.invalidate(log1);
+        assertNull(cache.get(log1, version_1));
+        assertNull(cache.get(log1, id(patch1)));
+        assertSame(patch2, cache.get(log2, version_2));
+        assertEquals(1, cache.size());
+        assertEquals(PatchCache.weigh(patch2), cache.getWeight());
+    }
+
+    @Test public void patchCache_evict() {
+        RDFPatch patch1 = patch();
+        RDFPatch patch2 = patch();
+        long w = PatchCache.weigh(patch1);
+        // Room for one patch.
+        PatchCache cache = new PatchCache(w + w/2);
+        cache.put(log1, version_1, id(patch1), patch1);
+        cache.put(log1, version_2, id(patch2), patch2);
+        assertEquals(1, cache.size());
+        assertNull(cache.get(log1, version_1));
+        assertSame(patch2, cache.get(log1, version_2));
+        assertEquals(1, cache.getEvictions());
+        assertTrue(cache.getWeight() <= cache.getCapacity());
+    }
+
+    @Test public void patchCache_weigh() {
+        RDFPatch patch = patch();
+        RDFPatch header = RDFPatchOps.withHeader(RDFPatchOps.emptyPatch(), patch.getId(), null);
+        // The add and delete rows count towards the weight.
+        assertTrue(PatchCache.weigh(patch) > PatchCache.weigh(header));
+    }
+
+    @Test public void patchCache_disabled() {
+        PatchCache cache = new PatchCache(0);
+        RDFPatch patch = patch();
+        cache.put(log1, version_1, id(patch), patch);
+        assertNull(cache.get(log1, version_1));
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.apache.jena.atlas.io.IOX;
+import org.apache.jena.atlas.lib.FileOps;
+import org.apache.jena.atlas.web.TypedInputStream;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.rdfpatch.RDFPatch;
+import org.apache.jena.rdfpatch.RDFPatchOps;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.riot.WebContent;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.seaborne.delta.*;
+import org.seaborne.delta.link.DeltaLink;
+import org.seaborne.delta.server.local.*;
+
+public class TestSnapshotStore {
+    static final Path SNAPSHOTS = Paths.get("target/test/snapshots");
+
+    private static final String DATA = "<http://example/s> <http://example/p> \"o\" <http://example/g> .\n";
+
+    @BeforeClass public static void beforeClass() {
+        DPS.resetSystem();
+    }
+
+    @Before
+    public void beforeTest() {
+        FileOps.ensureDir(SNAPSHOTS.toString());
+        FileOps.clearAll(SNAPSHOTS.toString());
+    }
+
+    @After
+    public void afterTest() {
+        FileOps.clearAll(SNAPSHOTS.toString());
+    }
+
+    @Test
+    public void snapshotStore_empty() {
+        SnapshotStore store = new SnapshotStore(SNAPSHOTS);
+        Id dsRef = Id.create();
+        assertTrue(store.list(dsRef).isEmpty());
+        assertNull(store.get(dsRef, Version.create(1)));
+        assertNull(store.open(dsRef, Version.create(1)));
+    }
+
+    @Test
+    public void snapshotStore_write_read() {
+        SnapshotStore store = new SnapshotStore(SNAPSHOTS);
+        Id dsRef = Id.create();
+        Id patchId = Id.create();
+        SnapshotInfo info = store.write(dsRef, Version.create(2), patchId, WebContent.contentTypeNQuads,
+                                        out->out.write(DATA.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(Version.create(2), info.getVersion());
+        assertEquals(patchId, info.getPatchId());
+        assertEquals(info, store.get(dsRef, Version.create(2)));
+        assertEquals(List.of(info), store.list(dsRef));
+
+        DatasetGraph dsg = DatasetGraphFactory.createTxnMem();
+        try ( InputStream in = store.open(dsRef, Version.create(2)) ) {
+            RDFParser.source(in).lang(Lang.NQUADS).parse(dsg);
+        } catch (IOException ex) { throw IOX.exception(ex); }
+        assertEquals(1, dsg.getGraph(NodeFactory.createURI("http://example/g")).size());
+    }
+
+    @Test
+    public void snapshotStore_list_ordered() {
+        SnapshotStore store = new SnapshotStore(SNAPSHOTS);
+        Id dsRef = Id.create();
+        store.write(dsRef, Version.create(10), Id.create(), WebContent.contentTypeNQuads, out->{});
+        store.write(dsRef, Version.create(3), Id.create(), WebContent.contentTypeNQuads, out->{});
+        // Another log.
+        store.write(Id.create(), Version.create(5), Id.create(), WebContent.contentTypeNQuads, out->{});
+        List<SnapshotInfo> snapshots = store.list(dsRef);
+        assertEquals(2, snapshots.size());
+        assertEquals(Version.create(3), snapshots.get(0).getVersion());
+        assertEquals(Version.create(10), snapshots.get(1).getVersion());
+    }
+
+    @Test(expected=DeltaBadRequestException.class)
+    public void snapshotStore_bad_syntax() {
+        SnapshotStore store = new SnapshotStore(SNAPSHOTS);
+        store.write(Id.create(), Version.create(1), Id.create(), WebContent.contentTypeTurtle, out->{});
+    }
+
+    @Test
+    public void snapshot_create_01() {
+        LocalServerConfig config = LocalServerConfig.create(LocalServers.configMem())
+            .setSnapshotLocation(SNAPSHOTS.toString())
+            .build();
+        LocalServer server = LocalServers.create(config);
+        DeltaLink dLink = DeltaLinkLocal.connect(server);
+        try {
+            Id dsRef = dLink.newDataSource("snapshot", "http://example/snapshot");
+            RDFPatch patch1 = patch(Id.create(), null, "s1");
+            RDFPatch patch2 = patch(Id.create(), Id.fromNode(patch1.getId()), "s2");
+            dLink.append(dsRef, patch1);
+            dLink.append(dsRef, patch2);
+
+            SnapshotInfo info2 = dLink.createSnapshot(dsRef);
+            assertEquals(Version.create(2), info2.getVersion());
+            assertEquals(Id.fromNode(patch2.getId()), info2.getPatchId());
+            assertEquals(2, read(dLink, dsRef, info2).getDefaultGraph().size());
+
+            // From the snapshot and the patches after it.
+            RDFPatch patch3 = patch(Id.create(), Id.fromNode(patch2.getId()), "s3");
+            dLink.append(dsRef, patch3);
+            SnapshotInfo info3 = dLink.createSnapshot(dsRef);
+            assertEquals(Version.create(3), info3.getVersion());
+            assertEquals(3, read(dLink, dsRef, info3).getDefaultGraph().size());
+
+            assertEquals(List.of(info2, info3), dLink.listSnapshots(dsRef));
+            assertEquals(info2, dLink.getSnapshot(dsRef, Version.create(2)));
+            assertNull(dLink.getSnapshot(dsRef, Version.create(1)));
+        } finally {
+            dLink.close();
+            server.shutdown();
+        }
+    }
+
+    private static DatasetGraph read(DeltaLink dLink, Id dsRef, SnapshotInfo info) {
+        DatasetGraph dsg = DatasetGraphFactory.createTxnMem();
+        try ( TypedInputStream in = dLink.fetchSnapshot(dsRef, info.getVersion()) ) {
+            assertNotNull(in);
+            RDFParser.source(in).lang(RDFLanguages.contentTypeToLang(info.getContentType())).parse(dsg);
+        }
+        return dsg;
+    }
+
+    private static RDFPatch patch(Id id, Id prev, String subject) {
+        String x = "H id <"+id.asNode().getURI()+"> .\n"
+                + ( prev == null ? "" : "H prev <"+prev.asNode().getURI()+"> .\n" )
+                + "TX .\n"
+                + "A <http://example/"+subject+"> <http://example/p> \"o\" .\n"
+                + "TC .\n";
+        return RDFPatchOps.read(new ByteArrayInputStream(x.getBytes(StandardCharsets.UTF_8)));
+    }
+}
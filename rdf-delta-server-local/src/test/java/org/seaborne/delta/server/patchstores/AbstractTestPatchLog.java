@@ -19,13 +19,35 @@ package org.seaborne.delta.server.patchstores;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
 import org.junit.Test;
+import org.seaborne.delta.DeltaConst;
+import org.seaborne.delta.DeltaException;
+import org.seaborne.delta.DeltaTruncatedException;
 import org.seaborne.delta.Id;
 import org.seaborne.delta.PatchLogInfo;
+import org.seaborne.delta.Retention;
 import org.seaborne.delta.Version;
+import org.seaborne.delta.server.local.LockWaiter;
 import org.seaborne.delta.server.local.PatchLog;
+import org.seaborne.delta.server.local.VersionWaiter;
 import org.apache.jena.rdfpatch.RDFPatch;
 import org.apache.jena.rdfpatch.RDFPatchOps;
+import org.apache.jena.rdfpatch.changes.RDFChangesCounter;
 
 /**
  * Some basic test to make sure a patch log works.
@@ -107,4 +129,332 @@ public abstract class AbstractTestPatchLog {
         assertEquals(version_2, x.getMaxVersion());
         assertEquals(Version.FIRST, x.getMinVersion());
     }
+
+    @Test
+    public void patchLog_4_range() {
+        PatchLog patchLog = patchLog();
+        RDFPatch patch1 = RDFPatchOps.emptyPatch();
+        RDFPatch patch2 = RDFPatchOps.withHeader(patch1, Id.create().asNode(), patch1.getId());
+        RDFPatch patch3 = RDFPatchOps.withHeader(patch1, Id.create().asNode(), patch2.getId());
+        patchLog.append(patch1);
+        patchLog.append(patch2);
+        patchLog.append(patch3);
+
+        try ( Stream<RDFPatch> stream = patchLog.range(version_1, version_3) ) {
+            List<RDFPatch> x = stream.collect(Collectors.toList());
+            assertEquals(3, x.size());
+            assertEquals(patch1.getId(), x.get(0).getId());
+            assertEquals(patch2.getId(), x.get(1).getId());
+            assertEquals(patch3.getId(), x.get(2).getId());
+        }
+
+        try ( Stream<RDFPatch> stream = patchLog.range(version_2, version_2) ) {
+            List<RDFPatch> x = stream.collect(Collectors.toList());
+            assertEquals(1, x.size());
+            assertEquals(patch2.getId(), x.get(0).getId());
+        }
+
+        try ( Stream<RDFPatch> stream = patchLog.range(Id.fromNode(patch2.getId()), Id.fromNode(patch3.getId())) ) {
+            List<RDFPatch> x = stream.collect(Collectors.toList());
+            assertEquals(2, x.size());
+            assertEquals(patch2.getId(), x.get(0).getId());
+            assertEquals(patch3.getId(), x.get(1).getId());
+        }
+    }
+
+    @Test
+    public void patchLog_5_fetchRaw() throws IOException {
+        PatchLog patchLog = patchLog();
+        RDFPatch patch1 = RDFPatchOps.emptyPatch();
+        patchLog.append(patch1);
+        // Whichever format the storage uses, if any.
+        for ( String ct : new String[] {DeltaConst.contentTypePatchText, DeltaConst.contentTypePatchBinary} ) {
+            try ( ReadableByteChannel channel = patchLog.fetchRaw(version_1, ct) ) {
+                if ( channel == null )
+                    continue;
+                InputStream in = Channels.newInputStream(channel);
+                RDFPatch patch = ct.equals(DeltaConst.contentTypePatchText)
+                        ? RDFPatchOps.read(in)
+                        : RDFPatchOps.readBinary(in);
+                assertEquals(patch1.getId(), patch.getId());
+            }
+        }
+        assertNull(patchLog.fetchRaw(version_2, DeltaConst.contentTypePatchText));
+        assertNull(patchLog.fetchRaw(version_2, DeltaConst.contentTypePatchBinary));
+    }
+
+    private static InputStream patchText(Id id, Id prev) {
+        String x = "H id <"+id.asNode().getURI()+"> .\n"
+                + ( prev == null ? "" : "H prev <"+prev.asNode().getURI()+"> .\n" )
+                + "TX .\n"
+                + "A <http://example/s> <http://example/p> \"o\" .\n"
+                + "TC .\n";
+        return new ByteArrayInputStream(x.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void patchLog_6_appendStream() {
+        PatchLog patchLog = patchLog();
+        Id id1 = Id.create();
+        Id id2 = Id.create();
+        Version v1 = patchLog.append(patchText(id1, null), DeltaConst.contentTypePatchText, null);
+        assertEquals(version_1, v1);
+
+        RDFPatch patch1 = patchLog.fetch(version_1);
+        assertNotNull(patch1);
+        assertEquals(id1.asNode(), patch1.getId());
+        RDFChangesCounter counter = new RDFChangesCounter();
+        patch1.apply(counter);
+        assertEquals(1, counter.summary().countAddData);
+
+        // Bad previous: rejected and nothing stored.
+        try {
+            patchLog.append(patchText(id2, Id.create()), DeltaConst.contentTypePatchText, null);
+            fail("Expected a patch conflict");
+        } catch (DeltaException ex) {}
+        assertEquals(version_1, patchLog.getLatestVersion());
+        assertNull(patchLog.fetch(version_2));
+
+        Version v2 = patchLog.append(patchText(id2, id1), DeltaConst.contentTypePatchText, null);
+        assertEquals(version_2, v2);
+        assertEquals(id2, patchLog.getLatestId());
+    }
+
+    @Test
+    public void patchLog_6_appendStreamNotLocked() throws Exception {
+        PatchLog patchLog = patchLog();
+        Id id1 = Id.create();
+        Id id2 = Id.create();
+        // While the body of the first patch is being read, another append completes.
+        AtomicReference<Version> other = new AtomicReference<>();
+        InputStream input = new FilterInputStream(patchText(id1, null)) {
+            boolean first = true;
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if ( first ) {
+                    first = false;
+                    CompletableFuture<Version> f = CompletableFuture.supplyAsync(()->patchLog.append(patchText(id2, null), DeltaConst.contentTypePatchText, null));
+                    try { other.set(f.get(5, TimeUnit.SECONDS)); }
+                    catch (Exception ex) { throw new IOException(ex); }
+                }
+                return super.read(b, off, len);
+            }
+        };
+        try {
+            patchLog.append(input, DeltaConst.contentTypePatchText, null);
+            fail("Expected a patch conflict");
+        } catch (DeltaException ex) {}
+        assertEquals(version_1, other.get());
+        assertEquals(id2, patchLog.getLatestId());
+    }
+
+    @Test
+    public void patchLog_7_contains_find() {
+        PatchLog patchLog = patchLog();
+        RDFPatch patch1 = RDFPatchOps.emptyPatch();
+        RDFPatch patch2 = RDFPatchOps.withHeader(patch1, Id.create().asNode(), patch1.getId());
+        Id id1 = Id.fromNode(patch1.getId());
+        Id id2 = Id.fromNode(patch2.getId());
+        assertFalse(patchLog.contains(id1));
+        assertNull(patchLog.find(id1));
+        patchLog.append(patch1);
+        patchLog.append(patch2);
+        assertTrue(patchLog.contains(id1));
+        assertTrue(patchLog.contains(id2));
+        assertFalse(patchLog.contains(Id.create()));
+        assertEquals(version_1, patchLog.find(id1));
+        assertEquals(version_2, patchLog.find(id2));
+        assertNull(patchLog.find(Id.create()));
+    }
+
+    @Test
+    public void patchLog_8_append_retry() {
+        // A patch sent again returns its version; the log is unchanged.
+        PatchLog patchLog = patchLog();
+        RDFPatch patch1 = RDFPatchOps.emptyPatch();
+        RDFPatch patch2 = RDFPatchOps.withHeader(patch1, Id.create().asNode(), patch1.getId());
+        patchLog.append(patch1);
+        patchLog.append(patch2);
+        assertEquals(version_1, patchLog.append(patch1));
+        assertEquals(version_2, patchLog.append(patch2));
+        assertEquals(version_2, patchLog.getLatestVersion());
+
+        Id id1 = Id.fromNode(patch1.getId());
+        Version v = patchLog.append(patchText(id1, null), DeltaConst.contentTypePatchText, null);
+        assertEquals(version_1, v);
+        assertEquals(version_2, patchLog.getLatestVersion());
+    }
+
+    @Test
+    public void patchLog_9_append_existing_bad() {
+        // Same id, different previous: not a retry.
+        PatchLog patchLog = patchLog();
+        RDFPatch patch1 = RDFPatchOps.emptyPatch();
+        RDFPatch patch2 = RDFPatchOps.withHeader(patch1, Id.create().asNode(), patch1.getId());
+        RDFPatch patch3 = RDFPatchOps.withHeader(patch1, Id.create().asNode(), patch2.getId());
+        patchLog.append(patch1);
+        patchLog.append(patch2);
+        patchLog.append(patch3);
+        RDFPatch patch2bad = RDFPatchOps.withHeader(patch1, patch2.getId(), patch3.getId());
+        try {
+            patchLog.append(patch2bad);
+            fail("Expected an exception");
+        } catch (DeltaException ex) {}
+        assertEquals(version_3, patchLog.getLatestVersion());
+    }
+
+    @Test
+    public void patchLog_10_truncate() {
+        PatchLog patchLog = patchLog();
+        RDFPatch patch1 = RDFPatchOps.emptyPatch();
+        RDFPatch patch2 = RDFPatchOps.withHeader(patch1, Id.create().asNode(), patch1.getId());
+        RDFPatch patch3 = RDFPatchOps.withHeader(patch1, Id.create().asNode(), patch2.getId());
+        patchLog.append(patch1);
+        patchLog.append(patch2);
+        patchLog.append(patch3);
+
+        // Patch stores may truncate less than asked for (e.g. whole segment files).
+        Version earliest = patchLog.truncate(Retention.keepFrom(version_2));
+        assertFalse(earliest.isAfter(version_2));
+        assertEquals(earliest, patchLog.getEarliestVersion());
+        assertEquals(version_3, patchLog.getLatestVersion());
+        assertNotNull(patchLog.fetch(version_2));
+        if ( earliest.isAfter(version_1) ) {
+            assertTrue(patchLog.isTruncated(version_1));
+            try {
+                patchLog.fetch(version_1);
+                fail("Expected DeltaTruncatedException");
+            } catch (DeltaTruncatedException ex) {}
+        }
+
+        // Append after truncation.
+        RDFPatch patch4 = RDFPatchOps.withHeader(patch1, Id.create().asNode(), patch3.getId());
+        Version v4 = patchLog.append(patch4);
+        assertEquals(Version.create(4), v4);
+
+        // The latest patch is always kept.
+        patchLog.truncate(Retention.keepFrom(Version.create(10)));
+        assertFalse(patchLog.getEarliestVersion().isAfter(v4));
+        assertEquals(v4, patchLog.getLatestVersion());
+        assertNotNull(patchLog.fetch(v4));
+    }
+
+    @Test
+    public void patchLog_11_await_timeout() {
+        PatchLog patchLog = patchLog();
+        RDFPatch patch1 = RDFPatchOps.emptyPatch();
+        patchLog.append(patch1);
+        // Already after.
+        PatchLogInfo info0 = patchLog.awaitVersion(Version.INIT, 10_000);
+        assertEquals(version_1, info0.getMaxVersion());
+        // No new version.
+        PatchLogInfo info1 = patchLog.awaitVersion(version_1, 50);
+        assertEquals(version_1, info1.getMaxVersion());
+    }
+
+    @Test
+    public void patchLog_12_await_append() throws Exception {
+        PatchLog patchLog = patchLog();
+        RDFPatch patch1 = RDFPatchOps.emptyPatch();
+        RDFPatch patch2 = RDFPatchOps.withHeader(patch1, Id.create().asNode(), patch1.getId());
+        patchLog.append(patch1);
+        CompletableFuture<PatchLogInfo> waiter = CompletableFuture.supplyAsync(()->patchLog.awaitVersion(version_1, 10_000));
+        patchLog.append(patch2);
+        PatchLogInfo info = waiter.get(5, TimeUnit.SECONDS);
+        assertEquals(version_2, info.getMaxVersion());
+    }
+
+    @Test
+    public void patchLog_12_await_waiter() {
+        PatchLog patchLog = patchLog();
+        RDFPatch patch1 = RDFPatchOps.emptyPatch();
+        RDFPatch patch2 = RDFPatchOps.withHeader(patch1, Id.create().asNode(), patch1.getId());
+        patchLog.append(patch1);
+        AtomicReference<PatchLogInfo> result = new AtomicReference<>();
+        VersionWaiter waiter = new VersionWaiter(version_1, result::set);
+        VersionWaiter cancelled = new VersionWaiter(version_1, info->fail("Cancelled waiter called"));
+        patchLog.addWaiter(waiter);
+        patchLog.addWaiter(cancelled);
+        assertFalse(waiter.isDone());
+        assertTrue(cancelled.cancel());
+        // Completed by the append, on this thread.
+        patchLog.append(patch2);
+        assertTrue(waiter.isDone());
+        assertEquals(version_2, result.get().getMaxVersion());
+        assertFalse(waiter.cancel());
+    }
+
+    @Test
+    public void patchLog_13_lock_wait_timeout() {
+        PatchLog patchLog = patchLog();
+        Id lock1 = patchLog.acquireLock();
+        assertNotNull(lock1);
+        Id lock2 = patchLog.acquireLock(50);
+        assertNull(lock2);
+        patchLog.releaseLock(lock1);
+        Id lock3 = patchLog.acquireLock(50);
+        assertNotNull(lock3);
+        patchLog.releaseLock(lock3);
+    }
+
+    @Test
+    public void patchLog_14_lock_wait_release() throws Exception {
+        PatchLog patchLog = patchLog();
+        Id lock1 = patchLog.acquireLock();
+        CountDownLatch granted = new CountDownLatch(1);
+        LockWaiter waiter = new LockWaiter(session->granted.countDown());
+        patchLog.acquireLock(waiter);
+        assertFalse(waiter.isDone());
+        // Not free while there is a waiter.
+        assertNull(patchLog.acquireLock());
+        patchLog.releaseLock(lock1);
+        assertTrue(granted.await(5, TimeUnit.SECONDS));
+        Id lock2 = waiter.getSession();
+        assertNotNull(lock2);
+        assertEquals(lock2, patchLog.readLock().session);
+        patchLog.releaseLock(lock2);
+    }
+
+    @Test
+    public void patchLog_15_lock_wait_order() throws Exception {
+        PatchLog patchLog = patchLog();
+        Id lock1 = patchLog.acquireLock();
+        CountDownLatch granted1 = new CountDownLatch(1);
+        CountDownLatch granted2 = new CountDownLatch(1);
+        LockWaiter waiter1 = new LockWaiter(session->granted1.countDown());
+        LockWaiter waiter2 = new LockWaiter(session->granted2.countDown());
+        patchLog.acquireLock(waiter1);
+        patchLog.acquireLock(waiter2);
+        patchLog.releaseLock(lock1);
+        assertTrue(granted1.await(5, TimeUnit.SECONDS));
+        Id lock2 = waiter1.getSession();
+        assertNotNull(lock2);
+        assertFalse(waiter2.isDone());
+        patchLog.releaseLock(lock2);
+        assertTrue(granted2.await(5, TimeUnit.SECONDS));
+        Id lock3 = waiter2.getSession();
+        assertNotNull(lock3);
+        patchLog.releaseLock(lock3);
+    }
+
+    @Test
+    public void patchLog_16_lock_wait_cancel() {
+        PatchLog patchLog = patchLog();
+        Id lock1 = patchLog.acquireLock();
+        LockWaiter waiter1 = new LockWaiter(session->fail("Cancelled waiter given the lock"));
+        LockWaiter waiter2 = new LockWaiter(session->{});
+        patchLog.acquireLock(waiter1);
+        patchLog.acquireLock(waiter2);
+        assertTrue(waiter1.cancel());
+        // The lock passes over the cancelled waiter.
+        patchLog.releaseLock(lock1);
+        Id lock2 = waiter2.getSession();
+        assertNotNull(lock2);
+        assertFalse(waiter2.cancel());
+        patchLog.releaseLock(lock2);
+        // No waiters left.
+        Id lock3 = patchLog.acquireLock();
+        assertNotNull(lock3);
+        patchLog.releaseLock(lock3);
+    }
 }
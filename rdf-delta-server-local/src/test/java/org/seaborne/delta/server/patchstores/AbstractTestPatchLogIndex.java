@@ -19,11 +19,17 @@ package org.seaborne.delta.server.patchstores;
 
 import static org.junit.Assert.*;
 
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import org.junit.Test;
 import org.seaborne.delta.DeltaException;
 import org.seaborne.delta.Id;
 import org.seaborne.delta.Version;
 import org.seaborne.delta.server.local.LogEntry;
+import org.seaborne.delta.server.local.patchstores.LogHead;
 import org.seaborne.delta.server.local.patchstores.PatchLogIndex;
 import org.apache.jena.rdfpatch.RDFPatch;
 import org.apache.jena.rdfpatch.RDFPatchOps;
@@ -176,4 +182,62 @@ public abstract class AbstractTestPatchLogIndex {
         patchLogIdx.save(version_2, id2, id1);
         patchLogIdx.save(version_1, id3, id2);
     }
+
+    @Test
+    public void patchLogIndex_10_head() {
+        PatchLogIndex patchLogIdx = patchLogIndex();
+        LogHead head0 = patchLogIdx.getHead();
+        assertTrue(head0.isEmpty());
+        assertEquals(Version.INIT, head0.getLatestVersion());
+        assertNull(head0.getLatestId());
+
+        Id id1 = Id.create();
+        Id id2 = Id.create();
+        patchLogIdx.save(version_1, id1, null);
+        patchLogIdx.save(version_2, id2, id1);
+
+        LogHead head2 = patchLogIdx.getHead();
+        assertFalse(head2.isEmpty());
+        assertEquals(version_1, head2.getEarliestVersion());
+        assertEquals(id1, head2.getEarliestId());
+        assertEquals(version_2, head2.getCurrentVersion());
+        assertEquals(id2, head2.getCurrentId());
+        assertEquals(id1, head2.getPreviousId());
+
+        // A LogHead does not change.
+        assertTrue(head0.isEmpty());
+        assertNotSame(head0, head2);
+    }
+
+    @Test
+    public void patchLogIndex_11_head_concurrent() throws Exception {
+        // Readers see a head where the current id and previous id go together.
+        PatchLogIndex patchLogIdx = patchLogIndex();
+        int N = 1000;
+        Id[] ids = new Id[N+1];
+        for ( int i = 1 ; i <= N ; i++ )
+            ids[i] = Id.create();
+        AtomicBoolean finished = new AtomicBoolean(false);
+        CompletableFuture<Integer> reader = CompletableFuture.supplyAsync(()->{
+            int count = 0;
+            while(!finished.get()) {
+                LogHead head = patchLogIdx.getHead();
+                if ( ! head.isEmpty() ) {
+                    int v = (int)head.getCurrentVersion().value();
+                    if ( ! ids[v].equals(head.getCurrentId()) )
+                        return -1;
+                    if ( ! Objects.equals(ids[v-1], head.getPreviousId()) )
+                        return -1;
+                }
+                count++;
+            }
+            return count;
+        });
+        for ( int i = 1 ; i <= N ; i++ )
+            patchLogIdx.save(Version.create(i), ids[i], ids[i-1]);
+        finished.set(true);
+        int count = reader.get(10, TimeUnit.SECONDS);
+        assertTrue("Inconsistent head", count >= 0);
+        assertEquals(ids[N], patchLogIdx.getCurrentId());
+    }
 }
@@ -0,0 +1,139 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server.patchstores;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.atlas.lib.FileOps;
+import org.apache.jena.rdfpatch.RDFPatch;
+import org.apache.jena.rdfpatch.RDFPatchOps;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.seaborne.delta.DeltaConst;
+import org.seaborne.delta.Id;
+import org.seaborne.delta.Version;
+import org.seaborne.delta.server.local.LogEntry;
+import org.seaborne.delta.server.local.patchstores.file.LogIndexFile;
+import org.seaborne.delta.server.local.patchstores.file.PatchIndexFile;
+import org.seaborne.delta.server.local.patchstores.filestore.FileStore;
+
+/** The on-disk index of a file patch log. */
+public class TestLogIndexFile {
+    private static final String DIR = "target/test/log-index";
+
+    @Before public void before() {
+        FileStore.resetTracked();
+        FileOps.ensureDir(DIR);
+        FileOps.clearAll(DIR);
+    }
+
+    @After public void after() {
+        FileStore.resetTracked();
+    }
+
+    private static FileStore fileStore() {
+        return FileStore.attach(Paths.get(DIR), DeltaConst.FilePatchBasename);
+    }
+
+    /** Add patches to the FileStore, continuing from {@code prev}. */
+    private static List<Id> writePatches(FileStore fileStore, Id prev, int n) {
+        List<Id> ids = new ArrayList<>();
+        for ( int i = 0 ; i < n ; i++ ) {
+            Id id = Id.create();
+            RDFPatch patch = RDFPatchOps.withHeader(RDFPatchOps.emptyPatch(), id.asNode(), prev == null ? null : prev.asNode());
+            fileStore.writeNewFile(out->RDFPatchOps.write(out, patch));
+            ids.add(id);
+            prev = id;
+        }
+        return ids;
+    }
+
+    private static LogIndexFile open(FileStore fileStore) {
+        LogIndexFile logIndexFile = LogIndexFile.create(fileStore);
+        logIndexFile.close();
+        return logIndexFile;
+    }
+
+    private static void check(LogIndexFile logIndexFile, List<Id> ids) {
+        assertEquals(Version.create(ids.size()), logIndexFile.current());
+        for ( int i = 0 ; i < ids.size() ; i++ ) {
+            Version ver = Version.create(i+1);
+            assertEquals(ids.get(i), logIndexFile.versionToId(ver));
+            LogEntry entry = logIndexFile.getPatchInfo(ids.get(i));
+            assertEquals(ver, entry.getVersion());
+            assertEquals(i == 0 ? null : ids.get(i-1), entry.getPrevious());
+        }
+    }
+
+    @Test public void logIndexFile_1_empty() {
+        FileStore fileStore = fileStore();
+        LogIndexFile logIndexFile = open(fileStore);
+        assertEquals(Version.INIT, logIndexFile.current());
+    }
+
+    @Test public void logIndexFile_2_reopen() {
+        FileStore fileStore = fileStore();
+        List<Id> ids = writePatches(fileStore, null, 3);
+        check(open(fileStore), ids);
+        PatchIndexFile indexFile = new PatchIndexFile(fileStore.getPath());
+        assertTrue(indexFile.exists());
+        assertEquals(3, indexFile.read().size());
+        check(open(fileStore), ids);
+    }
+
+    @Test public void logIndexFile_3_tail() {
+        FileStore fileStore = fileStore();
+        List<Id> ids = writePatches(fileStore, null, 2);
+        check(open(fileStore), ids);
+        // Patch written, index not updated.
+        ids.addAll(writePatches(fileStore, ids.get(1), 1));
+        check(open(fileStore), ids);
+        assertEquals(3, new PatchIndexFile(fileStore.getPath()).read().size());
+    }
+
+    @Test public void logIndexFile_4_damaged() throws IOException {
+        FileStore fileStore = fileStore();
+        List<Id> ids = writePatches(fileStore, null, 3);
+        check(open(fileStore), ids);
+        Path path = new PatchIndexFile(fileStore.getPath()).getPath();
+        long size = Files.size(path);
+        Files.write(path, new byte[] {0, 0, 0, 20, 1, 2, 3}, StandardOpenOption.APPEND);
+        check(open(fileStore), ids);
+        assertEquals(size, Files.size(path));
+    }
+
+    @Test public void logIndexFile_5_mismatch() {
+        FileStore fileStore = fileStore();
+        List<Id> ids = writePatches(fileStore, null, 3);
+        // An index that does not agree with the patch files.
+        PatchIndexFile indexFile = new PatchIndexFile(fileStore.getPath());
+        indexFile.rewrite(List.of(new LogEntry(Id.create(), Version.create(1), null)));
+        check(open(fileStore), ids);
+        assertEquals(3, indexFile.read().size());
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server.patchstores;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.jena.atlas.lib.FileOps;
+import org.apache.jena.rdfpatch.RDFPatch;
+import org.apache.jena.rdfpatch.RDFPatchOps;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.seaborne.delta.DataSourceDescription;
+import org.seaborne.delta.DeltaConfigException;
+import org.seaborne.delta.DeltaConst;
+import org.seaborne.delta.Id;
+import org.seaborne.delta.Version;
+import org.seaborne.delta.server.Provider;
+import org.seaborne.delta.server.local.*;
+import org.seaborne.delta.server.local.patchstores.rdb.PatchStoreProviderRocks;
+import org.seaborne.delta.server.local.patchstores.rdb.PatchStoreRocks;
+
+/** Patch logs in one shared RocksDB database. */
+public class TestPatchLogRocksShared extends AbstractTestPatchLog {
+
+    private static final String LOG = "target/test-rocksdb-shared";
+    private static final LocalServerConfig config =
+        LocalServerConfig.create(LocalServers.configRDB(LOG)).setProperty(DeltaConst.pDeltaRocksShared, "true").build();
+    private PatchStore patchStore;
+    private PatchLog patchLog;
+
+    @Before public void before() {
+        DPS.resetSystem();
+        FileOps.ensureDir(LOG);
+        FileOps.clearAll(LOG);
+    }
+
+    @After public void after() {
+        if ( patchLog != null )
+            patchLog.releaseLog();
+        patchLog = null;
+        DPS.resetSystem();
+    }
+
+    @Override
+    protected PatchLog patchLog() {
+        PatchStoreProviderRocks psp = (PatchStoreProviderRocks)PatchStoreMgr.getPatchStoreProvider(Provider.ROCKS);
+        DataSourceDescription dsd = new DataSourceDescription(Id.create(), "ABC", "http://test/ABC");
+        patchStore = psp.create(config);
+        patchStore.initialize(new DataSourceRegistry("X"), config);
+        assertTrue(((PatchStoreRocks)patchStore).isShared());
+        patchLog = patchStore.createLog(dsd);
+        return patchLog;
+    }
+
+    @Test public void patchLogShared_1_separate() {
+        LocalServer server = LocalServer.create(config);
+        Id id1 = server.createDataSource("ABC", "http://test/ABC");
+        Id id2 = server.createDataSource("XYZ", "http://test/XYZ");
+        PatchLog log1 = server.getDataSource(id1).getPatchLog();
+        PatchLog log2 = server.getDataSource(id2).getPatchLog();
+        RDFPatch patch = RDFPatchOps.emptyPatch();
+        log1.append(patch);
+        assertEquals(Version.FIRST, log1.getLatestVersion());
+        assertTrue(log2.isEmpty());
+        assertNull(log2.fetch(Version.FIRST));
+    }
+
+    @Test public void patchLogShared_2_restart() {
+        LocalServer server1 = LocalServer.create(config);
+        Id id1 = server1.createDataSource("ABC", "http://test/ABC");
+        server1.getDataSource(id1).getPatchLog().append(RDFPatchOps.emptyPatch());
+        LocalServer.release(server1);
+        PatchStoreRocks.resetTracked();
+
+        LocalServer server2 = LocalServer.create(config);
+        DataSource ds = server2.getDataSourceByName("ABC");
+        assertNotNull(ds);
+        assertEquals(id1, ds.getId());
+        assertEquals(Version.FIRST, ds.getPatchLog().getLatestVersion());
+        assertNotNull(ds.getPatchLog().fetch(Version.FIRST));
+    }
+
+    @Test public void patchLogShared_3_rename() {
+        LocalServer server = LocalServer.create(config);
+        Id id1 = server.createDataSource("ABC", "http://test/ABC");
+        server.getDataSource(id1).getPatchLog().append(RDFPatchOps.emptyPatch());
+        Id id2 = server.renameDataSource(id1, "ABC", "DEF");
+        // Rename is a change of description only.
+        assertEquals(id1, id2);
+        assertNull(server.getDataSourceByName("ABC"));
+        DataSource ds = server.getDataSourceByName("DEF");
+        assertNotNull(ds);
+        assertNotNull(ds.getPatchLog().fetch(Version.FIRST));
+    }
+
+    @Test public void patchLogShared_4_copy() {
+        LocalServer server = LocalServer.create(config);
+        Id id1 = server.createDataSource("ABC", "http://test/ABC");
+        PatchLog log1 = server.getDataSource(id1).getPatchLog();
+        log1.append(RDFPatchOps.emptyPatch());
+        Id id2 = server.copyDataSource(id1, "ABC", "DEF");
+        PatchLog log2 = server.getPatchStore().getLog(id2);
+        assertNotNull(log2);
+        assertEquals(Version.FIRST, log2.getLatestVersion());
+        assertNotNull(log2.fetch(Version.FIRST));
+        // Independent
+        RDFPatch patch = RDFPatchOps.withHeader(RDFPatchOps.emptyPatch(), Id.create().asNode(), log2.getLatestId().asNode());
+        log2.append(patch);
+        assertEquals(Version.FIRST, log1.getLatestVersion());
+    }
+
+    @Test public void patchLogShared_5_delete() {
+        LocalServer server = LocalServer.create(config);
+        Id id1 = server.createDataSource("ABC", "http://test/ABC");
+        server.getDataSource(id1).getPatchLog().append(RDFPatchOps.emptyPatch());
+        server.removeDataSource(id1);
+        assertNull(server.getDataSourceByName("ABC"));
+        Id id2 = server.createDataSource("ABC", "http://test/ABC");
+        assertTrue(server.getDataSource(id2).getPatchLog().isEmpty());
+    }
+
+    @Test public void patchLogShared_6_twoStores() {
+        // Two patch stores on the same database do not give out the same log number.
+        LocalServer server1 = LocalServer.create(config);
+        LocalServer server2 = LocalServer.create(config);
+        Id id1 = server1.createDataSource("ABC", "http://test/ABC");
+        server1.getDataSource(id1).getPatchLog().append(RDFPatchOps.emptyPatch());
+        server2.createDataSource("XYZ", "http://test/XYZ");
+        assertEquals(Version.FIRST, server1.getDataSource(id1).getPatchLog().getLatestVersion());
+        assertNotNull(server1.getDataSource(id1).getPatchLog().fetch(Version.FIRST));
+    }
+
+    @Test(expected=DeltaConfigException.class)
+    public void patchLogShared_7_existingLogs() {
+        // Patch logs in their own databases are not hidden by switching to a shared database.
+        LocalServer server1 = LocalServer.create(LocalServers.configRDB(LOG));
+        server1.createDataSource("ABC", "http://test/ABC");
+        LocalServer.release(server1);
+        PatchStoreRocks.resetTracked();
+        LocalServer.create(config);
+    }
+}
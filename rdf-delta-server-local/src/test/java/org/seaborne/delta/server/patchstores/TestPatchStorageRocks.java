@@ -17,15 +17,29 @@
 
 package org.seaborne.delta.server.patchstores;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
 import java.nio.file.Paths;
 
 import org.apache.jena.atlas.lib.FileOps;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.BeforeClass;
+import org.junit.Test;
+import org.rocksdb.CompressionType;
+import org.seaborne.delta.DeltaConfigException;
+import org.seaborne.delta.DeltaConst;
+import org.seaborne.delta.DeltaException;
+import org.seaborne.delta.Id;
+import org.seaborne.delta.server.local.LocalServerConfig;
 import org.seaborne.delta.server.local.patchstores.PatchStorage;
 import org.seaborne.delta.server.local.patchstores.rdb.PatchStorageRocks;
 import org.seaborne.delta.server.local.patchstores.rdb.RocksDatabase;
+import org.seaborne.delta.server.local.patchstores.rdb.RocksOptions;
+import org.apache.jena.rdfpatch.RDFPatchOps;
 
 public class TestPatchStorageRocks extends AbstractTestPatchStorage {
     private static String DIR = "target/test/patch-store-file/db";
@@ -49,4 +63,58 @@ public class TestPatchStorageRocks extends AbstractTestPatchStorage {
     protected PatchStorage patchStorage() {
         return new PatchStorageRocks(rdb);
     }
+
+    @Test
+    public void patchStorageRocks_atomic_1() {
+        PatchStorage patchStorage = patchStorage();
+        Id id1 = Id.create();
+        Id id2 = Id.create();
+        patchStorage.commitPatch(()->{
+            patchStorage.store(id1, RDFPatchOps.emptyPatch());
+            patchStorage.store(id2, RDFPatchOps.emptyPatch());
+        });
+        assertNotNull(patchStorage.fetch(id1));
+        assertNotNull(patchStorage.fetch(id2));
+    }
+
+    @Test
+    public void patchStorageRocks_atomic_2() {
+        PatchStorage patchStorage = patchStorage();
+        Id id1 = Id.create();
+        try {
+            patchStorage.commitPatch(()->{
+                patchStorage.store(id1, RDFPatchOps.emptyPatch());
+                throw new DeltaException("Fail");
+            });
+            fail("Expected an exception");
+        } catch (DeltaException ex) {}
+        // Nothing written.
+        assertNull(patchStorage.fetch(id1));
+    }
+
+    @Test
+    public void patchStorageRocks_options_1() {
+        LocalServerConfig config = LocalServerConfig.create()
+            .setProperty(DeltaConst.pDeltaRocksCompression, "zstd")
+            .setProperty(DeltaConst.pDeltaRocksBlockCache, "0")
+            .setProperty(DeltaConst.pDeltaRocksBloomBits, "0")
+            .build();
+        RocksOptions options = RocksOptions.create(config);
+        assertEquals(CompressionType.ZSTD_COMPRESSION, options.getPatchCompression());
+        assertEquals(0, options.getBlockCacheSize());
+        // Reopen with these settings.
+        Id id1 = Id.create();
+        patchStorage().store(id1, RDFPatchOps.emptyPatch());
+        rdb.close();
+        rdb = new RocksDatabase(Paths.get(DIR), options);
+        assertNotNull(patchStorage().fetch(id1));
+    }
+
+    @Test(expected=DeltaConfigException.class)
+    public void patchStorageRocks_options_2() {
+        LocalServerConfig config = LocalServerConfig.create()
+            .setProperty(DeltaConst.pDeltaRocksCompression, "rar")
+            .build();
+        RocksOptions.create(config);
+    }
 }
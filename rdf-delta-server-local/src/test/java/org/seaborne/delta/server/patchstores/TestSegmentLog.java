@@ -0,0 +1,194 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server.patchstores;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.atlas.lib.FileOps;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.seaborne.delta.Id;
+import org.seaborne.delta.server.local.LogEntry;
+import org.seaborne.delta.server.local.patchstores.segment.SegmentLog;
+import org.seaborne.delta.server.local.patchstores.segment.SegmentLog.PatchRecord;
+
+public class TestSegmentLog {
+    private static final String DIR = "target/test/segment-log";
+    private static final Path path = Paths.get(DIR);
+
+    private SegmentLog segmentLog = null;
+
+    @Before public void before() {
+        FileOps.ensureDir(DIR);
+        FileOps.clearAll(DIR);
+    }
+
+    @After public void after() {
+        if ( segmentLog != null )
+            segmentLog.close();
+    }
+
+    private static byte[] bytes(long version) {
+        return ("Patch "+version).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private List<LogEntry> open(long segmentSize) {
+        return open(segmentSize, true);
+    }
+
+    private List<LogEntry> open(long segmentSize, boolean mmap) {
+        List<LogEntry> entries = new ArrayList<>();
+        segmentLog = SegmentLog.open(path, segmentSize, mmap, entries::add);
+        return entries;
+    }
+
+    private List<Id> append(long from, long to) {
+        List<Id> ids = new ArrayList<>();
+        Id prev = null;
+        for ( long v = from ; v <= to ; v++ ) {
+            Id id = Id.create();
+            segmentLog.append(v, id, prev, bytes(v));
+            ids.add(id);
+            prev = id;
+        }
+        return ids;
+    }
+
+    @Test public void segmentLog_empty() {
+        List<LogEntry> entries = open(SegmentLog.dftSegmentSize);
+        assertTrue(entries.isEmpty());
+        assertEquals(-1, segmentLog.getLastVersion());
+        assertNull(segmentLog.read(1));
+        assertEquals(0, segmentLog.records().count());
+    }
+
+    @Test public void segmentLog_append_read() {
+        open(SegmentLog.dftSegmentSize);
+        List<Id> ids = append(1, 3);
+        assertEquals(3, segmentLog.getLastVersion());
+        PatchRecord rec = segmentLog.read(2);
+        assertNotNull(rec);
+        assertEquals(2, rec.version);
+        assertEquals(ids.get(1), rec.id);
+        assertEquals(ids.get(0), rec.previous);
+        assertArrayEquals(bytes(2), rec.patchBytes());
+        assertNull(segmentLog.read(4));
+    }
+
+    @Test(expected=org.seaborne.delta.DeltaException.class)
+    public void segmentLog_append_bad() {
+        open(SegmentLog.dftSegmentSize);
+        append(1, 2);
+        segmentLog.append(4, Id.create(), null, bytes(4));
+    }
+
+    @Test public void segmentLog_reopen() {
+        open(SegmentLog.dftSegmentSize);
+        List<Id> ids = append(1, 200);
+        segmentLog.close();
+        List<LogEntry> entries = open(SegmentLog.dftSegmentSize);
+        assertEquals(200, entries.size());
+        assertEquals(200, segmentLog.getLastVersion());
+        assertEquals(ids.get(99), entries.get(99).getPatchId());
+        assertEquals(ids.get(129), segmentLog.read(130).id);
+        // And continue.
+        segmentLog.append(201, Id.create(), ids.get(199), bytes(201));
+        assertArrayEquals(bytes(201), segmentLog.read(201).patchBytes());
+    }
+
+    @Test public void segmentLog_roll() {
+        // Small segments: a few records each.
+        open(100);
+        append(1, 20);
+        assertTrue(segmentLog.segmentFiles().size() > 1);
+        assertEquals(20, segmentLog.records().count());
+        assertArrayEquals(bytes(17), segmentLog.read(17).patchBytes());
+        segmentLog.close();
+        List<LogEntry> entries = open(100);
+        assertEquals(20, entries.size());
+        assertArrayEquals(bytes(5), segmentLog.read(5).patchBytes());
+    }
+
+    @Test public void segmentLog_roll_nommap() {
+        open(100, false);
+        append(1, 20);
+        assertEquals(20, segmentLog.records().count());
+        assertArrayEquals(bytes(17), segmentLog.read(17).patchBytes());
+    }
+
+    @Test public void segmentLog_mapped_after_close() {
+        // Records read from a mapped segment remain usable after the log is closed.
+        open(100);
+        append(1, 5);
+        PatchRecord rec = segmentLog.read(2);
+        segmentLog.close();
+        segmentLog = null;
+        assertArrayEquals(bytes(2), rec.patchBytes());
+    }
+
+    @Test public void segmentLog_reader() {
+        open(100);
+        append(1, 10);
+        try ( SegmentLog.Reader reader = segmentLog.reader() ) {
+            for ( long v = 3 ; v <= 10 ; v++ )
+                assertEquals(v, reader.read(v).version);
+            assertNull(reader.read(11));
+            // Appended after the reader has read to the end.
+            segmentLog.append(11, Id.create(), null, bytes(11));
+            assertArrayEquals(bytes(11), reader.read(11).patchBytes());
+        }
+    }
+
+    @Test public void segmentLog_undo() {
+        open(SegmentLog.dftSegmentSize);
+        List<Id> ids = append(1, 2);
+        assertFalse(segmentLog.undo(ids.get(0)));
+        assertTrue(segmentLog.undo(ids.get(1)));
+        assertEquals(1, segmentLog.getLastVersion());
+        assertNull(segmentLog.read(2));
+        segmentLog.append(2, Id.create(), ids.get(0), bytes(2));
+        assertEquals(2, segmentLog.getLastVersion());
+    }
+
+    @Test public void segmentLog_torn_tail() throws IOException {
+        open(SegmentLog.dftSegmentSize);
+        append(1, 5);
+        Path file = segmentLog.segmentFile(5);
+        segmentLog.close();
+        // Cut the last record short.
+        try ( FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE) ) {
+            ch.truncate(ch.size()-3);
+        }
+        List<LogEntry> entries = open(SegmentLog.dftSegmentSize);
+        assertEquals(4, entries.size());
+        assertEquals(4, segmentLog.getLastVersion());
+        assertNull(segmentLog.read(5));
+        segmentLog.append(5, Id.create(), null, bytes(5));
+        assertArrayEquals(bytes(5), segmentLog.read(5).patchBytes());
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *  See the NOTICE file distributed with this work for additional
+ *  information regarding copyright ownership.
+ */
+
+package org.seaborne.delta.server.patchstores;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.seaborne.delta.DeltaException;
+import org.seaborne.delta.Id;
+import org.seaborne.delta.Version;
+import org.seaborne.delta.server.local.LogEntry;
+import org.seaborne.delta.server.local.patchstores.VersionIndex;
+
+public class TestVersionIndex {
+
+    @Test public void versionIndex_empty() {
+        VersionIndex index = new VersionIndex();
+        assertEquals(-1, index.first());
+        assertEquals(-1, index.last());
+        assertNull(index.versionToId(1));
+        assertNull(index.idToVersion(Id.create()));
+        assertEquals(0, index.entries().count());
+    }
+
+    @Test public void versionIndex_add() {
+        VersionIndex index = new VersionIndex();
+        Id id1 = Id.create();
+        Id id2 = Id.create();
+        index.add(Version.create(1), id1, null);
+        index.add(Version.create(2), id2, id1);
+        assertEquals(1, index.first());
+        assertEquals(2, index.last());
+        assertEquals(id1, index.versionToId(1));
+        assertEquals(id2, index.versionToId(2));
+        assertNull(index.versionToId(0));
+        assertNull(index.versionToId(3));
+        assertEquals(Version.create(2), index.idToVersion(id2));
+        assertTrue(index.contains(id1));
+        assertEquals(new LogEntry(id2, Version.create(2), id1), index.getEntry(id2));
+        assertEquals(new LogEntry(id1, Version.create(1), null), index.getEntry(1));
+    }
+
+    @Test public void versionIndex_grow() {
+        VersionIndex index = new VersionIndex();
+        List<Id> ids = new ArrayList<>();
+        Id prev = null;
+        for ( int i = 1 ; i <= 10_000 ; i++ ) {
+            Id id = Id.create();
+            index.add(Version.create(i), id, prev);
+            ids.add(id);
+            prev = id;
+        }
+        assertEquals(10_000, index.size());
+        for ( int i = 1 ; i <= 10_000 ; i++ ) {
+            Id id = ids.get(i-1);
+            assertEquals(id, index.versionToId(i));
+            assertEquals(Version.create(i), index.idToVersion(id));
+        }
+        assertEquals(ids.get(4998), index.getEntry(ids.get(4999)).getPrevious());
+        assertEquals(10_000, index.entries().count());
+    }
+
+    @Test public void versionIndex_gap() {
+        VersionIndex index = new VersionIndex();
+        Id id1 = Id.create();
+        Id id2 = Id.create();
+        index.add(Version.create(5), id1, null);
+        index.add(Version.create(100), id2, id1);
+        assertEquals(5, index.first());
+        assertNull(index.versionToId(50));
+        assertEquals(2, index.entries().count());
+        assertEquals(id1, index.getEntry(id2).getPrevious());
+    }
+
+    @Test public void versionIndex_other_ids() {
+        // Non-UUID ids, and a previous not in the index.
+        VersionIndex index = new VersionIndex();
+        Id id1 = Id.fromBytes("patch-1".getBytes(StandardCharsets.UTF_8));
+        Id id2 = Id.create();
+        Id before = Id.create();
+        index.add(Version.create(1), id1, before);
+        index.add(Version.create(2), id2, id1);
+        assertEquals(id1, index.versionToId(1));
+        assertEquals(Version.create(1), index.idToVersion(id1));
+        assertEquals(before, index.getEntry(id1).getPrevious());
+        assertEquals(id1, index.getEntry(id2).getPrevious());
+        assertFalse(index.contains(before));
+    }
+
+    @Test public void versionIndex_truncate() {
+        VersionIndex index = new VersionIndex();
+        List<Id> ids = new ArrayList<>();
+        Id prev = null;
+        for ( int i = 1 ; i <= 100 ; i++ ) {
+            Id id = Id.create();
+            index.add(Version.create(i), id, prev);
+            ids.add(id);
+            prev = id;
+        }
+        assertEquals(49, index.truncate(50));
+        assertEquals(50, index.first());
+        assertEquals(100, index.last());
+        assertEquals(51, index.size());
+        assertNull(index.versionToId(49));
+        assertFalse(index.contains(ids.get(48)));
+        assertEquals(ids.get(49), index.versionToId(50));
+        assertEquals(Version.create(100), index.idToVersion(ids.get(99)));
+        // Previous of the first remaining entry has been removed from the index.
+        assertEquals(ids.get(48), index.getEntry(50).getPrevious());
+        assertEquals(ids.get(49), index.getEntry(51).getPrevious());
+        // Add after truncate.
+        Id id101 = Id.create();
+        index.add(Version.create(101), id101, ids.get(99));
+        assertEquals(Version.create(101), index.idToVersion(id101));
+        // The last entry is always kept.
+        index.truncate(1000);
+        assertEquals(101, index.first());
+        assertEquals(1, index.size());
+        assertEquals(ids.get(99), index.getEntry(id101).getPrevious());
+    }
+
+    @Test(expected=DeltaException.class)
+    public void versionIndex_order() {
+        VersionIndex index = new VersionIndex();
+        index.add(Version.create(2), Id.create(), null);
+        index.add(Version.create(1), Id.create(), null);
+    }
+}